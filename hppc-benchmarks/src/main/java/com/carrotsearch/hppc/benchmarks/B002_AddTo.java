@@ -0,0 +1,99 @@
+package com.carrotsearch.hppc.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.carrotsearch.hppc.XorShiftRandom;
+
+/**
+ * Counting with {@link IntIntOpenHashMap#addTo(int, int)} and
+ * {@link IntIntOpenHashMap#putIfAbsent(int, int)} against the previous
+ * implementation of these methods (separate <code>containsKey</code>,
+ * <code>get</code> and <code>put</code> calls, each probing the table).
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Thread)
+public class B002_AddTo {
+  @Param({"1000", "100000", "5000000"})
+  public int distinctKeys;
+
+  private int [] keys;
+  private IntIntOpenHashMap map;
+
+  @Setup
+  public void setup() {
+    XorShiftRandom rnd = new XorShiftRandom(0xdeadbeef);
+    keys = new int [1 << 20];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = rnd.nextInt(distinctKeys);
+    }
+    map = new IntIntOpenHashMap();
+  }
+
+  @Benchmark
+  public int addTo() {
+    final IntIntOpenHashMap map = this.map;
+    map.clear();
+    for (int key : keys) {
+      map.addTo(key, 1);
+    }
+    return map.size();
+  }
+
+  @Benchmark
+  public int addToMultiProbe() {
+    final IntIntOpenHashMap map = this.map;
+    map.clear();
+    for (int key : keys) {
+      int value = 1;
+      if (map.containsKey(key)) {
+        value += map.get(key);
+      }
+      map.put(key, value);
+    }
+    return map.size();
+  }
+
+  @Benchmark
+  public int putIfAbsent() {
+    final IntIntOpenHashMap map = this.map;
+    map.clear();
+    for (int key : keys) {
+      map.putIfAbsent(key, key);
+    }
+    return map.size();
+  }
+
+  @Benchmark
+  public int putIfAbsentMultiProbe() {
+    final IntIntOpenHashMap map = this.map;
+    map.clear();
+    for (int key : keys) {
+      if (!map.containsKey(key)) {
+        map.put(key, key);
+      }
+    }
+    return map.size();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(B002_AddTo.class.getSimpleName())
+      .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,105 @@
+package com.carrotsearch.hppc.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.carrotsearch.hppc.IntIntRobinHoodHashMap;
+import com.carrotsearch.hppc.XorShiftRandom;
+
+/**
+ * Lookups of present (hit) and absent (miss) keys in linear probing and
+ * Robin Hood hash maps filled up to a given load factor.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Thread)
+public class B003_RobinHoodLookups {
+  public static enum Implementation {
+    LINEAR,
+    ROBIN_HOOD;
+  }
+
+  @Param({"LINEAR", "ROBIN_HOOD"})
+  public Implementation implementation;
+
+  @Param({"0.5", "0.75", "0.85", "0.9", "0.95"})
+  public double loadFactor;
+
+  @Param({"1048576"})
+  public int bufferSize;
+
+  private IntIntOpenHashMap map;
+  private int [] hits;
+  private int [] misses;
+
+  @Setup
+  public void setup() {
+    // Fill the buffer up to (just below) the load factor's expansion threshold.
+    final int elements = (int) (bufferSize * loadFactor) - 1;
+    switch (implementation) {
+      case LINEAR:
+        map = new IntIntOpenHashMap(elements, loadFactor);
+        break;
+      case ROBIN_HOOD:
+        map = new IntIntRobinHoodHashMap(elements, loadFactor);
+        break;
+      default:
+        throw new RuntimeException();
+    }
+
+    // Even keys are stored in the map, odd keys are guaranteed misses.
+    XorShiftRandom rnd = new XorShiftRandom(0xdeadbeef);
+    hits = new int [elements];
+    for (int i = 0; i < elements; i++) {
+      hits[i] = (rnd.nextInt() & ~1) | 2;
+      map.put(hits[i], i);
+    }
+
+    misses = new int [elements];
+    for (int i = 0; i < elements; i++) {
+      misses[i] = rnd.nextInt() | 1;
+    }
+  }
+
+  @Benchmark
+  public int hit() {
+    final IntIntOpenHashMap map = this.map;
+    int sum = 0;
+    for (int key : hits) {
+      sum += map.get(key);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int miss() {
+    final IntIntOpenHashMap map = this.map;
+    int count = 0;
+    for (int key : misses) {
+      if (map.containsKey(key)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(B003_RobinHoodLookups.class.getSimpleName())
+      .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,76 @@
+package com.carrotsearch.hppc.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.carrotsearch.hppc.IntIntConcurrentHashMap;
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.carrotsearch.hppc.XorShiftRandom;
+
+/**
+ * Counting from several threads with {@link IntIntConcurrentHashMap#addTo(int, int)}
+ * against a single {@link IntIntOpenHashMap} guarded by a monitor.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Threads(4)
+@State(Scope.Benchmark)
+public class B004_ConcurrentAddTo {
+  @Param({"1000", "100000"})
+  public int distinctKeys;
+
+  private int [] keys;
+  private IntIntOpenHashMap synchronizedMap;
+  private IntIntConcurrentHashMap concurrentMap;
+
+  @Setup
+  public void setup() {
+    XorShiftRandom rnd = new XorShiftRandom(0xdeadbeef);
+    keys = new int [1 << 16];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = rnd.nextInt(distinctKeys);
+    }
+    synchronizedMap = new IntIntOpenHashMap(distinctKeys);
+    concurrentMap = new IntIntConcurrentHashMap(distinctKeys);
+  }
+
+  @Benchmark
+  public int synchronizedAddTo() {
+    final IntIntOpenHashMap map = this.synchronizedMap;
+    for (int key : keys) {
+      synchronized (map) {
+        map.addTo(key, 1);
+      }
+    }
+    return keys.length;
+  }
+
+  @Benchmark
+  public int concurrentAddTo() {
+    final IntIntConcurrentHashMap map = this.concurrentMap;
+    for (int key : keys) {
+      map.addTo(key, 1);
+    }
+    return keys.length;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(B004_ConcurrentAddTo.class.getSimpleName())
+      .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,99 @@
+package com.carrotsearch.hppc.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.carrotsearch.hppc.XorShiftRandom;
+
+/**
+ * Batch lookups with {@link IntIntOpenHashMap#getAll(int[], int[], int)} against
+ * per-key {@link IntIntOpenHashMap#getOrDefault(int, int)}. The largest maps do
+ * not fit in the last level cache, so lookups are dominated by cache misses.
+ * Each invocation takes the next batch from a pool of keys larger than the last
+ * level cache, so that neither the keys nor the slots they probe stay cached
+ * from one invocation to the next.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Thread)
+public class B005_BatchLookup {
+  private static final int BATCH = 1024;
+
+  /** 4096 batches of 1024 keys, 16MB in total. */
+  private static final int BATCHES = 4096;
+
+  @Param({"10000", "1000000", "20000000"})
+  public int size;
+
+  private int [][] batches;
+  private int next;
+  private int [] values;
+  private IntIntOpenHashMap map;
+
+  @Setup
+  public void setup() {
+    XorShiftRandom rnd = new XorShiftRandom(0xdeadbeef);
+    map = new IntIntOpenHashMap(size);
+    for (int i = 0; i < size; i++) {
+      map.put(rnd.nextInt(), i);
+    }
+
+    // Half of the looked up keys are present in the map.
+    batches = new int [BATCHES][BATCH];
+    final int [] present = map.keys().toArray();
+    for (int [] keys : batches) {
+      for (int i = 0; i < keys.length; i++) {
+        keys[i] = (i & 1) == 0 ? present[rnd.nextInt(present.length)] : rnd.nextInt();
+      }
+    }
+    values = new int [BATCH];
+  }
+
+  private int [] nextBatch() {
+    final int [] keys = batches[next];
+    next = (next + 1) & (BATCHES - 1);
+    return keys;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public int getAll() {
+    return map.getAll(nextBatch(), values, -1);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public int getOrDefault() {
+    final IntIntOpenHashMap map = this.map;
+    final int [] keys = nextBatch();
+    final int [] values = this.values;
+    int found = 0;
+    for (int i = 0; i < keys.length; i++) {
+      if ((values[i] = map.getOrDefault(keys[i], -1)) != -1) {
+        found++;
+      }
+    }
+    return found;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(B005_BatchLookup.class.getSimpleName())
+      .build();
+
+    new Runner(opt).run();
+  }
+}
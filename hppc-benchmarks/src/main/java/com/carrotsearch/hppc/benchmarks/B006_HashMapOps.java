@@ -0,0 +1,142 @@
+package com.carrotsearch.hppc.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.carrotsearch.hppc.cursors.IntIntCursor;
+
+/**
+ * Put, get, remove and iteration over {@link IntIntOpenHashMap} and
+ * <code>java.util.HashMap&lt;Integer, Integer&gt;</code>.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Thread)
+public class B006_HashMapOps {
+  @Param({"1000", "100000", "1000000"})
+  public int size;
+
+  @Param({"0.5", "0.75", "0.9"})
+  public float loadFactor;
+
+  @Param({"SEQUENTIAL", "RANDOM", "CLUSTERED", "BIT_REVERSED"})
+  public KeyDistribution distribution;
+
+  private int [] keys;
+  private IntIntOpenHashMap hppc;
+  private Map<Integer, Integer> jdk;
+
+  @Setup
+  public void setup() {
+    keys = distribution.keys(size, 0xdeadbeef);
+    hppc = new IntIntOpenHashMap(size, loadFactor);
+    jdk = new HashMap<Integer, Integer>(size, loadFactor);
+    for (int key : keys) {
+      hppc.put(key, key);
+      jdk.put(key, key);
+    }
+  }
+
+  @Benchmark
+  public int hppcPut() {
+    final IntIntOpenHashMap map = new IntIntOpenHashMap(0, loadFactor);
+    for (int key : keys) {
+      map.put(key, key);
+    }
+    return map.size();
+  }
+
+  @Benchmark
+  public int hppcGet() {
+    final IntIntOpenHashMap map = this.hppc;
+    int sum = 0;
+    for (int key : keys) {
+      sum += map.get(key);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int hppcPutRemove() {
+    final IntIntOpenHashMap map = new IntIntOpenHashMap(size, loadFactor);
+    for (int key : keys) {
+      map.put(key, key);
+    }
+    for (int key : keys) {
+      map.remove(key);
+    }
+    return map.size();
+  }
+
+  @Benchmark
+  public int hppcIterate() {
+    int sum = 0;
+    for (IntIntCursor c : hppc) {
+      sum += c.key + c.value;
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int jdkPut() {
+    final Map<Integer, Integer> map = new HashMap<Integer, Integer>(16, loadFactor);
+    for (int key : keys) {
+      map.put(key, key);
+    }
+    return map.size();
+  }
+
+  @Benchmark
+  public int jdkGet() {
+    final Map<Integer, Integer> map = this.jdk;
+    int sum = 0;
+    for (int key : keys) {
+      sum += map.get(key);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int jdkPutRemove() {
+    final Map<Integer, Integer> map = new HashMap<Integer, Integer>(size, loadFactor);
+    for (int key : keys) {
+      map.put(key, key);
+    }
+    for (int key : keys) {
+      map.remove(key);
+    }
+    return map.size();
+  }
+
+  @Benchmark
+  public int jdkIterate() {
+    int sum = 0;
+    for (Map.Entry<Integer, Integer> e : jdk.entrySet()) {
+      sum += e.getKey() + e.getValue();
+    }
+    return sum;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(B006_HashMapOps.class.getSimpleName())
+      .build();
+
+    new Runner(opt).run();
+  }
+}
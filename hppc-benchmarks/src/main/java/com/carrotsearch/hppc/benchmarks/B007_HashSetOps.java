@@ -0,0 +1,146 @@
+package com.carrotsearch.hppc.benchmarks;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.carrotsearch.hppc.IntOpenHashSet;
+import com.carrotsearch.hppc.cursors.IntCursor;
+
+/**
+ * Add, contains, remove and iteration over {@link IntOpenHashSet} and
+ * <code>java.util.HashSet&lt;Integer&gt;</code>.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Thread)
+public class B007_HashSetOps {
+  @Param({"1000", "100000", "1000000"})
+  public int size;
+
+  @Param({"0.5", "0.75", "0.9"})
+  public float loadFactor;
+
+  @Param({"SEQUENTIAL", "RANDOM", "CLUSTERED", "BIT_REVERSED"})
+  public KeyDistribution distribution;
+
+  private int [] keys;
+  private IntOpenHashSet hppc;
+  private Set<Integer> jdk;
+
+  @Setup
+  public void setup() {
+    keys = distribution.keys(size, 0xdeadbeef);
+    hppc = new IntOpenHashSet(size, loadFactor);
+    jdk = new HashSet<Integer>(size, loadFactor);
+    for (int key : keys) {
+      hppc.add(key);
+      jdk.add(key);
+    }
+  }
+
+  @Benchmark
+  public int hppcAdd() {
+    final IntOpenHashSet set = new IntOpenHashSet(0, loadFactor);
+    for (int key : keys) {
+      set.add(key);
+    }
+    return set.size();
+  }
+
+  @Benchmark
+  public int hppcContains() {
+    final IntOpenHashSet set = this.hppc;
+    int count = 0;
+    for (int key : keys) {
+      if (set.contains(key)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int hppcAddRemove() {
+    final IntOpenHashSet set = new IntOpenHashSet(size, loadFactor);
+    for (int key : keys) {
+      set.add(key);
+    }
+    for (int key : keys) {
+      set.remove(key);
+    }
+    return set.size();
+  }
+
+  @Benchmark
+  public int hppcIterate() {
+    int sum = 0;
+    for (IntCursor c : hppc) {
+      sum += c.value;
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int jdkAdd() {
+    final Set<Integer> set = new HashSet<Integer>(16, loadFactor);
+    for (int key : keys) {
+      set.add(key);
+    }
+    return set.size();
+  }
+
+  @Benchmark
+  public int jdkContains() {
+    final Set<Integer> set = this.jdk;
+    int count = 0;
+    for (int key : keys) {
+      if (set.contains(key)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int jdkAddRemove() {
+    final Set<Integer> set = new HashSet<Integer>(size, loadFactor);
+    for (int key : keys) {
+      set.add(key);
+    }
+    for (int key : keys) {
+      set.remove(key);
+    }
+    return set.size();
+  }
+
+  @Benchmark
+  public int jdkIterate() {
+    int sum = 0;
+    for (Integer key : jdk) {
+      sum += key;
+    }
+    return sum;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(B007_HashSetOps.class.getSimpleName())
+      .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,186 @@
+package com.carrotsearch.hppc.benchmarks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.carrotsearch.hppc.IntArrayDeque;
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntStack;
+import com.carrotsearch.hppc.cursors.IntCursor;
+
+/**
+ * Appending, random access and iteration over {@link IntArrayList},
+ * {@link IntArrayDeque} and {@link IntStack}, against <code>java.util.ArrayList</code>
+ * and <code>java.util.ArrayDeque</code> of boxed integers.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Thread)
+public class B008_ListOps {
+  @Param({"1000", "100000", "1000000"})
+  public int size;
+
+  @Param({"SEQUENTIAL", "RANDOM"})
+  public KeyDistribution distribution;
+
+  private int [] values;
+  private int [] indexes;
+  private IntArrayList hppcList;
+  private List<Integer> jdkList;
+
+  @Setup
+  public void setup() {
+    values = distribution.keys(size, 0xdeadbeef);
+    indexes = KeyDistribution.RANDOM.keys(size, 0xcafebabe);
+    for (int i = 0; i < indexes.length; i++) {
+      indexes[i] = (indexes[i] & 0x7fffffff) % size;
+    }
+
+    hppcList = IntArrayList.from(values);
+    jdkList = new ArrayList<Integer>(size);
+    for (int v : values) {
+      jdkList.add(v);
+    }
+  }
+
+  @Benchmark
+  public int arrayListAdd() {
+    final IntArrayList list = new IntArrayList();
+    for (int v : values) {
+      list.add(v);
+    }
+    return list.size();
+  }
+
+  @Benchmark
+  public int arrayListGet() {
+    final IntArrayList list = this.hppcList;
+    int sum = 0;
+    for (int index : indexes) {
+      sum += list.get(index);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int arrayListIterate() {
+    int sum = 0;
+    for (IntCursor c : hppcList) {
+      sum += c.value;
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int arrayListIterateBuffer() {
+    final int [] buffer = hppcList.buffer;
+    int sum = 0;
+    for (int i = 0, max = hppcList.size(); i < max; i++) {
+      sum += buffer[i];
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int arrayDequeAddRemove() {
+    final IntArrayDeque deque = new IntArrayDeque();
+    for (int v : values) {
+      deque.addLast(v);
+    }
+    int sum = 0;
+    while (!deque.isEmpty()) {
+      sum += deque.removeFirst();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int stackPushPop() {
+    final IntStack stack = new IntStack();
+    for (int v : values) {
+      stack.push(v);
+    }
+    int sum = 0;
+    while (!stack.isEmpty()) {
+      sum += stack.pop();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int jdkArrayListAdd() {
+    final List<Integer> list = new ArrayList<Integer>();
+    for (int v : values) {
+      list.add(v);
+    }
+    return list.size();
+  }
+
+  @Benchmark
+  public int jdkArrayListGet() {
+    final List<Integer> list = this.jdkList;
+    int sum = 0;
+    for (int index : indexes) {
+      sum += list.get(index);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int jdkArrayListIterate() {
+    int sum = 0;
+    for (Integer v : jdkList) {
+      sum += v;
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int jdkArrayDequeAddRemove() {
+    final ArrayDeque<Integer> deque = new ArrayDeque<Integer>();
+    for (int v : values) {
+      deque.addLast(v);
+    }
+    int sum = 0;
+    while (!deque.isEmpty()) {
+      sum += deque.removeFirst();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int jdkStackPushPop() {
+    final ArrayDeque<Integer> stack = new ArrayDeque<Integer>();
+    for (int v : values) {
+      stack.push(v);
+    }
+    int sum = 0;
+    while (!stack.isEmpty()) {
+      sum += stack.pop();
+    }
+    return sum;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(B008_ListOps.class.getSimpleName())
+      .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,166 @@
+package com.carrotsearch.hppc.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.carrotsearch.hppc.BitSet;
+import com.carrotsearch.hppc.XorShiftRandom;
+
+/**
+ * Setting, testing, counting, combining and iterating bits of {@link BitSet}
+ * and <code>java.util.BitSet</code>.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Thread)
+public class B009_BitSetOps {
+  @Param({"65536", "16777216"})
+  public int bits;
+
+  @Param({"0.01", "0.5"})
+  public double density;
+
+  private int [] indexes;
+  private BitSet hppc;
+  private BitSet hppcOther;
+  private java.util.BitSet jdk;
+  private java.util.BitSet jdkOther;
+
+  @Setup
+  public void setup() {
+    XorShiftRandom rnd = new XorShiftRandom(0xdeadbeef);
+    indexes = new int [(int) (bits * density)];
+    for (int i = 0; i < indexes.length; i++) {
+      indexes[i] = rnd.nextInt(bits);
+    }
+
+    hppc = new BitSet(bits);
+    hppcOther = new BitSet(bits);
+    jdk = new java.util.BitSet(bits);
+    jdkOther = new java.util.BitSet(bits);
+    for (int index : indexes) {
+      hppc.set(index);
+      jdk.set(index);
+      final int other = rnd.nextInt(bits);
+      hppcOther.set(other);
+      jdkOther.set(other);
+    }
+  }
+
+  @Benchmark
+  public long hppcSet() {
+    final BitSet set = new BitSet(bits);
+    for (int index : indexes) {
+      set.set(index);
+    }
+    return set.size();
+  }
+
+  @Benchmark
+  public int hppcGet() {
+    final BitSet set = this.hppc;
+    int count = 0;
+    for (int i = 0; i < bits; i += 7) {
+      if (set.get(i)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Benchmark
+  public long hppcCardinality() {
+    return hppc.cardinality();
+  }
+
+  @Benchmark
+  public long hppcUnion() {
+    final BitSet set = (BitSet) hppc.clone();
+    set.union(hppcOther);
+    return set.size();
+  }
+
+  @Benchmark
+  public long hppcUnionCount() {
+    return BitSet.unionCount(hppc, hppcOther);
+  }
+
+  @Benchmark
+  public int hppcIterate() {
+    final BitSet set = this.hppc;
+    int sum = 0;
+    for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+      sum += i;
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long jdkSet() {
+    final java.util.BitSet set = new java.util.BitSet(bits);
+    for (int index : indexes) {
+      set.set(index);
+    }
+    return set.size();
+  }
+
+  @Benchmark
+  public int jdkGet() {
+    final java.util.BitSet set = this.jdk;
+    int count = 0;
+    for (int i = 0; i < bits; i += 7) {
+      if (set.get(i)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Benchmark
+  public long jdkCardinality() {
+    return jdk.cardinality();
+  }
+
+  @Benchmark
+  public long jdkUnion() {
+    final java.util.BitSet set = (java.util.BitSet) jdk.clone();
+    set.or(jdkOther);
+    return set.size();
+  }
+
+  @Benchmark
+  public long jdkUnionCount() {
+    final java.util.BitSet set = (java.util.BitSet) jdk.clone();
+    set.or(jdkOther);
+    return set.cardinality();
+  }
+
+  @Benchmark
+  public int jdkIterate() {
+    final java.util.BitSet set = this.jdk;
+    int sum = 0;
+    for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+      sum += i;
+    }
+    return sum;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(B009_BitSetOps.class.getSimpleName())
+      .build();
+
+    new Runner(opt).run();
+  }
+}
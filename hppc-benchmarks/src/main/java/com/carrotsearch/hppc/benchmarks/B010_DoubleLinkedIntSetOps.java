@@ -0,0 +1,166 @@
+package com.carrotsearch.hppc.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.carrotsearch.hppc.DoubleLinkedIntSet;
+import com.carrotsearch.hppc.IntOpenHashSet;
+import com.carrotsearch.hppc.cursors.IntCursor;
+
+/**
+ * Add, contains, clear and iteration over {@link DoubleLinkedIntSet} (for
+ * small, non-negative integers) against {@link IntOpenHashSet} and
+ * <code>java.util.BitSet</code> holding the same values.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Thread)
+public class B010_DoubleLinkedIntSetOps {
+  @Param({"1000", "100000"})
+  public int size;
+
+  /**
+   * The ratio of the value range to the number of values.
+   */
+  @Param({"2", "64"})
+  public int sparseness;
+
+  @Param({"SEQUENTIAL", "RANDOM", "CLUSTERED"})
+  public KeyDistribution distribution;
+
+  private int [] values;
+  private DoubleLinkedIntSet doubleLinked;
+  private IntOpenHashSet hash;
+  private java.util.BitSet bitSet;
+
+  @Setup
+  public void setup() {
+    final int range = size * sparseness;
+    values = distribution.keys(size, 0xdeadbeef);
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (values[i] & 0x7fffffff) % range;
+    }
+
+    doubleLinked = new DoubleLinkedIntSet(size, range);
+    hash = new IntOpenHashSet(size);
+    bitSet = new java.util.BitSet(range);
+    for (int v : values) {
+      doubleLinked.add(v);
+      hash.add(v);
+      bitSet.set(v);
+    }
+  }
+
+  @Benchmark
+  public int doubleLinkedAddClear() {
+    final DoubleLinkedIntSet set = this.doubleLinked;
+    set.clear();
+    for (int v : values) {
+      set.add(v);
+    }
+    return set.size();
+  }
+
+  @Benchmark
+  public int doubleLinkedContains() {
+    final DoubleLinkedIntSet set = this.doubleLinked;
+    int count = 0;
+    for (int v : values) {
+      if (set.contains(v + 1)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int doubleLinkedIterate() {
+    int sum = 0;
+    for (IntCursor c : doubleLinked) {
+      sum += c.value;
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int hashAddClear() {
+    final IntOpenHashSet set = this.hash;
+    set.clear();
+    for (int v : values) {
+      set.add(v);
+    }
+    return set.size();
+  }
+
+  @Benchmark
+  public int hashContains() {
+    final IntOpenHashSet set = this.hash;
+    int count = 0;
+    for (int v : values) {
+      if (set.contains(v + 1)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int hashIterate() {
+    int sum = 0;
+    for (IntCursor c : hash) {
+      sum += c.value;
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int bitSetAddClear() {
+    final java.util.BitSet set = this.bitSet;
+    set.clear();
+    for (int v : values) {
+      set.set(v);
+    }
+    return set.size();
+  }
+
+  @Benchmark
+  public int bitSetContains() {
+    final java.util.BitSet set = this.bitSet;
+    int count = 0;
+    for (int v : values) {
+      if (set.get(v + 1)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int bitSetIterate() {
+    final java.util.BitSet set = this.bitSet;
+    int sum = 0;
+    for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+      sum += i;
+    }
+    return sum;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(B010_DoubleLinkedIntSetOps.class.getSimpleName())
+      .build();
+
+    new Runner(opt).run();
+  }
+}
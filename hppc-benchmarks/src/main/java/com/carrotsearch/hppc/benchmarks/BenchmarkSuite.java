@@ -0,0 +1,28 @@
+package com.carrotsearch.hppc.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all container benchmarks (or those matching a regular expression given as
+ * the first argument) and writes a machine-readable JSON report to the file given
+ * as the second argument (<code>jmh-result.json</code> by default), for comparing
+ * runs across revisions.
+ */
+public class BenchmarkSuite {
+  public static void main(String[] args) throws RunnerException {
+    final String include = args.length > 0 ? args[0] : BenchmarkSuite.class.getPackage().getName() + ".B0.*";
+    final String result = args.length > 1 ? args[1] : "jmh-result.json";
+
+    Options opt = new OptionsBuilder()
+      .include(include)
+      .resultFormat(ResultFormatType.JSON)
+      .result(result)
+      .build();
+
+    new Runner(opt).run();
+  }
+}
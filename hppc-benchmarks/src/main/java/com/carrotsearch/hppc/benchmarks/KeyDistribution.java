@@ -0,0 +1,69 @@
+package com.carrotsearch.hppc.benchmarks;
+
+import com.carrotsearch.hppc.XorShiftRandom;
+
+/**
+ * Distributions of benchmark keys.
+ */
+public enum KeyDistribution {
+  /**
+   * Consecutive integers, starting at one.
+   */
+  SEQUENTIAL,
+
+  /**
+   * Uniformly distributed integers.
+   */
+  RANDOM,
+
+  /**
+   * Runs of {@link #CLUSTER_LENGTH} consecutive integers starting at random offsets.
+   */
+  CLUSTERED,
+
+  /**
+   * Bit-reversed consecutive integers: keys differ in their upper bits first (the
+   * lower bits of the first 2^16 keys are all zero), so they would collide in
+   * tables indexed by the low bits of an identity hash. Hash containers mix keys
+   * first, so this measures how well mixing spreads such keys rather than
+   * forcing collisions.
+   */
+  BIT_REVERSED;
+
+  /**
+   * The number of consecutive keys in a {@link #CLUSTERED} run.
+   */
+  final static int CLUSTER_LENGTH = 64;
+
+  /**
+   * Returns <code>count</code> keys (duplicates are possible for random and
+   * clustered keys).
+   */
+  public int [] keys(int count, long seed) {
+    final XorShiftRandom rnd = new XorShiftRandom(seed);
+    final int [] keys = new int [count];
+    int base = 0;
+    for (int i = 0; i < count; i++) {
+      switch (this) {
+        case SEQUENTIAL:
+          keys[i] = i + 1;
+          break;
+        case RANDOM:
+          keys[i] = rnd.nextInt();
+          break;
+        case CLUSTERED:
+          if ((i % CLUSTER_LENGTH) == 0) {
+            base = rnd.nextInt();
+          }
+          keys[i] = base + (i % CLUSTER_LENGTH);
+          break;
+        case BIT_REVERSED:
+          keys[i] = Integer.reverse(i + 1);
+          break;
+        default:
+          throw new RuntimeException();
+      }
+    }
+    return keys;
+  }
+}
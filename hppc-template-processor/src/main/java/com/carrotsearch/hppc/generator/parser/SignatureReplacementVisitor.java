@@ -140,6 +140,14 @@ class SignatureReplacementVisitor extends Java7ParserBaseVisitor<List<Replacemen
           typeBounds.add(typeBoundOf(c));
         }
         result.add(new Replacement(ctx.typeParameters(), toString(typeBounds)));
+      } else {
+        // Non-generic classes (static utilities) are named after template types.
+        if (templateOptions.hasKType()) {
+          typeBounds.add(new TypeBound(templateOptions.getKType(), "KType"));
+        }
+        if (templateOptions.hasVType()) {
+          typeBounds.add(new TypeBound(templateOptions.getVType(), "VType"));
+        }
       }
 
       int typeBoundIndex = 0;
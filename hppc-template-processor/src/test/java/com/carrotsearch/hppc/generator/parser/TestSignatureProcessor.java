@@ -44,6 +44,22 @@ public class TestSignatureProcessor {
     check(Type.GENERIC,               sp, "public class ObjectClass<KType> {}");
   }
 
+  @Test
+  public void testNonGenericClassK() throws IOException {
+    SignatureProcessor sp = new SignatureProcessor("public final class KTypeUtils {}");
+    check(Type.INT,                   sp, "public final class IntUtils {}");
+    check(Type.GENERIC,               sp, "public final class ObjectUtils {}");
+  }
+
+  @Test
+  public void testNonGenericClassKV() throws IOException {
+    SignatureProcessor sp = new SignatureProcessor("public final class KTypeVTypeUtils {}");
+    check(Type.INT,     Type.LONG,    sp, "public final class IntLongUtils {}");
+    check(Type.INT,     Type.GENERIC, sp, "public final class IntObjectUtils {}");
+    check(Type.GENERIC, Type.LONG,    sp, "public final class ObjectLongUtils {}");
+    check(Type.GENERIC, Type.GENERIC, sp, "public final class ObjectObjectUtils {}");
+  }
+
   @Test
   public void testClassExtendsNonTemplate() throws IOException {
     SignatureProcessor sp = new SignatureProcessor("public class KTypeVTypeClass<KType, VType> extends SuperClass {}");
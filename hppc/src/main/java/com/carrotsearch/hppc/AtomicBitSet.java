@@ -0,0 +1,323 @@
+package com.carrotsearch.hppc;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-capacity bit set that can be read and updated by multiple threads
+ * concurrently, with the same API as {@link BitSet} where it applies. Updates of
+ * single bits are lock-free compare-and-set operations on words, so concurrent
+ * {@link #set}, {@link #clear} or {@link #getAndSet} calls never lose each other's
+ * bits, and exactly one of several threads calling {@link #getAndSet} on the same
+ * clear bit observes <code>false</code>.
+ * <p>
+ * Methods reading more than one word ({@link #cardinality()}, {@link #nextSetBit},
+ * the <code>*Count</code> methods, {@link #iterator()}) are not atomic snapshots:
+ * they see every bit either before or after any concurrent update.</p>
+ * <p>
+ * Unlike {@link BitSet}, the set does not grow; indices must be less than
+ * {@link #capacity()}.</p>
+ */
+public class AtomicBitSet
+{
+    /**
+     * Words storing the bits, laid out as in {@link BitSet#bits}.
+     */
+    private final AtomicLongArray bits;
+
+    /**
+     * Constructs a set large enough to hold <code>numBits</code> bits.
+     */
+    public AtomicBitSet(long numBits)
+    {
+        bits = new AtomicLongArray(BitSet.bits2words(numBits));
+    }
+
+    /**
+     * Returns the capacity in bits (1 greater than the largest index that can be set).
+     */
+    public long capacity()
+    {
+        return (long) bits.length() << 6;
+    }
+
+    /**
+     * Returns the capacity of this set. Included for compatibility. This is <b>not</b>
+     * equal to {@link #cardinality}.
+     *
+     * @see #cardinality()
+     */
+    public long size()
+    {
+        return capacity();
+    }
+
+    /**
+     * Returns true if there are no set bits
+     */
+    public boolean isEmpty()
+    {
+        return nextSetBit(0L) < 0;
+    }
+
+    /**
+     * Returns true or false for the specified bit index.
+     */
+    public boolean get(int index)
+    {
+        return get((long) index);
+    }
+
+    /**
+     * Returns true or false for the specified bit index.
+     */
+    public boolean get(long index)
+    {
+        int i = (int) (index >> 6); // div 64
+        if (i >= bits.length()) return false;
+        return (bits.get(i) & (1L << index)) != 0;
+    }
+
+    /**
+     * Sets a bit.
+     */
+    public void set(long index)
+    {
+        getAndSet(index);
+    }
+
+    /**
+     * Sets a bit and returns the previous value.
+     */
+    public boolean getAndSet(int index)
+    {
+        return getAndSet((long) index);
+    }
+
+    /**
+     * Sets a bit and returns the previous value.
+     */
+    public boolean getAndSet(long index)
+    {
+        final int wordNum = (int) (index >> 6);
+        final long bitmask = 1L << index;
+        long word;
+        do
+        {
+            word = bits.get(wordNum);
+            if ((word & bitmask) != 0)
+            {
+                return true;
+            }
+        }
+        while (!bits.compareAndSet(wordNum, word, word | bitmask));
+        return false;
+    }
+
+    /**
+     * Clears a bit.
+     */
+    public void clear(long index)
+    {
+        getAndClear(index);
+    }
+
+    /**
+     * Clears a bit and returns the previous value.
+     */
+    public boolean getAndClear(long index)
+    {
+        final int wordNum = (int) (index >> 6);
+        final long bitmask = 1L << index;
+        long word;
+        do
+        {
+            word = bits.get(wordNum);
+            if ((word & bitmask) == 0)
+            {
+                return false;
+            }
+        }
+        while (!bits.compareAndSet(wordNum, word, word & ~bitmask));
+        return true;
+    }
+
+    /**
+     * Flips a bit.
+     */
+    public void flip(long index)
+    {
+        flipAndGet(index);
+    }
+
+    /**
+     * flips a bit and returns the resulting bit value.
+     */
+    public boolean flipAndGet(long index)
+    {
+        final int wordNum = (int) (index >> 6);
+        final long bitmask = 1L << index;
+        long word;
+        do
+        {
+            word = bits.get(wordNum);
+        }
+        while (!bits.compareAndSet(wordNum, word, word ^ bitmask));
+        return (word & bitmask) == 0;
+    }
+
+    /**
+     * Clears all bits. Each word is cleared atomically, but bits set concurrently with
+     * this call may remain set.
+     */
+    public void clear()
+    {
+        for (int i = bits.length(); --i >= 0;)
+        {
+            bits.set(i, 0L);
+        }
+    }
+
+    /** @return the number of set bits */
+    public long cardinality()
+    {
+        long tot = 0;
+        for (int i = bits.length(); --i >= 0;)
+        {
+            tot += Long.bitCount(bits.get(i));
+        }
+        return tot;
+    }
+
+    /**
+     * Returns the popcount or cardinality of the intersection of the two sets. Neither
+     * set is modified.
+     */
+    public static long intersectionCount(AtomicBitSet a, AtomicBitSet b)
+    {
+        long tot = 0;
+        for (int i = Math.min(a.bits.length(), b.bits.length()); --i >= 0;)
+        {
+            tot += Long.bitCount(a.bits.get(i) & b.bits.get(i));
+        }
+        return tot;
+    }
+
+    /**
+     * Returns the popcount or cardinality of the union of the two sets. Neither set is
+     * modified.
+     */
+    public static long unionCount(AtomicBitSet a, AtomicBitSet b)
+    {
+        long tot = 0;
+        for (int i = Math.max(a.bits.length(), b.bits.length()); --i >= 0;)
+        {
+            tot += Long.bitCount(a.word(i) | b.word(i));
+        }
+        return tot;
+    }
+
+    /**
+     * Returns the popcount or cardinality of "a and not b" or "intersection(a, not(b))".
+     * Neither set is modified.
+     */
+    public static long andNotCount(AtomicBitSet a, AtomicBitSet b)
+    {
+        long tot = 0;
+        for (int i = a.bits.length(); --i >= 0;)
+        {
+            tot += Long.bitCount(a.bits.get(i) & ~b.word(i));
+        }
+        return tot;
+    }
+
+    /**
+     * Returns the popcount or cardinality of the exclusive-or of the two sets. Neither
+     * set is modified.
+     */
+    public static long xorCount(AtomicBitSet a, AtomicBitSet b)
+    {
+        long tot = 0;
+        for (int i = Math.max(a.bits.length(), b.bits.length()); --i >= 0;)
+        {
+            tot += Long.bitCount(a.word(i) ^ b.word(i));
+        }
+        return tot;
+    }
+
+    /**
+     * @return Returns word <code>i</code>, or zero beyond the capacity.
+     */
+    private long word(int i)
+    {
+        return i < bits.length() ? bits.get(i) : 0L;
+    }
+
+    /**
+     * Returns the index of the first set bit starting at the index specified. -1 is
+     * returned if there are no more set bits.
+     */
+    public int nextSetBit(int index)
+    {
+        return (int) nextSetBit((long) index);
+    }
+
+    /**
+     * Returns the index of the first set bit starting at the index specified. -1 is
+     * returned if there are no more set bits.
+     */
+    public long nextSetBit(long index)
+    {
+        int i = (int) (index >>> 6);
+        final int wlen = bits.length();
+        if (i >= wlen) return -1;
+        long word = bits.get(i) >>> index; // skip all the bits to the right of index
+
+        if (word != 0)
+        {
+            return index + Long.numberOfTrailingZeros(word);
+        }
+
+        while (++i < wlen)
+        {
+            word = bits.get(i);
+            if (word != 0) return (((long) i) << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return Returns an iterator over set bits of a copy of the words of this set.
+     *         Updates made after this call are not visible to the iterator.
+     */
+    public BitSetIterator iterator()
+    {
+        final long [] words = words();
+        return new BitSetIterator(words, words.length);
+    }
+
+    /**
+     * @return Returns a {@link BitSet} with a copy of the bits of this set.
+     */
+    public BitSet toBitSet()
+    {
+        final long [] words = words();
+        return new BitSet(words, words.length);
+    }
+
+    private long [] words()
+    {
+        final long [] words = new long [bits.length()];
+        for (int i = 0; i < words.length; i++)
+        {
+            words[i] = bits.get(i);
+        }
+        return words;
+    }
+
+    @Override
+    public String toString()
+    {
+        return toBitSet().toString();
+    }
+}
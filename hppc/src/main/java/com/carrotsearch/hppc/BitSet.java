@@ -58,6 +58,12 @@ public class BitSet implements Cloneable
      */
     private static final long DEFAULT_NUM_BITS = 64;
 
+    /**
+     * The number of words of each source processed at a time by multi-way operations.
+     * A block of the result stays in cache while all sources are applied to it.
+     */
+    private static final int MULTI_WAY_BLOCK_WORDS = 256;
+
     /**
      * Internal representation of bits in this bit set. 
      */
@@ -505,6 +511,152 @@ public class BitSet implements Cloneable
         return tot;
     }
 
+    /**
+     * Returns the popcount or cardinality of the intersection of all given sets, in a
+     * single pass over each set. No set is modified.
+     *
+     * @throws IllegalArgumentException If no sets are given.
+     */
+    public static long intersectionCount(BitSet... sets)
+    {
+        final int wlen = minWordsInUse(sets);
+        final long [] block = new long [Math.min(wlen, MULTI_WAY_BLOCK_WORDS)];
+        long tot = 0;
+        for (int from = 0; from < wlen; from += MULTI_WAY_BLOCK_WORDS)
+        {
+            final int words = Math.min(MULTI_WAY_BLOCK_WORDS, wlen - from);
+            if (intersectBlock(sets, from, words, block, 0))
+            {
+                tot += BitUtil.pop_array(block, 0, words);
+            }
+        }
+        return tot;
+    }
+
+    /**
+     * Returns the popcount or cardinality of the union of all given sets, in a single
+     * pass over each set. No set is modified.
+     */
+    public static long unionCount(BitSet... sets)
+    {
+        final int wlen = maxWordsInUse(sets);
+        final long [] block = new long [Math.min(wlen, MULTI_WAY_BLOCK_WORDS)];
+        long tot = 0;
+        for (int from = 0; from < wlen; from += MULTI_WAY_BLOCK_WORDS)
+        {
+            final int words = Math.min(MULTI_WAY_BLOCK_WORDS, wlen - from);
+            unionBlock(sets, from, words, block, 0);
+            tot += BitUtil.pop_array(block, 0, words);
+        }
+        return tot;
+    }
+
+    /**
+     * Returns a new set with the intersection of all given sets, computed in a single
+     * pass over each set. No set is modified.
+     *
+     * @throws IllegalArgumentException If no sets are given.
+     */
+    public static BitSet intersectAll(BitSet... sets)
+    {
+        final int wlen = minWordsInUse(sets);
+        final long [] result = new long [wlen];
+        for (int from = 0; from < wlen; from += MULTI_WAY_BLOCK_WORDS)
+        {
+            intersectBlock(sets, from, Math.min(MULTI_WAY_BLOCK_WORDS, wlen - from), result, from);
+        }
+        return new BitSet(result, wlen);
+    }
+
+    /**
+     * Returns a new set with the union of all given sets, computed in a single pass
+     * over each set. No set is modified.
+     */
+    public static BitSet unionAll(BitSet... sets)
+    {
+        final int wlen = maxWordsInUse(sets);
+        final long [] result = new long [wlen];
+        for (int from = 0; from < wlen; from += MULTI_WAY_BLOCK_WORDS)
+        {
+            unionBlock(sets, from, Math.min(MULTI_WAY_BLOCK_WORDS, wlen - from), result, from);
+        }
+        return new BitSet(result, wlen);
+    }
+
+    private static int minWordsInUse(BitSet [] sets)
+    {
+        if (sets.length == 0)
+        {
+            throw new IllegalArgumentException("At least one set is required.");
+        }
+
+        int wlen = Integer.MAX_VALUE;
+        for (BitSet set : sets)
+        {
+            wlen = Math.min(wlen, set.wlen);
+        }
+        return wlen;
+    }
+
+    private static int maxWordsInUse(BitSet [] sets)
+    {
+        int wlen = 0;
+        for (BitSet set : sets)
+        {
+            wlen = Math.max(wlen, set.wlen);
+        }
+        return wlen;
+    }
+
+    /**
+     * Stores the intersection of words <code>[from, from + words)</code> of all sets
+     * in <code>dst</code>, starting at <code>offset</code>. All sets must have at least
+     * <code>from + words</code> words in use.
+     *
+     * @return Returns <code>false</code> if the intersection is empty. Remaining sets
+     *         are skipped then.
+     */
+    private static boolean intersectBlock(BitSet [] sets, int from, int words, long [] dst,
+        int offset)
+    {
+        System.arraycopy(sets[0].bits, from, dst, offset, words);
+        for (int s = 1; s < sets.length; s++)
+        {
+            // Plain counted loops over arrays, which the JIT unrolls and vectorizes.
+            final long [] src = sets[s].bits;
+            long any = 0;
+            for (int i = 0; i < words; i++)
+            {
+                any |= (dst[offset + i] &= src[from + i]);
+            }
+            if (any == 0)
+            {
+                Arrays.fill(dst, offset, offset + words, 0L);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stores the union of words <code>[from, from + words)</code> of all sets in
+     * <code>dst</code>, starting at <code>offset</code>.
+     */
+    private static void unionBlock(BitSet [] sets, int from, int words, long [] dst,
+        int offset)
+    {
+        Arrays.fill(dst, offset, offset + words, 0L);
+        for (BitSet set : sets)
+        {
+            final long [] src = set.bits;
+            final int n = Math.min(words, set.wlen - from);
+            for (int i = 0; i < n; i++)
+            {
+                dst[offset + i] |= src[from + i];
+            }
+        }
+    }
+
     /**
      * Returns the index of the first set bit starting at the index specified. -1 is
      * returned if there are no more set bits.
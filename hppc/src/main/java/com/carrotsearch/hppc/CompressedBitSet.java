@@ -0,0 +1,1558 @@
+package com.carrotsearch.hppc;
+
+import java.util.Arrays;
+
+import com.carrotsearch.hppc.procedures.IntProcedure;
+
+/**
+ * A compressed bit set of non-negative <code>int</code> indices, with the same set
+ * algebra as {@link BitSet} but memory proportional to the number of set bits rather
+ * than the largest index.
+ * <p>
+ * The index space is split into chunks of 2<sup>16</sup> bits, keyed by the upper 16
+ * bits of an index. Only non-empty chunks are stored, each in the cheapest of three
+ * containers for its contents (this is the layout of "Roaring" bitmaps):
+ * <ul>
+ * <li>a sorted array of the lower 16 bits of up to {@value #ARRAY_MAX_SIZE} indices,</li>
+ * <li>a bitmap of 1024 words for denser chunks,</li>
+ * <li>a list of runs of consecutive indices, created by {@link #runOptimize()}.</li>
+ * </ul>
+ * Binary operations work chunk by chunk, skipping chunks absent from either set where
+ * the result allows it, and pick container-specific algorithms (merges, probes, word-wise
+ * and run-wise operations) that never expand run containers. Results of operations on
+ * runs stay runs where these are smaller.</p>
+ * <p>
+ * Mutating a chunk stored as runs converts it back to an array or a bitmap; call
+ * {@link #runOptimize()} again after bulk updates.</p>
+ *
+ * @see #from(BitSet)
+ * @see #toBitSet()
+ */
+public class CompressedBitSet implements Cloneable
+{
+    /**
+     * The maximum number of values in an array container. Above this, a bitmap
+     * (8kB) is smaller.
+     */
+    static final int ARRAY_MAX_SIZE = 4096;
+
+    /**
+     * Number of words in a bitmap container.
+     */
+    static final int BITMAP_WORDS = 1 << 10;
+
+    /**
+     * Upper 16 bits of indices in each chunk, sorted. Only the first {@link #size}
+     * elements are valid.
+     */
+    char [] keys = new char [0];
+
+    /**
+     * Containers of the chunks in {@link #keys}, never empty.
+     */
+    Container [] containers = new Container [0];
+
+    /**
+     * The number of chunks in use.
+     */
+    int size;
+
+    /**
+     * Constructs an empty bit set.
+     */
+    public CompressedBitSet()
+    {
+    }
+
+    /**
+     * Static constructor-like method similar to other (generic) collections.
+     */
+    public static CompressedBitSet newInstance()
+    {
+        return new CompressedBitSet();
+    }
+
+    /**
+     * Creates a compressed copy of the given {@link BitSet}, including run containers
+     * where these are smaller.
+     *
+     * @throws IllegalArgumentException If any bit at or above 2<sup>31</sup> is set.
+     */
+    public static CompressedBitSet from(BitSet bitset)
+    {
+        final CompressedBitSet result = new CompressedBitSet();
+        final long [] bits = bitset.bits;
+        final int wlen = Math.min(bitset.wlen, bits.length);
+        for (int from = 0; from < wlen; from += BITMAP_WORDS)
+        {
+            final int words = Math.min(BITMAP_WORDS, wlen - from);
+            if (BitUtil.pop_array(bits, from, words) == 0)
+            {
+                continue;
+            }
+
+            final int key = from >>> 10;
+            if (key > Character.MAX_VALUE >>> 1)
+            {
+                throw new IllegalArgumentException("Bits at or above 2^31 cannot be stored: "
+                    + bitset.nextSetBit((long) from << 6));
+            }
+
+            final long [] chunk = new long [BITMAP_WORDS];
+            System.arraycopy(bits, from, chunk, 0, words);
+            result.append((char) key, new BitmapContainer(chunk).normalize());
+        }
+        result.runOptimize();
+        return result;
+    }
+
+    /**
+     * @return Returns a {@link BitSet} with the same bits set.
+     */
+    public BitSet toBitSet()
+    {
+        if (size == 0)
+        {
+            return new BitSet();
+        }
+
+        final BitSet result = new BitSet(((long) keys[size - 1] + 1) << 16);
+        for (int i = 0; i < size; i++)
+        {
+            containers[i].fill(result.bits, keys[i] * BITMAP_WORDS);
+        }
+        result.trimTrailingZeros();
+        return result;
+    }
+
+    /**
+     * @return Returns <code>true</code> if the bit at <code>index</code> is set.
+     */
+    public boolean get(int index)
+    {
+        assert index >= 0 : "Negative index: " + index;
+        final int i = indexOf((char) (index >>> 16));
+        return i >= 0 && containers[i].contains((char) index);
+    }
+
+    /**
+     * Sets the bit at <code>index</code>.
+     */
+    public void set(int index)
+    {
+        assert index >= 0 : "Negative index: " + index;
+        final char key = (char) (index >>> 16);
+        final int i = indexOf(key);
+        if (i >= 0)
+        {
+            containers[i] = containers[i].add((char) index);
+        }
+        else
+        {
+            insert(~i, key, new ArrayContainer().add((char) index));
+        }
+    }
+
+    /**
+     * Clears the bit at <code>index</code>.
+     */
+    public void clear(int index)
+    {
+        assert index >= 0 : "Negative index: " + index;
+        final int i = indexOf((char) (index >>> 16));
+        if (i >= 0)
+        {
+            final Container c = containers[i].remove((char) index);
+            if (c.cardinality() == 0)
+            {
+                delete(i);
+            }
+            else
+            {
+                containers[i] = c;
+            }
+        }
+    }
+
+    /**
+     * Clears all bits.
+     */
+    public void clear()
+    {
+        Arrays.fill(containers, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * @return Returns <code>true</code> if no bits are set.
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /** @return the number of set bits */
+    public long cardinality()
+    {
+        long count = 0;
+        for (int i = 0; i < size; i++)
+        {
+            count += containers[i].cardinality();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the index of the first set bit starting at the index specified. -1 is
+     * returned if there are no more set bits.
+     */
+    public int nextSetBit(int index)
+    {
+        assert index >= 0 : "Negative index: " + index;
+        int i = indexOf((char) (index >>> 16));
+        if (i >= 0)
+        {
+            final int low = containers[i].next(index & 0xffff);
+            if (low >= 0)
+            {
+                return (keys[i] << 16) | low;
+            }
+            i++;
+        }
+        else
+        {
+            i = ~i;
+        }
+
+        return i < size ? (keys[i] << 16) | containers[i].next(0) : -1;
+    }
+
+    /**
+     * Applies <code>procedure</code> to all set bits, in increasing order.
+     */
+    public <T extends IntProcedure> T forEach(T procedure)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            final int high = keys[i] << 16;
+            final Container c = containers[i];
+            for (int low = c.next(0); low >= 0; low = c.next(low + 1))
+            {
+                procedure.apply(high | low);
+            }
+        }
+        return procedure;
+    }
+
+    /**
+     * Converts chunks to run containers where these are smaller than the current
+     * array or bitmap containers.
+     *
+     * @return Returns <code>true</code> if any chunk was converted.
+     */
+    public boolean runOptimize()
+    {
+        boolean changed = false;
+        for (int i = 0; i < size; i++)
+        {
+            final Container c = containers[i];
+            if (!(c instanceof RunContainer))
+            {
+                final Container runs = RunContainer.optimize(c);
+                if (runs != c)
+                {
+                    containers[i] = runs;
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the popcount or cardinality of the intersection of the two sets. Neither
+     * set is modified.
+     */
+    public static long intersectionCount(CompressedBitSet a, CompressedBitSet b)
+    {
+        long count = 0;
+        for (int i = 0, j = 0; i < a.size && j < b.size;)
+        {
+            if (a.keys[i] < b.keys[j])
+            {
+                i++;
+            }
+            else if (a.keys[i] > b.keys[j])
+            {
+                j++;
+            }
+            else
+            {
+                count += andCount(a.containers[i++], b.containers[j++]);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the popcount or cardinality of the union of the two sets. Neither set is
+     * modified.
+     */
+    public static long unionCount(CompressedBitSet a, CompressedBitSet b)
+    {
+        return a.cardinality() + b.cardinality() - intersectionCount(a, b);
+    }
+
+    /**
+     * Returns the popcount or cardinality of "a and not b" or "intersection(a, not(b))".
+     * Neither set is modified.
+     */
+    public static long andNotCount(CompressedBitSet a, CompressedBitSet b)
+    {
+        return a.cardinality() - intersectionCount(a, b);
+    }
+
+    /**
+     * Returns the popcount or cardinality of the exclusive-or of the two sets. Neither
+     * set is modified.
+     */
+    public static long xorCount(CompressedBitSet a, CompressedBitSet b)
+    {
+        return a.cardinality() + b.cardinality() - 2 * intersectionCount(a, b);
+    }
+
+    /** returns true if the sets have any elements in common */
+    public boolean intersects(CompressedBitSet other)
+    {
+        for (int i = 0, j = 0; i < size && j < other.size;)
+        {
+            if (keys[i] < other.keys[j])
+            {
+                i++;
+            }
+            else if (keys[i] > other.keys[j])
+            {
+                j++;
+            }
+            else if (andCount(containers[i++], other.containers[j++]) > 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** this = this AND other */
+    public void intersect(CompressedBitSet other)
+    {
+        final CompressedBitSet result = new CompressedBitSet();
+        for (int i = 0, j = 0; i < size && j < other.size;)
+        {
+            if (keys[i] < other.keys[j])
+            {
+                i++;
+            }
+            else if (keys[i] > other.keys[j])
+            {
+                j++;
+            }
+            else
+            {
+                result.appendNonEmpty(keys[i], and(containers[i++], other.containers[j++]));
+            }
+        }
+        replaceWith(result);
+    }
+
+    /** this = this OR other */
+    public void union(CompressedBitSet other)
+    {
+        final CompressedBitSet result = new CompressedBitSet();
+        int i = 0, j = 0;
+        while (i < size && j < other.size)
+        {
+            if (keys[i] < other.keys[j])
+            {
+                result.append(keys[i], containers[i++]);
+            }
+            else if (keys[i] > other.keys[j])
+            {
+                result.append(other.keys[j], other.containers[j++].copy());
+            }
+            else
+            {
+                result.append(keys[i], or(containers[i++], other.containers[j++]));
+            }
+        }
+        for (; i < size; i++)
+        {
+            result.append(keys[i], containers[i]);
+        }
+        for (; j < other.size; j++)
+        {
+            result.append(other.keys[j], other.containers[j].copy());
+        }
+        replaceWith(result);
+    }
+
+    /** Remove all elements set in other. this = this AND_NOT other */
+    public void remove(CompressedBitSet other)
+    {
+        final CompressedBitSet result = new CompressedBitSet();
+        int i = 0, j = 0;
+        while (i < size && j < other.size)
+        {
+            if (keys[i] < other.keys[j])
+            {
+                result.append(keys[i], containers[i++]);
+            }
+            else if (keys[i] > other.keys[j])
+            {
+                j++;
+            }
+            else
+            {
+                result.appendNonEmpty(keys[i], andNot(containers[i++], other.containers[j++]));
+            }
+        }
+        for (; i < size; i++)
+        {
+            result.append(keys[i], containers[i]);
+        }
+        replaceWith(result);
+    }
+
+    /** this = this XOR other */
+    public void xor(CompressedBitSet other)
+    {
+        final CompressedBitSet result = new CompressedBitSet();
+        int i = 0, j = 0;
+        while (i < size && j < other.size)
+        {
+            if (keys[i] < other.keys[j])
+            {
+                result.append(keys[i], containers[i++]);
+            }
+            else if (keys[i] > other.keys[j])
+            {
+                result.append(other.keys[j], other.containers[j++].copy());
+            }
+            else
+            {
+                result.appendNonEmpty(keys[i], xor(containers[i++], other.containers[j++]));
+            }
+        }
+        for (; i < size; i++)
+        {
+            result.append(keys[i], containers[i]);
+        }
+        for (; j < other.size; j++)
+        {
+            result.append(other.keys[j], other.containers[j].copy());
+        }
+        replaceWith(result);
+    }
+
+    // some BitSet compatibility methods
+
+    // ** see {@link intersect} */
+    public void and(CompressedBitSet other)
+    {
+        intersect(other);
+    }
+
+    // ** see {@link union} */
+    public void or(CompressedBitSet other)
+    {
+        union(other);
+    }
+
+    // ** see {@link andNot} */
+    public void andNot(CompressedBitSet other)
+    {
+        remove(other);
+    }
+
+    @Override
+    public CompressedBitSet clone()
+    {
+        try
+        {
+            final CompressedBitSet cloned = (CompressedBitSet) super.clone();
+            cloned.keys = Arrays.copyOf(keys, size);
+            cloned.containers = new Container [size];
+            for (int i = 0; i < size; i++)
+            {
+                cloned.containers[i] = containers[i].copy();
+            }
+            return cloned;
+        }
+        catch (CloneNotSupportedException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** returns true if both sets have the same bits set */
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof CompressedBitSet)) return false;
+
+        final CompressedBitSet other = (CompressedBitSet) o;
+        if (size != other.size) return false;
+        for (int i = 0; i < size; i++)
+        {
+            if (keys[i] != other.keys[i]) return false;
+
+            final int cardinality = containers[i].cardinality();
+            if (cardinality != other.containers[i].cardinality()) return false;
+            if (andCount(containers[i], other.containers[i]) != cardinality) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        // Hash set bits rather than containers, which depend on the history of the set.
+        int h = 0x98761234;
+        for (int i = 0; i < size; i++)
+        {
+            final int high = keys[i] << 16;
+            final Container c = containers[i];
+            for (int low = c.next(0); low >= 0; low = c.next(low + 1))
+            {
+                h = 31 * h + BitMixer.mix(high | low);
+            }
+        }
+        return h;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("{");
+        for (int bit = nextSetBit(0); bit >= 0;
+             bit = (bit == Integer.MAX_VALUE ? -1 : nextSetBit(bit + 1)))
+        {
+            if (builder.length() > 1)
+            {
+                builder.append(", ");
+            }
+            builder.append(Integer.toString(bit));
+        }
+        builder.append("}");
+        return builder.toString();
+    }
+
+    /**
+     * @return Returns the index of <code>key</code> in {@link #keys}, or
+     *         <code>~insertionPoint</code> if absent.
+     */
+    private int indexOf(char key)
+    {
+        // Sequential access often hits the last chunk.
+        if (size > 0 && keys[size - 1] == key)
+        {
+            return size - 1;
+        }
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert(int i, char key, Container c)
+    {
+        ensureCapacity(size + 1);
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = c;
+        size++;
+    }
+
+    private void delete(int i)
+    {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+        containers[--size] = null;
+    }
+
+    /**
+     * Appends a chunk with a key greater than all existing ones.
+     */
+    private void append(char key, Container c)
+    {
+        ensureCapacity(size + 1);
+        keys[size] = key;
+        containers[size] = c;
+        size++;
+    }
+
+    private void appendNonEmpty(char key, Container c)
+    {
+        if (c.cardinality() > 0)
+        {
+            append(key, c);
+        }
+    }
+
+    private void ensureCapacity(int chunks)
+    {
+        if (keys.length < chunks)
+        {
+            final int newSize = BitSet.getNextSize(chunks);
+            keys = Arrays.copyOf(keys, newSize);
+            containers = Arrays.copyOf(containers, newSize);
+        }
+    }
+
+    private void replaceWith(CompressedBitSet other)
+    {
+        this.keys = other.keys;
+        this.containers = other.containers;
+        this.size = other.size;
+    }
+
+    /*
+     * Container algebra. An array container on either side of an intersection is
+     * probed against the other container. Run containers are combined run by run
+     * with runs or arrays, keeping runs where these are smaller, and applied as word
+     * ranges to bitmaps. Two bitmaps are combined word by word.
+     */
+
+    /**
+     * Truth tables for {@link #combineRuns}, with bit <code>(inA ? 2 : 0) + (inB ? 1 : 0)</code>
+     * set if a value is in the result.
+     */
+    private static final int AND = 1 << 3;
+    private static final int OR = 1 << 1 | 1 << 2 | 1 << 3;
+    private static final int AND_NOT = 1 << 2;
+    private static final int XOR = 1 << 1 | 1 << 2;
+
+    static Container and(Container a, Container b)
+    {
+        if (a instanceof ArrayContainer)
+        {
+            return ((ArrayContainer) a).filter(b, true);
+        }
+        if (b instanceof ArrayContainer)
+        {
+            return ((ArrayContainer) b).filter(a, true);
+        }
+        if (a instanceof RunContainer && b instanceof RunContainer)
+        {
+            return combineRuns(a, b, AND);
+        }
+        if (a instanceof RunContainer)
+        {
+            final Container t = a;
+            a = b;
+            b = t;
+        }
+
+        final long [] x = ((BitmapContainer) a).words;
+        final long [] words = new long [BITMAP_WORDS];
+        if (b instanceof RunContainer)
+        {
+            final char [] runs = ((RunContainer) b).runs;
+            for (int r = 0; r < runs.length; r += 2)
+            {
+                final int from = runs[r];
+                final int to = from + runs[r + 1];
+                for (int w = from >>> 6; w <= to >>> 6; w++)
+                {
+                    words[w] |= x[w] & rangeMask(w, from, to);
+                }
+            }
+        }
+        else
+        {
+            final long [] y = ((BitmapContainer) b).words;
+            for (int i = 0; i < BITMAP_WORDS; i++)
+            {
+                words[i] = x[i] & y[i];
+            }
+        }
+        return new BitmapContainer(words).normalize();
+    }
+
+    static int andCount(Container a, Container b)
+    {
+        if (a instanceof ArrayContainer)
+        {
+            return ((ArrayContainer) a).count(b);
+        }
+        if (b instanceof ArrayContainer)
+        {
+            return ((ArrayContainer) b).count(a);
+        }
+        if (a instanceof RunContainer)
+        {
+            return ((RunContainer) a).count(b);
+        }
+        if (b instanceof RunContainer)
+        {
+            return ((RunContainer) b).count(a);
+        }
+        return (int) BitUtil.pop_intersect(((BitmapContainer) a).words,
+            ((BitmapContainer) b).words, 0, BITMAP_WORDS);
+    }
+
+    static Container or(Container a, Container b)
+    {
+        if (a.cardinality() == 1 << 16)
+        {
+            return a.copy();
+        }
+        if (b.cardinality() == 1 << 16)
+        {
+            return b.copy();
+        }
+        if (b instanceof BitmapContainer)
+        {
+            final Container t = a;
+            a = b;
+            b = t;
+        }
+        if (!(a instanceof BitmapContainer))
+        {
+            if (a instanceof ArrayContainer && b instanceof ArrayContainer)
+            {
+                return ((ArrayContainer) a).merge((ArrayContainer) b, false);
+            }
+            return combineRuns(a, b, OR);
+        }
+
+        final long [] words = ((BitmapContainer) a).words.clone();
+        if (b instanceof ArrayContainer)
+        {
+            final ArrayContainer array = (ArrayContainer) b;
+            for (int i = 0; i < array.cardinality; i++)
+            {
+                words[array.values[i] >>> 6] |= 1L << array.values[i];
+            }
+        }
+        else if (b instanceof RunContainer)
+        {
+            final char [] runs = ((RunContainer) b).runs;
+            for (int r = 0; r < runs.length; r += 2)
+            {
+                final int from = runs[r];
+                final int to = from + runs[r + 1];
+                for (int w = from >>> 6; w <= to >>> 6; w++)
+                {
+                    words[w] |= rangeMask(w, from, to);
+                }
+            }
+        }
+        else
+        {
+            final long [] y = ((BitmapContainer) b).words;
+            for (int i = 0; i < BITMAP_WORDS; i++)
+            {
+                words[i] |= y[i];
+            }
+        }
+        return new BitmapContainer(words);
+    }
+
+    static Container andNot(Container a, Container b)
+    {
+        if (a instanceof ArrayContainer)
+        {
+            return ((ArrayContainer) a).filter(b, false);
+        }
+
+        final long [] words;
+        if (a instanceof RunContainer)
+        {
+            if (!(b instanceof BitmapContainer))
+            {
+                return combineRuns(a, b, AND_NOT);
+            }
+
+            final long [] y = ((BitmapContainer) b).words;
+            final char [] runs = ((RunContainer) a).runs;
+            words = new long [BITMAP_WORDS];
+            for (int r = 0; r < runs.length; r += 2)
+            {
+                final int from = runs[r];
+                final int to = from + runs[r + 1];
+                for (int w = from >>> 6; w <= to >>> 6; w++)
+                {
+                    words[w] |= rangeMask(w, from, to) & ~y[w];
+                }
+            }
+            return new BitmapContainer(words).normalize();
+        }
+
+        words = ((BitmapContainer) a).words.clone();
+        if (b instanceof ArrayContainer)
+        {
+            final ArrayContainer array = (ArrayContainer) b;
+            for (int i = 0; i < array.cardinality; i++)
+            {
+                words[array.values[i] >>> 6] &= ~(1L << array.values[i]);
+            }
+        }
+        else if (b instanceof RunContainer)
+        {
+            final char [] runs = ((RunContainer) b).runs;
+            for (int r = 0; r < runs.length; r += 2)
+            {
+                final int from = runs[r];
+                final int to = from + runs[r + 1];
+                for (int w = from >>> 6; w <= to >>> 6; w++)
+                {
+                    words[w] &= ~rangeMask(w, from, to);
+                }
+            }
+        }
+        else
+        {
+            final long [] y = ((BitmapContainer) b).words;
+            for (int i = 0; i < BITMAP_WORDS; i++)
+            {
+                words[i] &= ~y[i];
+            }
+        }
+        return new BitmapContainer(words).normalize();
+    }
+
+    static Container xor(Container a, Container b)
+    {
+        if (b instanceof BitmapContainer)
+        {
+            final Container t = a;
+            a = b;
+            b = t;
+        }
+        if (!(a instanceof BitmapContainer))
+        {
+            if (a instanceof ArrayContainer && b instanceof ArrayContainer)
+            {
+                return ((ArrayContainer) a).merge((ArrayContainer) b, true);
+            }
+            return combineRuns(a, b, XOR);
+        }
+
+        final long [] words = ((BitmapContainer) a).words.clone();
+        if (b instanceof ArrayContainer)
+        {
+            final ArrayContainer array = (ArrayContainer) b;
+            for (int i = 0; i < array.cardinality; i++)
+            {
+                words[array.values[i] >>> 6] ^= 1L << array.values[i];
+            }
+        }
+        else if (b instanceof RunContainer)
+        {
+            final char [] runs = ((RunContainer) b).runs;
+            for (int r = 0; r < runs.length; r += 2)
+            {
+                final int from = runs[r];
+                final int to = from + runs[r + 1];
+                for (int w = from >>> 6; w <= to >>> 6; w++)
+                {
+                    words[w] ^= rangeMask(w, from, to);
+                }
+            }
+        }
+        else
+        {
+            final long [] y = ((BitmapContainer) b).words;
+            for (int i = 0; i < BITMAP_WORDS; i++)
+            {
+                words[i] ^= y[i];
+            }
+        }
+        return new BitmapContainer(words).normalize();
+    }
+
+    /**
+     * Combines two run or array containers in a single pass over their runs (of
+     * consecutive values, for arrays), with a truth table such as {@link #AND}.
+     */
+    private static Container combineRuns(Container a, Container b, int op)
+    {
+        final RunCursor x = new RunCursor(a);
+        final RunCursor y = new RunCursor(b);
+        char [] runs = new char [8];
+        int length = 0;
+        int cardinality = 0;
+        for (int from = Math.min(x.start, y.start); from < 1 << 16;)
+        {
+            // Values from 'from' to 'to' (exclusive) are all in or all out of either run.
+            final boolean inX = x.start <= from;
+            final boolean inY = y.start <= from;
+            final int to = Math.min(inX ? x.end + 1 : x.start, inY ? y.end + 1 : y.start);
+            if ((op & (1 << ((inX ? 2 : 0) + (inY ? 1 : 0)))) != 0)
+            {
+                if (length > 0 && runs[length - 2] + runs[length - 1] + 1 == from)
+                {
+                    runs[length - 1] += to - from;
+                }
+                else
+                {
+                    if (length == runs.length)
+                    {
+                        runs = Arrays.copyOf(runs, 2 * length);
+                    }
+                    runs[length] = (char) from;
+                    runs[length + 1] = (char) (to - from - 1);
+                    length += 2;
+                }
+                cardinality += to - from;
+            }
+
+            from = to;
+            if (x.end < from)
+            {
+                x.advance();
+            }
+            if (y.end < from)
+            {
+                y.advance();
+            }
+        }
+        return RunContainer.smallest(Arrays.copyOf(runs, length), cardinality);
+    }
+
+    /**
+     * @return Returns the bits <code>from</code> to <code>to</code> (inclusive) of a
+     *         bitmap that fall into word <code>w</code>.
+     */
+    private static long rangeMask(int w, int from, int to)
+    {
+        long mask = -1L;
+        if (w == from >>> 6)
+        {
+            mask &= -1L << from;
+        }
+        if (w == to >>> 6)
+        {
+            mask &= -1L >>> (63 - (to & 63));
+        }
+        return mask;
+    }
+
+    /**
+     * Iterates the runs of a run container, or the runs of consecutive values of an
+     * array container. Past the last run, {@link #start} and {@link #end} are
+     * 2<sup>16</sup>.
+     */
+    private static final class RunCursor
+    {
+        private final char [] runs;
+        private final ArrayContainer array;
+        private int next;
+
+        int start;
+        int end;
+
+        RunCursor(Container c)
+        {
+            this.runs = c instanceof RunContainer ? ((RunContainer) c).runs : null;
+            this.array = c instanceof ArrayContainer ? (ArrayContainer) c : null;
+            advance();
+        }
+
+        void advance()
+        {
+            if (runs != null)
+            {
+                if (next < runs.length)
+                {
+                    start = runs[next];
+                    end = start + runs[next + 1];
+                    next += 2;
+                    return;
+                }
+            }
+            else if (next < array.cardinality)
+            {
+                start = end = array.values[next++];
+                while (next < array.cardinality && array.values[next] == end + 1)
+                {
+                    end++;
+                    next++;
+                }
+                return;
+            }
+            start = end = 1 << 16;
+        }
+    }
+
+    /**
+     * The lower 16 bits of indices in a chunk.
+     */
+    static abstract class Container
+    {
+        abstract int cardinality();
+
+        abstract boolean contains(char value);
+
+        /**
+         * @return Returns this container or a replacement with <code>value</code> added.
+         */
+        abstract Container add(char value);
+
+        /**
+         * @return Returns this container or a replacement with <code>value</code> removed.
+         */
+        abstract Container remove(char value);
+
+        /**
+         * @return Returns the first value not less than <code>from</code> or -1.
+         */
+        abstract int next(int from);
+
+        /**
+         * Sets bits of this container in <code>words</code>, starting at
+         * <code>offset</code>.
+         */
+        abstract void fill(long [] words, int offset);
+
+        abstract Container copy();
+
+        /**
+         * @return Returns this container as an array or bitmap container.
+         */
+        Container expand()
+        {
+            return this;
+        }
+    }
+
+    /**
+     * A sorted array of values.
+     */
+    static final class ArrayContainer extends Container
+    {
+        char [] values;
+        int cardinality;
+
+        ArrayContainer()
+        {
+            this(new char [4], 0);
+        }
+
+        ArrayContainer(char [] values, int cardinality)
+        {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality()
+        {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value)
+        {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        Container add(char value)
+        {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0)
+            {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX_SIZE)
+            {
+                return toBitmap().add(value);
+            }
+
+            i = ~i;
+            if (cardinality == values.length)
+            {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX_SIZE, Math.max(4, 2 * cardinality)));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value)
+        {
+            final int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0)
+            {
+                System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        int next(int from)
+        {
+            if (from > Character.MAX_VALUE)
+            {
+                return -1;
+            }
+            int i = Arrays.binarySearch(values, 0, cardinality, (char) from);
+            if (i < 0)
+            {
+                i = ~i;
+            }
+            return i < cardinality ? values[i] : -1;
+        }
+
+        @Override
+        void fill(long [] words, int offset)
+        {
+            for (int i = 0; i < cardinality; i++)
+            {
+                words[offset + (values[i] >>> 6)] |= 1L << values[i];
+            }
+        }
+
+        @Override
+        Container copy()
+        {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+        }
+
+        BitmapContainer toBitmap()
+        {
+            final long [] words = new long [BITMAP_WORDS];
+            fill(words, 0);
+            return new BitmapContainer(words, cardinality);
+        }
+
+        /**
+         * @return Returns the values of this container that are (or are not) in
+         *         <code>other</code>.
+         */
+        ArrayContainer filter(Container other, boolean contained)
+        {
+            final char [] result = new char [Math.max(cardinality, 1)];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++)
+            {
+                if (other.contains(values[i]) == contained)
+                {
+                    result[count++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        /**
+         * @return Returns the number of values of this container in <code>other</code>.
+         */
+        int count(Container other)
+        {
+            int count = 0;
+            if (other instanceof ArrayContainer)
+            {
+                final ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0, j = 0; i < cardinality && j < array.cardinality;)
+                {
+                    if (values[i] < array.values[j])
+                    {
+                        i++;
+                    }
+                    else if (values[i] > array.values[j])
+                    {
+                        j++;
+                    }
+                    else
+                    {
+                        count++;
+                        i++;
+                        j++;
+                    }
+                }
+            }
+            else
+            {
+                for (int i = 0; i < cardinality; i++)
+                {
+                    if (other.contains(values[i]))
+                    {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * @return Returns the union (or the symmetric difference) of two sorted arrays.
+         */
+        Container merge(ArrayContainer other, boolean xor)
+        {
+            final char [] result = new char [Math.max(cardinality + other.cardinality, 1)];
+            int count = 0;
+            int i = 0, j = 0;
+            while (i < cardinality && j < other.cardinality)
+            {
+                if (values[i] < other.values[j])
+                {
+                    result[count++] = values[i++];
+                }
+                else if (values[i] > other.values[j])
+                {
+                    result[count++] = other.values[j++];
+                }
+                else
+                {
+                    if (!xor)
+                    {
+                        result[count++] = values[i];
+                    }
+                    i++;
+                    j++;
+                }
+            }
+            while (i < cardinality)
+            {
+                result[count++] = values[i++];
+            }
+            while (j < other.cardinality)
+            {
+                result[count++] = other.values[j++];
+            }
+
+            final ArrayContainer merged = new ArrayContainer(result, count);
+            return count > ARRAY_MAX_SIZE ? merged.toBitmap() : merged;
+        }
+    }
+
+    /**
+     * A bitmap of all values.
+     */
+    static final class BitmapContainer extends Container
+    {
+        final long [] words;
+        int cardinality;
+
+        BitmapContainer(long [] words)
+        {
+            this(words, (int) BitUtil.pop_array(words, 0, BITMAP_WORDS));
+        }
+
+        BitmapContainer(long [] words, int cardinality)
+        {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality()
+        {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value)
+        {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value)
+        {
+            final long mask = 1L << value;
+            if ((words[value >>> 6] & mask) == 0)
+            {
+                words[value >>> 6] |= mask;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value)
+        {
+            final long mask = 1L << value;
+            if ((words[value >>> 6] & mask) != 0)
+            {
+                words[value >>> 6] &= ~mask;
+                cardinality--;
+            }
+            return normalize();
+        }
+
+        @Override
+        int next(int from)
+        {
+            int i = from >>> 6;
+            if (i >= BITMAP_WORDS)
+            {
+                return -1;
+            }
+
+            long word = words[i] >>> from;
+            if (word != 0)
+            {
+                return from + Long.numberOfTrailingZeros(word);
+            }
+            while (++i < BITMAP_WORDS)
+            {
+                if (words[i] != 0)
+                {
+                    return (i << 6) + Long.numberOfTrailingZeros(words[i]);
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        void fill(long [] words, int offset)
+        {
+            for (int i = 0; i < BITMAP_WORDS; i++)
+            {
+                words[offset + i] |= this.words[i];
+            }
+        }
+
+        @Override
+        Container copy()
+        {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        /**
+         * @return Returns an array container if it is smaller than this bitmap.
+         */
+        Container normalize()
+        {
+            if (cardinality > ARRAY_MAX_SIZE)
+            {
+                return this;
+            }
+
+            final char [] values = new char [Math.max(cardinality, 1)];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++)
+            {
+                for (long word = words[i]; word != 0; word &= word - 1)
+                {
+                    values[count++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return new ArrayContainer(values, count);
+        }
+    }
+
+    /**
+     * Runs of consecutive values, as pairs of the first value and the run length minus
+     * one. Immutable.
+     */
+    static final class RunContainer extends Container
+    {
+        final char [] runs;
+        final int cardinality;
+
+        RunContainer(char [] runs, int cardinality)
+        {
+            this.runs = runs;
+            this.cardinality = cardinality;
+        }
+
+        /**
+         * @return Returns a run container with the values of <code>c</code> if it is
+         *         smaller than <code>c</code>, or <code>c</code> otherwise.
+         */
+        static Container optimize(Container c)
+        {
+            int count = 0;
+            for (int v = c.next(0), previous = -2; v >= 0; previous = v, v = c.next(v + 1))
+            {
+                if (v != previous + 1)
+                {
+                    count++;
+                }
+            }
+
+            // Each run takes two chars; arrays take one per value, bitmaps 4096 chars.
+            final int current = c instanceof ArrayContainer ? c.cardinality() : BITMAP_WORDS * 4;
+            if (2 * count >= current)
+            {
+                return c;
+            }
+
+            final char [] runs = new char [2 * count];
+            int r = -2;
+            for (int v = c.next(0), previous = -2; v >= 0; previous = v, v = c.next(v + 1))
+            {
+                if (v != previous + 1)
+                {
+                    r += 2;
+                    runs[r] = (char) v;
+                }
+                else
+                {
+                    runs[r + 1]++;
+                }
+            }
+            return new RunContainer(runs, c.cardinality());
+        }
+
+        /**
+         * @return Returns a run container with the given runs if it is smaller than
+         *         an array or bitmap container with the same values, or that container
+         *         otherwise.
+         */
+        static Container smallest(char [] runs, int cardinality)
+        {
+            final RunContainer c = new RunContainer(runs, cardinality);
+            final int expanded = cardinality <= ARRAY_MAX_SIZE ? cardinality : BITMAP_WORDS * 4;
+            return runs.length < expanded ? c : c.expand();
+        }
+
+        /**
+         * @return Returns the number of values of this container in <code>other</code>,
+         *         a run or bitmap container.
+         */
+        int count(Container other)
+        {
+            int count = 0;
+            if (other instanceof RunContainer)
+            {
+                final char [] y = ((RunContainer) other).runs;
+                for (int i = 0, j = 0; i < runs.length && j < y.length;)
+                {
+                    final int xEnd = runs[i] + runs[i + 1];
+                    final int yEnd = y[j] + y[j + 1];
+                    count += Math.max(0, Math.min(xEnd, yEnd) - Math.max(runs[i], y[j]) + 1);
+                    if (xEnd <= yEnd)
+                    {
+                        i += 2;
+                    }
+                    else
+                    {
+                        j += 2;
+                    }
+                }
+            }
+            else
+            {
+                final long [] words = ((BitmapContainer) other).words;
+                for (int r = 0; r < runs.length; r += 2)
+                {
+                    final int from = runs[r];
+                    final int to = from + runs[r + 1];
+                    for (int w = from >>> 6; w <= to >>> 6; w++)
+                    {
+                        count += Long.bitCount(words[w] & rangeMask(w, from, to));
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * @return Returns the index of the last run starting at or before
+         *         <code>value</code>, or -1.
+         */
+        private int runIndex(int value)
+        {
+            int low = 0;
+            int high = runs.length / 2 - 1;
+            while (low <= high)
+            {
+                final int mid = (low + high) >>> 1;
+                if (runs[2 * mid] <= value)
+                {
+                    low = mid + 1;
+                }
+                else
+                {
+                    high = mid - 1;
+                }
+            }
+            return high;
+        }
+
+        @Override
+        int cardinality()
+        {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value)
+        {
+            final int i = runIndex(value);
+            return i >= 0 && value <= runs[2 * i] + runs[2 * i + 1];
+        }
+
+        @Override
+        Container add(char value)
+        {
+            return contains(value) ? this : expand().add(value);
+        }
+
+        @Override
+        Container remove(char value)
+        {
+            return contains(value) ? expand().remove(value) : this;
+        }
+
+        @Override
+        int next(int from)
+        {
+            final int i = runIndex(from);
+            if (i >= 0 && from <= runs[2 * i] + runs[2 * i + 1])
+            {
+                return from;
+            }
+            return 2 * (i + 1) < runs.length ? runs[2 * (i + 1)] : -1;
+        }
+
+        @Override
+        void fill(long [] words, int offset)
+        {
+            for (int r = 0; r < runs.length; r += 2)
+            {
+                final int from = runs[r];
+                final int to = from + runs[r + 1];
+                for (int v = from; v <= to; v++)
+                {
+                    words[offset + (v >>> 6)] |= 1L << v;
+                }
+            }
+        }
+
+        @Override
+        Container copy()
+        {
+            return this;
+        }
+
+        @Override
+        Container expand()
+        {
+            if (cardinality > ARRAY_MAX_SIZE)
+            {
+                final long [] words = new long [BITMAP_WORDS];
+                fill(words, 0);
+                return new BitmapContainer(words, cardinality);
+            }
+
+            final char [] values = new char [cardinality];
+            int count = 0;
+            for (int r = 0; r < runs.length; r += 2)
+            {
+                for (int v = runs[r], to = runs[r] + runs[r + 1]; v <= to; v++)
+                {
+                    values[count++] = (char) v;
+                }
+            }
+            return new ArrayContainer(values, count);
+        }
+    }
+}
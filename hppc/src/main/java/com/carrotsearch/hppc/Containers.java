@@ -1,8 +1,63 @@
 package com.carrotsearch.hppc;
 
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
 public final class Containers {
   /**
    * The default number of expected elements for containers. 
    */
   public final static int DEFAULT_EXPECTED_ELEMENTS = 4;
+
+  /**
+   * The number of chunks per thread a container is split into for parallel
+   * operations (to balance uneven chunks).
+   */
+  final static int PARALLEL_CHUNKS_PER_THREAD = 4;
+
+  /**
+   * Returns the number of chunks to split <code>length</code> elements (slots)
+   * into for a parallel operation in <code>pool</code>.
+   */
+  static int parallelChunks(ForkJoinPool pool, int length) {
+    return Math.max(1, Math.min(length, pool.getParallelism() * PARALLEL_CHUNKS_PER_THREAD));
+  }
+
+  /**
+   * Runs all <code>tasks</code> in <code>pool</code> and waits for their completion.
+   * If any task fails, the first exception is rethrown once all tasks are done
+   * (so that none is still running).
+   */
+  static void invokeAll(ForkJoinPool pool, final Collection<? extends ForkJoinTask<?>> tasks) {
+    pool.invoke(new RecursiveAction() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected void compute() {
+        for (ForkJoinTask<?> task : tasks) {
+          task.fork();
+        }
+
+        Throwable failure = null;
+        for (ForkJoinTask<?> task : tasks) {
+          try {
+            task.join();
+          } catch (RuntimeException | Error e) {
+            if (failure == null) {
+              failure = e;
+            }
+          }
+        }
+
+        if (failure instanceof RuntimeException) {
+          throw (RuntimeException) failure;
+        }
+        if (failure != null) {
+          throw (Error) failure;
+        }
+      }
+    });
+  }
 }
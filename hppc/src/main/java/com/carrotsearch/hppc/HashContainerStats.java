@@ -0,0 +1,153 @@
+package com.carrotsearch.hppc;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Statistics of an open addressing hash container's buffer: probe lengths,
+ * clustering of occupied slots and the cost of rehashing so far. Long probes
+ * or large clusters at a moderate load factor indicate a pathological key
+ * distribution or a poor {@link HashOrderMixingStrategy}.
+ *
+ * <p>Statistics are computed by a full scan of the buffer, so they are meant for
+ * diagnostics, not for frequent polling.</p>
+ *
+ * @see IntIntOpenHashMap#stats()
+ * @see IntOpenHashSet#stats()
+ */
+public final class HashContainerStats {
+  private final int slots;
+  private final int assigned;
+  private final long probeLengthSum;
+  private final int maxProbeLength;
+  private final int [] clusterSizeHistogram;
+  private final int rehashCount;
+  private final long rehashNanos;
+
+  HashContainerStats(int slots, int assigned, long probeLengthSum, int maxProbeLength,
+                     int [] clusterSizeHistogram, int rehashCount, long rehashNanos) {
+    this.slots = slots;
+    this.assigned = assigned;
+    this.probeLengthSum = probeLengthSum;
+    this.maxProbeLength = maxProbeLength;
+    this.clusterSizeHistogram = clusterSizeHistogram;
+    this.rehashCount = rehashCount;
+    this.rehashNanos = rehashNanos;
+  }
+
+  /**
+   * @return Returns the number of slots in the buffer (excluding the empty key's slot).
+   */
+  public int slots() {
+    return slots;
+  }
+
+  /**
+   * @return Returns the number of occupied slots (keys other than the empty key).
+   */
+  public int assigned() {
+    return assigned;
+  }
+
+  /**
+   * @return Returns the ratio of empty slots to all slots.
+   */
+  public double emptySlotRatio() {
+    return slots == 0 ? 1 : (slots - assigned) / (double) slots;
+  }
+
+  /**
+   * @return Returns the average number of slots probed by a successful lookup
+   * (one if every key is at its ideal slot).
+   */
+  public double averageProbeLength() {
+    return assigned == 0 ? 0 : probeLengthSum / (double) assigned;
+  }
+
+  /**
+   * @return Returns the maximum number of slots probed by a successful lookup.
+   */
+  public int maxProbeLength() {
+    return maxProbeLength;
+  }
+
+  /**
+   * Returns a histogram of cluster sizes (runs of consecutive occupied slots).
+   * Element <code>i</code> holds the number of clusters of size in
+   * <code>[2^i, 2^(i+1))</code>. Trailing empty buckets are omitted.
+   */
+  public int [] clusterSizeHistogram() {
+    return clusterSizeHistogram.clone();
+  }
+
+  /**
+   * @return Returns the number of times the container's buffer has been
+   * rehashed (into a larger buffer).
+   */
+  public int rehashCount() {
+    return rehashCount;
+  }
+
+  /**
+   * @return Returns the total time spent rehashing, in nanoseconds.
+   */
+  public long rehashNanos() {
+    return rehashNanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT,
+        "slots: %d, assigned: %d, empty slot ratio: %.3f, probe length avg: %.3f, max: %d, "
+            + "cluster size histogram (log2 buckets): %s, rehashes: %d (%.3f ms)",
+        slots, assigned, emptySlotRatio(), averageProbeLength(), maxProbeLength,
+        Arrays.toString(clusterSizeHistogram), rehashCount, rehashNanos / 1e6);
+  }
+
+  /**
+   * Collects statistics from a scan of a hash container's buffer. Slots must be
+   * passed in buffer order, starting right after an empty slot so that no cluster
+   * wraps around the end of the buffer.
+   */
+  static final class Collector {
+    private final int slots;
+    private final int [] histogram = new int [Integer.SIZE];
+    private int assigned;
+    private long probeLengthSum;
+    private int maxProbeLength;
+    private int cluster;
+
+    Collector(int slots) {
+      this.slots = slots;
+    }
+
+    /**
+     * An occupied slot, <code>distance</code> slots away from its key's ideal slot.
+     */
+    void occupied(int distance) {
+      final int probeLength = distance + 1;
+      assigned++;
+      probeLengthSum += probeLength;
+      maxProbeLength = Math.max(maxProbeLength, probeLength);
+      cluster++;
+    }
+
+    /** */
+    void empty() {
+      if (cluster > 0) {
+        histogram[31 - Integer.numberOfLeadingZeros(cluster)]++;
+        cluster = 0;
+      }
+    }
+
+    HashContainerStats build(int rehashCount, long rehashNanos) {
+      empty();
+      int buckets = histogram.length;
+      while (buckets > 0 && histogram[buckets - 1] == 0) {
+        buckets--;
+      }
+      return new HashContainerStats(slots, assigned, probeLengthSum, maxProbeLength,
+          Arrays.copyOf(histogram, buckets), rehashCount, rehashNanos);
+    }
+  }
+}
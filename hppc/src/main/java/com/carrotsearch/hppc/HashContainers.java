@@ -7,11 +7,34 @@ public final class HashContainers {
    */
   final static int MAX_HASH_ARRAY_LENGTH = 0x80000000 >>> 1;
 
+  /**
+   * Maximum buffer size for off-heap hash containers. Slots are addressed
+   * with the full, unsigned 32-bit range of key hashes.
+   */
+  final static long MAX_OFF_HEAP_HASH_ARRAY_LENGTH = 1L << 32;
+
+  /**
+   * Maximum number of elements in off-heap hash containers (the size is
+   * still reported as an int).
+   */
+  final static int MAX_OFF_HEAP_ELEMENTS = Integer.MAX_VALUE - 1;
+
   /**
    * Minimum hash buffer size.
    */
   final static int MIN_HASH_ARRAY_LENGTH = 4;
 
+  /**
+   * The number of keys hashed and probed together by batch lookups.
+   */
+  final static int BATCH_LOOKUP_BLOCK = 64;
+
+  /**
+   * The minimum number of slots of a buffer rehashed in parallel (smaller
+   * buffers are rehashed sequentially).
+   */
+  final static int PARALLEL_REHASH_MIN_SLOTS = 1 << 16;
+
   /**
    * Default load factor.
    */
@@ -80,6 +103,51 @@ public final class HashContainers {
     return Math.min(arraySize - 1, (int) Math.ceil(arraySize * loadFactor));
   }
 
+  /** */
+  static long minOffHeapBufferSize(int elements, double loadFactor) {
+    if (elements < 0) { 
+      throw new IllegalArgumentException(
+          "Number of elements must be >= 0: " + elements);
+    }
+
+    long length = (long) Math.ceil(elements / loadFactor);
+    if (length == elements) {
+      length++;
+    }
+    length = Math.max(MIN_HASH_ARRAY_LENGTH, BitUtil.nextHighestPowerOfTwo(length));
+
+    if (length > MAX_OFF_HEAP_HASH_ARRAY_LENGTH) {
+      throw new BufferAllocationException(
+          "Maximum array size exceeded for this load factor (elements: %d, load factor: %f)",
+          elements,
+          loadFactor);
+    }
+
+    return length;
+  }
+
+  /** */
+  static long nextOffHeapBufferSize(long arraySize, int elements, double loadFactor) {
+    assert checkPowerOfTwo(arraySize);
+    if (arraySize == MAX_OFF_HEAP_HASH_ARRAY_LENGTH ||
+        elements >= MAX_OFF_HEAP_ELEMENTS) {
+      throw new BufferAllocationException(
+          "Maximum array size exceeded for this load factor (elements: %d, load factor: %f)",
+          elements,
+          loadFactor);
+    }
+
+    return arraySize << 1;
+  }
+
+  /** */
+  static int offHeapExpandAtCount(long arraySize, double loadFactor) {
+    assert checkPowerOfTwo(arraySize);
+    // Same invariant as for on-heap buffers, but also keep the count within an int.
+    return (int) Math.min(MAX_OFF_HEAP_ELEMENTS,
+        Math.min(arraySize - 1, (long) Math.ceil(arraySize * loadFactor)));
+  }
+
   /** */
   static void checkLoadFactor(double loadFactor, double minAllowedInclusive, double maxAllowedInclusive) {
     if (loadFactor < minAllowedInclusive || loadFactor > maxAllowedInclusive) {
@@ -98,4 +166,11 @@ public final class HashContainers {
     assert BitUtil.nextHighestPowerOfTwo(arraySize) == arraySize;
     return true;
   }  
+
+  /** */
+  static boolean checkPowerOfTwo(long arraySize) {
+    assert arraySize > 1;
+    assert BitUtil.nextHighestPowerOfTwo(arraySize) == arraySize;
+    return true;
+  }
 }
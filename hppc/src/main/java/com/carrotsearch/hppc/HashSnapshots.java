@@ -0,0 +1,272 @@
+package com.carrotsearch.hppc;
+
+import java.io.IOException;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Header and buffer I/O for hash container snapshots. The binary layout is
+ * documented in {@link IntIntHashMapSnapshot} (the same for all primitive
+ * variants of map and set snapshots).
+ */
+final class HashSnapshots {
+  /** */
+  final static int MAGIC = 0x48505053;
+
+  /** */
+  final static int VERSION = 1;
+
+  /** */
+  final static int HEADER_LENGTH = 64;
+
+  /** */
+  final static byte KIND_MAP = 'M';
+
+  /** */
+  final static byte KIND_SET = 'S';
+
+  /**
+   * Size of the scratch buffer used for writing.
+   */
+  private final static int WRITE_BUFFER_LENGTH = 1 << 16;
+
+  /**
+   * Snapshot header fields.
+   */
+  static final class Header {
+    byte kind;
+    byte keyType;
+    byte valueType;
+    ByteOrder order;
+    int keyMixer;
+    int mask;
+    int assigned;
+    boolean hasEmptyKey;
+    double loadFactor;
+    long keysOffset;
+    long valuesOffset;
+    long length;
+
+    /**
+     * Computes buffer offsets and the total length for buffers of
+     * <code>mask + 2</code> elements.
+     */
+    void layout(int keySize, int valueSize) {
+      final long elements = (long) mask + 2;
+      keysOffset = HEADER_LENGTH;
+      long end = keysOffset + elements * keySize;
+      if (kind == KIND_MAP) {
+        valuesOffset = align(end);
+        end = valuesOffset + elements * valueSize;
+      }
+      length = end;
+    }
+
+    void write(WritableByteChannel channel) throws IOException {
+      final ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH);
+      buffer.putInt(MAGIC)
+            .putInt(VERSION)
+            .put(kind)
+            .put(keyType)
+            .put(valueType)
+            .put((byte) (order == ByteOrder.BIG_ENDIAN ? 0 : 1))
+            .putInt(keyMixer)
+            .putInt(mask)
+            .putInt(assigned)
+            .put((byte) (hasEmptyKey ? 1 : 0));
+      buffer.position(32);
+      buffer.putDouble(loadFactor)
+            .putLong(keysOffset)
+            .putLong(valuesOffset)
+            .putLong(length);
+      buffer.flip();
+      writeFully(channel, buffer);
+    }
+
+    static Header read(FileChannel channel, long position) throws IOException {
+      final ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, position + buffer.position()) < 0) {
+          throw new IOException("Truncated snapshot header.");
+        }
+      }
+      buffer.flip();
+
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("Not a hash container snapshot (invalid magic).");
+      }
+      final int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported snapshot version: " + version);
+      }
+
+      final Header header = new Header();
+      header.kind = buffer.get();
+      header.keyType = buffer.get();
+      header.valueType = buffer.get();
+      header.order = buffer.get() == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+      header.keyMixer = buffer.getInt();
+      header.mask = buffer.getInt();
+      header.assigned = buffer.getInt();
+      header.hasEmptyKey = buffer.get() != 0;
+      buffer.position(32);
+      header.loadFactor = buffer.getDouble();
+      header.keysOffset = buffer.getLong();
+      header.valuesOffset = buffer.getLong();
+      header.length = buffer.getLong();
+
+      if (header.mask < 0 || Integer.bitCount(header.mask + 1) != 1) {
+        throw new IOException("Corrupt snapshot header (mask): " + header.mask);
+      }
+      if (position + header.length > channel.size()) {
+        throw new IOException("Truncated snapshot: " + header.length + " bytes expected at "
+            + position + ", file size: " + channel.size());
+      }
+      return header;
+    }
+
+    /**
+     * Verifies that the snapshot holds the expected container and types.
+     */
+    void check(byte kind, byte keyType, byte valueType) throws IOException {
+      if (this.kind != kind || this.keyType != keyType || this.valueType != valueType) {
+        throw new IOException("Snapshot type mismatch, expected: "
+            + describe(kind, keyType, valueType) + ", found: "
+            + describe(this.kind, this.keyType, this.valueType));
+      }
+    }
+
+    private static String describe(byte kind, byte keyType, byte valueType) {
+      return kind == KIND_MAP
+          ? "map " + (char) keyType + "->" + (char) valueType
+          : "set " + (char) keyType;
+    }
+  }
+
+  private HashSnapshots() {
+    // No instances.
+  }
+
+  /** */
+  static long align(long offset) {
+    return (offset + 7) & ~7L;
+  }
+
+  /** JVM type descriptors, used in the header. */
+  static byte typeCode(byte witness)   { return 'B'; }
+  static byte typeCode(char witness)   { return 'C'; }
+  static byte typeCode(short witness)  { return 'S'; }
+  static byte typeCode(int witness)    { return 'I'; }
+  static byte typeCode(float witness)  { return 'F'; }
+  static byte typeCode(long witness)   { return 'J'; }
+  static byte typeCode(double witness) { return 'D'; }
+
+  /**
+   * Writes zeros so that the written length becomes <code>alignedOffset</code>.
+   */
+  static void pad(WritableByteChannel channel, long offset, long alignedOffset) throws IOException {
+    assert alignedOffset >= offset && alignedOffset - offset < 8;
+    writeFully(channel, ByteBuffer.allocate((int) (alignedOffset - offset)));
+  }
+
+  /** */
+  static void write(WritableByteChannel channel, ByteBuffer buffer, byte[] array) throws IOException {
+    for (int from = 0; from < array.length;) {
+      final int count = Math.min(array.length - from, buffer.capacity());
+      buffer.clear();
+      buffer.put(array, from, count);
+      buffer.flip();
+      writeFully(channel, buffer);
+      from += count;
+    }
+  }
+
+  /** */
+  static void write(WritableByteChannel channel, ByteBuffer buffer, char[] array) throws IOException {
+    for (int from = 0; from < array.length;) {
+      final int count = Math.min(array.length - from, buffer.capacity() / 2);
+      buffer.clear();
+      buffer.asCharBuffer().put(array, from, count);
+      buffer.limit(count * 2);
+      writeFully(channel, buffer);
+      from += count;
+    }
+  }
+
+  /** */
+  static void write(WritableByteChannel channel, ByteBuffer buffer, short[] array) throws IOException {
+    for (int from = 0; from < array.length;) {
+      final int count = Math.min(array.length - from, buffer.capacity() / 2);
+      buffer.clear();
+      buffer.asShortBuffer().put(array, from, count);
+      buffer.limit(count * 2);
+      writeFully(channel, buffer);
+      from += count;
+    }
+  }
+
+  /** */
+  static void write(WritableByteChannel channel, ByteBuffer buffer, int[] array) throws IOException {
+    for (int from = 0; from < array.length;) {
+      final int count = Math.min(array.length - from, buffer.capacity() / 4);
+      buffer.clear();
+      buffer.asIntBuffer().put(array, from, count);
+      buffer.limit(count * 4);
+      writeFully(channel, buffer);
+      from += count;
+    }
+  }
+
+  /** */
+  static void write(WritableByteChannel channel, ByteBuffer buffer, float[] array) throws IOException {
+    for (int from = 0; from < array.length;) {
+      final int count = Math.min(array.length - from, buffer.capacity() / 4);
+      buffer.clear();
+      buffer.asFloatBuffer().put(array, from, count);
+      buffer.limit(count * 4);
+      writeFully(channel, buffer);
+      from += count;
+    }
+  }
+
+  /** */
+  static void write(WritableByteChannel channel, ByteBuffer buffer, long[] array) throws IOException {
+    for (int from = 0; from < array.length;) {
+      final int count = Math.min(array.length - from, buffer.capacity() / 8);
+      buffer.clear();
+      buffer.asLongBuffer().put(array, from, count);
+      buffer.limit(count * 8);
+      writeFully(channel, buffer);
+      from += count;
+    }
+  }
+
+  /** */
+  static void write(WritableByteChannel channel, ByteBuffer buffer, double[] array) throws IOException {
+    for (int from = 0; from < array.length;) {
+      final int count = Math.min(array.length - from, buffer.capacity() / 8);
+      buffer.clear();
+      buffer.asDoubleBuffer().put(array, from, count);
+      buffer.limit(count * 8);
+      writeFully(channel, buffer);
+      from += count;
+    }
+  }
+
+  /**
+   * Allocates a scratch buffer for the <code>write</code> methods, in the native byte
+   * order (the order of buffers in written snapshots). A single buffer is reused for
+   * all arrays of a snapshot.
+   */
+  static ByteBuffer writeBuffer() {
+    return ByteBuffer.allocateDirect(WRITE_BUFFER_LENGTH).order(ByteOrder.nativeOrder());
+  }
+
+  /** */
+  private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+}
@@ -0,0 +1,619 @@
+package com.carrotsearch.hppc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A fixed-capacity bit set with <code>long</code> indices, stored in direct
+ * (off-heap) buffers or in a memory-mapped file. Unlike {@link BitSet}, the number of
+ * bits is not limited by the size of a single <code>long[]</code> and the bits are
+ * neither on the Java heap nor traversed by the garbage collector.
+ * <p>
+ * Words are split into pages of up to 2<sup>24</sup> words (direct buffers) or
+ * 2<sup>27</sup> words (mapped files). A file-backed set is created with
+ * {@link #create(FileChannel, long)} or reopened with
+ * {@link #open(FileChannel, MapMode)}: reopening maps the stored words and takes
+ * constant time regardless of the number of bits. Any set can be written to a file with
+ * {@link #write(WritableByteChannel)}.</p>
+ * <p>
+ * A file starts with a fixed-size, big-endian header:</p>
+ * <pre>
+ * offset  size  field
+ *      0     4  magic: 0x4850424C ("HPBL")
+ *      4     4  format version (1)
+ *      8     1  byte order of the words: 0 (big-endian) or 1 (little-endian)
+ *      9     7  reserved (zeros)
+ *     16     8  number of bits
+ *     24    40  reserved (zeros)
+ * </pre>
+ * <p>
+ * The header is followed by <code>ceil(bits / 64)</code> words; bit index
+ * <code>i</code> is bit <code>i % 64</code> of word <code>i / 64</code>, as in
+ * {@link BitSet#bits}.</p>
+ */
+public final class LongBitSet
+{
+    /** */
+    final static int MAGIC = 0x4850424C;
+
+    /** */
+    final static int VERSION = 1;
+
+    /** */
+    final static int HEADER_LENGTH = 64;
+
+    /**
+     * Byte buffers of consecutive pages of words.
+     */
+    private final ByteBuffer [] buffers;
+
+    /**
+     * Views of {@link #buffers} as words.
+     */
+    private final LongBuffer [] pages;
+
+    /**
+     * The number of bits in this set.
+     */
+    private final long numBits;
+
+    /**
+     * The number of words in this set.
+     */
+    private final long numWords;
+
+    /**
+     * Log2 of the number of words in a single (full) page.
+     */
+    private final int pageShift;
+
+    /**
+     * Mask for word offsets within a page.
+     */
+    private final int pageMask;
+
+    /**
+     * Allocates a set of <code>numBits</code> clear bits in direct buffers.
+     *
+     * @throws OutOfMemoryError If direct memory cannot be allocated.
+     */
+    public LongBitSet(long numBits)
+    {
+        this(numBits, OffHeapBuffers.DEFAULT_PAGE_SHIFT, true);
+    }
+
+    /**
+     * Allocates a set of <code>numBits</code> clear bits in direct buffers of
+     * <code>2^pageShift</code> words.
+     */
+    LongBitSet(long numBits, int pageShift)
+    {
+        this(numBits, pageShift, true);
+    }
+
+    private LongBitSet(long numBits, int pageShift, boolean allocate)
+    {
+        if (numBits < 0)
+        {
+            throw new IllegalArgumentException("Number of bits must be >= 0: " + numBits);
+        }
+
+        assert pageShift >= 0 && pageShift <= OffHeapBuffers.MAX_PAGE_SHIFT : pageShift;
+        this.numBits = numBits;
+        this.numWords = numBits == 0 ? 0 : ((numBits - 1) >>> 6) + 1;
+        this.pageShift = pageShift;
+        this.pageMask = (1 << pageShift) - 1;
+
+        final long pageCount = (numWords + pageMask) >>> pageShift;
+        if (pageCount > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Too many pages: " + pageCount);
+        }
+        this.buffers = new ByteBuffer [(int) pageCount];
+        this.pages = new LongBuffer [(int) pageCount];
+        if (allocate)
+        {
+            for (int i = 0; i < buffers.length; i++)
+            {
+                setPage(i, OffHeapBuffers.allocateByte(pageLength(i) << 3));
+            }
+        }
+    }
+
+    /**
+     * Creates a set of <code>numBits</code> clear bits stored in a file, starting at the
+     * beginning of the file. Existing contents of the file are discarded. Changes are
+     * written back to the file by the operating system, or explicitly with
+     * {@link #force()}.
+     */
+    public static LongBitSet create(FileChannel channel, long numBits) throws IOException
+    {
+        final LongBitSet set = new LongBitSet(numBits, OffHeapBuffers.MAX_PAGE_SHIFT, false);
+        channel.truncate(0);
+        final ByteBuffer header = header(numBits, ByteOrder.nativeOrder());
+        while (header.hasRemaining())
+        {
+            channel.write(header, header.position());
+        }
+        set.map(channel, MapMode.READ_WRITE, ByteOrder.nativeOrder());
+        return set;
+    }
+
+    /**
+     * Maps a set stored at the beginning of a file by {@link #create} or
+     * {@link #write}. With {@link MapMode#READ_ONLY}, any attempt to modify the set
+     * throws a {@link java.nio.ReadOnlyBufferException}; with
+     * {@link MapMode#READ_WRITE}, changes are written back to the file.
+     *
+     * @throws IOException If the file is truncated or does not hold a bit set.
+     */
+    public static LongBitSet open(FileChannel channel, MapMode mode) throws IOException
+    {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        while (header.hasRemaining())
+        {
+            if (channel.read(header, header.position()) < 0)
+            {
+                throw new IOException("Truncated bit set header.");
+            }
+        }
+        header.flip();
+
+        if (header.getInt() != MAGIC)
+        {
+            throw new IOException("Not a bit set (invalid magic).");
+        }
+        final int version = header.getInt();
+        if (version != VERSION)
+        {
+            throw new IOException("Unsupported bit set version: " + version);
+        }
+        final ByteOrder order = header.get() == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        header.position(16);
+        final long numBits = header.getLong();
+        if (numBits < 0)
+        {
+            throw new IOException("Corrupt bit set header (number of bits): " + numBits);
+        }
+
+        final LongBitSet set = new LongBitSet(numBits, OffHeapBuffers.MAX_PAGE_SHIFT, false);
+        if (HEADER_LENGTH + (set.numWords << 3) > channel.size())
+        {
+            throw new IOException("Truncated bit set: " + numBits + " bits expected, file size: "
+                + channel.size());
+        }
+        set.map(channel, mode, order);
+        return set;
+    }
+
+    /**
+     * Writes this set in the format read by {@link #open}.
+     */
+    public void write(WritableByteChannel channel) throws IOException
+    {
+        final ByteOrder order = buffers.length > 0 ? buffers[0].order() : ByteOrder.nativeOrder();
+        writeFully(channel, header(numBits, order));
+        for (ByteBuffer buffer : buffers)
+        {
+            writeFully(channel, (ByteBuffer) buffer.duplicate().clear());
+        }
+    }
+
+    /**
+     * Writes changes of a file-backed set to the storage device. Does nothing for sets
+     * in direct buffers.
+     */
+    public void force()
+    {
+        for (ByteBuffer buffer : buffers)
+        {
+            if (buffer instanceof MappedByteBuffer)
+            {
+                ((MappedByteBuffer) buffer).force();
+            }
+        }
+    }
+
+    private void map(FileChannel channel, MapMode mode, ByteOrder order) throws IOException
+    {
+        for (int i = 0; i < buffers.length; i++)
+        {
+            final long position = HEADER_LENGTH + ((long) i << (pageShift + 3));
+            setPage(i, channel.map(mode, position, (long) pageLength(i) << 3).order(order));
+        }
+    }
+
+    private void setPage(int i, ByteBuffer buffer)
+    {
+        buffers[i] = buffer;
+        pages[i] = buffer.asLongBuffer();
+    }
+
+    private static ByteBuffer header(long numBits, ByteOrder order)
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH);
+        buffer.putInt(MAGIC)
+              .putInt(VERSION)
+              .put((byte) (order == ByteOrder.BIG_ENDIAN ? 0 : 1));
+        buffer.position(16);
+        buffer.putLong(numBits);
+        buffer.clear();
+        return buffer;
+    }
+
+    /** */
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * @return Returns the number of words in page <code>page</code>.
+     */
+    private int pageLength(int page)
+    {
+        return (int) Math.min(1L << pageShift, numWords - ((long) page << pageShift));
+    }
+
+    private long word(long wordNum)
+    {
+        return pages[(int) (wordNum >>> pageShift)].get((int) wordNum & pageMask);
+    }
+
+    private void word(long wordNum, long word)
+    {
+        pages[(int) (wordNum >>> pageShift)].put((int) wordNum & pageMask, word);
+    }
+
+    /**
+     * Returns the number of bits in this set (1 greater than the largest index).
+     */
+    public long capacity()
+    {
+        return numBits;
+    }
+
+    /**
+     * Returns true if there are no set bits
+     */
+    public boolean isEmpty()
+    {
+        return nextSetBit(0) < 0;
+    }
+
+    /**
+     * Returns true or false for the specified bit index.
+     */
+    public boolean get(long index)
+    {
+        assert index >= 0 && index < numBits : "Index out of bounds: " + index;
+        return (word(index >>> 6) & (1L << index)) != 0;
+    }
+
+    /**
+     * Sets the bit at the specified index.
+     */
+    public void set(long index)
+    {
+        assert index >= 0 && index < numBits : "Index out of bounds: " + index;
+        final long wordNum = index >>> 6;
+        word(wordNum, word(wordNum) | (1L << index));
+    }
+
+    /**
+     * Clears the bit at the specified index.
+     */
+    public void clear(long index)
+    {
+        assert index >= 0 && index < numBits : "Index out of bounds: " + index;
+        final long wordNum = index >>> 6;
+        word(wordNum, word(wordNum) & ~(1L << index));
+    }
+
+    /**
+     * Sets a bit and returns the previous value.
+     */
+    public boolean getAndSet(long index)
+    {
+        assert index >= 0 && index < numBits : "Index out of bounds: " + index;
+        final long wordNum = index >>> 6;
+        final long word = word(wordNum);
+        final long mask = 1L << index;
+        word(wordNum, word | mask);
+        return (word & mask) != 0;
+    }
+
+    /**
+     * Flips a bit.
+     */
+    public void flip(long index)
+    {
+        assert index >= 0 && index < numBits : "Index out of bounds: " + index;
+        final long wordNum = index >>> 6;
+        word(wordNum, word(wordNum) ^ (1L << index));
+    }
+
+    /**
+     * Sets a range of bits.
+     *
+     * @param startIndex lower index
+     * @param endIndex one-past the last bit to set
+     */
+    public void set(long startIndex, long endIndex)
+    {
+        assert startIndex >= 0 && startIndex <= endIndex && endIndex <= numBits;
+        for (long i = startIndex; i < endIndex;)
+        {
+            final long wordNum = i >>> 6;
+            final long wordEnd = Math.min(endIndex, (wordNum + 1) << 6);
+            word(wordNum, word(wordNum) | rangeMask(i, wordEnd));
+            i = wordEnd;
+        }
+    }
+
+    /**
+     * Clears a range of bits.
+     *
+     * @param startIndex lower index
+     * @param endIndex one-past the last bit to clear
+     */
+    public void clear(long startIndex, long endIndex)
+    {
+        assert startIndex >= 0 && startIndex <= endIndex && endIndex <= numBits;
+        for (long i = startIndex; i < endIndex;)
+        {
+            final long wordNum = i >>> 6;
+            final long wordEnd = Math.min(endIndex, (wordNum + 1) << 6);
+            word(wordNum, word(wordNum) & ~rangeMask(i, wordEnd));
+            i = wordEnd;
+        }
+    }
+
+    /**
+     * @return Returns the mask of bits <code>[from, to)</code> within a word, where
+     *         <code>to</code> is at most the start of the next word.
+     */
+    private static long rangeMask(long from, long to)
+    {
+        final long high = (to & 63) == 0 ? -1L : (1L << to) - 1;
+        return high & (-1L << from);
+    }
+
+    /**
+     * Clears all bits.
+     */
+    public void clear()
+    {
+        for (LongBuffer page : pages)
+        {
+            for (int i = page.limit(); --i >= 0;)
+            {
+                page.put(i, 0L);
+            }
+        }
+    }
+
+    /** @return the number of set bits */
+    public long cardinality()
+    {
+        long tot = 0;
+        for (LongBuffer page : pages)
+        {
+            for (int i = page.limit(); --i >= 0;)
+            {
+                tot += Long.bitCount(page.get(i));
+            }
+        }
+        return tot;
+    }
+
+    /**
+     * Returns the index of the first set bit starting at the index specified. -1 is
+     * returned if there are no more set bits.
+     */
+    public long nextSetBit(long index)
+    {
+        long wordNum = index >>> 6;
+        if (wordNum >= numWords) return -1;
+        long word = word(wordNum) >>> index;
+
+        if (word != 0)
+        {
+            return index + Long.numberOfTrailingZeros(word);
+        }
+
+        while (++wordNum < numWords)
+        {
+            word = word(wordNum);
+            if (word != 0) return (wordNum << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the popcount or cardinality of the intersection of the two sets. Neither
+     * set is modified.
+     */
+    public static long intersectionCount(LongBitSet a, LongBitSet b)
+    {
+        long tot = 0;
+        for (long i = Math.min(a.numWords, b.numWords); --i >= 0;)
+        {
+            tot += Long.bitCount(a.word(i) & b.word(i));
+        }
+        return tot;
+    }
+
+    /**
+     * Returns the popcount or cardinality of the union of the two sets. Neither set is
+     * modified.
+     */
+    public static long unionCount(LongBitSet a, LongBitSet b)
+    {
+        return a.cardinality() + b.cardinality() - intersectionCount(a, b);
+    }
+
+    /**
+     * Returns the popcount or cardinality of "a and not b" or "intersection(a, not(b))".
+     * Neither set is modified.
+     */
+    public static long andNotCount(LongBitSet a, LongBitSet b)
+    {
+        return a.cardinality() - intersectionCount(a, b);
+    }
+
+    /**
+     * Returns the popcount or cardinality of the exclusive-or of the two sets. Neither
+     * set is modified.
+     */
+    public static long xorCount(LongBitSet a, LongBitSet b)
+    {
+        return a.cardinality() + b.cardinality() - 2 * intersectionCount(a, b);
+    }
+
+    /** this = this AND other */
+    public void intersect(LongBitSet other)
+    {
+        final long common = Math.min(numWords, other.numWords);
+        for (long i = 0; i < common; i++)
+        {
+            word(i, word(i) & other.word(i));
+        }
+        for (long i = common; i < numWords; i++)
+        {
+            word(i, 0L);
+        }
+    }
+
+    /**
+     * this = this OR other
+     *
+     * @throws IllegalArgumentException If <code>other</code> has bits set at indices
+     *         beyond the capacity of this set.
+     */
+    public void union(LongBitSet other)
+    {
+        final long common = checkFits(other);
+        for (long i = 0; i < common; i++)
+        {
+            word(i, word(i) | other.word(i));
+        }
+    }
+
+    /** Remove all elements set in other. this = this AND_NOT other */
+    public void remove(LongBitSet other)
+    {
+        for (long i = Math.min(numWords, other.numWords); --i >= 0;)
+        {
+            word(i, word(i) & ~other.word(i));
+        }
+    }
+
+    /**
+     * this = this XOR other
+     *
+     * @throws IllegalArgumentException If <code>other</code> has bits set at indices
+     *         beyond the capacity of this set.
+     */
+    public void xor(LongBitSet other)
+    {
+        final long common = checkFits(other);
+        for (long i = 0; i < common; i++)
+        {
+            word(i, word(i) ^ other.word(i));
+        }
+    }
+
+    /**
+     * @return Returns the number of words both sets have.
+     */
+    private long checkFits(LongBitSet other)
+    {
+        if (other.numBits > numBits)
+        {
+            final long bit = other.nextSetBit(numBits);
+            if (bit >= 0)
+            {
+                throw new IllegalArgumentException("Bit " + bit
+                    + " is beyond the capacity of this set: " + numBits);
+            }
+        }
+        return Math.min(numWords, other.numWords);
+    }
+
+    // some BitSet compatibility methods
+
+    // ** see {@link intersect} */
+    public void and(LongBitSet other)
+    {
+        intersect(other);
+    }
+
+    // ** see {@link union} */
+    public void or(LongBitSet other)
+    {
+        union(other);
+    }
+
+    // ** see {@link andNot} */
+    public void andNot(LongBitSet other)
+    {
+        remove(other);
+    }
+
+    /** returns true if the sets have any elements in common */
+    public boolean intersects(LongBitSet other)
+    {
+        for (long i = Math.min(numWords, other.numWords); --i >= 0;)
+        {
+            if ((word(i) & other.word(i)) != 0) return true;
+        }
+        return false;
+    }
+
+    /** returns true if both sets have the same bits set */
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof LongBitSet)) return false;
+
+        final LongBitSet other = (LongBitSet) o;
+        final LongBitSet larger = numWords >= other.numWords ? this : other;
+        final long common = Math.min(numWords, other.numWords);
+        for (long i = larger.numWords; --i >= common;)
+        {
+            if (larger.word(i) != 0) return false;
+        }
+        for (long i = common; --i >= 0;)
+        {
+            if (word(i) != other.word(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the same hash code as {@link BitSet#hashCode()} for the same bits.
+     */
+    @Override
+    public int hashCode()
+    {
+        long h = 0;
+        for (long i = numWords; --i >= 0;)
+        {
+            h ^= word(i);
+            h = (h << 1) | (h >>> 63); // rotate left
+        }
+        return (int) ((h >> 32) ^ h) + 0x98761234;
+    }
+}
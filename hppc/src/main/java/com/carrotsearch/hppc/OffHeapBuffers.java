@@ -0,0 +1,127 @@
+package com.carrotsearch.hppc;
+
+import java.io.IOException;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Allocation of direct (off-heap) buffers for off-heap containers. All
+ * buffers use the platform's native byte order.
+ */
+final class OffHeapBuffers {
+  /**
+   * The default maximum number of elements in a single buffer (page) of an
+   * off-heap container, as a power of two. Buffers are limited to
+   * <code>Integer.MAX_VALUE</code> bytes so larger containers are split
+   * into pages.
+   */
+  final static int DEFAULT_PAGE_SHIFT = 24;
+
+  /**
+   * The largest page shift for which pages of 8-byte elements still fit in a
+   * single buffer.
+   */
+  final static int MAX_PAGE_SHIFT = 27;
+
+  private OffHeapBuffers() {
+    // No instances.
+  }
+
+  /** */
+  static ByteBuffer allocateByte(int elements) {
+    return allocate(elements, 1);
+  }
+
+  /** */
+  static CharBuffer allocateChar(int elements) {
+    return allocate(elements, 2).asCharBuffer();
+  }
+
+  /** */
+  static ShortBuffer allocateShort(int elements) {
+    return allocate(elements, 2).asShortBuffer();
+  }
+
+  /** */
+  static IntBuffer allocateInt(int elements) {
+    return allocate(elements, 4).asIntBuffer();
+  }
+
+  /** */
+  static FloatBuffer allocateFloat(int elements) {
+    return allocate(elements, 4).asFloatBuffer();
+  }
+
+  /** */
+  static LongBuffer allocateLong(int elements) {
+    return allocate(elements, 8).asLongBuffer();
+  }
+
+  /** */
+  static DoubleBuffer allocateDouble(int elements) {
+    return allocate(elements, 8).asDoubleBuffer();
+  }
+
+  /** Element sizes, in bytes. */
+  static int sizeOf(byte witness)   { return 1; }
+  static int sizeOf(char witness)   { return 2; }
+  static int sizeOf(short witness)  { return 2; }
+  static int sizeOf(int witness)    { return 4; }
+  static int sizeOf(float witness)  { return 4; }
+  static int sizeOf(long witness)   { return 8; }
+  static int sizeOf(double witness) { return 8; }
+
+  /** */
+  static ByteBuffer mapByte(FileChannel channel, long position, int elements, ByteOrder order) throws IOException {
+    return map(channel, position, elements, 1, order);
+  }
+
+  /** */
+  static CharBuffer mapChar(FileChannel channel, long position, int elements, ByteOrder order) throws IOException {
+    return map(channel, position, elements, 2, order).asCharBuffer();
+  }
+
+  /** */
+  static ShortBuffer mapShort(FileChannel channel, long position, int elements, ByteOrder order) throws IOException {
+    return map(channel, position, elements, 2, order).asShortBuffer();
+  }
+
+  /** */
+  static IntBuffer mapInt(FileChannel channel, long position, int elements, ByteOrder order) throws IOException {
+    return map(channel, position, elements, 4, order).asIntBuffer();
+  }
+
+  /** */
+  static FloatBuffer mapFloat(FileChannel channel, long position, int elements, ByteOrder order) throws IOException {
+    return map(channel, position, elements, 4, order).asFloatBuffer();
+  }
+
+  /** */
+  static LongBuffer mapLong(FileChannel channel, long position, int elements, ByteOrder order) throws IOException {
+    return map(channel, position, elements, 8, order).asLongBuffer();
+  }
+
+  /** */
+  static DoubleBuffer mapDouble(FileChannel channel, long position, int elements, ByteOrder order) throws IOException {
+    return map(channel, position, elements, 8, order).asDoubleBuffer();
+  }
+
+  /**
+   * Maps a read-only region of <code>elements</code> elements of
+   * <code>elementSize</code> bytes each, starting at <code>position</code>.
+   */
+  private static ByteBuffer map(FileChannel channel, long position, int elements, int elementSize, ByteOrder order) throws IOException {
+    assert elements >= 0 && (long) elements * elementSize <= Integer.MAX_VALUE;
+    return channel.map(MapMode.READ_ONLY, position, (long) elements * elementSize).order(order);
+  }
+
+  /**
+   * Allocates a zero-filled direct buffer for <code>elements</code> elements
+   * of <code>elementSize</code> bytes each.
+   */
+  private static ByteBuffer allocate(int elements, int elementSize) {
+    assert elements >= 0 && (long) elements * elementSize <= Integer.MAX_VALUE;
+    return ByteBuffer.allocateDirect(elements * elementSize).order(ByteOrder.nativeOrder());
+  }
+}
@@ -0,0 +1,219 @@
+package com.carrotsearch.hppc;
+
+import java.util.Arrays;
+
+/**
+ * An immutable copy of a {@link BitSet} with a succinct index for constant-time
+ * {@link #rank(long)} (the number of set bits before an index) and near-constant-time
+ * {@link #select(long)} (the index of the k-th set bit). A typical use is mapping a
+ * sparse set of ids to dense ids <code>0..cardinality()-1</code> and back.
+ * <p>
+ * The index takes about 3.6% of the memory of the bits:</p>
+ * <ul>
+ * <li>a 16-bit rank for every block of 512 bits, relative to</li>
+ * <li>an absolute 64-bit rank for every 2<sup>16</sup> bits, and</li>
+ * <li>the block holding every {@value #SELECT_SAMPLE}-th set bit, from which
+ * {@link #select(long)} binary searches block ranks up to the next sample.</li>
+ * </ul>
+ */
+public final class RankSelectBitSet
+{
+    /**
+     * Log2 of the number of words in a block.
+     */
+    private static final int BLOCK_SHIFT = 3;
+
+    /**
+     * Log2 of the number of blocks in a superblock (2<sup>16</sup> bits, so relative
+     * ranks fit in a <code>char</code>).
+     */
+    private static final int SUPERBLOCK_SHIFT = 16 - 6 - BLOCK_SHIFT;
+
+    /**
+     * Log2 of {@link #SELECT_SAMPLE}.
+     */
+    private static final int SELECT_SAMPLE_SHIFT = 13;
+
+    /**
+     * Every this many set bits, the block holding the set bit is sampled.
+     */
+    static final int SELECT_SAMPLE = 1 << SELECT_SAMPLE_SHIFT;
+
+    /**
+     * A copy of the bit set's words.
+     */
+    private final long [] bits;
+
+    /**
+     * Ranks of superblocks.
+     */
+    private final long [] superblockRanks;
+
+    /**
+     * Ranks of blocks, relative to the rank of their superblock.
+     */
+    private final char [] blockRanks;
+
+    /**
+     * Blocks holding set bits of rank <code>i * SELECT_SAMPLE</code>.
+     */
+    private final int [] selectSamples;
+
+    /**
+     * The number of set bits.
+     */
+    private final long cardinality;
+
+    /**
+     * Creates an index over a copy of the given set's bits. Later changes to
+     * <code>bitset</code> are not reflected in this set.
+     */
+    public RankSelectBitSet(BitSet bitset)
+    {
+        this.bits = Arrays.copyOf(bitset.bits, bitset.wlen);
+
+        final int blocks = (bits.length + (1 << BLOCK_SHIFT) - 1) >>> BLOCK_SHIFT;
+        this.blockRanks = new char [blocks];
+        this.superblockRanks = new long [(blocks + (1 << SUPERBLOCK_SHIFT) - 1) >>> SUPERBLOCK_SHIFT];
+
+        final IntArrayList samples = new IntArrayList();
+        long rank = 0;
+        long nextSample = 0;
+        for (int block = 0; block < blocks; block++)
+        {
+            if ((block & ((1 << SUPERBLOCK_SHIFT) - 1)) == 0)
+            {
+                superblockRanks[block >>> SUPERBLOCK_SHIFT] = rank;
+            }
+            blockRanks[block] = (char) (rank - superblockRanks[block >>> SUPERBLOCK_SHIFT]);
+
+            final int from = block << BLOCK_SHIFT;
+            rank += BitUtil.pop_array(bits, from, Math.min(1 << BLOCK_SHIFT, bits.length - from));
+            for (; nextSample < rank; nextSample += SELECT_SAMPLE)
+            {
+                samples.add(block);
+            }
+        }
+        this.cardinality = rank;
+        this.selectSamples = samples.toArray();
+    }
+
+    /**
+     * Returns the capacity in bits (1 greater than the index of the last bit).
+     */
+    public long capacity()
+    {
+        return (long) bits.length << 6;
+    }
+
+    /** @return the number of set bits */
+    public long cardinality()
+    {
+        return cardinality;
+    }
+
+    /**
+     * Returns true or false for the specified bit index.
+     */
+    public boolean get(long index)
+    {
+        int i = (int) (index >> 6); // div 64
+        if (i >= bits.length) return false;
+        return (bits[i] & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns the number of set bits at indices less than <code>index</code>, in
+     * constant time.
+     */
+    public long rank(long index)
+    {
+        assert index >= 0 : "Negative index: " + index;
+        final int wordNum = (int) (index >>> 6);
+        if (index >>> 6 >= bits.length)
+        {
+            return cardinality;
+        }
+
+        long rank = blockRank(wordNum >>> BLOCK_SHIFT);
+        for (int i = wordNum & ~((1 << BLOCK_SHIFT) - 1); i < wordNum; i++)
+        {
+            rank += Long.bitCount(bits[i]);
+        }
+        return rank + Long.bitCount(bits[wordNum] & ((1L << index) - 1));
+    }
+
+    /**
+     * Returns the index of the set bit with the given rank (that is, of the
+     * <code>(rank + 1)</code>-th set bit), or -1 if <code>rank</code> is not less than
+     * {@link #cardinality()}. For any set bit <code>i</code>,
+     * <code>select(rank(i)) == i</code>.
+     */
+    public long select(long rank)
+    {
+        if (rank < 0 || rank >= cardinality)
+        {
+            return -1;
+        }
+
+        // The last block with a rank not greater than the requested one lies between
+        // the sampled blocks.
+        final int sample = (int) (rank >>> SELECT_SAMPLE_SHIFT);
+        int low = selectSamples[sample];
+        int high = sample + 1 < selectSamples.length ? selectSamples[sample + 1] : blockRanks.length - 1;
+        while (low < high)
+        {
+            final int mid = (low + high + 1) >>> 1;
+            if (blockRank(mid) <= rank)
+            {
+                low = mid;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+
+        int remaining = (int) (rank - blockRank(low));
+        for (int i = low << BLOCK_SHIFT;; i++)
+        {
+            final int count = Long.bitCount(bits[i]);
+            if (remaining < count)
+            {
+                return ((long) i << 6) + select(bits[i], remaining);
+            }
+            remaining -= count;
+        }
+    }
+
+    private long blockRank(int block)
+    {
+        return superblockRanks[block >>> SUPERBLOCK_SHIFT] + blockRanks[block];
+    }
+
+    /**
+     * @return Returns the index of the set bit of the given rank within a word.
+     */
+    private static int select(long word, int rank)
+    {
+        int shift = 0;
+        for (int count; rank >= (count = Long.bitCount(word & 0xff)); shift += 8)
+        {
+            rank -= count;
+            word >>>= 8;
+        }
+        for (; rank > 0; rank--)
+        {
+            word &= word - 1;
+        }
+        return shift + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * @return Returns a {@link BitSet} with a copy of the bits of this set.
+     */
+    public BitSet toBitSet()
+    {
+        return new BitSet(bits.clone(), bits.length);
+    }
+}
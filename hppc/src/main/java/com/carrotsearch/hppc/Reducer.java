@@ -0,0 +1,23 @@
+package com.carrotsearch.hppc;
+
+/**
+ * Creates and merges partial results of a parallel reduction (for example,
+ * {@link IntArrayList#parallelReduce}). Each chunk of a container is passed to
+ * a separate accumulator (a procedure created with {@link #newAccumulator()}),
+ * then accumulators of adjacent chunks are merged, in container order.
+ * 
+ * @param <T> The accumulator type.
+ */
+public interface Reducer<T> {
+  /**
+   * @return Returns a new, empty accumulator.
+   */
+  T newAccumulator();
+
+  /**
+   * Merges the accumulators of two adjacent chunks.
+   * 
+   * @return Returns the merged accumulator (which may be one of the arguments).
+   */
+  T merge(T left, T right);
+}
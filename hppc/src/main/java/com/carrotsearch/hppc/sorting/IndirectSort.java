@@ -1,6 +1,9 @@
 package com.carrotsearch.hppc.sorting;
 
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Sorting routines that return an array of sorted indices implied by a given comparator
@@ -10,6 +13,10 @@ import java.util.Comparator;
  * wants to acquire the order of values in that array. None of the methods in Java
  * Collections would provide such functionality directly and creating a collection of
  * boxed {@link Integer} objects for indices seems to be too costly.
+ * <p>
+ * When elements are ordered by primitive keys, the <code>radixsort</code> and
+ * <code>quicksort</code> variants compare keys directly rather than through an
+ * {@link IndirectComparator}.
  */
 public final class IndirectSort
 {
@@ -18,6 +25,11 @@ public final class IndirectSort
      */
     static int MIN_LENGTH_FOR_INSERTION_SORT = 30;
 
+    /**
+     * Windows shorter than this are merge sorted sequentially in parallel merge sort.
+     */
+    static int MIN_LENGTH_FOR_PARALLEL_SORT = 1 << 13;
+
     /**
      * No instantiation.
      */
@@ -63,6 +75,213 @@ public final class IndirectSort
             input, comparator));
     }
 
+    /**
+     * Returns the order of elements between indices <code>start</code> and
+     * <code>length</code>, as indicated by the given <code>comparator</code>, merge
+     * sorting halves of the range in parallel on the given <code>pool</code>. The
+     * comparator must be safe to call from multiple threads.
+     * <p>
+     * This routine uses merge sort. It is guaranteed to be stable and returns the same
+     * order as {@link #mergesort(int, int, IndirectComparator)}.
+     * </p>
+     */
+    public static int [] parallelMergesort(ForkJoinPool pool, int start, int length,
+        IndirectComparator comparator)
+    {
+        final int [] src = createOrderArray(start, length);
+
+        if (length > 1)
+        {
+            final int [] dst = (int []) src.clone();
+            pool.invoke(new MergeSortTask(src, dst, 0, length, comparator));
+            return dst;
+        }
+
+        return src;
+    }
+
+    /**
+     * Returns the first <code>k</code> elements of the order of elements between
+     * indices <code>start</code> and <code>length</code>, as indicated by the given
+     * <code>comparator</code>. If <code>k</code> is larger than <code>length</code>,
+     * the full order is returned.
+     * <p>
+     * This routine uses quickselect to move the first <code>k</code> elements to the
+     * front in O(length) expected time, then merge sorts only these. Ties are broken
+     * by index, so it is stable and returns the first <code>k</code> elements of
+     * {@link #mergesort(int, int, IndirectComparator)}.
+     * </p>
+     */
+    public static int [] topK(int start, int length, int k, IndirectComparator comparator)
+    {
+        if (k < 0)
+        {
+            throw new IllegalArgumentException("k must be >= 0: " + k);
+        }
+
+        final int [] order = createOrderArray(start, length);
+        comparator = new TieBreakingComparator(comparator);
+        k = Math.min(k, length);
+        if (k > 0 && k < length)
+        {
+            select(order, 0, length - 1, k - 1, maxDepth(length), comparator);
+        }
+
+        final int [] src = Arrays.copyOf(order, k);
+        if (k > 1)
+        {
+            final int [] dst = (int []) src.clone();
+            topDownMergeSort(src, dst, 0, k, comparator);
+            return dst;
+        }
+
+        return src;
+    }
+
+    /**
+     * Returns the order of elements between indices <code>start</code> and
+     * <code>start + length</code>, as indicated by the ascending order of
+     * <code>keys</code> at these indices.
+     * <p>
+     * This routine uses least significant digit radix sort of 8-bit digits on a
+     * copy of the keys, in O(n) with no comparisons. It is guaranteed to be
+     * stable.
+     * </p>
+     */
+    public static int [] radixsort(int [] keys, int start, int length)
+    {
+        final int [] k = new int [length];
+        for (int i = 0; i < length; i++)
+        {
+            k[i] = keys[start + i] ^ Integer.MIN_VALUE;
+        }
+        return unsignedRadixSort(k, start);
+    }
+
+    /**
+     * Returns the order of elements between indices <code>start</code> and
+     * <code>start + length</code>, as indicated by the ascending order of
+     * <code>keys</code> at these indices.
+     *
+     * @see #radixsort(int[], int, int)
+     */
+    public static int [] radixsort(long [] keys, int start, int length)
+    {
+        final long [] k = new long [length];
+        for (int i = 0; i < length; i++)
+        {
+            k[i] = keys[start + i] ^ Long.MIN_VALUE;
+        }
+        return unsignedRadixSort(k, start);
+    }
+
+    /**
+     * Returns the order of elements between indices <code>start</code> and
+     * <code>start + length</code>, as indicated by the ascending order of
+     * <code>keys</code> at these indices (that of {@link Float#compare}).
+     *
+     * @see #radixsort(int[], int, int)
+     */
+    public static int [] radixsort(float [] keys, int start, int length)
+    {
+        final int [] k = new int [length];
+        for (int i = 0; i < length; i++)
+        {
+            k[i] = sortableBits(keys[start + i]) ^ Integer.MIN_VALUE;
+        }
+        return unsignedRadixSort(k, start);
+    }
+
+    /**
+     * Returns the order of elements between indices <code>start</code> and
+     * <code>start + length</code>, as indicated by the ascending order of
+     * <code>keys</code> at these indices (that of {@link Double#compare}).
+     *
+     * @see #radixsort(int[], int, int)
+     */
+    public static int [] radixsort(double [] keys, int start, int length)
+    {
+        final long [] k = new long [length];
+        for (int i = 0; i < length; i++)
+        {
+            k[i] = sortableBits(keys[start + i]) ^ Long.MIN_VALUE;
+        }
+        return unsignedRadixSort(k, start);
+    }
+
+    /**
+     * Returns the order of elements between indices <code>start</code> and
+     * <code>start + length</code>, as indicated by the ascending order of
+     * <code>keys</code> at these indices.
+     * <p>
+     * This routine uses introsort (quicksort falling back to heap sort on deep
+     * recursion) of a copy of the keys, with primitive comparisons. It is
+     * <b>not</b> stable.
+     * </p>
+     */
+    public static int [] quicksort(int [] keys, int start, int length)
+    {
+        final int [] k = new int [length];
+        System.arraycopy(keys, start, k, 0, length);
+        final int [] order = createOrderArray(start, length);
+        quickSort(k, order, 0, length - 1, maxDepth(length));
+        return order;
+    }
+
+    /**
+     * Returns the order of elements between indices <code>start</code> and
+     * <code>start + length</code>, as indicated by the ascending order of
+     * <code>keys</code> at these indices.
+     *
+     * @see #quicksort(int[], int, int)
+     */
+    public static int [] quicksort(long [] keys, int start, int length)
+    {
+        final long [] k = new long [length];
+        System.arraycopy(keys, start, k, 0, length);
+        final int [] order = createOrderArray(start, length);
+        quickSort(k, order, 0, length - 1, maxDepth(length));
+        return order;
+    }
+
+    /**
+     * Returns the order of elements between indices <code>start</code> and
+     * <code>start + length</code>, as indicated by the ascending order of
+     * <code>keys</code> at these indices (that of {@link Float#compare}).
+     *
+     * @see #quicksort(int[], int, int)
+     */
+    public static int [] quicksort(float [] keys, int start, int length)
+    {
+        final int [] k = new int [length];
+        for (int i = 0; i < length; i++)
+        {
+            k[i] = sortableBits(keys[start + i]);
+        }
+        final int [] order = createOrderArray(start, length);
+        quickSort(k, order, 0, length - 1, maxDepth(length));
+        return order;
+    }
+
+    /**
+     * Returns the order of elements between indices <code>start</code> and
+     * <code>start + length</code>, as indicated by the ascending order of
+     * <code>keys</code> at these indices (that of {@link Double#compare}).
+     *
+     * @see #quicksort(int[], int, int)
+     */
+    public static int [] quicksort(double [] keys, int start, int length)
+    {
+        final long [] k = new long [length];
+        for (int i = 0; i < length; i++)
+        {
+            k[i] = sortableBits(keys[start + i]);
+        }
+        final int [] order = createOrderArray(start, length);
+        quickSort(k, order, 0, length - 1, maxDepth(length));
+        return order;
+    }
+
     /**
      * Perform a recursive, descending merge sort.
      * 
@@ -81,7 +300,16 @@ public final class IndirectSort
         final int mid = (fromIndex + toIndex) >>> 1;
         topDownMergeSort(dst, src, fromIndex, mid, comp);
         topDownMergeSort(dst, src, mid, toIndex, comp);
+        merge(src, dst, fromIndex, mid, toIndex, comp);
+    }
 
+    /**
+     * Merge sorted windows <code>[fromIndex, mid)</code> and <code>[mid, toIndex)</code>
+     * of <code>src</code> into <code>dst</code>.
+     */
+    private static void merge(int [] src, int [] dst, int fromIndex, int mid, int toIndex,
+        IndirectComparator comp)
+    {
         /*
          * Both splits in of src are now sorted.
          */
@@ -112,6 +340,130 @@ public final class IndirectSort
         }
     }
 
+    /**
+     * Orders elements that the delegate comparator finds equal by their index, in
+     * {@link #topK}.
+     */
+    private final static class TieBreakingComparator implements IndirectComparator
+    {
+        private final IndirectComparator delegate;
+
+        TieBreakingComparator(IndirectComparator delegate)
+        {
+            this.delegate = delegate;
+        }
+
+        public int compare(int indexA, int indexB)
+        {
+            final int result = delegate.compare(indexA, indexB);
+            return result != 0 ? result : (indexA < indexB ? -1 : (indexA == indexB ? 0 : 1));
+        }
+    }
+
+    /**
+     * Merge sorts a window of an order array in {@link #parallelMergesort}, with the
+     * same contract as {@link #topDownMergeSort}.
+     */
+    final static class MergeSortTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int [] src;
+        private final int [] dst;
+        private final int fromIndex;
+        private final int toIndex;
+        private final IndirectComparator comp;
+
+        MergeSortTask(int [] src, int [] dst, int fromIndex, int toIndex, IndirectComparator comp)
+        {
+            this.src = src;
+            this.dst = dst;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            this.comp = comp;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (toIndex - fromIndex < MIN_LENGTH_FOR_PARALLEL_SORT)
+            {
+                topDownMergeSort(src, dst, fromIndex, toIndex, comp);
+                return;
+            }
+
+            final int mid = (fromIndex + toIndex) >>> 1;
+            invokeAll(
+                new MergeSortTask(dst, src, fromIndex, mid, comp),
+                new MergeSortTask(dst, src, mid, toIndex, comp));
+            merge(src, dst, fromIndex, mid, toIndex, comp);
+        }
+    }
+
+    /**
+     * Quickselect on an order array between <code>left</code> and <code>right</code>
+     * (inclusive): moves the element at position <code>nth</code> in the sorted order
+     * to <code>order[nth]</code>, with no greater elements before and no smaller
+     * elements after it. Windows left after <code>depth</code> partitions are sorted.
+     */
+    private static void select(int [] order, int left, int right, int nth, int depth,
+        IndirectComparator comp)
+    {
+        while (right - left >= MIN_LENGTH_FOR_INSERTION_SORT)
+        {
+            if (depth-- == 0)
+            {
+                final int [] src = Arrays.copyOfRange(order, left, right + 1);
+                final int [] dst = (int []) src.clone();
+                topDownMergeSort(src, dst, 0, dst.length, comp);
+                System.arraycopy(dst, 0, order, left, dst.length);
+                return;
+            }
+
+            // Median of three, which also bounds the scans below.
+            final int mid = (left + right) >>> 1;
+            if (comp.compare(order[mid], order[left]) < 0) swap(order, left, mid);
+            if (comp.compare(order[right], order[mid]) < 0) swap(order, mid, right);
+            if (comp.compare(order[mid], order[left]) < 0) swap(order, left, mid);
+
+            final int pivot = order[mid];
+            int i = left;
+            int j = right;
+            while (i <= j)
+            {
+                while (comp.compare(order[i], pivot) < 0) i++;
+                while (comp.compare(order[j], pivot) > 0) j--;
+                if (i <= j)
+                {
+                    swap(order, i++, j--);
+                }
+            }
+
+            // Elements between j and i are equal to the pivot.
+            if (nth <= j)
+            {
+                right = j;
+            }
+            else if (nth >= i)
+            {
+                left = i;
+            }
+            else
+            {
+                return;
+            }
+        }
+
+        insertionSort(left, right - left + 1, order, comp);
+    }
+
+    private static void swap(int [] order, int i, int j)
+    {
+        final int t = order[i];
+        order[i] = order[j];
+        order[j] = t;
+    }
+
     /**
      * Internal insertion sort for <code>int</code>s.
      */
@@ -130,6 +482,371 @@ public final class IndirectSort
         }
     }
 
+    /**
+     * Radix sort of unsigned keys, moving an order array along with the keys.
+     *
+     * @param k Keys of consecutive elements, starting with the element at
+     *        <code>start</code>. Overwritten.
+     * @return Returns the order array.
+     */
+    private static int [] unsignedRadixSort(int [] k, int start)
+    {
+        final int length = k.length;
+        int [] order = createOrderArray(start, length);
+        if (length < 2)
+        {
+            return order;
+        }
+
+        final int digits = 4;
+        final int [] counts = new int [digits << 8];
+        for (int v : k)
+        {
+            for (int d = 0; d < digits; d++)
+            {
+                counts[(d << 8) | ((v >>> (d << 3)) & 0xff)]++;
+            }
+        }
+
+        int [] kBuffer = new int [length];
+        int [] orderBuffer = new int [length];
+        for (int d = 0; d < digits; d++)
+        {
+            final int shift = d << 3;
+            final int base = d << 8;
+            if (counts[base | ((k[0] >>> shift) & 0xff)] == length)
+            {
+                // All keys have the same digit.
+                continue;
+            }
+
+            for (int i = base, sum = 0; i < base + 256; i++)
+            {
+                final int count = counts[i];
+                counts[i] = sum;
+                sum += count;
+            }
+
+            for (int i = 0; i < length; i++)
+            {
+                final int v = k[i];
+                final int target = counts[base | ((v >>> shift) & 0xff)]++;
+                kBuffer[target] = v;
+                orderBuffer[target] = order[i];
+            }
+
+            int [] t = k;
+            k = kBuffer;
+            kBuffer = t;
+            t = order;
+            order = orderBuffer;
+            orderBuffer = t;
+        }
+        return order;
+    }
+
+    /**
+     * Radix sort of unsigned keys, moving an order array along with the keys.
+     *
+     * @see #unsignedRadixSort(int[], int)
+     */
+    private static int [] unsignedRadixSort(long [] k, int start)
+    {
+        final int length = k.length;
+        int [] order = createOrderArray(start, length);
+        if (length < 2)
+        {
+            return order;
+        }
+
+        final int digits = 8;
+        final int [] counts = new int [digits << 8];
+        for (long v : k)
+        {
+            for (int d = 0; d < digits; d++)
+            {
+                counts[(d << 8) | (int) ((v >>> (d << 3)) & 0xff)]++;
+            }
+        }
+
+        long [] kBuffer = new long [length];
+        int [] orderBuffer = new int [length];
+        for (int d = 0; d < digits; d++)
+        {
+            final int shift = d << 3;
+            final int base = d << 8;
+            if (counts[base | (int) ((k[0] >>> shift) & 0xff)] == length)
+            {
+                // All keys have the same digit.
+                continue;
+            }
+
+            for (int i = base, sum = 0; i < base + 256; i++)
+            {
+                final int count = counts[i];
+                counts[i] = sum;
+                sum += count;
+            }
+
+            for (int i = 0; i < length; i++)
+            {
+                final long v = k[i];
+                final int target = counts[base | (int) ((v >>> shift) & 0xff)]++;
+                kBuffer[target] = v;
+                orderBuffer[target] = order[i];
+            }
+
+            final long [] t = k;
+            k = kBuffer;
+            kBuffer = t;
+            final int [] o = order;
+            order = orderBuffer;
+            orderBuffer = o;
+        }
+        return order;
+    }
+
+    /**
+     * Introsort of keys between <code>left</code> and <code>right</code>
+     * (inclusive), moving an order array along with the keys.
+     */
+    private static void quickSort(int [] k, int [] order, int left, int right, int depth)
+    {
+        while (right - left >= MIN_LENGTH_FOR_INSERTION_SORT)
+        {
+            if (depth-- == 0)
+            {
+                heapSort(k, order, left, right);
+                return;
+            }
+
+            // Median of three, which also bounds the scans below.
+            final int mid = (left + right) >>> 1;
+            if (k[mid] < k[left]) swap(k, order, left, mid);
+            if (k[right] < k[mid]) swap(k, order, mid, right);
+            if (k[mid] < k[left]) swap(k, order, left, mid);
+
+            final int pivot = k[mid];
+            int i = left;
+            int j = right;
+            while (i <= j)
+            {
+                while (k[i] < pivot) i++;
+                while (k[j] > pivot) j--;
+                if (i <= j)
+                {
+                    swap(k, order, i++, j--);
+                }
+            }
+
+            // Recurse into the smaller partition, iterate on the larger one.
+            if (j - left < right - i)
+            {
+                quickSort(k, order, left, j, depth);
+                left = i;
+            }
+            else
+            {
+                quickSort(k, order, i, right, depth);
+                right = j;
+            }
+        }
+
+        for (int i = left + 1; i <= right; i++)
+        {
+            final int v = k[i];
+            final int o = order[i];
+            int j = i;
+            while (j > left && k[j - 1] > v)
+            {
+                k[j] = k[j - 1];
+                order[j] = order[j - 1];
+                j--;
+            }
+            k[j] = v;
+            order[j] = o;
+        }
+    }
+
+    /**
+     * Introsort of keys between <code>left</code> and <code>right</code>
+     * (inclusive), moving an order array along with the keys.
+     */
+    private static void quickSort(long [] k, int [] order, int left, int right, int depth)
+    {
+        while (right - left >= MIN_LENGTH_FOR_INSERTION_SORT)
+        {
+            if (depth-- == 0)
+            {
+                heapSort(k, order, left, right);
+                return;
+            }
+
+            // Median of three, which also bounds the scans below.
+            final int mid = (left + right) >>> 1;
+            if (k[mid] < k[left]) swap(k, order, left, mid);
+            if (k[right] < k[mid]) swap(k, order, mid, right);
+            if (k[mid] < k[left]) swap(k, order, left, mid);
+
+            final long pivot = k[mid];
+            int i = left;
+            int j = right;
+            while (i <= j)
+            {
+                while (k[i] < pivot) i++;
+                while (k[j] > pivot) j--;
+                if (i <= j)
+                {
+                    swap(k, order, i++, j--);
+                }
+            }
+
+            // Recurse into the smaller partition, iterate on the larger one.
+            if (j - left < right - i)
+            {
+                quickSort(k, order, left, j, depth);
+                left = i;
+            }
+            else
+            {
+                quickSort(k, order, i, right, depth);
+                right = j;
+            }
+        }
+
+        for (int i = left + 1; i <= right; i++)
+        {
+            final long v = k[i];
+            final int o = order[i];
+            int j = i;
+            while (j > left && k[j - 1] > v)
+            {
+                k[j] = k[j - 1];
+                order[j] = order[j - 1];
+                j--;
+            }
+            k[j] = v;
+            order[j] = o;
+        }
+    }
+
+    /**
+     * Heap sort of keys between <code>left</code> and <code>right</code>
+     * (inclusive), moving an order array along with the keys.
+     */
+    private static void heapSort(int [] k, int [] order, int left, int right)
+    {
+        final int length = right - left + 1;
+        for (int i = (length >>> 1) - 1; i >= 0; i--)
+        {
+            siftDown(k, order, left, i, length);
+        }
+        for (int end = length - 1; end > 0; end--)
+        {
+            swap(k, order, left, left + end);
+            siftDown(k, order, left, 0, end);
+        }
+    }
+
+    private static void siftDown(int [] k, int [] order, int offset, int i, int length)
+    {
+        for (int child; (child = 2 * i + 1) < length; i = child)
+        {
+            if (child + 1 < length && k[offset + child] < k[offset + child + 1])
+            {
+                child++;
+            }
+            if (k[offset + i] >= k[offset + child])
+            {
+                break;
+            }
+            swap(k, order, offset + i, offset + child);
+        }
+    }
+
+    /**
+     * Heap sort of keys between <code>left</code> and <code>right</code>
+     * (inclusive), moving an order array along with the keys.
+     */
+    private static void heapSort(long [] k, int [] order, int left, int right)
+    {
+        final int length = right - left + 1;
+        for (int i = (length >>> 1) - 1; i >= 0; i--)
+        {
+            siftDown(k, order, left, i, length);
+        }
+        for (int end = length - 1; end > 0; end--)
+        {
+            swap(k, order, left, left + end);
+            siftDown(k, order, left, 0, end);
+        }
+    }
+
+    private static void siftDown(long [] k, int [] order, int offset, int i, int length)
+    {
+        for (int child; (child = 2 * i + 1) < length; i = child)
+        {
+            if (child + 1 < length && k[offset + child] < k[offset + child + 1])
+            {
+                child++;
+            }
+            if (k[offset + i] >= k[offset + child])
+            {
+                break;
+            }
+            swap(k, order, offset + i, offset + child);
+        }
+    }
+
+    private static void swap(int [] k, int [] order, int i, int j)
+    {
+        final int t = k[i];
+        k[i] = k[j];
+        k[j] = t;
+        final int o = order[i];
+        order[i] = order[j];
+        order[j] = o;
+    }
+
+    private static void swap(long [] k, int [] order, int i, int j)
+    {
+        final long t = k[i];
+        k[i] = k[j];
+        k[j] = t;
+        final int o = order[i];
+        order[i] = order[j];
+        order[j] = o;
+    }
+
+    /**
+     * @return Returns the number of partition steps before quicksort of
+     * <code>length</code> elements falls back to heap sort.
+     */
+    private static int maxDepth(int length)
+    {
+        return 2 * (32 - Integer.numberOfLeadingZeros(Math.max(1, length)));
+    }
+
+    /**
+     * @return Returns the bits of <code>v</code> as an <code>int</code> with the
+     * order of {@link Float#compare}.
+     */
+    private static int sortableBits(float v)
+    {
+        final int bits = Float.floatToIntBits(v);
+        return bits ^ ((bits >> 31) & 0x7fffffff);
+    }
+
+    /**
+     * @return Returns the bits of <code>v</code> as a <code>long</code> with the
+     * order of {@link Double#compare}.
+     */
+    private static long sortableBits(double v)
+    {
+        final long bits = Double.doubleToLongBits(v);
+        return bits ^ ((bits >> 63) & 0x7fffffffffffffffL);
+    }
+
     /**
      * Creates the initial order array.
      */
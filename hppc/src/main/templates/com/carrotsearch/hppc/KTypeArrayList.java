@@ -1,10 +1,13 @@
 package com.carrotsearch.hppc;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import com.carrotsearch.hppc.cursors.*;
 import com.carrotsearch.hppc.predicates.KTypePredicate;
 import com.carrotsearch.hppc.procedures.*;
+import com.carrotsearch.hppc.sorting.KTypeSort;
 
 import static com.carrotsearch.hppc.Containers.*;
 
@@ -623,6 +626,78 @@ public class KTypeArrayList<KType>
         return new ValueIterator<KType>(Intrinsics.<KType[]> cast(buffer), size());
     }
 
+    /**
+     * A spliterator over a range of the list's buffer (for {@link #elementSpliterator()}).
+     */
+    final static class ValueSpliterator<KType> implements KTypeSpliterator<KType>
+    {
+        private final KType [] buffer;
+        private int index;
+        private final int max;
+
+        public ValueSpliterator(KType [] buffer, int index, int max)
+        {
+            this.buffer = buffer;
+            this.index = index;
+            this.max = max;
+        }
+
+        @Override
+        public boolean tryAdvance(KTypeProcedure<? super KType> procedure)
+        {
+            if (index < max)
+            {
+                procedure.apply(buffer[index++]);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(KTypeProcedure<? super KType> procedure)
+        {
+            final KType [] buffer = this.buffer;
+            for (int i = index, max = this.max; i < max; i++)
+            {
+                procedure.apply(buffer[i]);
+            }
+            index = max;
+        }
+
+        @Override
+        public KTypeSpliterator<KType> trySplit()
+        {
+            final int mid = (index + max) >>> 1;
+            if (mid == index)
+                return null;
+
+            final KTypeSpliterator<KType> prefix = new ValueSpliterator<KType>(buffer, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize()
+        {
+            return max - index;
+        }
+
+        @Override
+        public int characteristics()
+        {
+            return ORDERED | SIZED | SUBSIZED;
+        }
+    }
+
+    /**
+     * Returns a spliterator over the elements of this list, in list order. The
+     * spliterator splits into halves of the buffer, exact in size.
+     */
+    public KTypeSpliterator<KType> elementSpliterator()
+    {
+        return new ValueSpliterator<KType>(Intrinsics.<KType[]> cast(buffer), 0, size());
+    }
+
     /**
      * {@inheritDoc} 
      */
@@ -741,6 +816,226 @@ public class KTypeArrayList<KType>
         return predicate;
     }
 
+    /**
+     * Sorts the elements of this list in their natural order.
+     *
+     * @see KTypeSort
+     */
+    public void sort()
+    {
+        sortRange(0, size(), null);
+    }
+
+    /**
+     * Sorts the elements of this list in the order of <code>comparator</code> (or
+     * their natural order, if <code>null</code>), in place.
+     *
+     * @see KTypeSort
+     */
+    public void sort(KTypeComparator<? super KType> comparator)
+    {
+        sortRange(0, size(), comparator);
+    }
+
+    /**
+     * Sorts the elements from <code>fromIndex</code>, inclusive, to
+     * <code>toIndex</code>, exclusive, in the order of <code>comparator</code> (or
+     * their natural order, if <code>null</code>), in place.
+     *
+     * @see KTypeSort
+     */
+    public void sortRange(int fromIndex, int toIndex, KTypeComparator<? super KType> comparator)
+    {
+        assert (fromIndex >= 0 && fromIndex <= size()) :
+            "Index " + fromIndex + " out of bounds [" + 0 + ", " + size() + ").";
+
+        assert (toIndex >= 0 && toIndex <= size()) :
+            "Index " + toIndex + " out of bounds [" + 0 + ", " + size() + "].";
+
+        assert fromIndex <= toIndex : "fromIndex must be <= toIndex: "
+            + fromIndex + ", " + toIndex;
+
+        KTypeSort.sort(Intrinsics.<KType[]> cast(buffer), fromIndex, toIndex, comparator);
+    }
+
+    /**
+     * Sorts the elements of this list in the order of <code>comparator</code> (or
+     * their natural order, if <code>null</code>), in place, using tasks of
+     * <code>pool</code>. The comparator must be thread-safe.
+     *
+     * @see KTypeSort#parallelSort
+     */
+    public void parallelSort(ForkJoinPool pool, KTypeComparator<? super KType> comparator)
+    {
+        KTypeSort.parallelSort(pool, Intrinsics.<KType[]> cast(buffer), 0, size(), comparator);
+    }
+
+    /**
+     * Applies <code>procedure</code> to all elements of this list in parallel:
+     * chunks of the list are processed by tasks of <code>pool</code>. The procedure
+     * must be thread-safe and must not modify this list. There is no guarantee
+     * on the order of invocations.
+     */
+    public <T extends KTypeProcedure<? super KType>> T parallelForEach(ForkJoinPool pool, T procedure)
+    {
+        final int size = size();
+        final int chunks = parallelChunks(pool, size);
+        final List<ForEachChunk> tasks = new ArrayList<ForEachChunk>(chunks);
+        for (int i = 0; i < chunks; i++)
+        {
+            tasks.add(new ForEachChunk(procedure,
+                (int) ((long) size * i / chunks), (int) ((long) size * (i + 1) / chunks)));
+        }
+        invokeAll(pool, tasks);
+        return procedure;
+    }
+
+    /**
+     * Reduces all elements of this list in parallel: chunks of the list are
+     * processed by tasks of <code>pool</code>, each applying a separate accumulator
+     * created by <code>reducer</code>. Accumulators are then merged (in list order)
+     * on the calling thread.
+     * 
+     * @return Returns the merged accumulator.
+     */
+    public <T extends KTypeProcedure<? super KType>> T parallelReduce(ForkJoinPool pool, Reducer<T> reducer)
+    {
+        final int size = size();
+        final int chunks = parallelChunks(pool, size);
+        final List<T> accumulators = new ArrayList<T>(chunks);
+        final List<ForEachChunk> tasks = new ArrayList<ForEachChunk>(chunks);
+        for (int i = 0; i < chunks; i++)
+        {
+            final T accumulator = reducer.newAccumulator();
+            accumulators.add(accumulator);
+            tasks.add(new ForEachChunk(accumulator,
+                (int) ((long) size * i / chunks), (int) ((long) size * (i + 1) / chunks)));
+        }
+        invokeAll(pool, tasks);
+
+        T result = accumulators.get(0);
+        for (int i = 1; i < chunks; i++)
+        {
+            result = reducer.merge(result, accumulators.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Removes all elements matching <code>predicate</code> in parallel, in two
+     * phases: chunks of the list are processed by tasks of <code>pool</code>, each
+     * moving the remaining elements of its chunk to the chunk's start; then
+     * the compacted chunks are moved together. The relative order of remaining
+     * elements is preserved. The predicate must be thread-safe and must not
+     * modify this list.
+     * 
+     * @return Returns the number of removed elements.
+     */
+    public int parallelRemoveAll(ForkJoinPool pool, KTypePredicate<? super KType> predicate)
+    {
+        final int elementsCount = this.elementsCount;
+        final int chunks = parallelChunks(pool, elementsCount);
+        final List<RemoveAllChunk> tasks = new ArrayList<RemoveAllChunk>(chunks);
+        for (int i = 0; i < chunks; i++)
+        {
+            tasks.add(new RemoveAllChunk(predicate,
+                (int) ((long) elementsCount * i / chunks), (int) ((long) elementsCount * (i + 1) / chunks)));
+        }
+
+        int to = 0;
+        try
+        {
+            invokeAll(pool, tasks);
+        }
+        finally
+        {
+            // Chunks are compacted even if the predicate throws an exception.
+            for (RemoveAllChunk task : tasks)
+            {
+                System.arraycopy(buffer, task.from, buffer, to, task.kept);
+                to += task.kept;
+            }
+            Arrays.fill(buffer, to, elementsCount, Intrinsics.<KType> empty());
+            this.elementsCount = to;
+        }
+
+        return elementsCount - to;
+    }
+
+    /**
+     * Applies a procedure to a slice of the list in {@link #parallelForEach} and
+     * {@link #parallelReduce}.
+     */
+    private final class ForEachChunk extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        final KTypeProcedure<? super KType> procedure;
+        private final int from;
+        private final int to;
+
+        ForEachChunk(KTypeProcedure<? super KType> procedure, int from, int to)
+        {
+            this.procedure = procedure;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            forEach(procedure, from, to);
+        }
+    }
+
+    /**
+     * Moves the elements of a slice of the list not matching a predicate to the
+     * slice's start in {@link #parallelRemoveAll}.
+     */
+    private final class RemoveAllChunk extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final KTypePredicate<? super KType> predicate;
+        final int from;
+        private final int to;
+        int kept;
+
+        RemoveAllChunk(KTypePredicate<? super KType> predicate, int from, int to)
+        {
+            this.predicate = predicate;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            final KType [] buffer = Intrinsics.<KType[]> cast(KTypeArrayList.this.buffer);
+            int target = from;
+            int i = from;
+            try
+            {
+                for (; i < to; i++)
+                {
+                    if (!predicate.apply(buffer[i]))
+                    {
+                        buffer[target++] = buffer[i];
+                    }
+                }
+            }
+            finally
+            {
+                // Keep the remaining elements if the predicate throws an exception.
+                for (; i < to; i++)
+                {
+                    buffer[target++] = buffer[i];
+                }
+                kept = target - from;
+            }
+        }
+    }
+
     /**
      * Returns a new object of this class with no need to declare generic type (shortcut
      * instead of using a constructor).
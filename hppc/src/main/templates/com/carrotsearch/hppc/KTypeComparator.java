@@ -0,0 +1,15 @@
+package com.carrotsearch.hppc;
+
+/**
+ * Compares two <code>KType</code>s for order, without boxing. The contract is
+ * that of {@link java.util.Comparator#compare}.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public interface KTypeComparator<KType>
+{
+    /**
+     * @return Returns a negative integer, zero, or a positive integer if
+     * <code>a</code> is less than, equal to, or greater than <code>b</code>.
+     */
+    public int compare(KType a, KType b);
+}
@@ -0,0 +1,428 @@
+package com.carrotsearch.hppc;
+
+import java.util.concurrent.atomic.*;
+
+import com.carrotsearch.hppc.cursors.*;
+import com.carrotsearch.hppc.procedures.*;
+
+import static com.carrotsearch.hppc.HashContainers.*;
+import static com.carrotsearch.hppc.Containers.*;
+
+/*! #if ($TemplateOptions.KTypeGeneric) $TemplateOptions.setIgnored(true) #end !*/
+/*! #if ($TemplateOptions.KType.Type == "long" || $TemplateOptions.KType.Type == "double")
+      #set ($wide = true)
+    #else
+      #set ($wide = false)
+    #end !*/
+/**
+ * A thread-safe, add-only hash set of <code>KType</code>s, implemented using open
+ * addressing with linear probing for collision resolution.
+ *
+ * <p>Keys are stored (as raw bits) in an atomic array and inserted with a single
+ * compare-and-set on an empty slot, so {@link #add} takes no lock and
+ * {@link #contains} never blocks or retries. When the table exceeds its load
+ * factor, a larger table is allocated and all threads adding keys cooperatively
+ * transfer chunks of the old table before continuing in the new one. Lookups
+ * keep using the old table (which is never modified during a transfer) until
+ * the new one is complete.</p>
+ *
+ * <p>The set is not lock-free while it is resized: a thread adding a key first
+ * waits (yielding) for inserts already in progress in the old table, and after
+ * transferring its chunks waits for other threads to finish theirs. A thread
+ * stalled in the middle of an insert or a chunk transfer therefore delays all
+ * concurrent adds until it resumes; lookups are never delayed. Pass the expected
+ * number of keys to the constructor to avoid resizes altogether.</p>
+ *
+ * <p>Keys cannot be removed: without locks an open addressing table can only
+ * mark removed slots, never reuse them. The set is meant for concurrent
+ * deduplication ("have we seen this key?"); use {@link KTypeOpenHashSet}
+ * for general-purpose, single-threaded sets.</p>
+ *
+ * @see KTypeOpenHashSet
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeConcurrentHashSet<KType>
+{
+  /**
+   * The number of slots a thread claims at once while transferring keys to a
+   * resized table.
+   */
+  private final static int TRANSFER_CHUNK = 1024;
+
+  /**
+   * A table of keys. Tables are replaced, never shrunk or cleared.
+   */
+  private final static class Table {
+    /**
+     * Key bits, zero for empty slots.
+     */
+    final /*! #if ($wide) AtomicLongArray #else !*/ AtomicIntegerArray /*! #end !*/ keys;
+
+    /**
+     * Mask for slot scans in {@link #keys}.
+     */
+    final int mask;
+
+    /**
+     * @see KTypeOpenHashSet#keyMixer
+     */
+    final int keyMixer;
+
+    /**
+     * Number of keys at which this table is replaced with a larger one.
+     */
+    final int resizeAt;
+
+    /**
+     * The number of keys in this table.
+     */
+    final AtomicInteger assigned = new AtomicInteger();
+
+    /**
+     * The number of threads currently inserting into this table.
+     */
+    final AtomicInteger writers = new AtomicInteger();
+
+    /**
+     * The replacement table, set once a resize starts.
+     */
+    final AtomicReference<Table> next = new AtomicReference<Table>();
+
+    /**
+     * The first slot not yet claimed for transfer to {@link #next}.
+     */
+    final AtomicInteger transferIndex = new AtomicInteger();
+
+    /**
+     * The number of slots already transferred to {@link #next}.
+     */
+    final AtomicInteger transferred = new AtomicInteger();
+
+    Table(int arraySize, int keyMixer, double loadFactor) {
+      this.keys = new /*! #if ($wide) AtomicLongArray #else !*/ AtomicIntegerArray /*! #end !*/ (arraySize);
+      this.mask = arraySize - 1;
+      this.keyMixer = keyMixer;
+      this.resizeAt = expandAtCount(arraySize, loadFactor);
+    }
+  }
+
+  /**
+   * The current table.
+   */
+  private final AtomicReference<Table> table;
+
+  /**
+   * Special treatment for the "empty slot" key marker.
+   */
+  private final AtomicBoolean hasEmptyKey = new AtomicBoolean();
+
+  /**
+   * The load factor for {@link Table#keys}.
+   */
+  protected final double loadFactor;
+
+  /**
+   * Per-instance hash order mixing strategy.
+   * @see KTypeOpenHashSet#orderMixer
+   */
+  protected final HashOrderMixingStrategy orderMixer;
+
+  /**
+   * New instance with sane defaults.
+   */
+  public KTypeConcurrentHashSet() {
+    this(DEFAULT_EXPECTED_ELEMENTS);
+  }
+
+  /**
+   * New instance with sane defaults.
+   */
+  public KTypeConcurrentHashSet(int expectedElements) {
+    this(expectedElements, DEFAULT_LOAD_FACTOR);
+  }
+
+  /**
+   * New instance with sane defaults.
+   */
+  public KTypeConcurrentHashSet(int expectedElements, double loadFactor) {
+    this(expectedElements, loadFactor, HashOrderMixing.randomized());
+  }
+
+  /**
+   * New instance with the provided defaults.
+   *
+   * @param expectedElements
+   *          The expected number of elements guaranteed not to cause a resize (inclusive).
+   * @param loadFactor
+   *          The load factor for internal buffers.
+   * @param orderMixer
+   *          Hash key order mixing strategy. See {@link HashOrderMixing} for predefined
+   *          implementations.
+   */
+  public KTypeConcurrentHashSet(int expectedElements, double loadFactor, HashOrderMixingStrategy orderMixer) {
+    checkLoadFactor(loadFactor, MIN_LOAD_FACTOR, MAX_LOAD_FACTOR);
+    this.loadFactor = loadFactor;
+    this.orderMixer = orderMixer;
+
+    final int arraySize = minBufferSize(expectedElements, loadFactor);
+    this.table = new AtomicReference<Table>(
+        new Table(arraySize, orderMixer.newKeyMixer(arraySize), loadFactor));
+  }
+
+  /**
+   * Adds <code>key</code> to the set.
+   *
+   * @return Returns <code>true</code> if this call added the key,
+   *         <code>false</code> if the key was already present.
+   */
+  public boolean add(KType key) {
+    if (Intrinsics.<KType> isEmpty(key)) {
+      return hasEmptyKey.compareAndSet(false, true);
+    }
+
+    final /*! #if ($wide) long #else !*/ int /*! #end !*/ bits = bits(key);
+    while (true) {
+      final Table t = table.get();
+      if (slotOf(t, key, bits) >= 0) {
+        return false;
+      }
+
+      t.writers.incrementAndGet();
+      int slot;
+      try {
+        slot = t.next.get() != null ? -1 : insert(t, key, bits);
+      } finally {
+        t.writers.decrementAndGet();
+      }
+
+      if (slot >= 0) {
+        if (t.assigned.incrementAndGet() >= t.resizeAt) {
+          resize(t);
+        }
+        return true;
+      }
+      if (slot == -1) {
+        // The table is being (or needs to be) replaced.
+        resize(t);
+      } else {
+        // Another thread inserted the same key concurrently.
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Adds all keys from the given array.
+   *
+   * @return Returns the number of keys added by this call.
+   */
+  public final int addAll(KType... keys) {
+    int added = 0;
+    for (KType key : keys) {
+      if (add(key)) {
+        added++;
+      }
+    }
+    return added;
+  }
+
+  /**
+   * Adds all keys from the given container.
+   *
+   * @return Returns the number of keys added by this call.
+   */
+  public int addAll(KTypeContainer<? extends KType> container) {
+    int added = 0;
+    for (KTypeCursor<? extends KType> cursor : container) {
+      if (add(cursor.value)) {
+        added++;
+      }
+    }
+    return added;
+  }
+
+  /**
+   * @return Returns <code>true</code> if <code>key</code> has been added to the set.
+   */
+  public boolean contains(KType key) {
+    if (Intrinsics.<KType> isEmpty(key)) {
+      return hasEmptyKey.get();
+    } else {
+      return slotOf(table.get(), key, bits(key)) >= 0;
+    }
+  }
+
+  /**
+   * @return Returns the number of keys in the set.
+   */
+  public int size() {
+    return table.get().assigned.get() + (hasEmptyKey.get() ? 1 : 0);
+  }
+
+  /**
+   * @return Returns <code>true</code> if the set is empty.
+   */
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Applies <code>procedure</code> to all keys. Keys added concurrently may or
+   * may not be visited.
+   */
+  public <T extends KTypeProcedure<? super KType>> T forEach(T procedure) {
+    if (hasEmptyKey.get()) {
+      procedure.apply(Intrinsics.<KType> empty());
+    }
+
+    final Table t = table.get();
+    for (int slot = 0, max = t.mask; slot <= max; slot++) {
+      final /*! #if ($wide) long #else !*/ int /*! #end !*/ bits = t.keys.get(slot);
+      if (bits != 0) {
+        procedure.apply(key(bits));
+      }
+    }
+    return procedure;
+  }
+
+  /**
+   * Copies all keys to a new, single-threaded hash set.
+   */
+  public KTypeOpenHashSet<KType> toSet() {
+    final KTypeOpenHashSet<KType> set = new KTypeOpenHashSet<KType>(size(), loadFactor);
+    forEach(new KTypeProcedure<KType>() {
+      @Override
+      public void apply(KType key) {
+        set.add(key);
+      }
+    });
+    return set;
+  }
+
+  /**
+   * Convert the contents of this set to a human-friendly string.
+   */
+  @Override
+  public String toString() {
+    return toSet().toString();
+  }
+
+  /**
+   * Returns the slot of a non-empty key or a negative value if the key is not present.
+   */
+  private static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ int slotOf(Table t, KType key, /*! #if ($wide) long #else !*/ int /*! #end !*/ bits) {
+    final int mask = t.mask;
+    int slot = BitMixer.mix(key, t.keyMixer) & mask;
+    for (int probes = 0; probes <= mask; probes++) {
+      final /*! #if ($wide) long #else !*/ int /*! #end !*/ existing = t.keys.get(slot);
+      if (existing == bits) {
+        return slot;
+      }
+      if (existing == 0) {
+        break;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Inserts a non-empty key into <code>t</code>.
+   *
+   * @return Returns the slot the key was inserted at, <code>-1</code> if the table is
+   *         full or <code>-2</code> if the key was already present.
+   */
+  private static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ int insert(Table t, KType key, /*! #if ($wide) long #else !*/ int /*! #end !*/ bits) {
+    final int mask = t.mask;
+    int slot = BitMixer.mix(key, t.keyMixer) & mask;
+    for (int probes = 0; probes <= mask;) {
+      final /*! #if ($wide) long #else !*/ int /*! #end !*/ existing = t.keys.get(slot);
+      if (existing == 0) {
+        if (t.keys.compareAndSet(slot, 0, bits)) {
+          return slot;
+        }
+        // Lost a race for this slot, check what was inserted.
+        continue;
+      }
+      if (existing == bits) {
+        return -2;
+      }
+      slot = (slot + 1) & mask;
+      probes++;
+    }
+    return -1;
+  }
+
+  /**
+   * Starts or joins the replacement of <code>t</code> with a larger table and
+   * returns once the larger table is current. This blocks until all inserts into
+   * <code>t</code> have finished and all of its chunks have been transferred.
+   */
+  private void resize(Table t) {
+    Table next = t.next.get();
+    if (next == null) {
+      final int arraySize = nextBufferSize(t.mask + 1, t.assigned.get(), loadFactor);
+      next = new Table(arraySize, orderMixer.newKeyMixer(arraySize), loadFactor);
+      if (!t.next.compareAndSet(null, next)) {
+        next = t.next.get();
+      }
+    }
+
+    // Writers which started before the resize may still insert into t.
+    while (t.writers.get() != 0) {
+      Thread.yield();
+    }
+
+    final int length = t.mask + 1;
+    int from;
+    while ((from = t.transferIndex.getAndAdd(TRANSFER_CHUNK)) < length) {
+      final int to = Math.min(length, from + TRANSFER_CHUNK);
+      int transferred = 0;
+      for (int slot = from; slot < to; slot++) {
+        final /*! #if ($wide) long #else !*/ int /*! #end !*/ bits = t.keys.get(slot);
+        if (bits != 0 && insert(next, key(bits), bits) >= 0) {
+          transferred++;
+        }
+      }
+      next.assigned.addAndGet(transferred);
+      if (t.transferred.addAndGet(to - from) == length) {
+        table.compareAndSet(t, next);
+      }
+    }
+
+    // Wait for threads still transferring their chunks.
+    while (table.get() == t) {
+      Thread.yield();
+    }
+  }
+
+  /**
+   * Converts a key to the bits stored in {@link Table#keys}.
+   */
+  private static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ /*! #if ($wide) long #else !*/ int /*! #end !*/ bits(KType key) {
+    /*! #if ($TemplateOptions.KType.Type == "float")
+    return Float.floatToIntBits(key);
+    #elseif ($TemplateOptions.KType.Type == "double")
+    return Double.doubleToLongBits(key);
+    #elseif ($TemplateOptions.KTypePrimitive)
+    return key;
+    #else !*/
+    return Intrinsics.<Integer> cast(key);
+    /*! #end !*/
+  }
+
+  /**
+   * Converts the bits stored in {@link Table#keys} back to a key.
+   */
+  private static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ KType key(/*! #if ($wide) long #else !*/ int /*! #end !*/ bits) {
+    /*! #if ($TemplateOptions.KType.Type == "float")
+    return Float.intBitsToFloat(bits);
+    #elseif ($TemplateOptions.KType.Type == "double")
+    return Double.longBitsToDouble(bits);
+    #elseif ($TemplateOptions.KTypePrimitive)
+    return (KType) bits;
+    #else !*/
+    return Intrinsics.<KType> cast(bits);
+    /*! #end !*/
+  }
+}
@@ -0,0 +1,243 @@
+package com.carrotsearch.hppc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+
+import com.carrotsearch.hppc.HashSnapshots.Header;
+import com.carrotsearch.hppc.cursors.*;
+import com.carrotsearch.hppc.procedures.*;
+
+/*! #if ($TemplateOptions.KTypeGeneric) $TemplateOptions.setIgnored(true) #end !*/
+/**
+ * A persistent snapshot of a {@link KTypeOpenHashSet}. A snapshot is written
+ * in one sequential pass with {@link #write} and reopened read-only with
+ * {@link #open}, which memory-maps the stored keys: lookups run directly
+ * against the mapped pages, without any deserialization.
+ *
+ * <p>Set snapshots use the layout of map snapshots (documented in
+ * {@link IntIntHashMapSnapshot}), with container kind 'S' and without
+ * the values buffer.</p>
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public final class KTypeHashSetSnapshot<KType>
+  implements Iterable<KTypeCursor<KType>>
+{
+  /**
+   * Mapped keys (<code>mask + 2</code> slots).
+   */
+  private final KTypeOffHeapArray<KType> keys;
+
+  /**
+   * @see KTypeOpenHashSet#keyMixer
+   */
+  private final int keyMixer;
+
+  /**
+   * @see KTypeOpenHashSet#mask
+   */
+  private final int mask;
+
+  /**
+   * @see KTypeOpenHashSet#assigned
+   */
+  private final int assigned;
+
+  /**
+   * @see KTypeOpenHashSet#hasEmptyKey
+   */
+  private final boolean hasEmptyKey;
+
+  /**
+   * @see KTypeOpenHashSet#loadFactor
+   */
+  private final double loadFactor;
+
+  private KTypeHashSetSnapshot(Header header, KTypeOffHeapArray<KType> keys) {
+    this.keys = keys;
+    this.keyMixer = header.keyMixer;
+    this.mask = header.mask;
+    this.assigned = header.assigned;
+    this.hasEmptyKey = header.hasEmptyKey;
+    this.loadFactor = header.loadFactor;
+  }
+
+  /**
+   * Writes a snapshot of <code>set</code> to <code>channel</code>, starting at the
+   * channel's current position.
+   */
+  public static <KType> void write(KTypeOpenHashSet<KType> set, WritableByteChannel channel) throws IOException {
+    set.finishRehash();
+
+    final Header header = new Header();
+    header.kind = HashSnapshots.KIND_SET;
+    /*! #if ($TemplateOptions.KTypePrimitive)
+    header.keyType = HashSnapshots.typeCode(Intrinsics.<KType> empty());
+    #else !*/
+    header.keyType = HashSnapshots.typeCode((byte) 0);
+    /*! #end !*/
+    header.order = ByteOrder.nativeOrder();
+    header.keyMixer = set.keyMixer;
+    header.mask = set.mask;
+    header.assigned = set.assigned;
+    header.hasEmptyKey = set.hasEmptyKey;
+    header.loadFactor = set.loadFactor;
+    /*! #if ($TemplateOptions.KTypePrimitive)
+    header.layout(OffHeapBuffers.sizeOf(Intrinsics.<KType> empty()), 0);
+    #else !*/
+    header.layout(OffHeapBuffers.sizeOf((byte) 0), 0);
+    /*! #end !*/
+
+    final ByteBuffer buffer = HashSnapshots.writeBuffer();
+    header.write(channel);
+    /*! #if ($TemplateOptions.KTypePrimitive)
+    HashSnapshots.write(channel, buffer, set.keys);
+    #else !*/
+    HashSnapshots.write(channel, buffer, new byte [set.keys.length]);
+    /*! #end !*/
+  }
+
+  /**
+   * Opens a snapshot stored at the beginning of a file.
+   *
+   * @see #open(FileChannel, long)
+   */
+  public static <KType> KTypeHashSetSnapshot<KType> open(FileChannel channel) throws IOException {
+    return open(channel, 0);
+  }
+
+  /**
+   * Opens a snapshot stored at <code>position</code> in a file. The keys are
+   * mapped read-only and remain valid after the channel is closed.
+   *
+   * @throws IOException If the snapshot is truncated, corrupt or holds a
+   *         different container type.
+   */
+  public static <KType> KTypeHashSetSnapshot<KType> open(FileChannel channel, long position) throws IOException {
+    final Header header = Header.read(channel, position);
+    /*! #if ($TemplateOptions.KTypePrimitive)
+    header.check(HashSnapshots.KIND_SET, HashSnapshots.typeCode(Intrinsics.<KType> empty()), (byte) 0);
+    #else !*/
+    header.check(HashSnapshots.KIND_SET, HashSnapshots.typeCode((byte) 0), (byte) 0);
+    /*! #end !*/
+
+    final KTypeOffHeapArray<KType> keys =
+        new KTypeOffHeapArray<KType>(channel, position + header.keysOffset, (long) header.mask + 2, header.order);
+    return new KTypeHashSetSnapshot<KType>(header, keys);
+  }
+
+  /**
+   * @see KTypeOpenHashSet#contains
+   */
+  public boolean contains(KType key) {
+    if (Intrinsics.<KType> isEmpty(key)) {
+      return hasEmptyKey;
+    } else {
+      final int mask = this.mask;
+      int slot = BitMixer.mix(key, keyMixer) & mask;
+
+      KType existing;
+      while (!Intrinsics.<KType> isEmpty(existing = keys.get(slot))) {
+        if (Intrinsics.<KType> equals(key, existing)) {
+          return true;
+        }
+        slot = (slot + 1) & mask;
+      }
+
+      return false;
+    }
+  }
+
+  /**
+   * @return Returns the number of keys in the snapshot.
+   */
+  public int size() {
+    return assigned + (hasEmptyKey ? 1 : 0);
+  }
+
+  /**
+   * @return Returns <code>true</code> if the snapshot holds no keys.
+   */
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Applies <code>procedure</code> to all keys of the snapshot.
+   */
+  public <T extends KTypeProcedure<? super KType>> T forEach(T procedure) {
+    if (hasEmptyKey) {
+      procedure.apply(Intrinsics.<KType> empty());
+    }
+
+    KType existing;
+    for (int slot = 0, max = this.mask; slot <= max; slot++) {
+      if (!Intrinsics.<KType> isEmpty(existing = keys.get(slot))) {
+        procedure.apply(existing);
+      }
+    }
+
+    return procedure;
+  }
+
+  /**
+   * Copies the snapshot's keys to a new, mutable hash set.
+   */
+  public KTypeOpenHashSet<KType> toSet() {
+    final KTypeOpenHashSet<KType> set = new KTypeOpenHashSet<KType>(size(), loadFactor);
+    forEach(new KTypeProcedure<KType>() {
+      @Override
+      public void apply(KType key) {
+        set.add(key);
+      }
+    });
+    return set;
+  }
+
+  /**
+   * An iterator implementation for {@link #iterator}.
+   */
+  private final class EntryIterator extends AbstractIterator<KTypeCursor<KType>> {
+    private final KTypeCursor<KType> cursor;
+    private final int max = mask + 1;
+    private int slot = -1;
+
+    public EntryIterator() {
+      cursor = new KTypeCursor<KType>();
+    }
+
+    @Override
+    protected KTypeCursor<KType> fetch() {
+      if (slot < max) {
+        KType existing;
+        for (slot++; slot < max; slot++) {
+          if (!Intrinsics.<KType> isEmpty(existing = keys.get(slot))) {
+            cursor.index = slot;
+            cursor.value = existing;
+            return cursor;
+          }
+        }
+      }
+
+      if (slot == max && hasEmptyKey) {
+        cursor.index = slot;
+        cursor.value = Intrinsics.<KType> empty();
+        slot++;
+        return cursor;
+      }
+
+      return done();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Iterator<KTypeCursor<KType>> iterator() {
+    return new EntryIterator();
+  }
+}
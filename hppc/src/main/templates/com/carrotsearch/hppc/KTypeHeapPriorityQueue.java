@@ -0,0 +1,562 @@
+package com.carrotsearch.hppc;
+
+import java.util.*;
+
+import com.carrotsearch.hppc.cursors.*;
+import com.carrotsearch.hppc.predicates.KTypePredicate;
+import com.carrotsearch.hppc.procedures.*;
+
+import static com.carrotsearch.hppc.Containers.*;
+
+/**
+ * A priority queue of KTypes, implemented as a binary heap in a single array.
+ * The element at the top of the heap ({@link #top()}) is the smallest one
+ * (a min-heap) or, if so configured, the largest one (a max-heap), according to
+ * the natural order of KTypes or a {@link KTypeComparator}.
+ *
+ * <p>For the k largest elements of a stream, keep a min-heap of at most k
+ * elements and {@link #replaceTop} its top whenever a larger element
+ * arrives; the heap never grows beyond k.</p>
+ *
+ * <p>Iteration methods ({@link #iterator()}, {@link #forEach}) visit elements in
+ * the (unspecified) order of the heap's buffer.</p>
+ */
+/*! #if ($TemplateOptions.KTypeGeneric) @SuppressWarnings("unchecked") #end !*/
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeHeapPriorityQueue<KType>
+  extends AbstractKTypeCollection<KType>
+  implements Preallocatable,
+             Cloneable
+{
+    /**
+     * Internal array storing the heap: the children of the element at index
+     * <code>i</code> are at indexes <code>2 * i + 1</code> and <code>2 * i + 2</code>.
+     * The array may be larger than the current size ({@link #size()}).
+     */
+    public
+        /*! #if ($TemplateOptions.KTypePrimitive)
+            KType []
+            #else !*/
+            Object []
+        /*! #end !*/
+            buffer = KTypeArrayList.EMPTY_ARRAY;
+
+    /**
+     * Current number of elements stored in {@link #buffer}.
+     */
+    public int elementsCount;
+
+    /**
+     * Buffer resizing strategy.
+     */
+    protected final ArraySizingStrategy resizer;
+
+    /**
+     * The order of elements or <code>null</code> for the natural order.
+     */
+    protected final KTypeComparator<? super KType> comparator;
+
+    /**
+     * If <code>true</code>, the largest element is at the top.
+     */
+    protected final boolean maxHeap;
+
+    /**
+     * Create a min-heap in the natural order of elements.
+     */
+    public KTypeHeapPriorityQueue()
+    {
+        this(DEFAULT_EXPECTED_ELEMENTS);
+    }
+
+    /**
+     * Create a min-heap in the natural order of elements.
+     */
+    public KTypeHeapPriorityQueue(int expectedElements)
+    {
+        this(expectedElements, false, null);
+    }
+
+    /**
+     * Create a heap with the smallest (or, if <code>maxHeap</code>, the largest)
+     * element at the top.
+     *
+     * @param comparator The order of elements or <code>null</code> for the natural
+     *        order.
+     */
+    public KTypeHeapPriorityQueue(int expectedElements, boolean maxHeap,
+                                  KTypeComparator<? super KType> comparator)
+    {
+        this(expectedElements, maxHeap, comparator, new BoundedProportionalArraySizingStrategy());
+    }
+
+    /**
+     * Create with a custom buffer resizing strategy.
+     */
+    public KTypeHeapPriorityQueue(int expectedElements, boolean maxHeap,
+                                  KTypeComparator<? super KType> comparator,
+                                  ArraySizingStrategy resizer)
+    {
+        assert resizer != null;
+        this.resizer = resizer;
+        this.maxHeap = maxHeap;
+        this.comparator = comparator;
+        ensureCapacity(expectedElements);
+    }
+
+    /**
+     * Adds an element to the heap, in O(log(n)).
+     */
+    public void add(KType e1)
+    {
+        ensureBufferSpace(1);
+        siftUp(elementsCount++, e1);
+    }
+
+    /**
+     * Adds all elements from another container.
+     *
+     * @return Returns the number of elements added.
+     */
+    public int addAll(KTypeContainer<? extends KType> container)
+    {
+        final int size = container.size();
+        ensureBufferSpace(size);
+
+        for (KTypeCursor<? extends KType> cursor : container)
+        {
+            add(cursor.value);
+        }
+
+        return size;
+    }
+
+    /**
+     * @return Returns the element at the top of the heap (the smallest one in a
+     * min-heap, the largest one in a max-heap). The heap must not be empty.
+     */
+    public KType top()
+    {
+        assert elementsCount > 0 : "The heap is empty.";
+
+        return Intrinsics.<KType> cast(buffer[0]);
+    }
+
+    /**
+     * Removes and returns the element at the top of the heap, in O(log(n)).
+     * The heap must not be empty.
+     */
+    public KType pop()
+    {
+        assert elementsCount > 0 : "The heap is empty.";
+
+        final KType [] buffer = Intrinsics.<KType[]> cast(this.buffer);
+        final KType top = buffer[0];
+        final int last = --elementsCount;
+        final KType moved = buffer[last];
+        buffer[last] = Intrinsics.<KType> empty();
+        if (last > 0)
+        {
+            siftDown(0, moved);
+        }
+        return top;
+    }
+
+    /**
+     * Replaces the element at the top of the heap with <code>e1</code>, in
+     * O(log(n)). This is cheaper than a {@link #pop()} followed by an
+     * {@link #add}. The heap must not be empty.
+     *
+     * @return Returns the replaced element.
+     */
+    public KType replaceTop(KType e1)
+    {
+        assert elementsCount > 0 : "The heap is empty.";
+
+        final KType top = Intrinsics.<KType> cast(buffer[0]);
+        siftDown(0, e1);
+        return top;
+    }
+
+    /**
+     * Replaces the contents of the heap with a range of elements of an array,
+     * rearranging them into a heap in O(n) (faster than adding the elements one
+     * by one).
+     */
+    public void heapify(KType [] elements, int start, int length)
+    {
+        assert length >= 0 && start >= 0 && start + length <= elements.length;
+
+        clear();
+        ensureBufferSpace(length);
+        System.arraycopy(elements, start, buffer, 0, length);
+        elementsCount = length;
+        buildHeap();
+    }
+
+    /**
+     * Vararg-signature variant of {@link #heapify(KType[], int, int)}.
+     */
+    /* #if ($TemplateOptions.KTypeGeneric) */
+    @SafeVarargs
+    /* #end */
+    public final void heapify(KType... elements)
+    {
+        heapify(elements, 0, elements.length);
+    }
+
+    /**
+     * Restores the heap property of the whole buffer, in O(n).
+     */
+    private void buildHeap()
+    {
+        final KType [] buffer = Intrinsics.<KType[]> cast(this.buffer);
+        for (int i = (elementsCount >>> 1) - 1; i >= 0; i--)
+        {
+            siftDown(i, buffer[i]);
+        }
+    }
+
+    /**
+     * Places <code>e1</code> at <code>index</code> or, if it belongs higher,
+     * moves parents down the heap to make room for it.
+     */
+    private void siftUp(int index, KType e1)
+    {
+        final KType [] buffer = Intrinsics.<KType[]> cast(this.buffer);
+        while (index > 0)
+        {
+            final int parent = (index - 1) >>> 1;
+            final KType p = buffer[parent];
+            if (!before(e1, p))
+            {
+                break;
+            }
+            buffer[index] = p;
+            index = parent;
+        }
+        buffer[index] = e1;
+    }
+
+    /**
+     * Places <code>e1</code> at <code>index</code> or, if it belongs lower,
+     * moves children up the heap to make room for it.
+     */
+    private void siftDown(int index, KType e1)
+    {
+        final KType [] buffer = Intrinsics.<KType[]> cast(this.buffer);
+        final int size = elementsCount;
+        final int half = size >>> 1;
+        while (index < half)
+        {
+            int child = 2 * index + 1;
+            KType c = buffer[child];
+            final int right = child + 1;
+            if (right < size && before(buffer[right], c))
+            {
+                c = buffer[child = right];
+            }
+            if (!before(c, e1))
+            {
+                break;
+            }
+            buffer[index] = c;
+            index = child;
+        }
+        buffer[index] = e1;
+    }
+
+    /**
+     * @return Returns <code>true</code> if <code>a</code> must be closer to the top
+     * than <code>b</code>.
+     */
+    private boolean before(KType a, KType b)
+    {
+        final int c = (comparator != null ? comparator.compare(a, b) : compareNatural(a, b));
+        return maxHeap ? c > 0 : c < 0;
+    }
+
+    private static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ int compareNatural(KType a, KType b)
+    {
+        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+        return ((Comparable<? super KType>) a).compareTo(b);
+        /*! #elseif ($TemplateOptions.KType.Type == "int")
+        return Integer.compare(a, b);
+        #elseif ($TemplateOptions.KType.Type == "char")
+        return Character.compare(a, b);
+        #else
+        return ${TemplateOptions.KType.BoxedType}.compare(a, b);
+        #end !*/
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(KType e1)
+    {
+        int removed = 0;
+        final KType [] buffer = Intrinsics.<KType[]> cast(this.buffer);
+        for (int from = 0, to = 0; from < elementsCount;)
+        {
+            if (Intrinsics.<KType> equals(this, e1, buffer[from]))
+            {
+                buffer[from++] = Intrinsics.<KType> empty();
+                removed++;
+                continue;
+            }
+            buffer[to++] = buffer[from++];
+        }
+        return compacted(removed);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int removeAll(KTypePredicate<? super KType> predicate)
+    {
+        final KType [] buffer = Intrinsics.<KType[]> cast(this.buffer);
+        final int elementsCount = this.elementsCount;
+        int to = 0;
+        int from = 0;
+        try
+        {
+            for (; from < elementsCount; from++)
+            {
+                if (predicate.apply(buffer[from]))
+                {
+                    buffer[from] = Intrinsics.<KType> empty();
+                    continue;
+                }
+
+                if (to != from)
+                {
+                    buffer[to] = buffer[from];
+                    buffer[from] = Intrinsics.<KType> empty();
+                }
+                to++;
+            }
+        }
+        finally
+        {
+            // Keep the heap in a consistent state, even if the predicate throws an exception.
+            for (; from < elementsCount; from++)
+            {
+                if (to != from)
+                {
+                    buffer[to] = buffer[from];
+                    buffer[from] = Intrinsics.<KType> empty();
+                }
+                to++;
+            }
+
+            compacted(elementsCount - to);
+        }
+
+        return elementsCount - to;
+    }
+
+    /**
+     * Updates the size after <code>removed</code> elements have been compacted
+     * out of the buffer and restores the heap property.
+     */
+    private int compacted(int removed)
+    {
+        if (removed > 0)
+        {
+            final int size = elementsCount - removed;
+            Arrays.fill(buffer, size, elementsCount, Intrinsics.<KType> empty());
+            elementsCount = size;
+            buildHeap();
+        }
+        return removed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(KType e1)
+    {
+        final KType [] buffer = Intrinsics.<KType[]> cast(this.buffer);
+        for (int i = 0; i < elementsCount; i++)
+        {
+            if (Intrinsics.<KType> equals(this, e1, buffer[i]))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size()
+    {
+        return elementsCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty()
+    {
+        return elementsCount == 0;
+    }
+
+    /**
+     * Ensure this container can hold at least the
+     * given number of elements without resizing its buffers.
+     *
+     * @param expectedElements The total number of elements, inclusive.
+     */
+    @Override
+    public void ensureCapacity(int expectedElements)
+    {
+        final int bufferLen = (buffer == null ? 0 : buffer.length);
+        if (expectedElements > bufferLen)
+        {
+            ensureBufferSpace(expectedElements - size());
+        }
+    }
+
+    /**
+     * Ensures the internal buffer has enough free slots to store
+     * <code>expectedAdditions</code>. Increases internal buffer size if needed.
+     */
+    protected void ensureBufferSpace(int expectedAdditions)
+    {
+        final int bufferLen = (buffer == null ? 0 : buffer.length);
+        if (elementsCount + expectedAdditions > bufferLen)
+        {
+            final int newSize = resizer.grow(bufferLen, elementsCount, expectedAdditions);
+            assert newSize >= elementsCount + expectedAdditions : "Resizer failed to" +
+                    " return sensible new size: " + newSize + " <= "
+                    + (elementsCount + expectedAdditions);
+
+            final KType [] newBuffer = Intrinsics.<KType> newArray(newSize);
+            if (bufferLen > 0)
+            {
+                System.arraycopy(buffer, 0, newBuffer, 0, elementsCount);
+            }
+            this.buffer = newBuffer;
+        }
+    }
+
+    /**
+     * Sets the number of stored elements to zero. Releases and initializes the
+     * internal storage array to default values.
+     */
+    @Override
+    public void clear()
+    {
+        Arrays.fill(buffer, 0, elementsCount, Intrinsics.<KType> empty());
+        this.elementsCount = 0;
+    }
+
+    /**
+     * Sets the number of stored elements to zero and releases the internal storage array.
+     */
+    @Override
+    public void release()
+    {
+        this.buffer = Intrinsics.<KType[]> cast(KTypeArrayList.EMPTY_ARRAY);
+        this.elementsCount = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The returned array is in the order of the heap's buffer.</p>
+     */
+    @Override
+    /*! #if ($TemplateOptions.KTypePrimitive)
+    public KType [] toArray()
+        #else !*/
+    public Object [] toArray()
+    /*! #end !*/
+    {
+        return Arrays.copyOf(buffer, elementsCount);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<KTypeCursor<KType>> iterator()
+    {
+        return new KTypeArrayList.ValueIterator<KType>(Intrinsics.<KType[]> cast(buffer), size());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends KTypeProcedure<? super KType>> T forEach(T procedure)
+    {
+        final KType [] buffer = Intrinsics.<KType[]> cast(this.buffer);
+        for (int i = 0; i < elementsCount; i++)
+        {
+            procedure.apply(buffer[i]);
+        }
+        return procedure;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends KTypePredicate<? super KType>> T forEach(T predicate)
+    {
+        final KType [] buffer = Intrinsics.<KType[]> cast(this.buffer);
+        for (int i = 0; i < elementsCount; i++)
+        {
+            if (!predicate.apply(buffer[i]))
+            {
+                break;
+            }
+        }
+        return predicate;
+    }
+
+    /**
+     * Clone this object. The returned clone will use the same comparator and
+     * array resizing strategy.
+     */
+    @Override
+    public KTypeHeapPriorityQueue<KType> clone()
+    {
+        try
+        {
+            /* #if ($templateOnly) */
+            @SuppressWarnings("unchecked")
+            /* #end */
+            final KTypeHeapPriorityQueue<KType> cloned = (KTypeHeapPriorityQueue<KType>) super.clone();
+            cloned.buffer = buffer.clone();
+            return cloned;
+        }
+        catch (CloneNotSupportedException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Create a min-heap from a variable number of arguments or an array of
+     * <code>KType</code>, in O(n).
+     */
+    /* #if ($TemplateOptions.KTypeGeneric) */
+    @SafeVarargs
+    /* #end */
+    public static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */
+      KTypeHeapPriorityQueue<KType> from(KType... elements)
+    {
+        final KTypeHeapPriorityQueue<KType> heap = new KTypeHeapPriorityQueue<KType>(elements.length);
+        heap.heapify(elements);
+        return heap;
+    }
+}
@@ -0,0 +1,415 @@
+package com.carrotsearch.hppc;
+
+import java.util.*;
+
+import static com.carrotsearch.hppc.Containers.*;
+
+/**
+ * A priority queue of non-negative <code>int</code> indexes (for example node
+ * ids of a graph) ordered by a <code>KType</code> priority associated with each
+ * index, implemented as a binary heap of indexes. The index with the smallest
+ * priority (in a min-heap) or the largest one (in a max-heap) is at the top.
+ *
+ * <p>Unlike {@link KTypeHeapPriorityQueue}, the priority of an index already in
+ * the queue can be changed in O(log(n)) with {@link #put}: this is
+ * the decrease-key operation of Dijkstra's or Prim's algorithm. Indexes can also
+ * be removed from anywhere in the queue.</p>
+ *
+ * <p>Memory usage is proportional to the largest index ever added, not to the
+ * size of the queue, so indexes should be dense.</p>
+ */
+/*! #if ($TemplateOptions.KTypeGeneric) @SuppressWarnings("unchecked") #end !*/
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeIndexedHeapPriorityQueue<KType>
+  implements Cloneable
+{
+    /**
+     * The heap of indexes: the children of the index at position <code>i</code>
+     * are at positions <code>2 * i + 1</code> and <code>2 * i + 2</code>.
+     */
+    public int [] heap;
+
+    /**
+     * The position of each index in {@link #heap} or <code>-1</code> if the index
+     * is not in the queue.
+     */
+    public int [] positions;
+
+    /**
+     * The priority of each index in the queue, indexed by index.
+     */
+    public
+        /*! #if ($TemplateOptions.KTypePrimitive)
+            KType []
+            #else !*/
+            Object []
+        /*! #end !*/
+            priorities;
+
+    /**
+     * Current number of indexes in the queue.
+     */
+    public int elementsCount;
+
+    /**
+     * Buffer resizing strategy.
+     */
+    protected final ArraySizingStrategy resizer;
+
+    /**
+     * The order of priorities or <code>null</code> for the natural order.
+     */
+    protected final KTypeComparator<? super KType> comparator;
+
+    /**
+     * If <code>true</code>, the index with the largest priority is at the top.
+     */
+    protected final boolean maxHeap;
+
+    /**
+     * Create a min-heap in the natural order of priorities.
+     */
+    public KTypeIndexedHeapPriorityQueue()
+    {
+        this(DEFAULT_EXPECTED_ELEMENTS);
+    }
+
+    /**
+     * Create a min-heap in the natural order of priorities.
+     *
+     * @param maxIndex The largest expected index, exclusive.
+     */
+    public KTypeIndexedHeapPriorityQueue(int maxIndex)
+    {
+        this(maxIndex, false, null);
+    }
+
+    /**
+     * Create a heap with the smallest (or, if <code>maxHeap</code>, the largest)
+     * priority at the top.
+     *
+     * @param maxIndex The largest expected index, exclusive.
+     * @param comparator The order of priorities or <code>null</code> for the
+     *        natural order.
+     */
+    public KTypeIndexedHeapPriorityQueue(int maxIndex, boolean maxHeap,
+                                         KTypeComparator<? super KType> comparator)
+    {
+        this(maxIndex, maxHeap, comparator, new BoundedProportionalArraySizingStrategy());
+    }
+
+    /**
+     * Create with a custom buffer resizing strategy.
+     */
+    public KTypeIndexedHeapPriorityQueue(int maxIndex, boolean maxHeap,
+                                         KTypeComparator<? super KType> comparator,
+                                         ArraySizingStrategy resizer)
+    {
+        assert resizer != null;
+        this.resizer = resizer;
+        this.maxHeap = maxHeap;
+        this.comparator = comparator;
+        this.heap = new int [0];
+        this.positions = new int [0];
+        this.priorities = Intrinsics.<KType> newArray(0);
+        ensureCapacity(maxIndex);
+    }
+
+    /**
+     * Adds <code>index</code> with the given priority or, if the index is already
+     * in the queue, changes its priority (in either direction), in O(log(n)).
+     *
+     * @return Returns <code>true</code> if the index was added, <code>false</code>
+     * if its priority was changed.
+     */
+    public boolean put(int index, KType priority)
+    {
+        assert index >= 0 : "Indexes must not be negative: " + index;
+
+        if (index >= positions.length)
+        {
+            ensureCapacity(index + 1);
+        }
+
+        final int position = positions[index];
+        if (position >= 0)
+        {
+            final KType previous = Intrinsics.<KType> cast(priorities[index]);
+            priorities[index] = priority;
+            if (before(priority, previous))
+            {
+                siftUp(position, index);
+            }
+            else
+            {
+                siftDown(position, index);
+            }
+            return false;
+        }
+        else
+        {
+            if (elementsCount == heap.length)
+            {
+                heap = Arrays.copyOf(heap, resizer.grow(heap.length, elementsCount, 1));
+            }
+            priorities[index] = priority;
+            siftUp(elementsCount++, index);
+            return true;
+        }
+    }
+
+    /**
+     * @return Returns <code>true</code> if the index is in the queue.
+     */
+    public boolean contains(int index)
+    {
+        return index >= 0 && index < positions.length && positions[index] >= 0;
+    }
+
+    /**
+     * @return Returns the priority of an index in the queue.
+     */
+    public KType priority(int index)
+    {
+        assert contains(index) : "Index not in the queue: " + index;
+
+        return Intrinsics.<KType> cast(priorities[index]);
+    }
+
+    /**
+     * @return Returns the index at the top of the queue. The queue must not be
+     * empty.
+     */
+    public int top()
+    {
+        assert elementsCount > 0 : "The heap is empty.";
+
+        return heap[0];
+    }
+
+    /**
+     * @return Returns the priority of the index at the top of the queue. The
+     * queue must not be empty.
+     */
+    public KType topPriority()
+    {
+        return priority(top());
+    }
+
+    /**
+     * Removes and returns the index at the top of the queue, in O(log(n)). The
+     * queue must not be empty.
+     */
+    public int pop()
+    {
+        final int top = top();
+        removeAt(0);
+        return top;
+    }
+
+    /**
+     * Removes an index from the queue, in O(log(n)).
+     *
+     * @return Returns <code>true</code> if the index was in the queue.
+     */
+    public boolean remove(int index)
+    {
+        if (contains(index))
+        {
+            removeAt(positions[index]);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Returns the number of indexes in the queue.
+     */
+    public int size()
+    {
+        return elementsCount;
+    }
+
+    /**
+     * @return Returns <code>true</code> if the queue is empty.
+     */
+    public boolean isEmpty()
+    {
+        return elementsCount == 0;
+    }
+
+    /**
+     * Removes all indexes from the queue, in O(n).
+     */
+    public void clear()
+    {
+        for (int i = 0; i < elementsCount; i++)
+        {
+            final int index = heap[i];
+            positions[index] = -1;
+            priorities[index] = Intrinsics.<KType> empty();
+        }
+        elementsCount = 0;
+    }
+
+    /**
+     * Ensure indexes up to <code>maxIndex</code> (exclusive) can be added without
+     * resizing buffers.
+     */
+    public void ensureCapacity(int maxIndex)
+    {
+        final int length = positions.length;
+        if (maxIndex > length)
+        {
+            final int newLength = resizer.grow(length, length, maxIndex - length);
+            positions = Arrays.copyOf(positions, newLength);
+            Arrays.fill(positions, length, newLength, -1);
+            priorities = Arrays.copyOf(priorities, newLength);
+        }
+    }
+
+    private void removeAt(int position)
+    {
+        final int index = heap[position];
+        positions[index] = -1;
+        priorities[index] = Intrinsics.<KType> empty();
+
+        final int last = --elementsCount;
+        if (position != last)
+        {
+            final int moved = heap[last];
+            siftDown(position, moved);
+            if (heap[position] == moved)
+            {
+                siftUp(position, moved);
+            }
+        }
+    }
+
+    /**
+     * Places <code>index</code> at <code>position</code> or, if it belongs higher,
+     * moves parents down the heap to make room for it.
+     */
+    private void siftUp(int position, int index)
+    {
+        final int [] heap = this.heap;
+        final KType priority = Intrinsics.<KType> cast(priorities[index]);
+        while (position > 0)
+        {
+            final int parent = (position - 1) >>> 1;
+            final int p = heap[parent];
+            if (!before(priority, Intrinsics.<KType> cast(priorities[p])))
+            {
+                break;
+            }
+            heap[position] = p;
+            positions[p] = position;
+            position = parent;
+        }
+        heap[position] = index;
+        positions[index] = position;
+    }
+
+    /**
+     * Places <code>index</code> at <code>position</code> or, if it belongs lower,
+     * moves children up the heap to make room for it.
+     */
+    private void siftDown(int position, int index)
+    {
+        final int [] heap = this.heap;
+        final KType [] priorities = Intrinsics.<KType[]> cast(this.priorities);
+        final KType priority = priorities[index];
+        final int size = elementsCount;
+        final int half = size >>> 1;
+        while (position < half)
+        {
+            int child = 2 * position + 1;
+            int c = heap[child];
+            final int right = child + 1;
+            if (right < size && before(priorities[heap[right]], priorities[c]))
+            {
+                c = heap[child = right];
+            }
+            if (!before(priorities[c], priority))
+            {
+                break;
+            }
+            heap[position] = c;
+            positions[c] = position;
+            position = child;
+        }
+        heap[position] = index;
+        positions[index] = position;
+    }
+
+    /**
+     * @return Returns <code>true</code> if priority <code>a</code> must be closer to
+     * the top than <code>b</code>.
+     */
+    private boolean before(KType a, KType b)
+    {
+        final int c = (comparator != null ? comparator.compare(a, b) : compareNatural(a, b));
+        return maxHeap ? c > 0 : c < 0;
+    }
+
+    private static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ int compareNatural(KType a, KType b)
+    {
+        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+        return ((Comparable<? super KType>) a).compareTo(b);
+        /*! #elseif ($TemplateOptions.KType.Type == "int")
+        return Integer.compare(a, b);
+        #elseif ($TemplateOptions.KType.Type == "char")
+        return Character.compare(a, b);
+        #else
+        return ${TemplateOptions.KType.BoxedType}.compare(a, b);
+        #end !*/
+    }
+
+    /**
+     * Clone this object. The returned clone will use the same comparator and
+     * array resizing strategy.
+     */
+    @Override
+    public KTypeIndexedHeapPriorityQueue<KType> clone()
+    {
+        try
+        {
+            /* #if ($templateOnly) */
+            @SuppressWarnings("unchecked")
+            /* #end */
+            final KTypeIndexedHeapPriorityQueue<KType> cloned =
+                (KTypeIndexedHeapPriorityQueue<KType>) super.clone();
+            cloned.heap = heap.clone();
+            cloned.positions = positions.clone();
+            cloned.priorities = priorities.clone();
+            return cloned;
+        }
+        catch (CloneNotSupportedException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Convert the contents of this queue to a human-friendly string, in the
+     * order of the heap's buffer.
+     */
+    @Override
+    public String toString()
+    {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[");
+        for (int i = 0; i < elementsCount; i++)
+        {
+            if (i > 0)
+            {
+                buffer.append(", ");
+            }
+            buffer.append(heap[i]);
+            buffer.append("=>");
+            buffer.append(priorities[heap[i]]);
+        }
+        buffer.append("]");
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,156 @@
+package com.carrotsearch.hppc;
+
+import java.io.IOException;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+
+/*! #if ($TemplateOptions.KTypeGeneric) $TemplateOptions.setIgnored(true) #end !*/
+/**
+ * A fixed-length, <code>long</code>-indexed array of <code>KType</code>s stored
+ * in direct (off-heap) buffers. Elements are split into pages of
+ * <code>2^pageShift</code> elements (the last page may be shorter), so the length
+ * is not limited by the maximum size of a Java array or buffer.
+ *
+ * <p>Direct buffers are not accounted for in the Java heap and are not traversed
+ * or copied by the garbage collector. Their memory is reclaimed once the array is
+ * no longer reachable; the total is limited by <code>-XX:MaxDirectMemorySize</code>.</p>
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public final class KTypeOffHeapArray<KType> {
+  /**
+   * Direct buffers holding consecutive elements.
+   */
+  private final /*! #if ($TemplateOptions.KTypePrimitive) ${TemplateOptions.KType.BoxedType}Buffer #else !*/ Buffer /*! #end !*/ [] pages;
+
+  /**
+   * The number of elements in this array.
+   */
+  private final long length;
+
+  /**
+   * Log2 of the number of elements in a single (full) page.
+   */
+  private final int pageShift;
+
+  /**
+   * Mask for element offsets within a page.
+   */
+  private final int pageMask;
+
+  /**
+   * Allocates a zero-filled array of <code>length</code> elements.
+   *
+   * @param length The number of elements.
+   * @param pageShift Log2 of the maximum number of elements in a single page.
+   *
+   * @throws OutOfMemoryError If direct memory cannot be allocated.
+   */
+  public KTypeOffHeapArray(long length, int pageShift) {
+    this(length, pageShift, newPages(pageCount(length, pageShift)));
+    for (int i = 0; i < pages.length; i++) {
+      /*! #if ($TemplateOptions.KTypePrimitive)
+      pages[i] = OffHeapBuffers.allocate${TemplateOptions.KType.BoxedType}(pageLength(i));
+      #else !*/
+      pages[i] = OffHeapBuffers.allocateByte(pageLength(i));
+      /*! #end !*/
+    }
+  }
+
+  private KTypeOffHeapArray(long length, int pageShift, /*! #if ($TemplateOptions.KTypePrimitive) ${TemplateOptions.KType.BoxedType}Buffer #else !*/ Buffer /*! #end !*/ [] pages) {
+    this.length = length;
+    this.pageShift = pageShift;
+    this.pageMask = (int) ((1L << pageShift) - 1);
+    this.pages = pages;
+  }
+
+  /**
+   * Maps a read-only array of <code>length</code> elements stored in the given
+   * byte order, starting at <code>position</code> in a file. Any attempt to
+   * modify the array throws a {@link ReadOnlyBufferException}.
+   */
+  KTypeOffHeapArray(FileChannel channel, long position, long length, ByteOrder order) throws IOException {
+    this(length, OffHeapBuffers.DEFAULT_PAGE_SHIFT, newPages(pageCount(length, OffHeapBuffers.DEFAULT_PAGE_SHIFT)));
+    /*! #if ($TemplateOptions.KTypePrimitive)
+    final long pageBytes = (long) OffHeapBuffers.sizeOf(Intrinsics.<KType> empty()) << pageShift;
+    #else !*/
+    final long pageBytes = (long) OffHeapBuffers.sizeOf((byte) 0) << pageShift;
+    /*! #end !*/
+    for (int i = 0; i < pages.length; i++) {
+      /*! #if ($TemplateOptions.KTypePrimitive)
+      pages[i] = OffHeapBuffers.map${TemplateOptions.KType.BoxedType}(channel, position + i * pageBytes, pageLength(i), order);
+      #else !*/
+      pages[i] = OffHeapBuffers.mapByte(channel, position + i * pageBytes, pageLength(i), order);
+      /*! #end !*/
+    }
+  }
+
+  /**
+   * Returns the number of pages for the given length, validating arguments.
+   */
+  private static int pageCount(long length, int pageShift) {
+    if (length < 0) {
+      throw new IllegalArgumentException("Length must be >= 0: " + length);
+    }
+    if (pageShift < 0 || pageShift > OffHeapBuffers.MAX_PAGE_SHIFT) {
+      throw new IllegalArgumentException("Page shift must be in [0, "
+          + OffHeapBuffers.MAX_PAGE_SHIFT + "]: " + pageShift);
+    }
+
+    final long pageCount = (length + (1L << pageShift) - 1) >>> pageShift;
+    if (pageCount > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many pages: " + pageCount);
+    }
+    return (int) pageCount;
+  }
+
+  private static /*! #if ($TemplateOptions.KTypePrimitive) ${TemplateOptions.KType.BoxedType}Buffer #else !*/ Buffer /*! #end !*/ [] newPages(int pageCount) {
+    return /*! #if ($TemplateOptions.KTypePrimitive) new ${TemplateOptions.KType.BoxedType}Buffer #else !*/ new Buffer /*! #end !*/ [pageCount];
+  }
+
+  /**
+   * @return Returns the number of elements in page <code>page</code>.
+   */
+  private int pageLength(int page) {
+    return (int) Math.min(1L << pageShift, length - ((long) page << pageShift));
+  }
+
+  /**
+   * @return Returns the element at <code>index</code>.
+   */
+  public KType get(long index) {
+    assert index >= 0 && index < length : "Index out of bounds: " + index;
+    /*! #if ($TemplateOptions.KTypePrimitive)
+    return pages[(int) (index >>> pageShift)].get((int) index & pageMask);
+    #else !*/
+    return Intrinsics.<KType> cast(((ByteBuffer) pages[(int) (index >>> pageShift)]).get((int) index & pageMask));
+    /*! #end !*/
+  }
+
+  /**
+   * Sets the element at <code>index</code>.
+   */
+  public void set(long index, KType value) {
+    assert index >= 0 && index < length : "Index out of bounds: " + index;
+    /*! #if ($TemplateOptions.KTypePrimitive)
+    pages[(int) (index >>> pageShift)].put((int) index & pageMask, value);
+    #else !*/
+    ((ByteBuffer) pages[(int) (index >>> pageShift)]).put((int) index & pageMask, Intrinsics.<Byte> cast(value));
+    /*! #end !*/
+  }
+
+  /**
+   * Sets all elements of this array to <code>value</code>.
+   */
+  public void fill(KType value) {
+    for (long index = 0; index < length; index++) {
+      set(index, value);
+    }
+  }
+
+  /**
+   * @return Returns the number of elements in this array.
+   */
+  public long length() {
+    return length;
+  }
+}
@@ -1,6 +1,8 @@
 package com.carrotsearch.hppc;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import com.carrotsearch.hppc.cursors.*;
 import com.carrotsearch.hppc.predicates.*;
@@ -22,7 +24,12 @@ public class KTypeOpenHashSet<KType>
              KTypeSet<KType>,
              Preallocatable,
              Cloneable {
-  /** The hash array holding keys. */
+  /**
+   * The hash array holding keys. While an incremental rehash is pending, some
+   * keys are still in {@link #rehashKeys}.
+   * 
+   * @see #setIncrementalRehash(int)
+   */
   public /*! #if ($TemplateOptions.KTypeGeneric) !*/ 
                    Object [] 
          /*! #else KType [] #end !*/ 
@@ -74,6 +81,72 @@ public class KTypeOpenHashSet<KType>
    */
   protected HashOrderMixingStrategy orderMixer;
 
+  /**
+   * The number of times {@link #keys} has been rehashed into a larger buffer.
+   * 
+   * @see #stats()
+   */
+  protected int rehashCount;
+
+  /**
+   * Total time spent rehashing {@link #keys}, in nanoseconds (excluding
+   * slot migration steps of incremental rehashes).
+   * 
+   * @see #stats()
+   */
+  protected long rehashNanos;
+
+  /**
+   * The maximum number of slots migrated from {@link #rehashKeys} by each
+   * modifying operation, or zero if buffers are rehashed at once.
+   * 
+   * @see #setIncrementalRehash(int)
+   */
+  protected int rehashStep;
+
+  /**
+   * The previous keys buffer during an incremental rehash, <code>null</code>
+   * otherwise. Keys are migrated one cluster at a time (whole clusters are
+   * cleared), so the remaining keys still form a valid hash table.
+   */
+  protected /*! #if ($TemplateOptions.KTypeGeneric) !*/ 
+            Object [] 
+            /*! #else KType [] #end !*/ 
+            rehashKeys;
+
+  /**
+   * Mask for slot scans in {@link #rehashKeys}.
+   */
+  protected int rehashMask;
+
+  /**
+   * The next slot of {@link #rehashKeys} to migrate.
+   */
+  protected int rehashSlot;
+
+  /**
+   * The number of slots of {@link #rehashKeys} left to migrate.
+   */
+  protected int rehashRemaining;
+
+  /**
+   * The number of slots migrated by each operation during the current
+   * incremental rehash (at least {@link #rehashStep}).
+   */
+  protected int rehashBudget;
+
+  /**
+   * The pool rehashing large buffers in parallel, or <code>null</code>.
+   * 
+   * @see #setParallelRehash(ForkJoinPool)
+   */
+  protected ForkJoinPool rehashPool;
+
+  /**
+   * The minimum number of slots of a buffer rehashed in parallel.
+   */
+  protected int parallelRehashMinSlots = PARALLEL_REHASH_MIN_SLOTS;
+
   /**
    * New instance with sane defaults.
    * 
@@ -133,11 +206,15 @@ public class KTypeOpenHashSet<KType>
    */
   @Override
   public boolean add(KType key) {
+    if (rehashKeys != null) {
+      continueRehash(key);
+    }
+
     if (Intrinsics.isEmpty(key)) {
       assert Intrinsics.isEmpty(keys[mask + 1]);
       boolean hadEmptyKey = hasEmptyKey;
       hasEmptyKey = true;
-      return hadEmptyKey;
+      return !hadEmptyKey;
     } else {
       final KType [] keys = Intrinsics.<KType[]> cast(this.keys);
       final int mask = this.mask;
@@ -232,6 +309,16 @@ public class KTypeOpenHashSet<KType>
       }
     }
 
+    if (rehashKeys != null) {
+      final KType[] fromKeys = Intrinsics.<KType[]> cast(this.rehashKeys);
+      for (int slot = 0, max = rehashMask; slot <= max; slot++) {
+        KType existing;
+        if (!Intrinsics.isEmpty(existing = fromKeys[slot])) {
+          cloned[j++] = existing;
+        }
+      }
+    }
+
     return cloned;
   }
 
@@ -239,6 +326,10 @@ public class KTypeOpenHashSet<KType>
    * An alias for the (preferred) {@link #removeAll(KType)}.
    */
   public boolean remove(KType key) {
+    if (rehashKeys != null) {
+      continueRehash(key);
+    }
+
     if (Intrinsics.isEmpty(key)) {
       boolean hadEmptyKey = hasEmptyKey;
       hasEmptyKey = false;
@@ -273,6 +364,8 @@ public class KTypeOpenHashSet<KType>
    */
   @Override
   public int removeAll(KTypePredicate<? super KType> predicate) {
+    finishRehash();
+
     int before = size();
 
     if (hasEmptyKey) {
@@ -304,6 +397,10 @@ public class KTypeOpenHashSet<KType>
     if (Intrinsics.isEmpty(key)) {
       return hasEmptyKey;
     } else {
+      if (rehashKeys != null && rehashIndexOf(key) >= 0) {
+        return true;
+      }
+
       final KType [] keys = Intrinsics.<KType[]> cast(this.keys);
       final int mask = this.mask;
       int slot = hashKey(key) & mask;
@@ -318,6 +415,109 @@ public class KTypeOpenHashSet<KType>
     }
   }
 
+  /**
+   * Checks a batch of keys and stores the result of {@link #contains} for each
+   * key in <code>out</code> (at the same index). The batch is hashed up front and
+   * the first probed slots of all keys are read in one pass, so that the
+   * (independent) cache misses of large sets overlap rather than being paid one
+   * key at a time.
+   *
+   * @return Returns the number of keys found in the set.
+   */
+  public int containsAll(KType[] keys, boolean[] out) {
+    if (out.length < keys.length) {
+      throw new IllegalArgumentException("Output array too small: "
+          + out.length + ", keys: " + keys.length);
+    }
+
+    final int[] slots = new int [Math.min(keys.length, BATCH_LOOKUP_BLOCK)];
+    final KType[] firsts = Intrinsics.<KType> newArray(slots.length);
+    int found = 0;
+    for (int from = 0; from < keys.length; from += slots.length) {
+      final int to = Math.min(keys.length, from + slots.length);
+      lookupAll(keys, from, to, slots, firsts);
+      for (int i = from; i < to; i++) {
+        if (out[i] = slots[i - from] != -1) {
+          found++;
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Checks a batch of keys and sets (or clears) the bit of each key's index in
+   * <code>out</code> depending on whether the key is in the set.
+   *
+   * @see #contains
+   * @return Returns the number of keys found in the set.
+   */
+  public int containsAll(KType[] keys, BitSet out) {
+    final int[] slots = new int [Math.min(keys.length, BATCH_LOOKUP_BLOCK)];
+    final KType[] firsts = Intrinsics.<KType> newArray(slots.length);
+    int found = 0;
+    for (int from = 0; from < keys.length; from += slots.length) {
+      final int to = Math.min(keys.length, from + slots.length);
+      lookupAll(keys, from, to, slots, firsts);
+      for (int i = from; i < to; i++) {
+        if (slots[i - from] != -1) {
+          out.set(i);
+          found++;
+        } else {
+          out.clear(i);
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Stores the slots of <code>keys[from..to)</code> in <code>slots</code> (from
+   * index zero), <code>-2 - slot</code> for keys still at <code>slot</code> of
+   * {@link #rehashKeys} or <code>-1</code> for keys not in the set.
+   * <code>firsts</code> is scratch space for the first probed keys.
+   */
+  private void lookupAll(KType[] batch, int from, int to, int[] slots, KType[] firsts) {
+    final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+    final int mask = this.mask;
+
+    // Hash all keys first.
+    for (int i = from; i < to; i++) {
+      final KType key = batch[i];
+      slots[i - from] = Intrinsics.<KType> isEmpty(key) ? 0 : hashKey(key) & mask;
+    }
+
+    // Read the first probed slot of every key; these loads do not depend on each other.
+    for (int i = 0, max = to - from; i < max; i++) {
+      firsts[i] = keys[slots[i]];
+    }
+
+    // Resolve hits, misses and collisions.
+    for (int i = from; i < to; i++) {
+      final KType key = batch[i];
+      if (Intrinsics.<KType> isEmpty(key)) {
+        slots[i - from] = hasEmptyKey ? mask + 1 : -1;
+        continue;
+      }
+
+      int slot = slots[i - from];
+      KType existing = firsts[i - from];
+      while (true) {
+        if (Intrinsics.<KType> isEmpty(existing)) {
+          // Look in the previous buffer (-2 - -1 is -1 if the key is not there either).
+          slot = rehashKeys != null ? -2 - rehashIndexOf(key) : -1;
+          break;
+        }
+        if (Intrinsics.<KType> equals(this, key, existing)) {
+          break;
+        }
+        slot = (slot + 1) & mask;
+        existing = keys[slot];
+      }
+      slots[i - from] = slot;
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -325,6 +525,7 @@ public class KTypeOpenHashSet<KType>
   public void clear() {
     assigned = 0;
     hasEmptyKey = false;
+    rehashKeys = null;
     Arrays.fill(keys, Intrinsics.<KType> empty());
   }
 
@@ -335,6 +536,7 @@ public class KTypeOpenHashSet<KType>
   public void release() {
     assigned = 0;
     hasEmptyKey = false;
+    rehashKeys = null;
     keys = null;
     ensureCapacity(Containers.DEFAULT_EXPECTED_ELEMENTS);
   }
@@ -356,12 +558,101 @@ public class KTypeOpenHashSet<KType>
   @Override
   public void ensureCapacity(int expectedElements) {
     if (expectedElements > resizeAt || keys == null) {
+      finishRehash();
       final KType[] prevKeys = Intrinsics.<KType[]> cast(this.keys);
+      final int prevKeyMixer = this.keyMixer;
       allocateBuffers(minBufferSize(expectedElements, loadFactor));
       if (prevKeys != null && !isEmpty()) {
-        rehash(prevKeys);
+        final long start = System.nanoTime();
+        rehash(prevKeys, prevKeyMixer);
+        rehashed(start);
+      }
+    }
+  }
+
+  /**
+   * Returns statistics of this container's buffer: probe lengths of stored
+   * keys, sizes of slot clusters and the rehashing cost so far. This requires
+   * a full scan of the buffer (and completes a pending incremental rehash
+   * first); use for diagnostics only.
+   */
+  public HashContainerStats stats() {
+    finishRehash();
+
+    final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+    final int mask = this.mask;
+    final HashContainerStats.Collector collector = new HashContainerStats.Collector(mask + 1);
+
+    // Start right after an empty slot (there is always one) so that no
+    // cluster wraps around the end of the buffer.
+    int start = 0;
+    while (!Intrinsics.<KType> isEmpty(keys[start])) {
+      start++;
+    }
+
+    KType existing;
+    for (int i = 1; i <= mask + 1; i++) {
+      final int slot = (start + i) & mask;
+      if (Intrinsics.<KType> isEmpty(existing = keys[slot])) {
+        collector.empty();
+      } else {
+        collector.occupied((slot - hashKey(existing)) & mask);
       }
     }
+    return collector.build(rehashCount, rehashNanos);
+  }
+
+  /**
+   * Enables (or disables) incremental rehashing. When the buffer is full, a
+   * new (larger) buffer is allocated but keys are not moved at once: the
+   * previous buffer is kept and each subsequent modifying operation
+   * ({@link #add}, {@link #remove}, {@link #indexOf} and methods using them)
+   * migrates at least <code>slotsPerOperation</code> slots, so that no single
+   * operation pays for rehashing the entire set. Lookups, iterators and other
+   * read-only operations consult both buffers in the meantime (cursors of keys
+   * still in the previous buffer have an index of <code>-1</code>). Bulk
+   * removals, {@link #ensureCapacity}, {@link #stats()} and snapshots complete
+   * a pending rehash first (see {@link #finishRehash()}).
+   * 
+   * @param slotsPerOperation The minimum number of slots migrated per operation
+   * or zero to rehash at once (the default). The number is raised if needed,
+   * so that the migration completes before the new buffer fills up.
+   */
+  public void setIncrementalRehash(int slotsPerOperation) {
+    if (slotsPerOperation < 0) {
+      throw new IllegalArgumentException("Slots per operation must be >= 0: " + slotsPerOperation);
+    }
+    if (slotsPerOperation == 0) {
+      finishRehash();
+    }
+    this.rehashStep = slotsPerOperation;
+  }
+
+  /**
+   * Migrates all keys remaining in the previous buffer of a pending
+   * incremental rehash (if any).
+   * 
+   * @see #setIncrementalRehash(int)
+   */
+  public void finishRehash() {
+    if (rehashKeys != null) {
+      migrateSlots(rehashRemaining);
+    }
+  }
+
+  /**
+   * Enables (or disables) parallel rehashing of a large buffer. The previous
+   * buffer is split into chunks at empty slots (so that no cluster of keys spans
+   * two chunks) and the chunks are rehashed by tasks of the given pool. The key
+   * mixer of this set is kept when its buffer is rehashed in parallel: a key's
+   * slot in the new buffer is then its previous slot plus a multiple of the
+   * previous buffer's size, so chunks fill disjoint slots.
+   * 
+   * @param pool The pool to rehash buffers of at least {@value HashContainers#PARALLEL_REHASH_MIN_SLOTS}
+   * slots in, or <code>null</code> to rehash sequentially (the default).
+   */
+  public void setParallelRehash(ForkJoinPool pool) {
+    this.rehashPool = pool;
   }
 
   /**
@@ -385,6 +676,16 @@ public class KTypeOpenHashSet<KType>
         h += BitMixer.mix(existing);
       }
     }
+
+    if (rehashKeys != null) {
+      final KType[] fromKeys = Intrinsics.<KType[]> cast(this.rehashKeys);
+      for (int slot = rehashMask; slot >= 0; slot--) {
+        KType existing;
+        if (!Intrinsics.isEmpty(existing = fromKeys[slot])) {
+          h += BitMixer.mix(existing);
+        }
+      }
+    }
     return h;
   }
 
@@ -428,6 +729,9 @@ public class KTypeOpenHashSet<KType>
       /* #if ($templateOnly) */ @SuppressWarnings("unchecked") /* #end */
       KTypeOpenHashSet<KType> cloned = (KTypeOpenHashSet<KType>) super.clone();
       cloned.keys = keys.clone();
+      if (rehashKeys != null) {
+        cloned.rehashKeys = rehashKeys.clone();
+      }
       cloned.hasEmptyKey = cloned.hasEmptyKey;
       cloned.orderMixer = orderMixer.clone();
       return cloned;
@@ -449,10 +753,15 @@ public class KTypeOpenHashSet<KType>
    */
   protected final class EntryIterator extends AbstractIterator<KTypeCursor<KType>> {
     private final KTypeCursor<KType> cursor;
-    private final int max = mask + 1;
+    private final KType[] keys = Intrinsics.<KType[]> cast(KTypeOpenHashSet.this.keys);
+    private final KType[] fromKeys = Intrinsics.<KType[]> cast(rehashKeys);
+    private final int split;
+    private final int max;
     private int slot = -1;
 
     public EntryIterator() {
+      split = mask + 1;
+      max = allSlots();
       cursor = new KTypeCursor<KType>();
     }
 
@@ -460,17 +769,24 @@ public class KTypeOpenHashSet<KType>
     protected KTypeCursor<KType> fetch() {
       if (slot < max) {
         KType existing;
-        for (slot++; slot < max; slot++) {
-          if (!Intrinsics.isEmpty(existing = Intrinsics.<KType> cast(keys[slot]))) {
+        for (slot++; slot < split; slot++) {
+          if (!Intrinsics.isEmpty(existing = keys[slot])) {
             cursor.index = slot;
             cursor.value = existing;
             return cursor;
           }
         }
+        for (; slot < max; slot++) {
+          if (!Intrinsics.isEmpty(existing = fromKeys[slot - split])) {
+            cursor.index = -1;
+            cursor.value = existing;
+            return cursor;
+          }
+        }
       }
 
       if (slot == max && hasEmptyKey) {
-        cursor.index = slot;
+        cursor.index = split;
         cursor.value = Intrinsics.empty();
         slot++;
         return cursor;
@@ -480,6 +796,108 @@ public class KTypeOpenHashSet<KType>
     }
   }
 
+  /**
+   * Returns a spliterator over the keys of this set. The spliterator splits
+   * into halves of the slot range, so only the unsplit spliterator's size is
+   * exact (split sizes are estimated as halves).
+   */
+  public KTypeSpliterator<KType> elementSpliterator() {
+    return new EntrySpliterator(0, allSlots(), hasEmptyKey, size(),
+        KTypeSpliterator.DISTINCT | KTypeSpliterator.SIZED);
+  }
+
+  /**
+   * A spliterator implementation for {@link #elementSpliterator}.
+   * 
+   * @see #allSlots()
+   */
+  protected final class EntrySpliterator implements KTypeSpliterator<KType> {
+    private final KType[] keys = Intrinsics.<KType[]> cast(KTypeOpenHashSet.this.keys);
+    private final KType[] fromKeys = Intrinsics.<KType[]> cast(rehashKeys);
+    private final int split = mask + 1;
+    private int slot;
+    private final int max;
+    private boolean emptyKey;
+    private long estimate;
+    private int characteristics;
+
+    EntrySpliterator(int slot, int max, boolean emptyKey, long estimate, int characteristics) {
+      this.slot = slot;
+      this.max = max;
+      this.emptyKey = emptyKey;
+      this.estimate = estimate;
+      this.characteristics = characteristics;
+    }
+
+    @Override
+    public boolean tryAdvance(KTypeProcedure<? super KType> procedure) {
+      while (slot < max) {
+        final int slot = this.slot++;
+        final KType existing = slot < split ? keys[slot] : fromKeys[slot - split];
+        if (!Intrinsics.isEmpty(existing)) {
+          procedure.apply(existing);
+          return true;
+        }
+      }
+
+      if (emptyKey) {
+        emptyKey = false;
+        procedure.apply(Intrinsics.<KType> empty());
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public void forEachRemaining(KTypeProcedure<? super KType> procedure) {
+      final KType[] keys = this.keys;
+      for (int slot = this.slot, max = Math.min(this.max, split); slot < max; slot++) {
+        final KType existing = keys[slot];
+        if (!Intrinsics.isEmpty(existing)) {
+          procedure.apply(existing);
+        }
+      }
+      final KType[] fromKeys = this.fromKeys;
+      for (int slot = Math.max(this.slot, split), max = this.max; slot < max; slot++) {
+        final KType existing = fromKeys[slot - split];
+        if (!Intrinsics.isEmpty(existing)) {
+          procedure.apply(existing);
+        }
+      }
+      slot = max;
+
+      if (emptyKey) {
+        emptyKey = false;
+        procedure.apply(Intrinsics.<KType> empty());
+      }
+    }
+
+    @Override
+    public KTypeSpliterator<KType> trySplit() {
+      final int mid = (slot + max) >>> 1;
+      if (mid == slot) {
+        return null;
+      }
+
+      // The empty key (if any) stays with the suffix.
+      estimate >>>= 1;
+      characteristics &= ~(KTypeSpliterator.SIZED | KTypeSpliterator.SUBSIZED);
+      final KTypeSpliterator<KType> prefix = new EntrySpliterator(slot, mid, false, estimate, characteristics);
+      slot = mid;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+      return characteristics;
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -490,13 +908,23 @@ public class KTypeOpenHashSet<KType>
     }
 
     final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
-    for (int slot = 0, max = this.mask; slot <= max;) {
+    for (int slot = 0, max = this.mask; slot <= max; slot++) {
       KType existing;
       if (!Intrinsics.isEmpty(existing = keys[slot])) {
         procedure.apply(existing);
       }
     }
 
+    if (rehashKeys != null) {
+      final KType[] fromKeys = Intrinsics.<KType[]> cast(this.rehashKeys);
+      for (int slot = 0, max = this.rehashMask; slot <= max; slot++) {
+        KType existing;
+        if (!Intrinsics.isEmpty(existing = fromKeys[slot])) {
+          procedure.apply(existing);
+        }
+      }
+    }
+
     return procedure;
   }
 
@@ -512,11 +940,23 @@ public class KTypeOpenHashSet<KType>
     }
 
     final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
-    for (int slot = 0, max = this.mask; slot <= max;) {
+    for (int slot = 0, max = this.mask; slot <= max; slot++) {
       KType existing;
       if (!Intrinsics.isEmpty(existing = keys[slot])) {
         if (!predicate.apply(existing)) {
-          break;
+          return predicate;
+        }
+      }
+    }
+
+    if (rehashKeys != null) {
+      final KType[] fromKeys = Intrinsics.<KType[]> cast(this.rehashKeys);
+      for (int slot = 0, max = this.rehashMask; slot <= max; slot++) {
+        KType existing;
+        if (!Intrinsics.isEmpty(existing = fromKeys[slot])) {
+          if (!predicate.apply(existing)) {
+            break;
+          }
         }
       }
     }
@@ -524,6 +964,210 @@ public class KTypeOpenHashSet<KType>
     return predicate;
   }
 
+  /**
+   * Applies <code>procedure</code> to all keys of this set in parallel:
+   * chunks of slots are processed by tasks of <code>pool</code>. The procedure
+   * must be thread-safe and must not modify this set. There is no guarantee
+   * on the order of invocations.
+   */
+  public <T extends KTypeProcedure<? super KType>> T parallelForEach(ForkJoinPool pool, T procedure) {
+    if (hasEmptyKey) {
+      procedure.apply(Intrinsics.<KType> empty());
+    }
+
+    final int slots = allSlots();
+    final int chunks = parallelChunks(pool, slots);
+    final List<ForEachChunk> tasks = new ArrayList<ForEachChunk>(chunks);
+    for (int i = 0; i < chunks; i++) {
+      tasks.add(new ForEachChunk(procedure,
+          (int) ((long) slots * i / chunks), (int) ((long) slots * (i + 1) / chunks)));
+    }
+    invokeAll(pool, tasks);
+    return procedure;
+  }
+
+  /**
+   * Reduces all keys of this set in parallel: chunks of slots are
+   * processed by tasks of <code>pool</code>, each applying a separate accumulator
+   * created by <code>reducer</code>. Accumulators are then merged (in slot order)
+   * on the calling thread.
+   * 
+   * @return Returns the merged accumulator.
+   */
+  public <T extends KTypeProcedure<? super KType>> T parallelReduce(ForkJoinPool pool, Reducer<T> reducer) {
+    final int slots = allSlots();
+    final int chunks = parallelChunks(pool, slots);
+    final List<T> accumulators = new ArrayList<T>(chunks);
+    final List<ForEachChunk> tasks = new ArrayList<ForEachChunk>(chunks);
+    for (int i = 0; i < chunks; i++) {
+      final T accumulator = reducer.newAccumulator();
+      accumulators.add(accumulator);
+      tasks.add(new ForEachChunk(accumulator,
+          (int) ((long) slots * i / chunks), (int) ((long) slots * (i + 1) / chunks)));
+    }
+
+    if (hasEmptyKey) {
+      accumulators.get(0).apply(Intrinsics.<KType> empty());
+    }
+
+    invokeAll(pool, tasks);
+
+    T result = accumulators.get(0);
+    for (int i = 1; i < chunks; i++) {
+      result = reducer.merge(result, accumulators.get(i));
+    }
+    return result;
+  }
+
+  /**
+   * Removes all keys matching <code>predicate</code> in parallel. The slots are
+   * split into chunks at empty slots (so that no cluster of keys spans two chunks)
+   * and each chunk is processed by a task of <code>pool</code> in two phases: matching
+   * keys are removed first, then the remaining keys of each cluster are moved
+   * (in order) to the first free slot from their ideal slot, restoring the
+   * invariants of linear probing. The predicate must be thread-safe and must
+   * not modify this set.
+   * 
+   * @return Returns the number of removed keys.
+   */
+  public int parallelRemoveAll(ForkJoinPool pool, KTypePredicate<? super KType> predicate) {
+    finishRehash();
+
+    final int before = size();
+
+    if (hasEmptyKey) {
+      if (predicate.apply(Intrinsics.<KType> empty())) {
+        hasEmptyKey = false;
+      }
+    }
+
+    final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+    final int mask = this.mask;
+    int start = 0;
+    while (!Intrinsics.isEmpty(keys[start])) {
+      start++;
+    }
+    start = (start + 1) & mask;
+
+    final int[] ends = clusterAlignedChunks(keys, start, parallelChunks(pool, mask + 1));
+    final List<RemoveAllChunk> tasks = new ArrayList<RemoveAllChunk>(ends.length);
+    for (int i = 0, from = 0; i < ends.length; from = ends[i++]) {
+      tasks.add(new RemoveAllChunk(predicate, (start + from) & mask, ends[i] - from));
+    }
+
+    try {
+      invokeAll(pool, tasks);
+    } finally {
+      // Chunks are consistent even if the predicate throws an exception.
+      for (RemoveAllChunk task : tasks) {
+        assigned -= task.removed;
+      }
+    }
+
+    return before - size();
+  }
+
+  /**
+   * Returns the number of slots visited by iterators, spliterators and parallel
+   * operations: the slots of the current buffer followed by those of the previous
+   * buffer of a pending incremental rehash.
+   */
+  private int allSlots() {
+    return mask + 1 + (rehashKeys != null ? rehashMask + 1 : 0);
+  }
+
+  /**
+   * Applies a procedure to a range of slots in {@link #parallelForEach} and
+   * {@link #parallelReduce}.
+   * 
+   * @see #allSlots()
+   */
+  private final class ForEachChunk extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    final KTypeProcedure<? super KType> procedure;
+    private final int from;
+    private final int to;
+
+    ForEachChunk(KTypeProcedure<? super KType> procedure, int from, int to) {
+      this.procedure = procedure;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      final KType[] keys = Intrinsics.<KType[]> cast(KTypeOpenHashSet.this.keys);
+      final int split = mask + 1;
+      for (int slot = from, max = Math.min(to, split); slot < max; slot++) {
+        final KType existing = keys[slot];
+        if (!Intrinsics.isEmpty(existing)) {
+          procedure.apply(existing);
+        }
+      }
+
+      final KType[] fromKeys = Intrinsics.<KType[]> cast(rehashKeys);
+      for (int slot = Math.max(from, split); slot < to; slot++) {
+        final KType existing = fromKeys[slot - split];
+        if (!Intrinsics.isEmpty(existing)) {
+          procedure.apply(existing);
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes matching keys from a (cluster-aligned) range of slots in
+   * {@link #parallelRemoveAll}.
+   */
+  private final class RemoveAllChunk extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final KTypePredicate<? super KType> predicate;
+    private final int start;
+    private final int length;
+    int removed;
+
+    RemoveAllChunk(KTypePredicate<? super KType> predicate, int start, int length) {
+      this.predicate = predicate;
+      this.start = start;
+      this.length = length;
+    }
+
+    @Override
+    protected void compute() {
+      final KType[] keys = Intrinsics.<KType[]> cast(KTypeOpenHashSet.this.keys);
+      final int mask = KTypeOpenHashSet.this.mask;
+      try {
+        for (int i = 0; i < length; i++) {
+          final int slot = (start + i) & mask;
+          final KType existing = keys[slot];
+          if (!Intrinsics.isEmpty(existing) && predicate.apply(existing)) {
+            keys[slot] = Intrinsics.<KType> empty();
+            removed++;
+          }
+        }
+      } finally {
+        if (removed > 0) {
+          for (int i = 0; i < length; i++) {
+            final int slot = (start + i) & mask;
+            final KType existing = keys[slot];
+            if (!Intrinsics.isEmpty(existing)) {
+              int target = hashKey(existing) & mask;
+              while (target != slot && !Intrinsics.isEmpty(keys[target])) {
+                target = (target + 1) & mask;
+              }
+              if (target != slot) {
+                keys[target] = existing;
+                keys[slot] = Intrinsics.<KType> empty();
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
   /**
    * Create a set from a variable number of arguments or an array of
    * <code>KType</code>. The elements are copied from the argument to the
@@ -579,6 +1223,10 @@ public class KTypeOpenHashSet<KType>
    *         or a negative value if the key did not exist.
    */
   public int indexOf(KType key) {
+    if (rehashKeys != null) {
+      continueRehash(key);
+    }
+
     final int mask = this.mask;
     if (Intrinsics.<KType> isEmpty(key)) {
       return hasEmptyKey ? mask + 1 : ~(mask + 1);
@@ -719,6 +1367,128 @@ public class KTypeOpenHashSet<KType>
     }
   }
 
+  /**
+   * Rehashes from the previous buffer (hashed with <code>fromKeyMixer</code>) to
+   * the current buffer, in parallel if enabled and the previous buffer is large
+   * enough.
+   */
+  private void rehash(KType[] fromKeys, int fromKeyMixer) {
+    if (rehashPool != null && fromKeys.length - 1 >= parallelRehashMinSlots) {
+      final int fromMask = fromKeys.length - 2;
+      int emptySlot = 0;
+      while (emptySlot <= fromMask && !Intrinsics.isEmpty(fromKeys[emptySlot])) {
+        emptySlot++;
+      }
+
+      // Keep the key mixer either way so that it does not depend on the buffer's
+      // fill. A full buffer (with the pending key) has no chunk boundaries.
+      this.keyMixer = fromKeyMixer;
+      if (emptySlot <= fromMask) {
+        parallelRehash(fromKeys, (emptySlot + 1) & fromMask);
+        return;
+      }
+    }
+    rehash(fromKeys);
+  }
+
+  /**
+   * Splits the previous buffer into chunks ending at empty slots, starting at
+   * <code>start</code> (the slot following an empty one), and rehashes the chunks in
+   * {@link #rehashPool}. A chunk only fills slots of the current buffer whose index
+   * modulo the previous buffer's size falls into the chunk; keys that would probe past
+   * these slots are inserted after all chunks are done.
+   */
+  private void parallelRehash(KType[] fromKeys, int start) {
+    final int fromMask = fromKeys.length - 2;
+
+    final int[] ends = clusterAlignedChunks(fromKeys, start, parallelChunks(rehashPool, fromMask + 1));
+    final List<RehashChunk> tasks = new ArrayList<RehashChunk>(ends.length);
+    for (int i = 0, from = 0; i < ends.length; from = ends[i++]) {
+      tasks.add(new RehashChunk(fromKeys, (start + from) & fromMask, ends[i] - from));
+    }
+
+    invokeAll(rehashPool, tasks);
+
+    final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+    final int mask = this.mask;
+    for (RehashChunk task : tasks) {
+      final IntArrayList deferred = task.deferred;
+      for (int i = 0; i < deferred.size(); i++) {
+        final int from = deferred.get(i);
+        int slot = hashKey(fromKeys[from]) & mask;
+        while (!Intrinsics.isEmpty(keys[slot])) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = fromKeys[from];
+      }
+    }
+  }
+
+  /**
+   * Splits the slots of <code>keys</code>, starting at <code>start</code> (the slot
+   * following an empty one), into at most <code>chunks</code> ranges that end at
+   * empty slots, so that no cluster of keys spans two ranges.
+   * 
+   * @return Returns the end offsets of consecutive ranges, relative to <code>start</code>.
+   */
+  private int[] clusterAlignedChunks(KType[] keys, int start, int chunks) {
+    final int mask = keys.length - 2;
+    final int slots = mask + 1;
+    final IntArrayList ends = new IntArrayList(chunks);
+    for (int i = 1, end = 0; i <= chunks && end < slots; i++) {
+      end = Math.max(end + 1, (int) ((long) slots * i / chunks));
+      // Move the end to the next empty slot (the last slot of all ranges is empty).
+      while (end < slots && !Intrinsics.isEmpty(keys[(start + end - 1) & mask])) {
+        end++;
+      }
+      ends.add(end);
+    }
+    return ends.toArray();
+  }
+
+  /**
+   * Rehashes a chunk of the previous buffer in {@link #parallelRehash}.
+   */
+  private final class RehashChunk extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final KType[] fromKeys;
+    private final int start;
+    private final int length;
+    final IntArrayList deferred = new IntArrayList(0);
+
+    RehashChunk(KType[] fromKeys, int start, int length) {
+      this.fromKeys = fromKeys;
+      this.start = start;
+      this.length = length;
+    }
+
+    @Override
+    protected void compute() {
+      final KType[] keys = Intrinsics.<KType[]> cast(KTypeOpenHashSet.this.keys);
+      final int mask = KTypeOpenHashSet.this.mask;
+      final int fromMask = fromKeys.length - 2;
+      for (int i = 0; i < length; i++) {
+        final int from = (start + i) & fromMask;
+        final KType existing = fromKeys[from];
+        if (!Intrinsics.isEmpty(existing)) {
+          int slot = hashKey(existing) & mask;
+          while (true) {
+            if (((slot - start) & fromMask) >= length) {
+              deferred.add(from);
+              break;
+            }
+            if (Intrinsics.isEmpty(keys[slot])) {
+              keys[slot] = existing;
+              break;
+            }
+            slot = (slot + 1) & mask;
+          }
+        }
+      }
+    }
+  }
+
   /**
    * Allocate new internal buffers. This method attempts to allocate
    * and assign internal buffers atomically (either allocations succeed or not).
@@ -762,8 +1532,23 @@ public class KTypeOpenHashSet<KType>
            && Intrinsics.isEmpty(Intrinsics.<KType> cast(keys[slot]))
            && !Intrinsics.isEmpty(pendingKey);
 
+    if (rehashKeys != null) {
+      // The buffer filled up before a pending incremental rehash completed.
+      finishRehash();
+      slot = hashKey(pendingKey) & mask;
+      while (!Intrinsics.isEmpty(Intrinsics.<KType> cast(keys[slot]))) {
+        slot = (slot + 1) & mask;
+      }
+    }
+
+    if (rehashStep > 0) {
+      startRehash(slot, pendingKey);
+      return;
+    }
+
     // Try to allocate new buffers first. If we OOM, we leave in a consistent state.
     final KType[] prevKeys = Intrinsics.<KType[]> cast(this.keys);
+    final int prevKeyMixer = this.keyMixer;
     allocateBuffers(nextBufferSize(mask + 1, size(), loadFactor));
     assert this.keys.length > prevKeys.length;
 
@@ -772,7 +1557,131 @@ public class KTypeOpenHashSet<KType>
     prevKeys[slot] = pendingKey;
 
     // Rehash old keys, including the pending key.
-    rehash(prevKeys);
+    final long start = System.nanoTime();
+    rehash(prevKeys, prevKeyMixer);
+    rehashed(start);
+  }
+
+  /**
+   * Updates rehashing statistics after a rehash started at
+   * <code>startNanos</code> (as returned by {@link System#nanoTime()}).
+   */
+  protected void rehashed(long startNanos) {
+    rehashCount++;
+    rehashNanos += System.nanoTime() - startNanos;
+  }
+
+  /**
+   * Allocates a new buffer and starts an incremental rehash from the current
+   * buffer (which is not modified, except for migrated keys being cleared).
+   * The pending key is inserted into the new buffer.
+   * 
+   * @param slot An empty slot in the current buffer. Migration starts right
+   * after it, so that no cluster wraps around the starting point.
+   */
+  protected void startRehash(int slot, KType pendingKey) {
+    final long start = System.nanoTime();
+    final KType[] prevKeys = Intrinsics.<KType[]> cast(this.keys);
+    final int prevMask = this.mask;
+    final int prevKeyMixer = this.keyMixer;
+    allocateBuffers(nextBufferSize(mask + 1, size(), loadFactor));
+
+    // Keys of both buffers must hash identically.
+    this.keyMixer = prevKeyMixer;
+    keys[hashKey(pendingKey) & mask] = pendingKey;
+
+    this.rehashKeys = prevKeys;
+    this.rehashMask = prevMask;
+    this.rehashSlot = (slot + 1) & prevMask;
+    this.rehashRemaining = prevMask + 1;
+    final int room = Math.max(1, resizeAt - assigned - 1);
+    this.rehashBudget = Math.max(rehashStep, (rehashRemaining + room - 1) / room);
+    rehashed(start);
+  }
+
+  /**
+   * Migrates a step of a pending incremental rehash and, if <code>key</code> is
+   * still in the previous buffer, its entire cluster (so that it can be
+   * looked up and modified in the current buffer only).
+   */
+  protected void continueRehash(KType key) {
+    migrateSlots(rehashBudget);
+    if (rehashKeys != null && !Intrinsics.isEmpty(key)) {
+      final int slot = rehashIndexOf(key);
+      if (slot >= 0) {
+        final KType[] fromKeys = Intrinsics.<KType[]> cast(this.rehashKeys);
+        final int fromMask = this.rehashMask;
+        int from = slot;
+        while (!Intrinsics.isEmpty(fromKeys[(from - 1) & fromMask])) {
+          from = (from - 1) & fromMask;
+        }
+        for (; !Intrinsics.isEmpty(fromKeys[from]); from = (from + 1) & fromMask) {
+          migrateSlot(from);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the slot of <code>key</code> in {@link #rehashKeys}, or
+   * <code>-1</code> if it is not there.
+   */
+  protected int rehashIndexOf(KType key) {
+    final KType[] fromKeys = Intrinsics.<KType[]> cast(this.rehashKeys);
+    final int fromMask = this.rehashMask;
+    int slot = hashKey(key) & fromMask;
+
+    KType existing;
+    while (!Intrinsics.isEmpty(existing = fromKeys[slot])) {
+      if (Intrinsics.equals(this, key, existing)) {
+        return slot;
+      }
+      slot = (slot + 1) & fromMask;
+    }
+    return -1;
+  }
+
+  /**
+   * Migrates at least <code>count</code> slots of {@link #rehashKeys}, then up
+   * to the end of the current cluster.
+   */
+  private void migrateSlots(int count) {
+    final KType[] fromKeys = Intrinsics.<KType[]> cast(this.rehashKeys);
+    final int fromMask = this.rehashMask;
+    int slot = this.rehashSlot;
+    int remaining = this.rehashRemaining;
+    while (remaining > 0 && (count-- > 0 || !Intrinsics.isEmpty(fromKeys[slot]))) {
+      if (!Intrinsics.isEmpty(fromKeys[slot])) {
+        migrateSlot(slot);
+      }
+      slot = (slot + 1) & fromMask;
+      remaining--;
+    }
+
+    if (remaining == 0) {
+      this.rehashKeys = null;
+    } else {
+      this.rehashSlot = slot;
+      this.rehashRemaining = remaining;
+    }
+  }
+
+  /**
+   * Moves the key at <code>fromSlot</code> of the previous buffer to the
+   * current buffer.
+   */
+  private void migrateSlot(int fromSlot) {
+    final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+    final KType[] fromKeys = Intrinsics.<KType[]> cast(this.rehashKeys);
+    final int mask = this.mask;
+
+    final KType existing = fromKeys[fromSlot];
+    int slot = hashKey(existing) & mask;
+    while (!Intrinsics.isEmpty(keys[slot])) {
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = existing;
+    fromKeys[fromSlot] = Intrinsics.<KType> empty();
   }
 
   /**
@@ -0,0 +1,424 @@
+package com.carrotsearch.hppc;
+
+import java.util.concurrent.ForkJoinPool;
+
+import com.carrotsearch.hppc.predicates.*;
+
+import static com.carrotsearch.hppc.HashContainers.*;
+import static com.carrotsearch.hppc.Containers.*;
+
+/**
+ * A hash set of <code>KType</code>s, implemented using open addressing with
+ * Robin Hood linear probing for collision resolution.
+ *
+ * <p>On insertion, a key that is further away from its ideal slot takes over the
+ * slot of a key that is closer to its own ideal slot. This keeps the variance of
+ * probe sequence lengths low and lets lookups of absent keys terminate as soon as
+ * they reach a key that is closer to its ideal slot than the probed key would be.
+ * Removals shift subsequent keys of the cluster back by one slot.</p>
+ *
+ * <p>The benefits show at high load factors, where lookups of absent keys in
+ * {@link KTypeOpenHashSet} have to scan entire clusters.</p>
+ *
+ * <p>The probe distance of each key is kept in an additional byte per slot, so
+ * that probing does not rehash the keys it passes.</p>
+ */
+/*! #if ($TemplateOptions.KTypeGeneric) @SuppressWarnings("unchecked") #end !*/
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeRobinHoodHashSet<KType>
+  extends KTypeOpenHashSet<KType>
+{
+  /**
+   * The largest probe distance kept in {@link #distances}. The distances of keys
+   * further away from their ideal slot are recomputed from their hash.
+   */
+  private final static int MAX_STORED_DISTANCE = 0xff;
+
+  /**
+   * The probe distance of the key in each slot (the number of slots between
+   * its ideal slot and the slot it is stored in), as an unsigned byte saturated
+   * at {@link #MAX_STORED_DISTANCE}. Undefined for empty slots.
+   */
+  protected byte[] distances;
+
+  /**
+   * New instance with sane defaults.
+   */
+  public KTypeRobinHoodHashSet() {
+    this(DEFAULT_EXPECTED_ELEMENTS, DEFAULT_LOAD_FACTOR);
+  }
+
+  /**
+   * New instance with sane defaults.
+   */
+  public KTypeRobinHoodHashSet(int expectedElements) {
+    this(expectedElements, DEFAULT_LOAD_FACTOR);
+  }
+
+  /**
+   * New instance with sane defaults.
+   */
+  public KTypeRobinHoodHashSet(int expectedElements, double loadFactor) {
+    this(expectedElements, loadFactor, HashOrderMixing.randomized());
+  }
+
+  /**
+   * New instance with the provided defaults.
+   *
+   * @see KTypeOpenHashSet#KTypeOpenHashSet(int, double, HashOrderMixingStrategy)
+   */
+  public KTypeRobinHoodHashSet(int expectedElements, double loadFactor, HashOrderMixingStrategy orderMixer) {
+    super(expectedElements, loadFactor, orderMixer);
+  }
+
+  /**
+   * New instance copying elements from another {@link KTypeContainer}.
+   */
+  public KTypeRobinHoodHashSet(KTypeContainer<? extends KType> container) {
+    this(container.size());
+    addAll(container);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean add(KType key) {
+    if (Intrinsics.isEmpty(key)) {
+      assert Intrinsics.isEmpty(keys[mask + 1]);
+      boolean hadEmptyKey = hasEmptyKey;
+      hasEmptyKey = true;
+      return !hadEmptyKey;
+    } else {
+      final KType [] keys = Intrinsics.<KType[]> cast(this.keys);
+      final int mask = this.mask;
+      int slot = hashKey(key) & mask;
+      int distance = 0;
+
+      KType existing;
+      while (!Intrinsics.isEmpty(existing = keys[slot])) {
+        if (Intrinsics.equals(this, key, existing)) {
+          return false;
+        }
+        if (distance(slot, existing) < distance) {
+          break;
+        }
+        slot = (slot + 1) & mask;
+        distance++;
+      }
+
+      if (assigned == resizeAt) {
+        allocateThenInsertThenRehash(slot, key);
+      } else {
+        insertAt(slot, distance, key);
+      }
+
+      assigned++;
+      return true;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean remove(KType key) {
+    if (Intrinsics.isEmpty(key)) {
+      boolean hadEmptyKey = hasEmptyKey;
+      hasEmptyKey = false;
+      return hadEmptyKey;
+    } else {
+      int slot = slotOf(key);
+      if (slot >= 0) {
+        shiftConflictingKeys(slot);
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean contains(KType key) {
+    if (Intrinsics.isEmpty(key)) {
+      return hasEmptyKey;
+    } else {
+      return slotOf(key) >= 0;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>For keys that do not exist, the returned index encodes the slot at which
+   * the key would be inserted. This slot may be occupied by a key closer to its
+   * ideal slot, which {@link #indexInsert} will move further.</p>
+   */
+  @Override
+  public int indexOf(KType key) {
+    final int mask = this.mask;
+    if (Intrinsics.<KType> isEmpty(key)) {
+      return hasEmptyKey ? mask + 1 : ~(mask + 1);
+    } else {
+      return slotOf(key);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void indexInsert(int index, KType key) {
+    assert index < 0 : "The index must not point at an existing key.";
+
+    index = ~index;
+    if (Intrinsics.isEmpty(key)) {
+      assert index == mask + 1;
+      assert Intrinsics.isEmpty(keys[index]);
+      hasEmptyKey = true;
+    } else {
+      if (assigned == resizeAt) {
+        allocateThenInsertThenRehash(index, key);
+      } else {
+        insertAt(index, (index - hashKey(key)) & mask, key);
+      }
+
+      assigned++;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public KTypeRobinHoodHashSet<KType> clone() {
+    final KTypeRobinHoodHashSet<KType> cloned = (KTypeRobinHoodHashSet<KType>) super.clone();
+    cloned.distances = distances.clone();
+    return cloned;
+  }
+
+  /**
+   * Create a set from a variable number of arguments or an array of
+   * <code>KType</code>. The elements are copied from the argument to the
+   * internal buffer.
+   */
+  /* #if ($TemplateOptions.KTypeGeneric) */
+  @SafeVarargs
+  /* #end */
+  public static <KType> KTypeRobinHoodHashSet<KType> from(KType... elements) {
+    final KTypeRobinHoodHashSet<KType> set = new KTypeRobinHoodHashSet<KType>(elements.length);
+    set.addAll(elements);
+    return set;
+  }
+
+  /**
+   * Returns the slot of a non-empty key or, if the key is not present, a negative
+   * value encoding the slot at which the key should be inserted.
+   */
+  private int slotOf(KType key) {
+    assert !Intrinsics.isEmpty(key);
+
+    final KType [] keys = Intrinsics.<KType[]> cast(this.keys);
+    final int mask = this.mask;
+    int slot = hashKey(key) & mask;
+    int distance = 0;
+
+    KType existing;
+    while (!Intrinsics.isEmpty(existing = keys[slot])) {
+      if (Intrinsics.equals(this, key, existing)) {
+        return slot;
+      }
+      // The key would have displaced any key closer to its ideal slot.
+      if (distance(slot, existing) < distance) {
+        break;
+      }
+      slot = (slot + 1) & mask;
+      distance++;
+    }
+
+    return ~slot;
+  }
+
+  /**
+   * Place a new key at <code>slot</code>, <code>distance</code> slots away from its
+   * ideal slot. Any key at that slot (and subsequent ones) is moved further if it is
+   * closer to its own ideal slot than the key being placed.
+   */
+  private void insertAt(int slot, int distance, KType key) {
+    assert !Intrinsics.isEmpty(key);
+
+    final KType [] keys = Intrinsics.<KType[]> cast(this.keys);
+    final byte[] distances = this.distances;
+    final int mask = this.mask;
+
+    KType existing;
+    while (!Intrinsics.isEmpty(existing = keys[slot])) {
+      final int existingDistance = distance(slot, existing);
+      if (existingDistance < distance) {
+        keys[slot] = key;
+        distances[slot] = storedDistance(distance);
+        key = existing;
+        distance = existingDistance;
+      }
+      slot = (slot + 1) & mask;
+      distance++;
+    }
+
+    keys[slot] = key;
+    distances[slot] = storedDistance(distance);
+  }
+
+  /**
+   * Returns the probe distance of <code>existing</code>, the key stored at
+   * <code>slot</code>.
+   */
+  private int distance(int slot, KType existing) {
+    final int distance = distances[slot] & 0xff;
+    return distance < MAX_STORED_DISTANCE ? distance : (slot - hashKey(existing)) & mask;
+  }
+
+  /**
+   * Returns the value kept in {@link #distances} for a probe distance.
+   */
+  private static byte storedDistance(int distance) {
+    return (byte) Math.min(distance, MAX_STORED_DISTANCE);
+  }
+
+  /**
+   * Recomputes the probe distances of all keys.
+   */
+  private void updateDistances() {
+    final KType [] keys = Intrinsics.<KType[]> cast(this.keys);
+    final int mask = this.mask;
+
+    KType existing;
+    for (int slot = 0; slot <= mask; slot++) {
+      if (!Intrinsics.isEmpty(existing = keys[slot])) {
+        distances[slot] = storedDistance((slot - hashKey(existing)) & mask);
+      }
+    }
+  }
+
+  /**
+   * Accepted for compatibility but ignored: keys migrated into new buffers a
+   * few slots at a time would not be ordered by their probe distance, so this
+   * set always rehashes all keys at once.
+   */
+  @Override
+  public void setIncrementalRehash(int slotsPerOperation) {
+    if (slotsPerOperation < 0) {
+      throw new IllegalArgumentException("Slots per operation must be >= 0: " + slotsPerOperation);
+    }
+  }
+
+  /**
+   * Accepted for compatibility but ignored: chunks of keys rehashed
+   * independently would not be ordered by their probe distance, so this set
+   * always rehashes sequentially.
+   */
+  @Override
+  public void setParallelRehash(ForkJoinPool pool) {
+    // Rehash sequentially.
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Keys are moved without going through the Robin Hood insertion, so the
+   * probe distances of all keys are recomputed afterwards.</p>
+   */
+  @Override
+  public int parallelRemoveAll(ForkJoinPool pool, KTypePredicate<? super KType> predicate) {
+    try {
+      return super.parallelRemoveAll(pool, predicate);
+    } finally {
+      updateDistances();
+    }
+  }
+
+  /**
+   * Rehash from old buffers to new buffers.
+   */
+  @Override
+  protected void rehash(KType[] fromKeys) {
+    assert HashContainers.checkPowerOfTwo(fromKeys.length - 1);
+
+    final int mask = this.mask;
+    KType existing;
+    for (int i = fromKeys.length - 1; --i >= 0;) {
+      if (!Intrinsics.isEmpty(existing = fromKeys[i])) {
+        insertAt(hashKey(existing) & mask, 0, existing);
+      }
+    }
+  }
+
+  /**
+   * Allocates the probe distances along with the other buffers.
+   */
+  @Override
+  protected void allocateBuffers(int arraySize) {
+    final byte[] newDistances;
+    try {
+      newDistances = new byte [arraySize];
+    } catch (OutOfMemoryError e) {
+      throw new BufferAllocationException(
+          "Not enough memory to allocate buffers for rehashing: %,d -> %,d",
+          e,
+          this.keys == null ? 0 : size(),
+          arraySize);
+    }
+
+    super.allocateBuffers(arraySize);
+    this.distances = newDistances;
+  }
+
+  /**
+   * This method is invoked when there is a new key to be inserted into
+   * the buffer but there is not enough empty slots to do so.
+   *
+   * New buffers are allocated. If this succeeds, we rehash all keys from the
+   * previous buffer and insert the pending key into the new buffer (the pending
+   * key's slot in the old buffer may be taken by another key).
+   */
+  @Override
+  protected void allocateThenInsertThenRehash(int slot, KType pendingKey) {
+    assert assigned == resizeAt
+           && !Intrinsics.isEmpty(pendingKey);
+
+    // Try to allocate new buffers first. If we OOM, we leave in a consistent state.
+    final KType[] prevKeys = Intrinsics.<KType[]> cast(this.keys);
+    allocateBuffers(nextBufferSize(mask + 1, size(), loadFactor));
+    assert this.keys.length > prevKeys.length;
+
+    final long start = System.nanoTime();
+    rehash(prevKeys);
+    rehashed(start);
+    insertAt(hashKey(pendingKey) & mask, 0, pendingKey);
+  }
+
+  /**
+   * Shift the keys following the removed <code>gapSlot</code> one slot back,
+   * until an empty slot or a key at its ideal slot is found.
+   */
+  @Override
+  protected void shiftConflictingKeys(int gapSlot) {
+    final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+    final byte[] distances = this.distances;
+    final int mask = this.mask;
+
+    int slot = (gapSlot + 1) & mask;
+    KType existing;
+    while (!Intrinsics.isEmpty(existing = keys[slot]) && distances[slot] != 0) {
+      keys[gapSlot] = existing;
+      distances[gapSlot] = storedDistance(distance(slot, existing) - 1);
+      gapSlot = slot;
+      slot = (slot + 1) & mask;
+    }
+
+    // Mark the last shifted slot as empty.
+    keys[gapSlot] = Intrinsics.empty();
+    assigned--;
+  }
+}
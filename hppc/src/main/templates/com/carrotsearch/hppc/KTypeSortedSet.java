@@ -0,0 +1,615 @@
+package com.carrotsearch.hppc;
+
+import java.util.*;
+
+import com.carrotsearch.hppc.cursors.*;
+import com.carrotsearch.hppc.predicates.*;
+import com.carrotsearch.hppc.procedures.*;
+
+/**
+ * A set of <code>KType</code>s sorted in their natural order or the order of a
+ * {@link KTypeComparator}.
+ *
+ * <p>The set is a B+-tree, like the sorted maps without values: sorted leaves
+ * of at most 128 keys under internal nodes of at most 128 children. Indexes
+ * encode a leaf and a position in the leaf and are not ordered like keys (see
+ * {@link #nextIndex(int)}). Besides the {@link KTypeSet} API, it
+ * supports ordered navigation ({@link #floor}, {@link #ceiling}, {@link #lower},
+ * {@link #higher} and their index variants), range traversal
+ * ({@link #subSet}) and bulk loading of sorted input ({@link #bulkLoad},
+ * {@link #fromSorted}).</p>
+ */
+/*! #if ($TemplateOptions.KTypeGeneric) @SuppressWarnings("unchecked") #end !*/
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeSortedSet<KType>
+  extends AbstractKTypeCollection<KType>
+  implements KTypeLookupContainer<KType>,
+             KTypeSet<KType>,
+             Cloneable
+{
+  /**
+   * The keys.
+   */
+  KTypeSortedTree<KType> tree;
+
+  /**
+   * New instance in the natural order of keys.
+   */
+  public KTypeSortedSet() {
+    this((KTypeComparator<? super KType>) null);
+  }
+
+  /**
+   * New instance in the order of keys defined by <code>comparator</code> (or
+   * their natural order, if <code>null</code>).
+   */
+  public KTypeSortedSet(KTypeComparator<? super KType> comparator) {
+    this(comparator, KTypeSortedTree.MAX_LEAF_SIZE, KTypeSortedTree.MAX_NODE_SIZE);
+  }
+
+  /**
+   * New instance with the given maximum leaf and node sizes of the tree.
+   */
+  KTypeSortedSet(KTypeComparator<? super KType> comparator, int maxLeafSize, int maxNodeSize) {
+    this.tree = new KTypeSortedTree<KType>(comparator, maxLeafSize, maxNodeSize);
+  }
+
+  /**
+   * New instance copying elements from another {@link KTypeContainer}.
+   */
+  public KTypeSortedSet(KTypeContainer<? extends KType> container) {
+    this();
+    addAll(container);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean add(KType key) {
+    final int index = indexOf(key);
+    if (index >= 0) {
+      return false;
+    } else {
+      indexInsert(index, key);
+      return true;
+    }
+  }
+
+  /**
+   * Adds all elements from the given list (vararg) to this set.
+   *
+   * @return Returns the number of elements actually added as a result of this
+   *         call (not previously present in the set).
+   */
+  /* #if ($TemplateOptions.KTypeGeneric) */
+  @SafeVarargs
+  /* #end */
+  public final int addAll(KType... elements) {
+    int count = 0;
+    for (KType e : elements) {
+      if (add(e)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Adds all elements from the given {@link KTypeContainer} to this set.
+   *
+   * @return Returns the number of elements actually added as a result of this
+   *         call (not previously present in the set).
+   */
+  public int addAll(KTypeContainer<? extends KType> container) {
+    return addAll((Iterable<? extends KTypeCursor<? extends KType>>) container);
+  }
+
+  /**
+   * Adds all elements from the given iterable to this set.
+   *
+   * @return Returns the number of elements actually added as a result of this
+   *         call (not previously present in the set).
+   */
+  public int addAll(Iterable<? extends KTypeCursor<? extends KType>> iterable) {
+    int count = 0;
+    for (KTypeCursor<? extends KType> cursor : iterable) {
+      if (add(cursor.value)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * An alias for the (preferred) {@link #removeAll}.
+   */
+  public boolean remove(KType key) {
+    final int index = indexOf(key);
+    if (index >= 0) {
+      indexRemove(index);
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int removeAll(KType key) {
+    return remove(key) ? 1 : 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int removeAll(KTypePredicate<? super KType> predicate) {
+    final KTypeSortedTree<KType> tree = this.tree;
+    final int before = tree.size;
+    try {
+      for (int leaf = tree.firstLeaf; leaf >= 0; leaf = tree.nextLeaves[leaf]) {
+        final KType[] keys = Intrinsics.<KType[]> cast(tree.leafKeys[leaf]);
+        final int leafSize = tree.leafSizes[leaf];
+        int to = 0;
+        int from = 0;
+        try {
+          for (; from < leafSize; from++) {
+            if (predicate.apply(keys[from])) {
+              continue;
+            }
+            if (to != from) {
+              keys[to] = keys[from];
+            }
+            to++;
+          }
+        } finally {
+          // Keep the leaf in a consistent state, even if the predicate throws an exception.
+          for (; from < leafSize; from++, to++) {
+            keys[to] = keys[from];
+          }
+          clearRange(keys, to, leafSize);
+          tree.leafSizes[leaf] = to;
+          tree.size -= leafSize - to;
+        }
+      }
+    } finally {
+      tree.compact();
+    }
+    return before - tree.size;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean contains(KType key) {
+    return indexOf(key) >= 0;
+  }
+
+  /**
+   * @return Returns the index of <code>key</code> if it is in the set or a
+   * negative value encoding its insertion point otherwise (see
+   * {@link #indexInsert}).
+   */
+  public int indexOf(KType key) {
+    return tree.indexOf(key);
+  }
+
+  /**
+   * @return Returns <code>true</code> if the index (returned from
+   * {@link #indexOf}) points at an existing key.
+   */
+  public boolean indexExists(int index) {
+    assert index < 0 || tree.checkIndex(index);
+
+    return index >= 0;
+  }
+
+  /**
+   * @param index The index of an existing key.
+   * @return Returns the key at the given index.
+   */
+  public KType indexGet(int index) {
+    return tree.key(index);
+  }
+
+  /**
+   * Inserts a key at a position returned (negated) from {@link #indexOf}.
+   *
+   * @param index The (negative) index returned from {@link #indexOf} for
+   *        <code>key</code>, with no modifications of the set in between.
+   */
+  public void indexInsert(int index, KType key) {
+    tree.insert(index, key);
+  }
+
+  /**
+   * Removes the key at the given index.
+   *
+   * @param index The index of an existing key.
+   * @return Returns the removed key.
+   */
+  public KType indexRemove(int index) {
+    final KType previousKey = tree.key(index);
+    tree.remove(index);
+    return previousKey;
+  }
+
+  /**
+   * @return Returns the index of the smallest key or <code>-1</code> if the set is
+   * empty.
+   */
+  public int firstIndex() {
+    return tree.firstIndex();
+  }
+
+  /**
+   * @return Returns the index of the largest key or <code>-1</code> if the set is
+   * empty.
+   */
+  public int lastIndex() {
+    return tree.lastIndex();
+  }
+
+  /**
+   * @param index The index of an existing key.
+   * @return Returns the index of the following key or <code>-1</code> if
+   * <code>index</code> is the last one.
+   */
+  public int nextIndex(int index) {
+    return tree.nextIndex(index);
+  }
+
+  /**
+   * @param index The index of an existing key.
+   * @return Returns the index of the preceding key or <code>-1</code> if
+   * <code>index</code> is the first one.
+   */
+  public int previousIndex(int index) {
+    return tree.previousIndex(index);
+  }
+
+  /**
+   * @return Returns the index of the greatest key less than or equal to
+   * <code>key</code> or <code>-1</code> if there is no such key.
+   */
+  public int floorIndex(KType key) {
+    return tree.floorIndex(key);
+  }
+
+  /**
+   * @return Returns the index of the least key greater than or equal to
+   * <code>key</code> or <code>-1</code> if there is no such key.
+   */
+  public int ceilingIndex(KType key) {
+    return tree.ceilingIndex(key);
+  }
+
+  /**
+   * @return Returns the index of the greatest key strictly less than
+   * <code>key</code> or <code>-1</code> if there is no such key.
+   */
+  public int lowerIndex(KType key) {
+    return tree.lowerIndex(key);
+  }
+
+  /**
+   * @return Returns the index of the least key strictly greater than
+   * <code>key</code> or <code>-1</code> if there is no such key.
+   */
+  public int higherIndex(KType key) {
+    return tree.higherIndex(key);
+  }
+
+  /**
+   * @return Returns the smallest key. The set must not be empty.
+   */
+  public KType first() {
+    assert !isEmpty() : "The set is empty.";
+    return indexGet(firstIndex());
+  }
+
+  /**
+   * @return Returns the largest key. The set must not be empty.
+   */
+  public KType last() {
+    assert !isEmpty() : "The set is empty.";
+    return indexGet(lastIndex());
+  }
+
+  /**
+   * @return Returns the greatest key less than or equal to <code>key</code> or
+   *         the default value for the key type if there is no such key (use
+   *         {@link #floorIndex} to tell these apart).
+   */
+  public KType floor(KType key) {
+    return keyOrEmpty(floorIndex(key));
+  }
+
+  /**
+   * @return Returns the least key greater than or equal to <code>key</code> or
+   *         the default value for the key type if there is no such key (use
+   *         {@link #ceilingIndex} to tell these apart).
+   */
+  public KType ceiling(KType key) {
+    return keyOrEmpty(ceilingIndex(key));
+  }
+
+  /**
+   * @return Returns the greatest key strictly less than <code>key</code> or the
+   *         default value for the key type if there is no such key (use
+   *         {@link #lowerIndex} to tell these apart).
+   */
+  public KType lower(KType key) {
+    return keyOrEmpty(lowerIndex(key));
+  }
+
+  /**
+   * @return Returns the least key strictly greater than <code>key</code> or the
+   *         default value for the key type if there is no such key (use
+   *         {@link #higherIndex} to tell these apart).
+   */
+  public KType higher(KType key) {
+    return keyOrEmpty(higherIndex(key));
+  }
+
+  private KType keyOrEmpty(int index) {
+    return index >= 0 ? indexGet(index) : Intrinsics.<KType> empty();
+  }
+
+  /**
+   * Returns a view of the keys in the range from <code>fromKey</code>,
+   * inclusive, to <code>toKey</code>, exclusive, in order. The view's iterators
+   * locate the range when created.
+   */
+  public Iterable<KTypeCursor<KType>> subSet(KType fromKey, KType toKey) {
+    return new SubSet(fromKey, toKey);
+  }
+
+  /**
+   * A view of a range of keys.
+   */
+  private final class SubSet implements Iterable<KTypeCursor<KType>> {
+    private final KType fromKey;
+    private final KType toKey;
+
+    public SubSet(KType fromKey, KType toKey) {
+      this.fromKey = fromKey;
+      this.toKey = toKey;
+    }
+
+    @Override
+    public Iterator<KTypeCursor<KType>> iterator() {
+      return new EntryIterator(ceilingIndex(fromKey), toKey, true);
+    }
+  }
+
+  /**
+   * Applies <code>procedure</code> to keys in the range from
+   * <code>fromKey</code>, inclusive, to <code>toKey</code>, exclusive, in order.
+   */
+  public <T extends KTypeProcedure<? super KType>> T forEach(T procedure, KType fromKey, KType toKey) {
+    for (int index = ceilingIndex(fromKey); index >= 0; index = nextIndex(index)) {
+      final KType key = indexGet(index);
+      if (tree.compare(key, toKey) >= 0) {
+        break;
+      }
+      procedure.apply(key);
+    }
+    return procedure;
+  }
+
+  /**
+   * Replaces the contents of this set with keys from an array range, in O(n).
+   * Keys must be strictly increasing in this set's order.
+   *
+   * @throws IllegalArgumentException If keys are not strictly increasing.
+   */
+  public void bulkLoad(KType[] keys, int start, int length) {
+    tree.bulkLoad(keys, null, start, length);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void clear() {
+    tree.clear();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void release() {
+    tree.release();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int size() {
+    return tree.size;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    int h = 0;
+    final KTypeSortedTree<KType> tree = this.tree;
+    for (int leaf = tree.firstLeaf; leaf >= 0; leaf = tree.nextLeaves[leaf]) {
+      final KType[] keys = Intrinsics.<KType[]> cast(tree.leafKeys[leaf]);
+      for (int i = 0, max = tree.leafSizes[leaf]; i < max; i++) {
+        h += BitMixer.mix0(keys[i]);
+      }
+    }
+    return h;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object obj) {
+    return obj != null &&
+           getClass() == obj.getClass() &&
+           equalElements(getClass().cast(obj));
+  }
+
+  /**
+   * Return true if both sets have equal keys, in the same order.
+   */
+  protected boolean equalElements(KTypeSortedSet<?> other) {
+    if (other.size() != size()) {
+      return false;
+    }
+
+    final Iterator<? extends KTypeCursor<?>> i = other.iterator();
+    for (KTypeCursor<KType> c : this) {
+      if (!Intrinsics.<KType> equals(c.value, i.next().value)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * An iterator over keys in order, from an index up to (excluding) a key.
+   */
+  private final class EntryIterator extends AbstractIterator<KTypeCursor<KType>> {
+    private final KTypeCursor<KType> cursor = new KTypeCursor<KType>();
+    private final KType toKey;
+    private final boolean bounded;
+    private int next;
+
+    public EntryIterator(int start, KType toKey, boolean bounded) {
+      this.next = start;
+      this.toKey = toKey;
+      this.bounded = bounded;
+    }
+
+    @Override
+    protected KTypeCursor<KType> fetch() {
+      if (next < 0) {
+        return done();
+      }
+
+      final KType key = indexGet(next);
+      if (bounded && tree.compare(key, toKey) >= 0) {
+        next = -1;
+        return done();
+      }
+
+      cursor.index = next;
+      cursor.value = key;
+      next = nextIndex(next);
+      return cursor;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Keys are returned in order.</p>
+   */
+  @Override
+  public Iterator<KTypeCursor<KType>> iterator() {
+    return new EntryIterator(firstIndex(), Intrinsics.<KType> empty(), false);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public <T extends KTypeProcedure<? super KType>> T forEach(T procedure) {
+    final KTypeSortedTree<KType> tree = this.tree;
+    for (int leaf = tree.firstLeaf; leaf >= 0; leaf = tree.nextLeaves[leaf]) {
+      final KType[] keys = Intrinsics.<KType[]> cast(tree.leafKeys[leaf]);
+      for (int i = 0, max = tree.leafSizes[leaf]; i < max; i++) {
+        procedure.apply(keys[i]);
+      }
+    }
+    return procedure;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public <T extends KTypePredicate<? super KType>> T forEach(T predicate) {
+    final KTypeSortedTree<KType> tree = this.tree;
+    for (int leaf = tree.firstLeaf; leaf >= 0; leaf = tree.nextLeaves[leaf]) {
+      final KType[] keys = Intrinsics.<KType[]> cast(tree.leafKeys[leaf]);
+      for (int i = 0, max = tree.leafSizes[leaf]; i < max; i++) {
+        if (!predicate.apply(keys[i])) {
+          return predicate;
+        }
+      }
+    }
+    return predicate;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public KTypeSortedSet<KType> clone() {
+    try {
+      /* #if ($templateOnly) */ @SuppressWarnings("unchecked") /* #end */
+      KTypeSortedSet<KType> cloned = (KTypeSortedSet<KType>) super.clone();
+      cloned.tree = tree.clone();
+      return cloned;
+    } catch (CloneNotSupportedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Create a set from a variable number of arguments or an array of
+   * <code>KType</code>.
+   */
+  /* #if ($TemplateOptions.KTypeGeneric) */
+  @SafeVarargs
+  /* #end */
+  public static <KType> KTypeSortedSet<KType> from(KType... elements) {
+    final KTypeSortedSet<KType> set = new KTypeSortedSet<KType>();
+    set.addAll(elements);
+    return set;
+  }
+
+  /**
+   * Create a set from an array of keys strictly increasing in their natural
+   * order, in O(n).
+   *
+   * @see #bulkLoad
+   */
+  public static <KType> KTypeSortedSet<KType> fromSorted(KType[] keys) {
+    final KTypeSortedSet<KType> set = new KTypeSortedSet<KType>();
+    set.bulkLoad(keys, 0, keys.length);
+    return set;
+  }
+
+  /**
+   * Resets a range of a leaf's keys to empty values.
+   */
+  private static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */
+    void clearRange(KType[] keys, int from, int to) {
+    /* #if ($TemplateOptions.KTypeGeneric) */
+    Arrays.fill(keys, from, to, null);
+    /* #end */
+  }
+}
@@ -0,0 +1,1008 @@
+package com.carrotsearch.hppc;
+
+import java.util.*;
+
+/**
+ * The B+-tree behind {@link KTypeSortedSet} and the sorted maps with
+ * <code>KType</code> keys.
+ *
+ * <p>Keys are kept in sorted leaves of at most {@link #maxLeafSize} keys,
+ * linked in key order. Internal nodes hold up to {@link #maxNodeSize} children
+ * and, for every child but the first, a separator key: a lower bound of the
+ * keys in the child's subtree and an upper bound (exclusive) of the keys in
+ * the preceding children. Separators change only when nodes split or merge,
+ * not when keys are removed.</p>
+ *
+ * <p>All leaves are at the same depth, so a lookup is one binary search per
+ * level, and an update moves the entries of at most one or two leaves and the
+ * children of at most one or two nodes per level. Full leaves and nodes split
+ * in half; a leaf or node is merged into a sibling when their combined size
+ * drops to three quarters of the maximum.</p>
+ *
+ * <p>A leaf may have a parallel array of values, of a type unknown to the tree
+ * (see {@link #newValues}), which is moved along with keys.</p>
+ *
+ * <p>An index encodes a leaf number and a position in the leaf. Leaf numbers
+ * are not ordered; the leaf following another is in {@link #nextLeaves}.</p>
+ */
+/*! #if ($TemplateOptions.KTypeGeneric) @SuppressWarnings("unchecked") #end !*/
+/*! ${TemplateOptions.generatedAnnotation} !*/
+class KTypeSortedTree<KType> implements Cloneable {
+  /**
+   * The number of low bits of an index holding the position in a leaf.
+   */
+  static final int LEAF_SHIFT = 8;
+
+  /**
+   * The mask of the bits of an index holding the position in a leaf.
+   */
+  static final int LEAF_MASK = (1 << LEAF_SHIFT) - 1;
+
+  /**
+   * The default maximum number of keys in a leaf.
+   */
+  static final int MAX_LEAF_SIZE = 128;
+
+  /**
+   * The default maximum number of children of an internal node.
+   */
+  static final int MAX_NODE_SIZE = 128;
+
+  /**
+   * The maximum number of keys in a leaf.
+   */
+  final int maxLeafSize;
+
+  /**
+   * The maximum number of children of an internal node.
+   */
+  final int maxNodeSize;
+
+  /**
+   * The order of keys or <code>null</code> for the natural order.
+   */
+  final KTypeComparator<? super KType> comparator;
+
+  /**
+   * Sorted keys of each leaf or <code>null</code> for unused leaf numbers.
+   */
+  /*! #if ($TemplateOptions.KTypeGeneric) !*/
+  Object [][]
+  /*! #else KType [][] #end !*/
+  leafKeys;
+
+  /**
+   * Values of each leaf, aligned with {@link #leafKeys}, or <code>null</code>s
+   * if leaves have no values.
+   */
+  Object [] leafValues;
+
+  /**
+   * The number of keys in each leaf.
+   */
+  int [] leafSizes;
+
+  /**
+   * The following leaf in key order (or <code>-1</code>) and, for unused leaf
+   * numbers, the next unused one.
+   */
+  int [] nextLeaves;
+
+  /**
+   * The preceding leaf in key order (or <code>-1</code>).
+   */
+  int [] previousLeaves;
+
+  /**
+   * The leaf with the smallest keys or <code>-1</code> if the tree is empty.
+   */
+  int firstLeaf;
+
+  /**
+   * The leaf with the largest keys or <code>-1</code> if the tree is empty.
+   */
+  int lastLeaf;
+
+  /**
+   * The number of leaves in use.
+   */
+  int leafCount;
+
+  /**
+   * The number of leaf numbers handed out (in use or unused).
+   */
+  private int leafSlots;
+
+  /**
+   * The first unused leaf number below {@link #leafSlots} or <code>-1</code>.
+   */
+  private int freeLeaf;
+
+  /**
+   * Separator keys of each internal node. The first key of a node is unused.
+   */
+  /*! #if ($TemplateOptions.KTypeGeneric) !*/
+  Object [][]
+  /*! #else KType [][] #end !*/
+  nodeKeys;
+
+  /**
+   * Children of each internal node: leaves at the lowest level, nodes above.
+   * For unused node numbers, the first child is the next unused one.
+   */
+  int [][] nodeChildren;
+
+  /**
+   * The number of children of each internal node.
+   */
+  int [] nodeSizes;
+
+  /**
+   * The number of node numbers handed out (in use or unused).
+   */
+  private int nodeSlots;
+
+  /**
+   * The first unused node number below {@link #nodeSlots} or <code>-1</code>.
+   */
+  private int freeNode;
+
+  /**
+   * The root node, the only leaf if {@link #height} is zero or <code>-1</code>
+   * if the tree is empty.
+   */
+  int root;
+
+  /**
+   * The number of internal levels.
+   */
+  int height;
+
+  /**
+   * The number of keys.
+   */
+  int size;
+
+  /**
+   * Nodes on the path from the root to a leaf and the positions of children
+   * on the path in them, recorded for structural changes.
+   */
+  private int [] pathNodes;
+  private int [] pathPositions;
+
+  /**
+   * New instance with the default leaf and node sizes.
+   */
+  KTypeSortedTree(KTypeComparator<? super KType> comparator) {
+    this(comparator, MAX_LEAF_SIZE, MAX_NODE_SIZE);
+  }
+
+  /**
+   * New instance with the given maximum leaf and node sizes.
+   */
+  KTypeSortedTree(KTypeComparator<? super KType> comparator, int maxLeafSize, int maxNodeSize) {
+    assert maxLeafSize >= 2 && maxLeafSize <= 1 << LEAF_SHIFT : "Leaf size out of range: " + maxLeafSize;
+    assert maxNodeSize >= 4 : "Node size out of range: " + maxNodeSize;
+
+    this.comparator = comparator;
+    this.maxLeafSize = maxLeafSize;
+    this.maxNodeSize = maxNodeSize;
+    release();
+  }
+
+  /**
+   * @return Returns a new array of <code>length</code> values for a leaf or
+   * <code>null</code> if leaves have no values.
+   */
+  protected Object newValues(int length) {
+    return null;
+  }
+
+  /**
+   * Compares keys in this tree's order.
+   */
+  int compare(KType a, KType b) {
+    if (comparator != null) {
+      return comparator.compare(a, b);
+    }
+
+    /*! #if ($TemplateOptions.KTypeGeneric) !*/
+    // Nulls (empty keys) first.
+    if (a == null || b == null) {
+      return a == b ? 0 : (a == null ? -1 : 1);
+    }
+    return ((Comparable<? super KType>) a).compareTo(b);
+    /*! #elseif ($TemplateOptions.KType.Type == "int")
+    return Integer.compare(a, b);
+    #elseif ($TemplateOptions.KType.Type == "char")
+    return Character.compare(a, b);
+    #else
+    return ${TemplateOptions.KType.BoxedType}.compare(a, b);
+    #end !*/
+  }
+
+  /**
+   * @return Returns the index of <code>key</code> or, if the key is not in the
+   * tree, <code>~insertionPoint</code> for {@link #insert}.
+   */
+  int indexOf(KType key) {
+    if (root < 0) {
+      return ~0;
+    }
+
+    final int leaf = findLeaf(key);
+    final int position = searchLeaf(leaf, key);
+    if (position >= 0) {
+      return (leaf << LEAF_SHIFT) | position;
+    } else {
+      return ~((leaf << LEAF_SHIFT) | ~position);
+    }
+  }
+
+  /**
+   * @return Returns the key at an index.
+   */
+  KType key(int index) {
+    assert checkIndex(index) : "The index must point at an existing key.";
+
+    return Intrinsics.<KType> cast(leafKeys[index >>> LEAF_SHIFT][index & LEAF_MASK]);
+  }
+
+  /**
+   * Inserts a key at an insertion point, moving values along with keys. The
+   * caller stores the key's value (if any) at the returned index.
+   *
+   * @param index The (negative) index returned from {@link #indexOf} for
+   *        <code>key</code>, with no modifications of the tree in between.
+   * @return Returns the index of the inserted key.
+   */
+  int insert(int index, KType key) {
+    assert index < 0 : "The index must not point at an existing key.";
+
+    index = ~index;
+    int leaf = index >>> LEAF_SHIFT;
+    int position = index & LEAF_MASK;
+
+    if (root < 0) {
+      leaf = newLeaf();
+      nextLeaves[leaf] = previousLeaves[leaf] = -1;
+      root = firstLeaf = lastLeaf = leaf;
+    } else if (leafSizes[leaf] == maxLeafSize) {
+      final int sibling = splitLeaf(leaf);
+      final int half = leafSizes[leaf];
+      if (position > half) {
+        leaf = sibling;
+        position -= half;
+      }
+    }
+
+    final int leafSize = leafSizes[leaf];
+    moveEntries(leaf, position, leaf, position + 1, leafSize - position);
+    leafKeys[leaf][position] = key;
+    leafSizes[leaf] = leafSize + 1;
+    size++;
+    return (leaf << LEAF_SHIFT) | position;
+  }
+
+  /**
+   * Removes the key (and value) at an index. The caller reads the value (if
+   * any) before.
+   */
+  void remove(int index) {
+    assert checkIndex(index) : "The index must point at an existing key.";
+
+    final int leaf = index >>> LEAF_SHIFT;
+    final int position = index & LEAF_MASK;
+    final KType key = Intrinsics.<KType> cast(leafKeys[leaf][position]);
+
+    final int leafSize = leafSizes[leaf] - 1;
+    moveEntries(leaf, position + 1, leaf, position, leafSize - position);
+    clearEntries(leaf, leafSize, leafSize + 1);
+    leafSizes[leaf] = leafSize;
+    size--;
+
+    final int next = nextLeaves[leaf];
+    final int previous = previousLeaves[leaf];
+    if (leafSize > 0 &&
+        (next < 0 || leafSize + leafSizes[next] > leafMergeSize()) &&
+        (previous < 0 || leafSize + leafSizes[previous] > leafMergeSize())) {
+      return;
+    }
+
+    if (height == 0) {
+      if (leafSize == 0) {
+        removeLeaf(leaf);
+        root = -1;
+      }
+      return;
+    }
+
+    // The removed key leads to the leaf (separators have not changed).
+    recordPath(key);
+    final int depth = height - 1;
+    final int parent = pathNodes[depth];
+    final int child = pathPositions[depth];
+    assert nodeChildren[parent][child] == leaf;
+
+    if (leafSize == 0) {
+      removeLeaf(leaf);
+      removeChild(depth, child);
+    } else if (child + 1 < nodeSizes[parent] && leafSize + leafSizes[next] <= leafMergeSize()) {
+      mergeLeaves(leaf, next);
+      removeChild(depth, child + 1);
+    } else if (child > 0 && leafSize + leafSizes[previous] <= leafMergeSize()) {
+      mergeLeaves(previous, leaf);
+      removeChild(depth, child);
+    }
+  }
+
+  /**
+   * @return Returns the index of the smallest key or <code>-1</code> if the
+   * tree is empty.
+   */
+  int firstIndex() {
+    return firstLeaf < 0 ? -1 : firstLeaf << LEAF_SHIFT;
+  }
+
+  /**
+   * @return Returns the index of the largest key or <code>-1</code> if the tree
+   * is empty.
+   */
+  int lastIndex() {
+    return lastLeaf < 0 ? -1 : (lastLeaf << LEAF_SHIFT) | (leafSizes[lastLeaf] - 1);
+  }
+
+  /**
+   * @return Returns the index of the key following an existing one or
+   * <code>-1</code>.
+   */
+  int nextIndex(int index) {
+    assert checkIndex(index) : "The index must point at an existing key.";
+
+    final int leaf = index >>> LEAF_SHIFT;
+    if ((index & LEAF_MASK) + 1 < leafSizes[leaf]) {
+      return index + 1;
+    }
+    final int next = nextLeaves[leaf];
+    return next < 0 ? -1 : next << LEAF_SHIFT;
+  }
+
+  /**
+   * @return Returns the index of the key preceding an existing one or
+   * <code>-1</code>.
+   */
+  int previousIndex(int index) {
+    assert checkIndex(index) : "The index must point at an existing key.";
+
+    return precedingIndex(index);
+  }
+
+  /**
+   * @return Returns the index of the greatest key less than or equal to
+   * <code>key</code> or <code>-1</code>.
+   */
+  int floorIndex(KType key) {
+    final int index = indexOf(key);
+    return index >= 0 ? index : precedingIndex(~index);
+  }
+
+  /**
+   * @return Returns the index of the least key greater than or equal to
+   * <code>key</code> or <code>-1</code>.
+   */
+  int ceilingIndex(KType key) {
+    final int index = indexOf(key);
+    return index >= 0 ? index : followingIndex(~index);
+  }
+
+  /**
+   * @return Returns the index of the greatest key strictly less than
+   * <code>key</code> or <code>-1</code>.
+   */
+  int lowerIndex(KType key) {
+    final int index = indexOf(key);
+    return precedingIndex(index >= 0 ? index : ~index);
+  }
+
+  /**
+   * @return Returns the index of the least key strictly greater than
+   * <code>key</code> or <code>-1</code>.
+   */
+  int higherIndex(KType key) {
+    final int index = indexOf(key);
+    return index >= 0 ? nextIndex(index) : followingIndex(~index);
+  }
+
+  /**
+   * Replaces the contents of this tree with keys from an array range and
+   * values from an index-aligned array (<code>null</code> if leaves have no
+   * values), in O(n).
+   *
+   * @throws IllegalArgumentException If keys are not strictly increasing.
+   */
+  void bulkLoad(KType[] keys, Object values, int start, int length) {
+    assert length >= 0 && start >= 0 && start + length <= keys.length;
+
+    for (int i = start + 1; i < start + length; i++) {
+      if (compare(keys[i - 1], keys[i]) >= 0) {
+        throw new IllegalArgumentException("Keys must be strictly increasing: " +
+            keys[i - 1] + " at " + (i - 1) + " is not less than " + keys[i]);
+      }
+    }
+
+    clear();
+    for (int from = start, end = start + length; from < end; from += maxLeafSize) {
+      final int leaf = newLeaf();
+      final int leafSize = Math.min(maxLeafSize, end - from);
+      System.arraycopy(keys, from, leafKeys[leaf], 0, leafSize);
+      if (values != null) {
+        System.arraycopy(values, from, leafValues[leaf], 0, leafSize);
+      }
+      leafSizes[leaf] = leafSize;
+
+      nextLeaves[leaf] = -1;
+      previousLeaves[leaf] = lastLeaf;
+      if (lastLeaf >= 0) {
+        nextLeaves[lastLeaf] = leaf;
+      } else {
+        firstLeaf = leaf;
+      }
+      lastLeaf = leaf;
+    }
+    size = length;
+    buildIndex();
+  }
+
+  /**
+   * Removes empty leaves, merges sparse neighbours and rebuilds internal nodes,
+   * after keys were removed from leaves directly (bypassing {@link #remove}).
+   * The caller updates {@link #leafSizes} and {@link #size}.
+   */
+  void compact() {
+    int last = -1;
+    for (int leaf = firstLeaf; leaf >= 0;) {
+      final int next = nextLeaves[leaf];
+      if (leafSizes[leaf] == 0) {
+        removeLeaf(leaf);
+      } else if (last >= 0 && leafSizes[last] + leafSizes[leaf] <= leafMergeSize()) {
+        mergeLeaves(last, leaf);
+      } else {
+        last = leaf;
+      }
+      leaf = next;
+    }
+    buildIndex();
+  }
+
+  /**
+   * Removes all keys.
+   */
+  void clear() {
+    Arrays.fill(leafKeys, 0, leafSlots, null);
+    Arrays.fill(leafValues, 0, leafSlots, null);
+    leafSlots = 0;
+    freeLeaf = -1;
+    leafCount = 0;
+    firstLeaf = lastLeaf = -1;
+    clearNodes();
+    root = -1;
+    height = 0;
+    size = 0;
+  }
+
+  /**
+   * Removes all keys and releases internal buffers.
+   */
+  void release() {
+    final int leaves = Containers.DEFAULT_EXPECTED_ELEMENTS;
+    /*! #if ($TemplateOptions.KTypeGeneric) !*/
+    leafKeys = new Object [leaves][];
+    nodeKeys = new Object [0][];
+    /*! #else
+    leafKeys = new KType [leaves][];
+    nodeKeys = new KType [0][];
+    #end !*/
+    leafValues = new Object [leaves];
+    leafSizes = new int [leaves];
+    nextLeaves = new int [leaves];
+    previousLeaves = new int [leaves];
+    nodeChildren = new int [0][];
+    nodeSizes = new int [0];
+    pathNodes = new int [0];
+    pathPositions = new int [0];
+    leafSlots = 0;
+    nodeSlots = 0;
+    clear();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public KTypeSortedTree<KType> clone() {
+    try {
+      /* #if ($templateOnly) */ @SuppressWarnings("unchecked") /* #end */
+      KTypeSortedTree<KType> cloned = (KTypeSortedTree<KType>) super.clone();
+      cloned.leafKeys = leafKeys.clone();
+      cloned.leafValues = leafValues.clone();
+      for (int leaf = 0; leaf < leafSlots; leaf++) {
+        if (leafKeys[leaf] != null) {
+          cloned.leafKeys[leaf] = leafKeys[leaf].clone();
+          cloned.leafValues[leaf] = newValues(maxLeafSize);
+          if (leafValues[leaf] != null) {
+            System.arraycopy(leafValues[leaf], 0, cloned.leafValues[leaf], 0, maxLeafSize);
+          }
+        }
+      }
+      cloned.leafSizes = leafSizes.clone();
+      cloned.nextLeaves = nextLeaves.clone();
+      cloned.previousLeaves = previousLeaves.clone();
+
+      // Unused nodes keep their arrays, so all of them are copied.
+      cloned.nodeKeys = nodeKeys.clone();
+      cloned.nodeChildren = nodeChildren.clone();
+      for (int node = 0; node < nodeKeys.length; node++) {
+        if (nodeKeys[node] != null) {
+          cloned.nodeKeys[node] = nodeKeys[node].clone();
+          cloned.nodeChildren[node] = nodeChildren[node].clone();
+        }
+      }
+      cloned.nodeSizes = nodeSizes.clone();
+      cloned.pathNodes = pathNodes.clone();
+      cloned.pathPositions = pathPositions.clone();
+      return cloned;
+    } catch (CloneNotSupportedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  boolean checkIndex(int index) {
+    final int leaf = index >>> LEAF_SHIFT;
+    return index >= 0 &&
+           leaf < leafSlots &&
+           leafKeys[leaf] != null &&
+           (index & LEAF_MASK) < leafSizes[leaf];
+  }
+
+  /**
+   * Adjacent leaves are merged when their combined size drops to this.
+   */
+  private int leafMergeSize() {
+    return maxLeafSize * 3 / 4;
+  }
+
+  /**
+   * Adjacent nodes are merged when their combined size drops to this.
+   */
+  private int nodeMergeSize() {
+    return maxNodeSize * 3 / 4;
+  }
+
+  /**
+   * @return Returns the leaf which may contain <code>key</code>.
+   */
+  private int findLeaf(KType key) {
+    int child = root;
+    for (int level = height; level > 0; level--) {
+      child = nodeChildren[child][searchNode(child, key)];
+    }
+    return child;
+  }
+
+  /**
+   * Records the path from the root to the leaf which may contain
+   * <code>key</code> in {@link #pathNodes} and {@link #pathPositions}.
+   */
+  private void recordPath(KType key) {
+    if (pathNodes.length < height) {
+      pathNodes = new int [height];
+      pathPositions = new int [height];
+    }
+
+    int node = root;
+    for (int depth = 0; depth < height; depth++) {
+      final int position = searchNode(node, key);
+      pathNodes[depth] = node;
+      pathPositions[depth] = position;
+      node = nodeChildren[node][position];
+    }
+  }
+
+  /**
+   * @return Returns the position of the child of an internal node whose subtree
+   * may contain <code>key</code>: the last one whose separator is not greater
+   * than <code>key</code>, or the first child.
+   */
+  private int searchNode(int node, KType key) {
+    final KType[] keys = Intrinsics.<KType[]> cast(nodeKeys[node]);
+    int low = 1;
+    int high = nodeSizes[node] - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      if (compare(keys[mid], key) <= 0) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low - 1;
+  }
+
+  /**
+   * @return Returns the position of <code>key</code> in a leaf or
+   * <code>~insertionPoint</code> if the key is not in the leaf.
+   */
+  private int searchLeaf(int leaf, KType key) {
+    final KType[] keys = Intrinsics.<KType[]> cast(leafKeys[leaf]);
+    int low = 0;
+    int high = leafSizes[leaf] - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final int c = compare(keys[mid], key);
+      if (c < 0) {
+        low = mid + 1;
+      } else if (c > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return ~low;
+  }
+
+  /**
+   * @return Returns the index of the last key before an insertion point (which
+   * may also be the index of an existing key) or <code>-1</code>.
+   */
+  private int precedingIndex(int insertionPoint) {
+    if (root < 0) {
+      return -1;
+    }
+
+    if ((insertionPoint & LEAF_MASK) > 0) {
+      return insertionPoint - 1;
+    }
+    final int previous = previousLeaves[insertionPoint >>> LEAF_SHIFT];
+    return previous < 0 ? -1 : (previous << LEAF_SHIFT) | (leafSizes[previous] - 1);
+  }
+
+  /**
+   * @return Returns the index of the first key at or after an insertion point or
+   * <code>-1</code>.
+   */
+  private int followingIndex(int insertionPoint) {
+    if (root < 0) {
+      return -1;
+    }
+
+    final int leaf = insertionPoint >>> LEAF_SHIFT;
+    if ((insertionPoint & LEAF_MASK) < leafSizes[leaf]) {
+      return insertionPoint;
+    }
+    final int next = nextLeaves[leaf];
+    return next < 0 ? -1 : next << LEAF_SHIFT;
+  }
+
+  /**
+   * Moves keys and values within or between leaves.
+   */
+  private void moveEntries(int fromLeaf, int from, int toLeaf, int to, int length) {
+    System.arraycopy(leafKeys[fromLeaf], from, leafKeys[toLeaf], to, length);
+    if (leafValues[fromLeaf] != null) {
+      System.arraycopy(leafValues[fromLeaf], from, leafValues[toLeaf], to, length);
+    }
+  }
+
+  /**
+   * Resets a range of a leaf's keys and values to empty values.
+   */
+  private void clearEntries(int leaf, int from, int to) {
+    /* #if ($TemplateOptions.KTypeGeneric) */
+    Arrays.fill(leafKeys[leaf], from, to, null);
+    /* #end */
+    if (leafValues[leaf] instanceof Object[]) {
+      Arrays.fill((Object[]) leafValues[leaf], from, to, null);
+    }
+  }
+
+  /**
+   * @return Returns a new, empty (and unlinked) leaf.
+   */
+  private int newLeaf() {
+    final int leaf;
+    if (freeLeaf >= 0) {
+      leaf = freeLeaf;
+      freeLeaf = nextLeaves[leaf];
+    } else {
+      if (leafSlots == leafSizes.length) {
+        if (leafSlots == 1 << (Integer.SIZE - 1 - LEAF_SHIFT)) {
+          throw new BufferAllocationException(
+              "Maximum number of leaves reached: %d", leafSlots);
+        }
+        final int length = Math.min(leafSlots + (leafSlots >>> 1) + 1, 1 << (Integer.SIZE - 1 - LEAF_SHIFT));
+        leafKeys = Arrays.copyOf(leafKeys, length);
+        leafValues = Arrays.copyOf(leafValues, length);
+        leafSizes = Arrays.copyOf(leafSizes, length);
+        nextLeaves = Arrays.copyOf(nextLeaves, length);
+        previousLeaves = Arrays.copyOf(previousLeaves, length);
+      }
+      leaf = leafSlots++;
+    }
+
+    leafKeys[leaf] = Intrinsics.<KType> newArray(maxLeafSize);
+    leafValues[leaf] = newValues(maxLeafSize);
+    leafSizes[leaf] = 0;
+    leafCount++;
+    return leaf;
+  }
+
+  /**
+   * Unlinks a leaf from its neighbours and marks its number unused.
+   */
+  private void removeLeaf(int leaf) {
+    final int previous = previousLeaves[leaf];
+    final int next = nextLeaves[leaf];
+    if (previous >= 0) {
+      nextLeaves[previous] = next;
+    } else {
+      firstLeaf = next;
+    }
+    if (next >= 0) {
+      previousLeaves[next] = previous;
+    } else {
+      lastLeaf = previous;
+    }
+
+    leafKeys[leaf] = null;
+    leafValues[leaf] = null;
+    leafSizes[leaf] = 0;
+    nextLeaves[leaf] = freeLeaf;
+    previousLeaves[leaf] = -1;
+    freeLeaf = leaf;
+    leafCount--;
+  }
+
+  /**
+   * Moves the upper half of a full leaf to a new leaf following it.
+   *
+   * @return Returns the new leaf.
+   */
+  private int splitLeaf(int leaf) {
+    recordPath(Intrinsics.<KType> cast(leafKeys[leaf][0]));
+
+    final int sibling = newLeaf();
+    final int half = leafSizes[leaf] >>> 1;
+    final int moved = leafSizes[leaf] - half;
+    moveEntries(leaf, half, sibling, 0, moved);
+    clearEntries(leaf, half, half + moved);
+    leafSizes[leaf] = half;
+    leafSizes[sibling] = moved;
+
+    final int next = nextLeaves[leaf];
+    nextLeaves[sibling] = next;
+    previousLeaves[sibling] = leaf;
+    nextLeaves[leaf] = sibling;
+    if (next >= 0) {
+      previousLeaves[next] = sibling;
+    } else {
+      lastLeaf = sibling;
+    }
+
+    insertChild(height - 1, sibling, Intrinsics.<KType> cast(leafKeys[sibling][0]));
+    return sibling;
+  }
+
+  /**
+   * Appends the entries of the leaf following <code>leaf</code> to it and
+   * removes the following leaf (but not its separator).
+   */
+  private void mergeLeaves(int leaf, int next) {
+    final int leafSize = leafSizes[leaf];
+    final int moved = leafSizes[next];
+    assert nextLeaves[leaf] == next && leafSize + moved <= maxLeafSize;
+
+    moveEntries(next, 0, leaf, leafSize, moved);
+    leafSizes[leaf] = leafSize + moved;
+    removeLeaf(next);
+  }
+
+  /**
+   * @return Returns a new internal node with no children.
+   */
+  private int newNode() {
+    final int node;
+    if (freeNode >= 0) {
+      node = freeNode;
+      freeNode = nodeChildren[node][0];
+    } else {
+      if (nodeSlots == nodeSizes.length) {
+        final int length = nodeSlots + (nodeSlots >>> 1) + 1;
+        nodeKeys = Arrays.copyOf(nodeKeys, length);
+        nodeChildren = Arrays.copyOf(nodeChildren, length);
+        nodeSizes = Arrays.copyOf(nodeSizes, length);
+      }
+      node = nodeSlots++;
+      if (nodeKeys[node] == null) {
+        nodeKeys[node] = Intrinsics.<KType> newArray(maxNodeSize);
+        nodeChildren[node] = new int [maxNodeSize];
+      }
+    }
+    nodeSizes[node] = 0;
+    return node;
+  }
+
+  /**
+   * Marks a node number unused.
+   */
+  private void removeNode(int node) {
+    clearNodeKeys(node, 0, nodeSizes[node]);
+    nodeSizes[node] = 0;
+    nodeChildren[node][0] = freeNode;
+    freeNode = node;
+  }
+
+  /**
+   * Marks all node numbers unused (keeping their arrays).
+   */
+  private void clearNodes() {
+    for (int node = 0; node < nodeSlots; node++) {
+      clearNodeKeys(node, 0, maxNodeSize);
+    }
+    nodeSlots = 0;
+    freeNode = -1;
+  }
+
+  private void clearNodeKeys(int node, int from, int to) {
+    /* #if ($TemplateOptions.KTypeGeneric) */
+    Arrays.fill(nodeKeys[node], from, to, null);
+    /* #end */
+  }
+
+  /**
+   * Inserts a child with a separator after the child on the recorded path at
+   * the given depth (or grows a new root above the root, if negative),
+   * splitting full nodes up the path.
+   */
+  private void insertChild(int depth, int child, KType separator) {
+    if (depth < 0) {
+      final int node = newNode();
+      nodeChildren[node][0] = root;
+      nodeChildren[node][1] = child;
+      nodeKeys[node][1] = separator;
+      nodeSizes[node] = 2;
+      root = node;
+      height++;
+      return;
+    }
+
+    int node = pathNodes[depth];
+    int position = pathPositions[depth] + 1;
+    int sibling = -1;
+    KType siblingSeparator = Intrinsics.<KType> empty();
+    if (nodeSizes[node] == maxNodeSize) {
+      sibling = newNode();
+      final int half = maxNodeSize >>> 1;
+      final int moved = maxNodeSize - half;
+      System.arraycopy(nodeChildren[node], half, nodeChildren[sibling], 0, moved);
+      System.arraycopy(nodeKeys[node], half, nodeKeys[sibling], 0, moved);
+      clearNodeKeys(node, half, maxNodeSize);
+      siblingSeparator = Intrinsics.<KType> cast(nodeKeys[sibling][0]);
+      nodeKeys[sibling][0] = Intrinsics.<KType> empty();
+      nodeSizes[node] = half;
+      nodeSizes[sibling] = moved;
+      if (position > half) {
+        node = sibling;
+        position -= half;
+      }
+    }
+
+    final int nodeSize = nodeSizes[node];
+    System.arraycopy(nodeChildren[node], position, nodeChildren[node], position + 1, nodeSize - position);
+    System.arraycopy(nodeKeys[node], position, nodeKeys[node], position + 1, nodeSize - position);
+    nodeChildren[node][position] = child;
+    nodeKeys[node][position] = separator;
+    nodeSizes[node] = nodeSize + 1;
+
+    if (sibling >= 0) {
+      insertChild(depth - 1, sibling, siblingSeparator);
+    }
+  }
+
+  /**
+   * Removes a child (and its separator) from the node on the recorded path at
+   * the given depth, merging sparse nodes up the path and shrinking the tree
+   * if the root is left with a single child.
+   */
+  private void removeChild(int depth, int position) {
+    final int node = pathNodes[depth];
+    final int nodeSize = nodeSizes[node] - 1;
+    System.arraycopy(nodeChildren[node], position + 1, nodeChildren[node], position, nodeSize - position);
+    System.arraycopy(nodeKeys[node], position + 1, nodeKeys[node], position, nodeSize - position);
+    clearNodeKeys(node, nodeSize, nodeSize + 1);
+    nodeKeys[node][0] = Intrinsics.<KType> empty();
+    nodeSizes[node] = nodeSize;
+
+    if (depth == 0) {
+      if (nodeSize == 1) {
+        root = nodeChildren[node][0];
+        removeNode(node);
+        height--;
+      }
+      return;
+    }
+
+    final int parent = pathNodes[depth - 1];
+    final int child = pathPositions[depth - 1];
+    if (nodeSize == 0) {
+      removeNode(node);
+      removeChild(depth - 1, child);
+    } else if (child + 1 < nodeSizes[parent] &&
+               nodeSize + nodeSizes[nodeChildren[parent][child + 1]] <= nodeMergeSize()) {
+      mergeNodes(parent, child);
+      removeChild(depth - 1, child + 1);
+    } else if (child > 0 &&
+               nodeSize + nodeSizes[nodeChildren[parent][child - 1]] <= nodeMergeSize()) {
+      mergeNodes(parent, child - 1);
+      removeChild(depth - 1, child);
+    }
+  }
+
+  /**
+   * Appends the children of the node following the child at
+   * <code>position</code> of <code>parent</code> to it and removes the
+   * following node (but not its separator in the parent).
+   */
+  private void mergeNodes(int parent, int position) {
+    final int node = nodeChildren[parent][position];
+    final int next = nodeChildren[parent][position + 1];
+    final int nodeSize = nodeSizes[node];
+    final int moved = nodeSizes[next];
+    assert nodeSize + moved <= maxNodeSize;
+
+    System.arraycopy(nodeChildren[next], 0, nodeChildren[node], nodeSize, moved);
+    System.arraycopy(nodeKeys[next], 0, nodeKeys[node], nodeSize, moved);
+    nodeKeys[node][nodeSize] = nodeKeys[parent][position + 1];
+    nodeSizes[node] = nodeSize + moved;
+    removeNode(next);
+  }
+
+  /**
+   * Rebuilds internal nodes over the linked leaves, bottom-up, with children
+   * spread evenly over the nodes of each level.
+   */
+  private void buildIndex() {
+    clearNodes();
+    root = firstLeaf;
+    height = 0;
+    if (leafCount <= 1) {
+      return;
+    }
+
+    final int [] children = new int [leafCount];
+    final KType [] separators = Intrinsics.<KType> newArray(leafCount);
+    int count = 0;
+    for (int leaf = firstLeaf; leaf >= 0; leaf = nextLeaves[leaf]) {
+      children[count] = leaf;
+      separators[count] = Intrinsics.<KType> cast(leafKeys[leaf][0]);
+      count++;
+    }
+
+    while (count > 1) {
+      final int nodes = (count + maxNodeSize - 1) / maxNodeSize;
+      for (int i = 0; i < nodes; i++) {
+        final int from = (int) ((long) count * i / nodes);
+        final int to = (int) ((long) count * (i + 1) / nodes);
+        final int node = newNode();
+        System.arraycopy(children, from, nodeChildren[node], 0, to - from);
+        System.arraycopy(separators, from, nodeKeys[node], 0, to - from);
+        nodeKeys[node][0] = Intrinsics.<KType> empty();
+        nodeSizes[node] = to - from;
+        children[i] = node;
+        separators[i] = separators[from];
+      }
+      count = nodes;
+      height++;
+    }
+    root = children[0];
+  }
+}
@@ -0,0 +1,72 @@
+package com.carrotsearch.hppc;
+
+import com.carrotsearch.hppc.procedures.KTypeProcedure;
+
+/**
+ * A splittable traversal over the <code>KType</code>s of a container, applying a
+ * procedure to each element instead of returning cursors (or boxed values). Its
+ * contract (and the values of characteristic flags) follows that of
+ * <code>java.util.Spliterator</code> and its primitive specializations, so that
+ * it can be adapted to these with a thin wrapper, for example to feed a
+ * (parallel) stream.
+ *
+ * <p>The behavior of a spliterator is undefined if structural changes are made to
+ * the underlying container.</p>
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public interface KTypeSpliterator<KType>
+{
+    /**
+     * Elements have a defined encounter order.
+     */
+    public static final int ORDERED = 0x00000010;
+
+    /**
+     * Elements are distinct.
+     */
+    public static final int DISTINCT = 0x00000001;
+
+    /**
+     * {@link #estimateSize()} is the exact number of elements remaining (before
+     * splitting or traversal).
+     */
+    public static final int SIZED = 0x00000040;
+
+    /**
+     * All spliterators resulting from {@link #trySplit()} are {@link #SIZED}.
+     */
+    public static final int SUBSIZED = 0x00004000;
+
+    /**
+     * If a remaining element exists, applies <code>procedure</code> to it.
+     *
+     * @return Returns <code>false</code> if no elements remained.
+     */
+    public boolean tryAdvance(KTypeProcedure<? super KType> procedure);
+
+    /**
+     * Applies <code>procedure</code> to all remaining elements.
+     */
+    public void forEachRemaining(KTypeProcedure<? super KType> procedure);
+
+    /**
+     * Splits off a prefix of the remaining elements (if this spliterator is
+     * {@link #ORDERED}) or an arbitrary part of them.
+     *
+     * @return Returns a spliterator covering the split off elements (which are no longer
+     * covered by this spliterator) or <code>null</code> if the elements cannot be split.
+     */
+    public KTypeSpliterator<KType> trySplit();
+
+    /**
+     * @return Returns the number of remaining elements, exact if this spliterator is
+     * {@link #SIZED}, an estimate otherwise.
+     */
+    public long estimateSize();
+
+    /**
+     * @return Returns a combination of characteristic flags: {@link #ORDERED},
+     * {@link #DISTINCT}, {@link #SIZED} and {@link #SUBSIZED}.
+     */
+    public int characteristics();
+}
@@ -0,0 +1,81 @@
+package com.carrotsearch.hppc;
+
+/**
+ * A bounded mapping from keys to values which evicts entries to make room for
+ * new keys once its capacity is reached. Buffers are allocated once, at
+ * construction, so lookups and insertions (including evictions) do not
+ * allocate.
+ *
+ * <p>Only {@link #get} and {@link #getOrDefault} count as accesses to an entry
+ * (and towards {@link #hits()} and {@link #misses()}), besides replacing the
+ * value of an existing key.</p>
+ *
+ * @see KTypeVTypeLRUCache
+ * @see KTypeVTypeClockCache
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public interface KTypeVTypeCache<KType, VType> {
+  /**
+   * @return Returns the value associated with the given key or the default
+   *         value for the value type if the key is not in the cache.
+   */
+  public VType get(KType key);
+
+  /**
+   * @return Returns the value associated with the given key or the provided
+   *         default value if the key is not in the cache.
+   */
+  public VType getOrDefault(KType key, VType defaultValue);
+
+  /**
+   * Place a given key and value in the cache, evicting another entry if the
+   * key is new and the cache is full.
+   *
+   * @return The value previously stored under the given key is returned.
+   */
+  public VType put(KType key, VType value);
+
+  /**
+   * Removes the given key from the cache (this does not count as an eviction).
+   *
+   * @return Returns the value associated with the removed key.
+   */
+  public VType remove(KType key);
+
+  /**
+   * @return Returns <code>true</code> if the key is in the cache. This does not
+   *         count as an access.
+   */
+  public boolean containsKey(KType key);
+
+  /**
+   * @return Returns the current number of entries.
+   */
+  public int size();
+
+  /**
+   * @return Returns the maximum number of entries.
+   */
+  public int capacity();
+
+  /**
+   * Removes all entries (this does not count as evictions). Statistics are
+   * not reset.
+   */
+  public void clear();
+
+  /**
+   * @return Returns the number of lookups of keys in the cache.
+   */
+  public long hits();
+
+  /**
+   * @return Returns the number of lookups of keys not in the cache.
+   */
+  public long misses();
+
+  /**
+   * @return Returns the number of entries evicted to make room for new keys.
+   */
+  public long evictions();
+}
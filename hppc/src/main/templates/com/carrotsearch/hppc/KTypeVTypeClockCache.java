@@ -0,0 +1,293 @@
+package com.carrotsearch.hppc;
+
+import com.carrotsearch.hppc.procedures.*;
+
+/**
+ * A bounded cache of <code>KType</code> to <code>VType</code> which evicts
+ * entries with the CLOCK algorithm, or its generalization approximating least
+ * frequently used eviction.
+ *
+ * <p>Each entry has a small access counter, incremented (up to
+ * <code>maxFrequency</code>) by lookups. Entries are kept in a circular order
+ * ({@link KTypeVTypeLinkedOpenHashMap}'s insertion order); to evict, the clock
+ * hand (the first entry) sweeps over entries, decrementing non-zero counters and
+ * moving these entries behind the hand, until it finds an entry with a zero
+ * counter. With <code>maxFrequency == 1</code>, this is the classic CLOCK
+ * (second chance) approximation of LRU; larger values retain frequently used
+ * entries longer (LFU-like), at the cost of longer sweeps.</p>
+ *
+ * <p>Lookups do not reorder entries, so hits are cheaper than with
+ * {@link KTypeVTypeLRUCache}. Evictions are amortized O(1); nothing is
+ * allocated after construction.</p>
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeClockCache<KType, VType> implements KTypeVTypeCache<KType, VType> {
+  /**
+   * The largest allowed <code>maxFrequency</code>.
+   */
+  public final static int MAX_FREQUENCY = Byte.MAX_VALUE;
+
+  /**
+   * Entries in clock order, the hand first.
+   */
+  protected final ClockMap map;
+
+  /**
+   * The maximum number of entries.
+   */
+  protected final int capacity;
+
+  /**
+   * The maximum value of access counters.
+   */
+  protected final int maxFrequency;
+
+  /**
+   * Receives evicted entries (may be <code>null</code>).
+   */
+  protected final KTypeVTypeProcedure<? super KType, ? super VType> evictionListener;
+
+  /**
+   * Statistics (see {@link #hits()}, {@link #misses()}, {@link #evictions()}).
+   */
+  protected long hits, misses, evictions;
+
+  /**
+   * New CLOCK instance without an eviction listener.
+   */
+  public KTypeVTypeClockCache(int capacity) {
+    this(capacity, 1, null);
+  }
+
+  /**
+   * New instance.
+   *
+   * @param capacity The maximum number of entries (at least one).
+   * @param maxFrequency The maximum value of access counters, between 1 (CLOCK)
+   *        and {@link #MAX_FREQUENCY}.
+   * @param evictionListener Invoked with each evicted entry, after it has been
+   *        removed and the new entry has been inserted (may be <code>null</code>).
+   */
+  public KTypeVTypeClockCache(int capacity, int maxFrequency,
+                              KTypeVTypeProcedure<? super KType, ? super VType> evictionListener) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+    }
+    if (maxFrequency < 1 || maxFrequency > MAX_FREQUENCY) {
+      throw new IllegalArgumentException("Max frequency must be between 1 and "
+          + MAX_FREQUENCY + ": " + maxFrequency);
+    }
+    this.capacity = capacity;
+    this.maxFrequency = maxFrequency;
+    this.evictionListener = evictionListener;
+    this.map = new ClockMap(capacity);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType get(KType key) {
+    return getOrDefault(key, Intrinsics.<VType> empty());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType getOrDefault(KType key, VType defaultValue) {
+    final int index = map.indexOf(key);
+    if (index >= 0) {
+      hits++;
+      access(index);
+      return map.indexGet(index);
+    } else {
+      misses++;
+      return defaultValue;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType put(KType key, VType value) {
+    int index = map.indexOf(key);
+    if (index >= 0) {
+      access(index);
+      return map.indexReplace(index, value);
+    }
+
+    if (map.size() < capacity) {
+      insert(index, key, value);
+    } else {
+      // Advance the hand to an entry without accesses left.
+      int victim;
+      while (map.frequencies[victim = map.firstIndex()] > 0) {
+        map.frequencies[victim]--;
+        map.indexMoveToLast(victim);
+      }
+
+      final KType evictedKey = Intrinsics.<KType> cast(map.keys[victim]);
+      final VType evictedValue = map.indexRemove(victim);
+      evictions++;
+
+      // Removal may shift keys, so look up the insertion slot again.
+      insert(map.indexOf(key), key, value);
+      if (evictionListener != null) {
+        evictionListener.apply(evictedKey, evictedValue);
+      }
+    }
+    return Intrinsics.<VType> empty();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType remove(KType key) {
+    return map.remove(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean containsKey(KType key) {
+    return map.containsKey(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int size() {
+    return map.size();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int capacity() {
+    return capacity;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void clear() {
+    map.clear();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long hits() {
+    return hits;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long misses() {
+    return misses;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long evictions() {
+    return evictions;
+  }
+
+  /**
+   * @return Returns the access counter of the given key or <code>-1</code> if
+   *         the key is not in the cache.
+   */
+  public int frequency(KType key) {
+    final int index = map.indexOf(key);
+    return index >= 0 ? map.frequencies[index] : -1;
+  }
+
+  /**
+   * Convert the contents of this cache to a human-friendly string, in clock
+   * order starting at the hand.
+   */
+  @Override
+  public String toString() {
+    return map.toString();
+  }
+
+  private void access(int index) {
+    if (map.frequencies[index] < maxFrequency) {
+      map.frequencies[index]++;
+    }
+  }
+
+  private void insert(int index, KType key, VType value) {
+    map.indexInsert(index, key, value);
+    map.frequencies[~index] = 0;
+  }
+
+  /**
+   * A linked map with an access counter per slot, moved along with entries.
+   */
+  protected final class ClockMap extends KTypeVTypeLinkedOpenHashMap<KType, VType> {
+    /**
+     * Access counters, indexed by slot (including the empty key's slot). Only
+     * meaningful for occupied slots.
+     */
+    byte[] frequencies;
+
+    ClockMap(int expectedElements) {
+      super(expectedElements);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Access counters are reset: the cache never grows its buffers.</p>
+     */
+    @Override
+    protected void allocateBuffers(int arraySize) {
+      final byte[] frequencies;
+      try {
+        int emptyElementSlot = 1;
+        frequencies = new byte [arraySize + emptyElementSlot];
+      } catch (OutOfMemoryError e) {
+        throw new BufferAllocationException(
+            "Not enough memory to allocate buffers for rehashing: %,d -> %,d",
+            e,
+            this.mask + 1,
+            arraySize);
+      }
+
+      super.allocateBuffers(arraySize);
+      this.frequencies = frequencies;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void relink(int from, int to) {
+      super.relink(from, to);
+      frequencies[to] = frequencies[from];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ClockMap clone() {
+      final ClockMap cloned = (ClockMap) super.clone();
+      cloned.frequencies = frequencies.clone();
+      return cloned;
+    }
+  }
+}
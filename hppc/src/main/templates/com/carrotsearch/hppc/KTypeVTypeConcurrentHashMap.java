@@ -0,0 +1,397 @@
+package com.carrotsearch.hppc;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.carrotsearch.hppc.functions.*;
+import com.carrotsearch.hppc.predicates.*;
+import com.carrotsearch.hppc.procedures.*;
+
+import static com.carrotsearch.hppc.HashContainers.*;
+import static com.carrotsearch.hppc.Containers.*;
+
+/**
+ * A thread-safe hash map of <code>KType</code> to <code>VType</code>. Keys are
+ * sharded over a power-of-two number of independent {@link KTypeVTypeOpenHashMap}
+ * segments, selected by the high bits of the key's hash. Each segment is guarded
+ * by its own read-write lock: lookups in a segment run concurrently, modifications
+ * of different segments do not block each other.
+ *
+ * <p>All single-key operations, including {@link #putOrAdd}, {@link #addTo},
+ * {@link #putIfAbsent} and {@link #computeIfAbsent}, are atomic. Bulk operations
+ * ({@link #size()}, {@link #forEach}, {@link #clear()} and the like) visit one
+ * segment at a time and are not atomic with respect to concurrent modifications
+ * of other segments.</p>
+ *
+ * <p>Functions, procedures and predicates are invoked while the lock of the
+ * key's segment is held, so they must not access this map.</p>
+ */
+/*! #if ($TemplateOptions.anyGeneric) @SuppressWarnings("unchecked") #end !*/
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeConcurrentHashMap<KType, VType>
+{
+  /**
+   * The default number of segments.
+   */
+  public final static int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+  /**
+   * The maximum number of segments.
+   */
+  public final static int MAX_CONCURRENCY_LEVEL = 1 << 16;
+
+  /**
+   * Segments holding the keys and values.
+   */
+  protected final KTypeVTypeOpenHashMap<KType, VType> [] segments;
+
+  /**
+   * Locks guarding {@link #segments} (at the same index).
+   */
+  protected final ReentrantReadWriteLock [] locks;
+
+  /**
+   * Shift selecting the segment bits of a key's hash.
+   */
+  protected final int segmentShift;
+
+  /**
+   * Mask of segment indexes (the number of segments minus one).
+   */
+  protected final int segmentMask;
+
+  /**
+   * New instance with sane defaults.
+   */
+  public KTypeVTypeConcurrentHashMap() {
+    this(DEFAULT_EXPECTED_ELEMENTS);
+  }
+
+  /**
+   * New instance with sane defaults.
+   */
+  public KTypeVTypeConcurrentHashMap(int expectedElements) {
+    this(expectedElements, DEFAULT_LOAD_FACTOR, DEFAULT_CONCURRENCY_LEVEL);
+  }
+
+  /**
+   * New instance with the provided defaults.
+   *
+   * @param expectedElements
+   *          The expected number of elements in all segments.
+   * @param loadFactor
+   *          The load factor of each segment.
+   * @param concurrencyLevel
+   *          The expected number of concurrently modifying threads. The number
+   *          of segments is the next power of two.
+   */
+  public KTypeVTypeConcurrentHashMap(int expectedElements, double loadFactor, int concurrencyLevel) {
+    if (concurrencyLevel < 1 || concurrencyLevel > MAX_CONCURRENCY_LEVEL) {
+      throw new IllegalArgumentException("Concurrency level must be between 1 and "
+          + MAX_CONCURRENCY_LEVEL + ": " + concurrencyLevel);
+    }
+    if (expectedElements < 0) {
+      throw new IllegalArgumentException("Number of elements must be >= 0: " + expectedElements);
+    }
+
+    final int segmentCount = BitUtil.nextHighestPowerOfTwo(concurrencyLevel);
+    this.segmentMask = segmentCount - 1;
+    this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+    this.segments = new KTypeVTypeOpenHashMap [segmentCount];
+    this.locks = new ReentrantReadWriteLock [segmentCount];
+
+    // Round up so that segments with a few more keys than average do not expand.
+    final int perSegment = (int) Math.min(Integer.MAX_VALUE,
+        (long) expectedElements * 5 / (4 * segmentCount) + 1);
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new KTypeVTypeOpenHashMap<KType, VType>(perSegment, loadFactor);
+      locks[i] = new ReentrantReadWriteLock();
+    }
+  }
+
+  /**
+   * @see KTypeVTypeMap#put
+   */
+  public VType put(KType key, VType value) {
+    final int segment = segmentOf(key);
+    final ReentrantReadWriteLock.WriteLock lock = locks[segment].writeLock();
+    lock.lock();
+    try {
+      return segments[segment].put(key, value);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @see KTypeVTypeOpenHashMap#putIfAbsent
+   */
+  public boolean putIfAbsent(KType key, VType value) {
+    final int segment = segmentOf(key);
+    final ReentrantReadWriteLock.WriteLock lock = locks[segment].writeLock();
+    lock.lock();
+    try {
+      return segments[segment].putIfAbsent(key, value);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @see KTypeVTypeOpenHashMap#computeIfAbsent
+   */
+  public VType computeIfAbsent(KType key, KTypeVTypeFunction<? super KType, ? extends VType> function) {
+    final int segment = segmentOf(key);
+    final ReentrantReadWriteLock.WriteLock lock = locks[segment].writeLock();
+    lock.lock();
+    try {
+      return segments[segment].computeIfAbsent(key, function);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /*! #if ($TemplateOptions.VTypePrimitive) !*/
+  /**
+   * Atomically puts <code>putValue</code> if <code>key</code> does not exist or
+   * adds <code>incrementValue</code> to the existing value.
+   *
+   * @see KTypeVTypeMap#putOrAdd
+   */
+  public VType putOrAdd(KType key, VType putValue, VType incrementValue) {
+    final int segment = segmentOf(key);
+    final ReentrantReadWriteLock.WriteLock lock = locks[segment].writeLock();
+    lock.lock();
+    try {
+      return segments[segment].putOrAdd(key, putValue, incrementValue);
+    } finally {
+      lock.unlock();
+    }
+  }
+  /*! #end !*/
+
+  /*! #if ($TemplateOptions.VTypePrimitive) !*/
+  /**
+   * Atomically adds <code>incrementValue</code> to the value of <code>key</code>
+   * (or puts it if <code>key</code> does not exist).
+   *
+   * @see KTypeVTypeMap#addTo
+   */
+  public VType addTo(KType key, VType incrementValue) {
+    return putOrAdd(key, incrementValue, incrementValue);
+  }
+  /*! #end !*/
+
+  /**
+   * @see KTypeVTypeMap#remove
+   */
+  public VType remove(KType key) {
+    final int segment = segmentOf(key);
+    final ReentrantReadWriteLock.WriteLock lock = locks[segment].writeLock();
+    lock.lock();
+    try {
+      return segments[segment].remove(key);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @see KTypeVTypeMap#get
+   */
+  public VType get(KType key) {
+    final int segment = segmentOf(key);
+    final ReentrantReadWriteLock.ReadLock lock = locks[segment].readLock();
+    lock.lock();
+    try {
+      return segments[segment].get(key);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @see KTypeVTypeMap#getOrDefault
+   */
+  public VType getOrDefault(KType key, VType defaultValue) {
+    final int segment = segmentOf(key);
+    final ReentrantReadWriteLock.ReadLock lock = locks[segment].readLock();
+    lock.lock();
+    try {
+      return segments[segment].getOrDefault(key, defaultValue);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @see KTypeVTypeAssociativeContainer#containsKey
+   */
+  public boolean containsKey(KType key) {
+    final int segment = segmentOf(key);
+    final ReentrantReadWriteLock.ReadLock lock = locks[segment].readLock();
+    lock.lock();
+    try {
+      return segments[segment].containsKey(key);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return Returns the number of entries, summed over segments (not atomic with
+   * respect to concurrent modifications).
+   */
+  public int size() {
+    int size = 0;
+    for (int i = 0; i < segments.length; i++) {
+      final ReentrantReadWriteLock.ReadLock lock = locks[i].readLock();
+      lock.lock();
+      try {
+        size += segments[i].size();
+      } finally {
+        lock.unlock();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * @return Returns <code>true</code> if no segment holds any entries.
+   */
+  public boolean isEmpty() {
+    for (int i = 0; i < segments.length; i++) {
+      final ReentrantReadWriteLock.ReadLock lock = locks[i].readLock();
+      lock.lock();
+      try {
+        if (!segments[i].isEmpty()) {
+          return false;
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Clears all segments, one at a time.
+   */
+  public void clear() {
+    for (int i = 0; i < segments.length; i++) {
+      final ReentrantReadWriteLock.WriteLock lock = locks[i].writeLock();
+      lock.lock();
+      try {
+        segments[i].clear();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Removes all entries and releases the buffers of all segments, one at a time.
+   */
+  public void release() {
+    for (int i = 0; i < segments.length; i++) {
+      final ReentrantReadWriteLock.WriteLock lock = locks[i].writeLock();
+      lock.lock();
+      try {
+        segments[i].release();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Removes all entries matching <code>predicate</code>, one segment at a time.
+   *
+   * @return Returns the number of removed entries.
+   */
+  public int removeAll(KTypeVTypePredicate<? super KType, ? super VType> predicate) {
+    int removed = 0;
+    for (int i = 0; i < segments.length; i++) {
+      final ReentrantReadWriteLock.WriteLock lock = locks[i].writeLock();
+      lock.lock();
+      try {
+        removed += segments[i].removeAll(predicate);
+      } finally {
+        lock.unlock();
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Applies <code>procedure</code> to all entries, one segment at a time.
+   */
+  public <T extends KTypeVTypeProcedure<? super KType, ? super VType>> T forEach(T procedure) {
+    for (int i = 0; i < segments.length; i++) {
+      final ReentrantReadWriteLock.ReadLock lock = locks[i].readLock();
+      lock.lock();
+      try {
+        segments[i].forEach(procedure);
+      } finally {
+        lock.unlock();
+      }
+    }
+    return procedure;
+  }
+
+  /**
+   * Applies <code>predicate</code> to entries, one segment at a time, until it
+   * returns <code>false</code>.
+   */
+  public <T extends KTypeVTypePredicate<? super KType, ? super VType>> T forEach(final T predicate) {
+    final boolean [] stopped = new boolean [1];
+    final KTypeVTypePredicate<KType, VType> delegate = new KTypeVTypePredicate<KType, VType>() {
+      @Override
+      public boolean apply(KType key, VType value) {
+        return !(stopped[0] = !predicate.apply(key, value));
+      }
+    };
+
+    for (int i = 0; i < segments.length && !stopped[0]; i++) {
+      final ReentrantReadWriteLock.ReadLock lock = locks[i].readLock();
+      lock.lock();
+      try {
+        segments[i].forEach(delegate);
+      } finally {
+        lock.unlock();
+      }
+    }
+    return predicate;
+  }
+
+  /**
+   * Copies all entries to a new, single-threaded hash map. Each segment is
+   * copied atomically, but the segments are copied one at a time.
+   */
+  public KTypeVTypeOpenHashMap<KType, VType> toMap() {
+    final KTypeVTypeOpenHashMap<KType, VType> map = new KTypeVTypeOpenHashMap<KType, VType>(size());
+    forEach(new KTypeVTypeProcedure<KType, VType>() {
+      @Override
+      public void apply(KType key, VType value) {
+        map.put(key, value);
+      }
+    });
+    return map;
+  }
+
+  /**
+   * Convert the contents of this map to a human-friendly string.
+   */
+  @Override
+  public String toString() {
+    return toMap().toString();
+  }
+
+  /**
+   * Returns the segment of a given key. The high bits of the key's hash are used
+   * so that keys within a segment still differ in the low bits, which select slots
+   * of the segment's buffers.
+   */
+  protected int segmentOf(KType key) {
+    return (BitMixer.mix0(key) >>> segmentShift) & segmentMask;
+  }
+}
@@ -0,0 +1,324 @@
+package com.carrotsearch.hppc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+
+import com.carrotsearch.hppc.HashSnapshots.Header;
+import com.carrotsearch.hppc.cursors.*;
+import com.carrotsearch.hppc.procedures.*;
+
+/*! #if ($TemplateOptions.anyGeneric) $TemplateOptions.setIgnored(true) #end !*/
+/**
+ * A persistent snapshot of a {@link KTypeVTypeOpenHashMap}. A snapshot is written
+ * in one sequential pass with {@link #write} and reopened read-only with
+ * {@link #open}, which memory-maps the stored buffers: lookups run directly
+ * against the mapped pages, without any deserialization.
+ *
+ * <p>A snapshot starts with a fixed-size, big-endian header:</p>
+ * <pre>
+ * offset  size  field
+ *      0     4  magic: 0x48505053 ("HPPS")
+ *      4     4  format version (1)
+ *      8     1  container kind: 'M' (map) or 'S' (set)
+ *      9     1  key type: JVM descriptor ('B', 'C', 'S', 'I', 'F', 'J', 'D')
+ *     10     1  value type (maps) or 0 (sets)
+ *     11     1  byte order of the buffers: 0 (big-endian) or 1 (little-endian)
+ *     12     4  keyMixer
+ *     16     4  mask (the buffers hold mask + 2 elements)
+ *     20     4  assigned (number of keys, excluding the empty key)
+ *     24     1  hasEmptyKey (0 or 1)
+ *     25     7  reserved (zeros)
+ *     32     8  load factor (double)
+ *     40     8  offset of the keys buffer
+ *     48     8  offset of the values buffer (maps) or 0 (sets)
+ *     56     8  total length of the snapshot
+ * </pre>
+ *
+ * <p>The header is followed by the map's <code>keys</code> and <code>values</code>
+ * buffers, each stored verbatim (including the empty key's slot at index
+ * <code>mask + 1</code>), in the writer's native byte order and at an 8-byte
+ * aligned offset. Offsets are relative to the start of the snapshot. Sets
+ * use the same layout, without the values buffer.</p>
+ *
+ * <p>Lookups repeat the hashing and probing of {@link KTypeVTypeOpenHashMap}, so
+ * snapshots of subclasses which override <code>hashKey</code> are not supported.</p>
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public final class KTypeVTypeHashMapSnapshot<KType, VType>
+  implements Iterable<KTypeVTypeCursor<KType, VType>>
+{
+  /**
+   * Mapped keys (<code>mask + 2</code> slots).
+   */
+  private final KTypeOffHeapArray<KType> keys;
+
+  /**
+   * Mapped values (<code>mask + 2</code> slots).
+   */
+  private final KTypeOffHeapArray<VType> values;
+
+  /**
+   * @see KTypeVTypeOpenHashMap#keyMixer
+   */
+  private final int keyMixer;
+
+  /**
+   * @see KTypeVTypeOpenHashMap#mask
+   */
+  private final int mask;
+
+  /**
+   * @see KTypeVTypeOpenHashMap#assigned
+   */
+  private final int assigned;
+
+  /**
+   * @see KTypeVTypeOpenHashMap#hasEmptyKey
+   */
+  private final boolean hasEmptyKey;
+
+  /**
+   * @see KTypeVTypeOpenHashMap#loadFactor
+   */
+  private final double loadFactor;
+
+  private KTypeVTypeHashMapSnapshot(Header header, KTypeOffHeapArray<KType> keys, KTypeOffHeapArray<VType> values) {
+    this.keys = keys;
+    this.values = values;
+    this.keyMixer = header.keyMixer;
+    this.mask = header.mask;
+    this.assigned = header.assigned;
+    this.hasEmptyKey = header.hasEmptyKey;
+    this.loadFactor = header.loadFactor;
+  }
+
+  /**
+   * Writes a snapshot of <code>map</code> to <code>channel</code>, starting at the
+   * channel's current position.
+   */
+  public static <KType, VType> void write(KTypeVTypeOpenHashMap<KType, VType> map, WritableByteChannel channel) throws IOException {
+    /*! #if (!$TemplateOptions.anyGeneric)
+    final int keySize = OffHeapBuffers.sizeOf(Intrinsics.<KType> empty());
+    final int valueSize = OffHeapBuffers.sizeOf(Intrinsics.<VType> empty());
+    #else !*/
+    final int keySize = OffHeapBuffers.sizeOf((byte) 0);
+    final int valueSize = OffHeapBuffers.sizeOf((byte) 0);
+    /*! #end !*/
+
+    map.finishRehash();
+
+    final Header header = new Header();
+    header.kind = HashSnapshots.KIND_MAP;
+    /*! #if (!$TemplateOptions.anyGeneric)
+    header.keyType = HashSnapshots.typeCode(Intrinsics.<KType> empty());
+    header.valueType = HashSnapshots.typeCode(Intrinsics.<VType> empty());
+    #else !*/
+    header.keyType = HashSnapshots.typeCode((byte) 0);
+    header.valueType = HashSnapshots.typeCode((byte) 0);
+    /*! #end !*/
+    header.order = ByteOrder.nativeOrder();
+    header.keyMixer = map.keyMixer;
+    header.mask = map.mask;
+    header.assigned = map.assigned;
+    header.hasEmptyKey = map.hasEmptyKey;
+    header.loadFactor = map.loadFactor;
+    header.layout(keySize, valueSize);
+
+    final ByteBuffer buffer = HashSnapshots.writeBuffer();
+    header.write(channel);
+    /*! #if (!$TemplateOptions.anyGeneric)
+    HashSnapshots.write(channel, buffer, map.keys);
+    HashSnapshots.pad(channel, header.keysOffset + (long) map.keys.length * keySize, header.valuesOffset);
+    HashSnapshots.write(channel, buffer, map.values);
+    #else !*/
+    HashSnapshots.write(channel, buffer, new byte [map.keys.length]);
+    HashSnapshots.pad(channel, header.keysOffset + (long) map.keys.length * keySize, header.valuesOffset);
+    HashSnapshots.write(channel, buffer, new byte [map.values.length]);
+    /*! #end !*/
+  }
+
+  /**
+   * Opens a snapshot stored at the beginning of a file.
+   *
+   * @see #open(FileChannel, long)
+   */
+  public static <KType, VType> KTypeVTypeHashMapSnapshot<KType, VType> open(FileChannel channel) throws IOException {
+    return open(channel, 0);
+  }
+
+  /**
+   * Opens a snapshot stored at <code>position</code> in a file. The buffers are
+   * mapped read-only and remain valid after the channel is closed.
+   *
+   * @throws IOException If the snapshot is truncated, corrupt or holds a
+   *         different container type.
+   */
+  public static <KType, VType> KTypeVTypeHashMapSnapshot<KType, VType> open(FileChannel channel, long position) throws IOException {
+    final Header header = Header.read(channel, position);
+    /*! #if (!$TemplateOptions.anyGeneric)
+    header.check(HashSnapshots.KIND_MAP,
+        HashSnapshots.typeCode(Intrinsics.<KType> empty()),
+        HashSnapshots.typeCode(Intrinsics.<VType> empty()));
+    #else !*/
+    header.check(HashSnapshots.KIND_MAP, HashSnapshots.typeCode((byte) 0), HashSnapshots.typeCode((byte) 0));
+    /*! #end !*/
+
+    final long slots = (long) header.mask + 2;
+    final KTypeOffHeapArray<KType> keys =
+        new KTypeOffHeapArray<KType>(channel, position + header.keysOffset, slots, header.order);
+    final KTypeOffHeapArray<VType> values =
+        new KTypeOffHeapArray<VType>(channel, position + header.valuesOffset, slots, header.order);
+    return new KTypeVTypeHashMapSnapshot<KType, VType>(header, keys, values);
+  }
+
+  /**
+   * @see KTypeVTypeOpenHashMap#get
+   */
+  public VType get(KType key) {
+    return getOrDefault(key, Intrinsics.<VType> empty());
+  }
+
+  /**
+   * @see KTypeVTypeOpenHashMap#getOrDefault
+   */
+  public VType getOrDefault(KType key, VType defaultValue) {
+    if (Intrinsics.<KType> isEmpty(key)) {
+      return hasEmptyKey ? values.get(mask + 1) : defaultValue;
+    } else {
+      final int slot = slotOf(key);
+      return slot >= 0 ? values.get(slot) : defaultValue;
+    }
+  }
+
+  /**
+   * @see KTypeVTypeOpenHashMap#containsKey
+   */
+  public boolean containsKey(KType key) {
+    if (Intrinsics.<KType> isEmpty(key)) {
+      return hasEmptyKey;
+    } else {
+      return slotOf(key) >= 0;
+    }
+  }
+
+  /**
+   * @return Returns the number of entries in the snapshot.
+   */
+  public int size() {
+    return assigned + (hasEmptyKey ? 1 : 0);
+  }
+
+  /**
+   * @return Returns <code>true</code> if the snapshot holds no entries.
+   */
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * @return Returns the load factor of the map the snapshot was taken from.
+   */
+  public double loadFactor() {
+    return loadFactor;
+  }
+
+  /**
+   * Applies <code>procedure</code> to all entries of the snapshot.
+   */
+  public <T extends KTypeVTypeProcedure<? super KType, ? super VType>> T forEach(T procedure) {
+    if (hasEmptyKey) {
+      procedure.apply(Intrinsics.<KType> empty(), values.get(mask + 1));
+    }
+
+    KType existing;
+    for (int slot = 0, max = this.mask; slot <= max; slot++) {
+      if (!Intrinsics.<KType> isEmpty(existing = keys.get(slot))) {
+        procedure.apply(existing, values.get(slot));
+      }
+    }
+
+    return procedure;
+  }
+
+  /**
+   * Copies the snapshot's entries to a new, mutable hash map.
+   */
+  public KTypeVTypeOpenHashMap<KType, VType> toMap() {
+    final KTypeVTypeOpenHashMap<KType, VType> map = new KTypeVTypeOpenHashMap<KType, VType>(size(), loadFactor);
+    forEach(new KTypeVTypeProcedure<KType, VType>() {
+      @Override
+      public void apply(KType key, VType value) {
+        map.put(key, value);
+      }
+    });
+    return map;
+  }
+
+  /**
+   * An iterator implementation for {@link #iterator}.
+   */
+  private final class EntryIterator extends AbstractIterator<KTypeVTypeCursor<KType, VType>> {
+    private final KTypeVTypeCursor<KType, VType> cursor;
+    private final int max = mask + 1;
+    private int slot = -1;
+
+    public EntryIterator() {
+      cursor = new KTypeVTypeCursor<KType, VType>();
+    }
+
+    @Override
+    protected KTypeVTypeCursor<KType, VType> fetch() {
+      if (slot < max) {
+        KType existing;
+        for (slot++; slot < max; slot++) {
+          if (!Intrinsics.<KType> isEmpty(existing = keys.get(slot))) {
+            cursor.index = slot;
+            cursor.key = existing;
+            cursor.value = values.get(slot);
+            return cursor;
+          }
+        }
+      }
+
+      if (slot == max && hasEmptyKey) {
+        cursor.index = slot;
+        cursor.key = Intrinsics.<KType> empty();
+        cursor.value = values.get(max);
+        slot++;
+        return cursor;
+      }
+
+      return done();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Iterator<KTypeVTypeCursor<KType, VType>> iterator() {
+    return new EntryIterator();
+  }
+
+  /**
+   * Returns the slot of a non-empty key or a negative value if the key is not present.
+   */
+  private int slotOf(KType key) {
+    final int mask = this.mask;
+    int slot = BitMixer.mix(key, keyMixer) & mask;
+
+    KType existing;
+    while (!Intrinsics.<KType> isEmpty(existing = keys.get(slot))) {
+      if (Intrinsics.<KType> equals(key, existing)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    return -1;
+  }
+}
@@ -0,0 +1,193 @@
+package com.carrotsearch.hppc;
+
+import com.carrotsearch.hppc.procedures.*;
+
+/**
+ * A bounded cache of <code>KType</code> to <code>VType</code> which evicts the
+ * least recently used entry, backed by a {@link KTypeVTypeLinkedOpenHashMap}
+ * kept in access order.
+ *
+ * <p>All operations are O(1) and do not allocate: the map is sized for the
+ * capacity at construction and never grows.</p>
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeLRUCache<KType, VType> implements KTypeVTypeCache<KType, VType> {
+  /**
+   * Entries, least recently used first.
+   */
+  protected final KTypeVTypeLinkedOpenHashMap<KType, VType> map;
+
+  /**
+   * The maximum number of entries.
+   */
+  protected final int capacity;
+
+  /**
+   * Receives evicted entries (may be <code>null</code>).
+   */
+  protected final KTypeVTypeProcedure<? super KType, ? super VType> evictionListener;
+
+  /**
+   * Statistics (see {@link #hits()}, {@link #misses()}, {@link #evictions()}).
+   */
+  protected long hits, misses, evictions;
+
+  /**
+   * New instance without an eviction listener.
+   */
+  public KTypeVTypeLRUCache(int capacity) {
+    this(capacity, null);
+  }
+
+  /**
+   * New instance.
+   *
+   * @param capacity The maximum number of entries (at least one).
+   * @param evictionListener Invoked with each evicted entry, after it has been
+   *        removed and the new entry has been inserted (may be <code>null</code>).
+   */
+  public KTypeVTypeLRUCache(int capacity, KTypeVTypeProcedure<? super KType, ? super VType> evictionListener) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+    }
+    this.capacity = capacity;
+    this.evictionListener = evictionListener;
+    this.map = new KTypeVTypeLinkedOpenHashMap<>(capacity);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType get(KType key) {
+    return getOrDefault(key, Intrinsics.<VType> empty());
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The key becomes the most recently used one.</p>
+   */
+  @Override
+  public VType getOrDefault(KType key, VType defaultValue) {
+    final int index = map.indexOf(key);
+    if (index >= 0) {
+      hits++;
+      map.indexMoveToLast(index);
+      return map.indexGet(index);
+    } else {
+      misses++;
+      return defaultValue;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The key becomes the most recently used one.</p>
+   */
+  @Override
+  public VType put(KType key, VType value) {
+    int index = map.indexOf(key);
+    if (index >= 0) {
+      map.indexMoveToLast(index);
+      return map.indexReplace(index, value);
+    }
+
+    if (map.size() < capacity) {
+      map.indexInsert(index, key, value);
+    } else {
+      // Removal may shift keys, so look up the insertion slot again.
+      final int eldest = map.firstIndex();
+      final KType evictedKey = Intrinsics.<KType> cast(map.keys[eldest]);
+      final VType evictedValue = map.indexRemove(eldest);
+      evictions++;
+
+      map.indexInsert(map.indexOf(key), key, value);
+      if (evictionListener != null) {
+        evictionListener.apply(evictedKey, evictedValue);
+      }
+    }
+    return Intrinsics.<VType> empty();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType remove(KType key) {
+    return map.remove(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean containsKey(KType key) {
+    return map.containsKey(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int size() {
+    return map.size();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int capacity() {
+    return capacity;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void clear() {
+    map.clear();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long hits() {
+    return hits;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long misses() {
+    return misses;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long evictions() {
+    return evictions;
+  }
+
+  /**
+   * @return Returns the least recently used key. The cache must not be empty.
+   */
+  public KType eldestKey() {
+    return map.firstKey();
+  }
+
+  /**
+   * Convert the contents of this cache to a human-friendly string, least
+   * recently used entry first.
+   */
+  @Override
+  public String toString() {
+    return map.toString();
+  }
+}
@@ -0,0 +1,696 @@
+package com.carrotsearch.hppc;
+
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+
+import com.carrotsearch.hppc.cursors.*;
+import com.carrotsearch.hppc.predicates.*;
+import com.carrotsearch.hppc.procedures.*;
+
+import static com.carrotsearch.hppc.HashContainers.*;
+import static com.carrotsearch.hppc.Containers.*;
+
+/**
+ * A hash map of <code>KType</code> to <code>VType</code>, implemented using open
+ * addressing with linear probing for collision resolution, which iterates over
+ * its entries in insertion order.
+ *
+ * <p>Entries are linked in a doubly linked list kept in two <code>int</code> arrays
+ * parallel to the buffers ({@link #prev} and {@link #next}, indexed by slot), so
+ * no objects are allocated per entry. Replacing the value of an existing key does
+ * not change its position; entries can be moved to either end of the list
+ * explicitly (see {@link #moveToFirst} and {@link #moveToLast}), which makes this
+ * map a building block of LRU caches.</p>
+ *
+ * <p>All iteration methods ({@link #iterator()}, {@link #forEach}, {@link #keys()},
+ * {@link #values()}) follow the list, except for spliterators and parallel
+ * operations, which traverse the buffers.</p>
+ */
+/*! #if ($TemplateOptions.anyGeneric) @SuppressWarnings("unchecked") #end !*/
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeLinkedOpenHashMap<KType, VType>
+  extends KTypeVTypeOpenHashMap<KType, VType>
+{
+  /**
+   * The slot of the previous entry (or <code>-1</code>) for each occupied slot,
+   * including the empty key's slot (<code>mask + 1</code>).
+   */
+  public int[] prev;
+
+  /**
+   * The slot of the next entry (or <code>-1</code>) for each occupied slot,
+   * including the empty key's slot (<code>mask + 1</code>).
+   */
+  public int[] next;
+
+  /**
+   * The slot of the first entry, or <code>-1</code> if this map is empty.
+   */
+  protected int head;
+
+  /**
+   * The slot of the last entry, or <code>-1</code> if this map is empty.
+   */
+  protected int tail;
+
+  /**
+   * Links of the previous buffers between {@link #allocateBuffers(int)} and
+   * {@link #rehash}, <code>null</code> otherwise.
+   */
+  private int[] fromNext;
+
+  /**
+   * The first slot of the previous buffers (see {@link #fromNext}).
+   */
+  private int fromHead;
+
+  /**
+   * New instance with sane defaults.
+   */
+  public KTypeVTypeLinkedOpenHashMap() {
+    this(DEFAULT_EXPECTED_ELEMENTS);
+  }
+
+  /**
+   * New instance with sane defaults.
+   */
+  public KTypeVTypeLinkedOpenHashMap(int expectedElements) {
+    this(expectedElements, DEFAULT_LOAD_FACTOR);
+  }
+
+  /**
+   * New instance with sane defaults.
+   */
+  public KTypeVTypeLinkedOpenHashMap(int expectedElements, double loadFactor) {
+    this(expectedElements, loadFactor, HashOrderMixing.randomized());
+  }
+
+  /**
+   * New instance with the provided defaults.
+   *
+   * @see KTypeVTypeOpenHashMap#KTypeVTypeOpenHashMap(int, double, HashOrderMixingStrategy)
+   */
+  public KTypeVTypeLinkedOpenHashMap(int expectedElements, double loadFactor, HashOrderMixingStrategy orderMixer) {
+    super(expectedElements, loadFactor, orderMixer);
+  }
+
+  /**
+   * Create a hash map from all key-value pairs of another container (in the
+   * container's iteration order).
+   */
+  public KTypeVTypeLinkedOpenHashMap(KTypeVTypeAssociativeContainer<? extends KType, ? extends VType> container) {
+    this(container.size());
+    putAll(container);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>A new key is appended to the end of the iteration order.</p>
+   */
+  @Override
+  public VType put(KType key, VType value) {
+    final int index = indexOf(key);
+    if (index >= 0) {
+      return indexReplace(index, value);
+    } else {
+      indexInsert(index, key, value);
+      return Intrinsics.<VType> empty();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType remove(KType key) {
+    final int index = indexOf(key);
+    if (index >= 0) {
+      return indexRemove(index);
+    } else {
+      return Intrinsics.<VType> empty();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int removeAll(KTypeContainer<? super KType> container) {
+    final boolean hadEmptyKey = hasEmptyKey;
+    final int removed = super.removeAll(container);
+    unlinkRemovedEmptyKey(hadEmptyKey);
+    return removed;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int removeAll(KTypeVTypePredicate<? super KType, ? super VType> predicate) {
+    final boolean hadEmptyKey = hasEmptyKey;
+    final int removed = super.removeAll(predicate);
+    unlinkRemovedEmptyKey(hadEmptyKey);
+    return removed;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int removeAll(KTypePredicate<? super KType> predicate) {
+    final boolean hadEmptyKey = hasEmptyKey;
+    final int removed = super.removeAll(predicate);
+    unlinkRemovedEmptyKey(hadEmptyKey);
+    return removed;
+  }
+
+  /**
+   * Removes matching keys sequentially: compacting chunks of slots in parallel
+   * would not maintain the links of moved entries.
+   */
+  @Override
+  public int parallelRemoveAll(ForkJoinPool pool, KTypeVTypePredicate<? super KType, ? super VType> predicate) {
+    return removeAll(predicate);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The key is appended to the end of the iteration order.</p>
+   */
+  @Override
+  public void indexInsert(int index, KType key, VType value) {
+    assert index < 0 : "The index must not point at an existing key.";
+
+    index = ~index;
+    if (Intrinsics.<KType> isEmpty(key)) {
+      assert index == mask + 1;
+      values[index] = value;
+      hasEmptyKey = true;
+      linkLast(index);
+    } else {
+      assert Intrinsics.<KType> isEmpty(keys[index]);
+
+      if (assigned == resizeAt) {
+        allocateThenInsertThenRehash(index, key, value);
+      } else {
+        keys[index] = key;
+        values[index] = value;
+        linkLast(index);
+      }
+
+      assigned++;
+    }
+  }
+
+  /**
+   * Removes the entry at the given index (as returned by {@link #indexOf},
+   * {@link #firstIndex()} or {@link #lastIndex()}).
+   *
+   * @param index The index of an existing key.
+   * @return Returns the value of the removed entry.
+   */
+  public VType indexRemove(int index) {
+    assert index >= 0 : "The index must point at an existing key.";
+    assert index <= mask ||
+           (index == mask + 1 && hasEmptyKey);
+
+    final VType previousValue = Intrinsics.<VType> cast(values[index]);
+    if (index == mask + 1) {
+      unlink(index);
+      hasEmptyKey = false;
+      values[index] = Intrinsics.<VType> empty();
+    } else {
+      shiftConflictingKeys(index);
+    }
+    return previousValue;
+  }
+
+  /**
+   * @return Returns the index of the first entry in iteration order or a negative
+   * value if this map is empty.
+   */
+  public int firstIndex() {
+    return head;
+  }
+
+  /**
+   * @return Returns the index of the last entry in iteration order or a negative
+   * value if this map is empty.
+   */
+  public int lastIndex() {
+    return tail;
+  }
+
+  /**
+   * @return Returns the first key in iteration order. The map must not be empty.
+   */
+  public KType firstKey() {
+    assert head >= 0 : "The map is empty.";
+    return Intrinsics.<KType> cast(keys[head]);
+  }
+
+  /**
+   * @return Returns the last key in iteration order. The map must not be empty.
+   */
+  public KType lastKey() {
+    assert tail >= 0 : "The map is empty.";
+    return Intrinsics.<KType> cast(keys[tail]);
+  }
+
+  /**
+   * Moves the entry of <code>key</code> (if any) to the start of the iteration order.
+   *
+   * @return Returns <code>true</code> if the key exists in this map.
+   */
+  public boolean moveToFirst(KType key) {
+    final int index = indexOf(key);
+    if (index >= 0) {
+      indexMoveToFirst(index);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Moves the entry of <code>key</code> (if any) to the end of the iteration order.
+   *
+   * @return Returns <code>true</code> if the key exists in this map.
+   */
+  public boolean moveToLast(KType key) {
+    final int index = indexOf(key);
+    if (index >= 0) {
+      indexMoveToLast(index);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Moves the entry at the given index to the start of the iteration order.
+   *
+   * @param index The index of an existing key.
+   */
+  public void indexMoveToFirst(int index) {
+    assert index >= 0 : "The index must point at an existing key.";
+
+    if (index != head) {
+      unlink(index);
+      prev[index] = -1;
+      next[index] = head;
+      prev[head] = index;
+      head = index;
+    }
+  }
+
+  /**
+   * Moves the entry at the given index to the end of the iteration order.
+   *
+   * @param index The index of an existing key.
+   */
+  public void indexMoveToLast(int index) {
+    assert index >= 0 : "The index must point at an existing key.";
+
+    if (index != tail) {
+      unlink(index);
+      linkLast(index);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void clear() {
+    super.clear();
+    head = tail = -1;
+  }
+
+  /**
+   * An iterator over the entries in insertion order.
+   */
+  private final class EntryIterator extends AbstractIterator<KTypeVTypeCursor<KType, VType>> {
+    private final KTypeVTypeCursor<KType, VType> cursor = new KTypeVTypeCursor<KType, VType>();
+    private int slot = head;
+
+    @Override
+    protected KTypeVTypeCursor<KType, VType> fetch() {
+      if (slot < 0) {
+        return done();
+      }
+
+      cursor.index = slot;
+      cursor.key = Intrinsics.<KType> cast(keys[slot]);
+      cursor.value = Intrinsics.<VType> cast(values[slot]);
+      slot = next[slot];
+      return cursor;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Iterator<KTypeVTypeCursor<KType, VType>> iterator() {
+    return new EntryIterator();
+  }
+
+  /**
+   * An iterator over the keys in insertion order.
+   */
+  private final class KeysIterator extends AbstractIterator<KTypeCursor<KType>> {
+    private final KTypeCursor<KType> cursor = new KTypeCursor<KType>();
+    private int slot = head;
+
+    @Override
+    protected KTypeCursor<KType> fetch() {
+      if (slot < 0) {
+        return done();
+      }
+
+      cursor.index = slot;
+      cursor.value = Intrinsics.<KType> cast(keys[slot]);
+      slot = next[slot];
+      return cursor;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected Iterator<KTypeCursor<KType>> keysIterator() {
+    return new KeysIterator();
+  }
+
+  /**
+   * An iterator over the values in insertion order.
+   */
+  private final class ValuesIterator extends AbstractIterator<KTypeCursor<VType>> {
+    private final KTypeCursor<VType> cursor = new KTypeCursor<VType>();
+    private int slot = head;
+
+    @Override
+    protected KTypeCursor<VType> fetch() {
+      if (slot < 0) {
+        return done();
+      }
+
+      cursor.index = slot;
+      cursor.value = Intrinsics.<VType> cast(values[slot]);
+      slot = next[slot];
+      return cursor;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected Iterator<KTypeCursor<VType>> valuesIterator() {
+    return new ValuesIterator();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public <T extends KTypeVTypeProcedure<? super KType, ? super VType>> T forEach(T procedure) {
+    final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+    final VType[] values = Intrinsics.<VType[]> cast(this.values);
+    final int[] next = this.next;
+
+    for (int slot = head; slot >= 0; slot = next[slot]) {
+      procedure.apply(keys[slot], values[slot]);
+    }
+
+    return procedure;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public <T extends KTypeVTypePredicate<? super KType, ? super VType>> T forEach(T predicate) {
+    final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+    final VType[] values = Intrinsics.<VType[]> cast(this.values);
+    final int[] next = this.next;
+
+    for (int slot = head; slot >= 0; slot = next[slot]) {
+      if (!predicate.apply(keys[slot], values[slot])) {
+        break;
+      }
+    }
+
+    return predicate;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public KTypeVTypeLinkedOpenHashMap<KType, VType> clone() {
+    final KTypeVTypeLinkedOpenHashMap<KType, VType> cloned =
+        (KTypeVTypeLinkedOpenHashMap<KType, VType>) super.clone();
+    cloned.prev = prev.clone();
+    cloned.next = next.clone();
+    return cloned;
+  }
+
+  /**
+   * Creates a hash map from two index-aligned arrays of key-value pairs (in
+   * array order).
+   */
+  public static <KType, VType> KTypeVTypeLinkedOpenHashMap<KType, VType> from(KType[] keys, VType[] values) {
+    if (keys.length != values.length) {
+      throw new IllegalArgumentException("Arrays of keys and values must have an identical length.");
+    }
+
+    KTypeVTypeLinkedOpenHashMap<KType, VType> map = new KTypeVTypeLinkedOpenHashMap<>();
+    for (int i = 0; i < keys.length; i++) {
+      map.put(keys[i], values[i]);
+    }
+
+    return map;
+  }
+
+  /**
+   * Accepted for compatibility but ignored: the links of both buffers would
+   * have to be maintained during an incremental rehash, so this map always
+   * rehashes all entries at once.
+   */
+  @Override
+  public void setIncrementalRehash(int slotsPerOperation) {
+    if (slotsPerOperation < 0) {
+      throw new IllegalArgumentException("Slots per operation must be >= 0: " + slotsPerOperation);
+    }
+  }
+
+  /**
+   * Accepted for compatibility but ignored: entries are rehashed in iteration
+   * order to link them in the new buffers, so this map always rehashes
+   * sequentially.
+   */
+  @Override
+  public void setParallelRehash(ForkJoinPool pool) {
+    // Rehash sequentially.
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void allocateBuffers(int arraySize) {
+    // Allocate links first so that no change is done if we hit an OOM.
+    final int[] prev;
+    final int[] next;
+    try {
+      int emptyElementSlot = 1;
+      prev = new int [arraySize + emptyElementSlot];
+      next = new int [arraySize + emptyElementSlot];
+    } catch (OutOfMemoryError e) {
+      throw new BufferAllocationException(
+          "Not enough memory to allocate buffers for rehashing: %,d -> %,d",
+          e,
+          this.mask + 1,
+          arraySize);
+    }
+
+    super.allocateBuffers(arraySize);
+
+    // Keep the previous links for rehash (there is nothing to rehash if empty).
+    this.fromNext = isEmpty() ? null : this.next;
+    this.fromHead = this.head;
+    this.prev = prev;
+    this.next = next;
+    this.head = this.tail = -1;
+  }
+
+  /**
+   * Rehash from old buffers to new buffers, in iteration order.
+   */
+  @Override
+  protected void rehash(KType[] fromKeys, VType[] fromValues) {
+    assert fromKeys.length == fromValues.length &&
+           HashContainers.checkPowerOfTwo(fromKeys.length - 1);
+
+    final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+    final VType[] values = Intrinsics.<VType[]> cast(this.values);
+    final int mask = this.mask;
+    final int[] fromNext = this.fromNext;
+    final int fromEmptySlot = fromKeys.length - 1;
+
+    for (int from = fromHead; from >= 0; from = fromNext[from]) {
+      if (from == fromEmptySlot) {
+        values[mask + 1] = fromValues[from];
+        linkLast(mask + 1);
+      } else {
+        final KType existing = fromKeys[from];
+        int slot = hashKey(existing) & mask;
+        while (!Intrinsics.<KType> isEmpty(keys[slot])) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = existing;
+        values[slot] = fromValues[from];
+        linkLast(slot);
+      }
+    }
+
+    this.fromNext = null;
+  }
+
+  /**
+   * This method is invoked when there is a new key/ value pair to be inserted into
+   * the buffers but there is not enough empty slots to do so.
+   *
+   * New buffers are allocated. If this succeeds, we rehash all keys from the
+   * previous buffers and append the pending key/ value pair to the new buffers
+   * (so that it is linked last).
+   */
+  @Override
+  protected void allocateThenInsertThenRehash(int slot, KType pendingKey, VType pendingValue) {
+    assert assigned == resizeAt
+           && !Intrinsics.<KType> isEmpty(pendingKey);
+
+    // Try to allocate new buffers first. If we OOM, we leave in a consistent state.
+    final KType[] prevKeys = Intrinsics.<KType[]> cast(this.keys);
+    final VType[] prevValues = Intrinsics.<VType[]> cast(this.values);
+    allocateBuffers(nextBufferSize(mask + 1, size(), loadFactor));
+    assert this.keys.length > prevKeys.length;
+
+    final long start = System.nanoTime();
+    rehash(prevKeys, prevValues);
+    rehashed(start);
+
+    final int mask = this.mask;
+    slot = hashKey(pendingKey) & mask;
+    while (!Intrinsics.<KType> isEmpty(Intrinsics.<KType> cast(keys[slot]))) {
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = pendingKey;
+    values[slot] = pendingValue;
+    linkLast(slot);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Entries moved to fill the gap keep their position in the iteration order.</p>
+   */
+  @Override
+  protected void shiftConflictingKeys(int gapSlot) {
+    final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+    final VType[] values = Intrinsics.<VType[]> cast(this.values);
+    final int mask = this.mask;
+
+    unlink(gapSlot);
+
+    // Perform shifts of conflicting keys to fill in the gap.
+    int distance = 0;
+    while (true) {
+      final int slot = (gapSlot + (++distance)) & mask;
+      final KType existing = keys[slot];
+      if (Intrinsics.<KType> isEmpty(existing)) {
+        break;
+      }
+
+      final int idealSlot = hashKey(existing);
+      final int shift = (slot - idealSlot) & mask;
+      if (shift >= distance) {
+        keys[gapSlot] = existing;
+        values[gapSlot] = values[slot];
+        relink(slot, gapSlot);
+        gapSlot = slot;
+        distance = 0;
+      }
+    }
+
+    // Mark the last found gap slot without a conflict as empty.
+    keys[gapSlot] = Intrinsics.<KType> empty();
+    values[gapSlot] = Intrinsics.<VType> empty();
+    assigned--;
+  }
+
+  /**
+   * Unlinks the empty key's slot if the empty key has been removed by a
+   * bulk operation of the superclass.
+   */
+  private void unlinkRemovedEmptyKey(boolean hadEmptyKey) {
+    if (hadEmptyKey && !hasEmptyKey) {
+      unlink(mask + 1);
+    }
+  }
+
+  /**
+   * Appends <code>slot</code> to the end of the iteration order.
+   */
+  private void linkLast(int slot) {
+    prev[slot] = tail;
+    next[slot] = -1;
+    if (tail >= 0) {
+      next[tail] = slot;
+    } else {
+      head = slot;
+    }
+    tail = slot;
+  }
+
+  /**
+   * Removes <code>slot</code> from the iteration order.
+   */
+  private void unlink(int slot) {
+    final int p = prev[slot];
+    final int n = next[slot];
+    if (p >= 0) {
+      next[p] = n;
+    } else {
+      head = n;
+    }
+    if (n >= 0) {
+      prev[n] = p;
+    } else {
+      tail = p;
+    }
+  }
+
+  /**
+   * Moves the links of an entry moved from slot <code>from</code> to slot
+   * <code>to</code> by {@link #shiftConflictingKeys}. Subclasses keeping other
+   * per-slot data should move it as well.
+   */
+  protected void relink(int from, int to) {
+    final int p = prev[to] = prev[from];
+    final int n = next[to] = next[from];
+    if (p >= 0) {
+      next[p] = to;
+    } else {
+      head = to;
+    }
+    if (n >= 0) {
+      prev[n] = to;
+    } else {
+      tail = to;
+    }
+  }
+}
@@ -0,0 +1,1190 @@
+package com.carrotsearch.hppc;
+
+import java.util.*;
+
+import com.carrotsearch.hppc.cursors.*;
+import com.carrotsearch.hppc.functions.*;
+import com.carrotsearch.hppc.predicates.*;
+import com.carrotsearch.hppc.procedures.*;
+
+import static com.carrotsearch.hppc.HashContainers.*;
+import static com.carrotsearch.hppc.Containers.*;
+
+/*! #if ($TemplateOptions.anyGeneric) $TemplateOptions.setIgnored(true) #end !*/
+/**
+ * A hash map of <code>KType</code> to <code>VType</code>, implemented using open
+ * addressing with linear probing for collision resolution, with keys and values
+ * stored in direct (off-heap) memory.
+ *
+ * <p>The semantics follow {@link KTypeVTypeOpenHashMap}, but buffers are neither
+ * part of the Java heap nor traversed or copied by the garbage collector, and slots
+ * are addressed with <code>long</code>s so the buffers can grow beyond
+ * <code>2^30</code> slots (up to <code>2^32</code>; the number of entries is still
+ * limited to what {@link #size()} can report).</p>
+ *
+ * <p>The direct memory is reclaimed once the buffers become unreachable: after
+ * a rehash, after {@link #release()} or once the map itself is garbage collected.
+ * The total is limited by the <code>-XX:MaxDirectMemorySize</code> JVM option.</p>
+ *
+ * <p>Indexes (see {@link #indexOf}) and {@link KTypeVTypeCursor#index} are
+ * <code>int</code>s and are only available while the map has at most
+ * <code>2^30</code> slots. Beyond that, {@link #indexOf} throws an
+ * {@link UnsupportedOperationException} and cursor indexes are <code>-1</code>.</p>
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeOffHeapHashMap<KType, VType>
+  implements /*! #if ($templateonly) !*/ Intrinsics.EqualityFunction, /*! #end !*/
+             /*! #if ($templateonly) !*/ Intrinsics.KeyHasher<KType>, /*! #end !*/
+             KTypeVTypeMap<KType, VType>,
+             Preallocatable
+{
+  /**
+   * Off-heap buffer holding keys.
+   */
+  protected KTypeOffHeapArray<KType> keys;
+
+  /**
+   * Off-heap buffer holding values.
+   */
+  protected KTypeOffHeapArray<VType> values;
+
+  /**
+   * The value associated with the "empty" key, if {@link #hasEmptyKey}.
+   */
+  protected VType emptyKeyValue;
+
+  /**
+   * We perturb hash values with a container-unique
+   * seed to avoid problems with nearly-sorted-by-hash
+   * values on iterations.
+   *
+   * @see #hashKey
+   */
+  protected int keyMixer;
+
+  /**
+   * The number of stored keys (assigned key slots), excluding the special
+   * "empty" key, if any (use {@link #size()} instead).
+   *
+   * @see #size()
+   */
+  protected int assigned;
+
+  /**
+   * Mask for slot scans in {@link #keys}.
+   */
+  protected long mask;
+
+  /**
+   * Expand (rehash) {@link #keys} when {@link #assigned} hits this value.
+   */
+  protected int resizeAt;
+
+  /**
+   * Special treatment for the "empty slot" key marker.
+   */
+  protected boolean hasEmptyKey;
+
+  /**
+   * The load factor for {@link #keys}.
+   */
+  protected double loadFactor;
+
+  /**
+   * Per-instance hash order mixing strategy.
+   * @see #keyMixer
+   */
+  protected HashOrderMixingStrategy orderMixer;
+
+  /**
+   * New instance with sane defaults.
+   */
+  public KTypeVTypeOffHeapHashMap() {
+    this(DEFAULT_EXPECTED_ELEMENTS);
+  }
+
+  /**
+   * New instance with sane defaults.
+   */
+  public KTypeVTypeOffHeapHashMap(int expectedElements) {
+    this(expectedElements, DEFAULT_LOAD_FACTOR);
+  }
+
+  /**
+   * New instance with sane defaults.
+   */
+  public KTypeVTypeOffHeapHashMap(int expectedElements, double loadFactor) {
+    this(expectedElements, loadFactor, HashOrderMixing.randomized());
+  }
+
+  /**
+   * New instance with the provided defaults.
+   *
+   * @see KTypeVTypeOpenHashMap#KTypeVTypeOpenHashMap(int, double, HashOrderMixingStrategy)
+   */
+  public KTypeVTypeOffHeapHashMap(int expectedElements, double loadFactor, HashOrderMixingStrategy orderMixer) {
+    this.orderMixer = orderMixer;
+    this.loadFactor = verifyLoadFactor(loadFactor);
+    ensureCapacity(expectedElements);
+  }
+
+  /**
+   * Create a hash map from all key-value pairs of another container.
+   */
+  public KTypeVTypeOffHeapHashMap(KTypeVTypeAssociativeContainer<? extends KType, ? extends VType> container) {
+    this(container.size());
+    putAll(container);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType put(KType key, VType value) {
+    if (Intrinsics.<KType> isEmpty(key)) {
+      hasEmptyKey = true;
+      VType previousValue = emptyKeyValue;
+      emptyKeyValue = value;
+      return previousValue;
+    } else {
+      final long slot = slotOf(key);
+      if (slot >= 0) {
+        final VType previousValue = values.get(slot);
+        values.set(slot, value);
+        return previousValue;
+      }
+
+      insertAt(~slot, key, value);
+      return Intrinsics.<VType> empty();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int putAll(KTypeVTypeAssociativeContainer<? extends KType, ? extends VType> container) {
+    final int count = size();
+    for (KTypeVTypeCursor<? extends KType, ? extends VType> c : container) {
+      put(c.key, c.value);
+    }
+    return size() - count;
+  }
+
+  /**
+   * Puts all key/value pairs from a given iterable into this map.
+   */
+  @Override
+  public int putAll(Iterable<? extends KTypeVTypeCursor<? extends KType, ? extends VType>> iterable){
+    final int count = size();
+    for (KTypeVTypeCursor<? extends KType, ? extends VType> c : iterable) {
+      put(c.key, c.value);
+    }
+    return size() - count;
+  }
+
+  /**
+   * @see KTypeVTypeOpenHashMap#putIfAbsent
+   */
+  public boolean putIfAbsent(KType key, VType value) {
+    if (Intrinsics.<KType> isEmpty(key)) {
+      if (hasEmptyKey) {
+        return false;
+      }
+      hasEmptyKey = true;
+      emptyKeyValue = value;
+      return true;
+    } else {
+      final long slot = slotOf(key);
+      if (slot >= 0) {
+        return false;
+      }
+      insertAt(~slot, key, value);
+      return true;
+    }
+  }
+
+  /**
+   * @see KTypeVTypeOpenHashMap#computeIfAbsent
+   */
+  public VType computeIfAbsent(KType key, KTypeVTypeFunction<? super KType, ? extends VType> function) {
+    if (Intrinsics.<KType> isEmpty(key)) {
+      if (!hasEmptyKey) {
+        emptyKeyValue = function.apply(key);
+        hasEmptyKey = true;
+      }
+      return emptyKeyValue;
+    } else {
+      final long slot = slotOf(key);
+      if (slot >= 0) {
+        return values.get(slot);
+      }
+      final VType value = function.apply(key);
+      insertAt(~slot, key, value);
+      return value;
+    }
+  }
+
+  /*! #if ($TemplateOptions.VTypePrimitive) !*/
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType putOrAdd(KType key, VType putValue, VType incrementValue) {
+    if (Intrinsics.<KType> isEmpty(key)) {
+      if (hasEmptyKey) {
+        putValue = (VType) (Intrinsics.<VType> add(emptyKeyValue, incrementValue));
+      }
+      hasEmptyKey = true;
+      emptyKeyValue = putValue;
+    } else {
+      final long slot = slotOf(key);
+      if (slot >= 0) {
+        putValue = (VType) (Intrinsics.<VType> add(values.get(slot), incrementValue));
+        values.set(slot, putValue);
+      } else {
+        insertAt(~slot, key, putValue);
+      }
+    }
+    return putValue;
+  }
+  /*! #end !*/
+
+  /*! #if ($TemplateOptions.VTypePrimitive) !*/
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType addTo(KType key, VType incrementValue) {
+    return putOrAdd(key, incrementValue, incrementValue);
+  }
+  /*! #end !*/
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType remove(KType key) {
+    if (Intrinsics.<KType> isEmpty(key)) {
+      hasEmptyKey = false;
+      VType previousValue = emptyKeyValue;
+      emptyKeyValue = Intrinsics.<VType> empty();
+      return previousValue;
+    } else {
+      final long slot = slotOf(key);
+      if (slot >= 0) {
+        final VType previousValue = values.get(slot);
+        shiftConflictingKeys(slot);
+        return previousValue;
+      }
+      return Intrinsics.<VType> empty();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int removeAll(KTypeContainer<? super KType> container) {
+    final int before = size();
+
+    if (hasEmptyKey) {
+      if (container.contains(Intrinsics.<KType> empty())) {
+        hasEmptyKey = false;
+        emptyKeyValue = Intrinsics.<VType> empty();
+      }
+    }
+
+    final KTypeOffHeapArray<KType> keys = this.keys;
+    for (long slot = 0, max = this.mask; slot <= max;) {
+      KType existing;
+      if (!Intrinsics.<KType> isEmpty(existing = keys.get(slot)) && container.contains(existing)) {
+        // Shift, do not increment slot.
+        shiftConflictingKeys(slot);
+      } else {
+        slot++;
+      }
+    }
+
+    return before - size();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int removeAll(KTypeVTypePredicate<? super KType, ? super VType> predicate) {
+    final int before = size();
+
+    if (hasEmptyKey) {
+      if (predicate.apply(Intrinsics.<KType> empty(), emptyKeyValue)) {
+        hasEmptyKey = false;
+        emptyKeyValue = Intrinsics.<VType> empty();
+      }
+    }
+
+    final KTypeOffHeapArray<KType> keys = this.keys;
+    final KTypeOffHeapArray<VType> values = this.values;
+    for (long slot = 0, max = this.mask; slot <= max;) {
+      KType existing;
+      if (!Intrinsics.<KType> isEmpty(existing = keys.get(slot)) &&
+          predicate.apply(existing, values.get(slot))) {
+        // Shift, do not increment slot.
+        shiftConflictingKeys(slot);
+      } else {
+        slot++;
+      }
+    }
+
+    return before - size();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int removeAll(KTypePredicate<? super KType> predicate) {
+    final int before = size();
+
+    if (hasEmptyKey) {
+      if (predicate.apply(Intrinsics.<KType> empty())) {
+        hasEmptyKey = false;
+        emptyKeyValue = Intrinsics.<VType> empty();
+      }
+    }
+
+    final KTypeOffHeapArray<KType> keys = this.keys;
+    for (long slot = 0, max = this.mask; slot <= max;) {
+      KType existing;
+      if (!Intrinsics.<KType> isEmpty(existing = keys.get(slot)) &&
+          predicate.apply(existing)) {
+        // Shift, do not increment slot.
+        shiftConflictingKeys(slot);
+      } else {
+        slot++;
+      }
+    }
+
+    return before - size();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType get(KType key) {
+    if (Intrinsics.<KType> isEmpty(key)) {
+      return hasEmptyKey ? emptyKeyValue : Intrinsics.<VType> empty();
+    } else {
+      final long slot = slotOf(key);
+      return slot >= 0 ? values.get(slot) : Intrinsics.<VType> empty();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType getOrDefault(KType key, VType defaultValue) {
+    if (Intrinsics.<KType> isEmpty(key)) {
+      return hasEmptyKey ? emptyKeyValue : defaultValue;
+    } else {
+      final long slot = slotOf(key);
+      return slot >= 0 ? values.get(slot) : defaultValue;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean containsKey(KType key) {
+    if (Intrinsics.<KType> isEmpty(key)) {
+      return hasEmptyKey;
+    } else {
+      return slotOf(key) >= 0;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws UnsupportedOperationException If the map has more than
+   *         <code>2^30</code> slots.
+   */
+  @Override
+  public int indexOf(KType key) {
+    if (mask >= MAX_HASH_ARRAY_LENGTH) {
+      throw new UnsupportedOperationException(
+          "Indexes are not available for buffers larger than " + MAX_HASH_ARRAY_LENGTH + " slots.");
+    }
+
+    final int emptyKeyIndex = (int) (mask + 1);
+    if (Intrinsics.<KType> isEmpty(key)) {
+      return hasEmptyKey ? emptyKeyIndex : ~emptyKeyIndex;
+    } else {
+      return (int) slotOf(key);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean indexExists(int index) {
+    assert index < 0 ||
+           (index >= 0 && index <= mask) ||
+           (index == mask + 1 && hasEmptyKey);
+
+    return index >= 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType indexGet(int index) {
+    assert index >= 0 : "The index must point at an existing key.";
+    assert index <= mask ||
+           (index == mask + 1 && hasEmptyKey);
+
+    return index == mask + 1 ? emptyKeyValue : values.get(index);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType indexReplace(int index, VType newValue) {
+    assert index >= 0 : "The index must point at an existing key.";
+    assert index <= mask ||
+           (index == mask + 1 && hasEmptyKey);
+
+    VType previousValue;
+    if (index == mask + 1) {
+      previousValue = emptyKeyValue;
+      emptyKeyValue = newValue;
+    } else {
+      previousValue = values.get(index);
+      values.set(index, newValue);
+    }
+    return previousValue;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void indexInsert(int index, KType key, VType value) {
+    assert index < 0 : "The index must not point at an existing key.";
+
+    index = ~index;
+    if (Intrinsics.<KType> isEmpty(key)) {
+      assert index == mask + 1;
+      emptyKeyValue = value;
+      hasEmptyKey = true;
+    } else {
+      insertAt(index, key, value);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void clear() {
+    assigned = 0;
+    hasEmptyKey = false;
+    emptyKeyValue = Intrinsics.<VType> empty();
+
+    keys.fill(Intrinsics.<KType> empty());
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The off-heap buffers are dropped and minimal new ones are allocated.</p>
+   */
+  @Override
+  public void release() {
+    assigned = 0;
+    hasEmptyKey = false;
+    emptyKeyValue = Intrinsics.<VType> empty();
+
+    keys = null;
+    values = null;
+    ensureCapacity(Containers.DEFAULT_EXPECTED_ELEMENTS);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int size() {
+    return assigned + (hasEmptyKey ? 1 : 0);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * @return Returns the number of slots in the off-heap buffers.
+   */
+  public long bufferSize() {
+    return mask + 1;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    int h = hasEmptyKey ? 0xDEADBEEF : 0;
+    for (KTypeVTypeCursor<KType, VType> c : this) {
+      h += BitMixer.mix(c.key) +
+           BitMixer.mix0(c.value);
+    }
+    return h;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object obj) {
+    return obj != null &&
+           getClass() == obj.getClass() &&
+           equalElements(getClass().cast(obj));
+  }
+
+  /**
+   * Return true if all keys of some other container exist in this container.
+   */
+  protected boolean equalElements(KTypeVTypeOffHeapHashMap<?, ?> other) {
+    if (other.size() != size()) {
+      return false;
+    }
+
+    Iterator<? extends KTypeVTypeCursor<?, ?>> i = other.iterator();
+    while (i.hasNext()) {
+      KTypeVTypeCursor<?, ?> c = i.next();
+      KType key = Intrinsics.<KType> cast(c.key);
+      if (!containsKey(key) ||
+          !Intrinsics.<VType> equals(c.value, get(key))) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Ensure this container can hold at least the
+   * given number of keys (entries) without resizing its buffers.
+   *
+   * @param expectedElements The total number of keys, inclusive.
+   */
+  @Override
+  public void ensureCapacity(int expectedElements) {
+    if (expectedElements > resizeAt || keys == null) {
+      final KTypeOffHeapArray<KType> prevKeys = this.keys;
+      final KTypeOffHeapArray<VType> prevValues = this.values;
+      allocateBuffers(minOffHeapBufferSize(expectedElements, loadFactor));
+      if (prevKeys != null && !isEmpty()) {
+        rehash(prevKeys, prevValues);
+      }
+    }
+  }
+
+  /**
+   * Converts a slot to a cursor index.
+   */
+  private int cursorIndex(long slot) {
+    return mask < MAX_HASH_ARRAY_LENGTH ? (int) slot : -1;
+  }
+
+  /**
+   * An iterator implementation for {@link #iterator}.
+   */
+  private final class EntryIterator extends AbstractIterator<KTypeVTypeCursor<KType, VType>> {
+    private final KTypeVTypeCursor<KType, VType> cursor;
+    private final long max = mask + 1;
+    private long slot = -1;
+
+    public EntryIterator() {
+      cursor = new KTypeVTypeCursor<KType, VType>();
+    }
+
+    @Override
+    protected KTypeVTypeCursor<KType, VType> fetch() {
+      if (slot < max) {
+        KType existing;
+        for (slot++; slot < max; slot++) {
+          if (!Intrinsics.<KType> isEmpty(existing = keys.get(slot))) {
+            cursor.index = cursorIndex(slot);
+            cursor.key = existing;
+            cursor.value = values.get(slot);
+            return cursor;
+          }
+        }
+      }
+
+      if (slot == max && hasEmptyKey) {
+        cursor.index = cursorIndex(slot);
+        cursor.key = Intrinsics.<KType> empty();
+        cursor.value = emptyKeyValue;
+        slot++;
+        return cursor;
+      }
+
+      return done();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Iterator<KTypeVTypeCursor<KType, VType>> iterator() {
+    return new EntryIterator();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public <T extends KTypeVTypeProcedure<? super KType, ? super VType>> T forEach(T procedure) {
+    final KTypeOffHeapArray<KType> keys = this.keys;
+    final KTypeOffHeapArray<VType> values = this.values;
+
+    if (hasEmptyKey) {
+      procedure.apply(Intrinsics.<KType> empty(), emptyKeyValue);
+    }
+
+    KType existing;
+    for (long slot = 0, max = this.mask; slot <= max; slot++) {
+      if (!Intrinsics.<KType> isEmpty(existing = keys.get(slot))) {
+        procedure.apply(existing, values.get(slot));
+      }
+    }
+
+    return procedure;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public <T extends KTypeVTypePredicate<? super KType, ? super VType>> T forEach(T predicate) {
+    final KTypeOffHeapArray<KType> keys = this.keys;
+    final KTypeOffHeapArray<VType> values = this.values;
+
+    if (hasEmptyKey) {
+      if (!predicate.apply(Intrinsics.<KType> empty(), emptyKeyValue)) {
+        return predicate;
+      }
+    }
+
+    KType existing;
+    for (long slot = 0, max = this.mask; slot <= max; slot++) {
+      if (!Intrinsics.<KType> isEmpty(existing = keys.get(slot))) {
+        if (!predicate.apply(existing, values.get(slot))) {
+          break;
+        }
+      }
+    }
+
+    return predicate;
+  }
+
+  /**
+   * Returns a specialized view of the keys of this associated container. The
+   * view additionally implements {@link KTypeLookupContainer}.
+   */
+  public KeysContainer keys() {
+    return new KeysContainer();
+  }
+
+  /**
+   * A view of the keys inside this hash map.
+   */
+  public final class KeysContainer extends AbstractKTypeCollection<KType>
+                                   implements KTypeLookupContainer<KType> {
+    private final KTypeVTypeOffHeapHashMap<KType, VType> owner = KTypeVTypeOffHeapHashMap.this;
+
+    @Override
+    public boolean contains(KType e) {
+      return owner.containsKey(e);
+    }
+
+    @Override
+    public <T extends KTypeProcedure<? super KType>> T forEach(final T procedure) {
+      owner.forEach(new KTypeVTypeProcedure<KType, VType>() {
+        @Override
+        public void apply(KType key, VType value) {
+          procedure.apply(key);
+        }
+      });
+
+      return procedure;
+    }
+
+    @Override
+    public <T extends KTypePredicate<? super KType>> T forEach(final T predicate) {
+      owner.forEach(new KTypeVTypePredicate<KType, VType>() {
+        @Override
+        public boolean apply(KType key, VType value) {
+          return predicate.apply(key);
+        }
+      });
+
+      return predicate;
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return owner.isEmpty();
+    }
+
+    @Override
+    public Iterator<KTypeCursor<KType>> iterator() {
+      return new KeysIterator();
+    }
+
+    @Override
+    public int size() {
+      return owner.size();
+    }
+
+    @Override
+    public void clear() {
+      owner.clear();
+    }
+
+    @Override
+    public void release() {
+      owner.release();
+    }
+
+    @Override
+    public int removeAll(KTypePredicate<? super KType> predicate) {
+      return owner.removeAll(predicate);
+    }
+
+    @Override
+    public int removeAll(final KType e) {
+      final boolean hasKey = owner.containsKey(e);
+      if (hasKey) {
+        owner.remove(e);
+        return 1;
+      } else {
+        return 0;
+      }
+    }
+  };
+
+  /**
+   * An iterator over the set of assigned keys.
+   */
+  private final class KeysIterator extends AbstractIterator<KTypeCursor<KType>> {
+    private final KTypeCursor<KType> cursor;
+    private final long max = mask + 1;
+    private long slot = -1;
+
+    public KeysIterator() {
+      cursor = new KTypeCursor<KType>();
+    }
+
+    @Override
+    protected KTypeCursor<KType> fetch() {
+      if (slot < max) {
+        KType existing;
+        for (slot++; slot < max; slot++) {
+          if (!Intrinsics.<KType> isEmpty(existing = keys.get(slot))) {
+            cursor.index = cursorIndex(slot);
+            cursor.value = existing;
+            return cursor;
+          }
+        }
+      }
+
+      if (slot == max && hasEmptyKey) {
+        cursor.index = cursorIndex(slot);
+        cursor.value = Intrinsics.<KType> empty();
+        slot++;
+        return cursor;
+      }
+
+      return done();
+    }
+  }
+
+  /**
+   * @return Returns a container with all values stored in this map.
+   */
+  @Override
+  public KTypeCollection<VType> values() {
+    return new ValuesContainer();
+  }
+
+  /**
+   * A view over the set of values of this map.
+   */
+  private final class ValuesContainer extends AbstractKTypeCollection<VType> {
+    private final KTypeVTypeOffHeapHashMap<KType, VType> owner = KTypeVTypeOffHeapHashMap.this;
+
+    @Override
+    public int size() {
+      return owner.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return owner.isEmpty();
+    }
+
+    @Override
+    public boolean contains(VType value) {
+      for (KTypeVTypeCursor<KType, VType> c : owner) {
+        if (Intrinsics.<VType> equals(value, c.value)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public <T extends KTypeProcedure<? super VType>> T forEach(T procedure) {
+      for (KTypeVTypeCursor<KType, VType> c : owner) {
+        procedure.apply(c.value);
+      }
+      return procedure;
+    }
+
+    @Override
+    public <T extends KTypePredicate<? super VType>> T forEach(T predicate) {
+      for (KTypeVTypeCursor<KType, VType> c : owner) {
+        if (!predicate.apply(c.value)) {
+          break;
+        }
+      }
+      return predicate;
+    }
+
+    @Override
+    public Iterator<KTypeCursor<VType>> iterator() {
+      return new ValuesIterator();
+    }
+
+    @Override
+    public int removeAll(final VType e) {
+      return owner.removeAll(new KTypeVTypePredicate<KType, VType>() {
+        @Override
+        public boolean apply(KType key, VType value) {
+          return Intrinsics.<VType> equals(e, value);
+        }
+      });
+    }
+
+    @Override
+    public int removeAll(final KTypePredicate<? super VType> predicate) {
+      return owner.removeAll(new KTypeVTypePredicate<KType, VType>() {
+        @Override
+        public boolean apply(KType key, VType value) {
+          return predicate.apply(value);
+        }
+      });
+    }
+
+    @Override
+    public void clear() {
+      owner.clear();
+    }
+
+    @Override
+    public void release() {
+      owner.release();
+    }
+  }
+
+  /**
+   * An iterator over the set of assigned values.
+   */
+  private final class ValuesIterator extends AbstractIterator<KTypeCursor<VType>> {
+    private final KTypeCursor<VType> cursor;
+    private final long max = mask + 1;
+    private long slot = -1;
+
+    public ValuesIterator() {
+      cursor = new KTypeCursor<VType>();
+    }
+
+    @Override
+    protected KTypeCursor<VType> fetch() {
+      if (slot < max) {
+        for (slot++; slot < max; slot++) {
+          if (!Intrinsics.<KType> isEmpty(keys.get(slot))) {
+            cursor.index = cursorIndex(slot);
+            cursor.value = values.get(slot);
+            return cursor;
+          }
+        }
+      }
+
+      if (slot == max && hasEmptyKey) {
+        cursor.index = cursorIndex(slot);
+        cursor.value = emptyKeyValue;
+        slot++;
+        return cursor;
+      }
+
+      return done();
+    }
+  }
+
+  /**
+   * Convert the contents of this map to a human-friendly string.
+   */
+  @Override
+  public String toString() {
+    final StringBuilder buffer = new StringBuilder();
+    buffer.append("[");
+
+    boolean first = true;
+    for (KTypeVTypeCursor<KType, VType> cursor : this) {
+      if (!first) {
+        buffer.append(", ");
+      }
+      buffer.append(cursor.key);
+      buffer.append("=>");
+      buffer.append(cursor.value);
+      first = false;
+    }
+    buffer.append("]");
+    return buffer.toString();
+  }
+
+  /**
+   * Creates a hash map from two index-aligned arrays of key-value pairs.
+   */
+  public static <KType, VType> KTypeVTypeOffHeapHashMap<KType, VType> from(KType[] keys, VType[] values) {
+    if (keys.length != values.length) {
+      throw new IllegalArgumentException("Arrays of keys and values must have an identical length.");
+    }
+
+    KTypeVTypeOffHeapHashMap<KType, VType> map = new KTypeVTypeOffHeapHashMap<>(keys.length);
+    for (int i = 0; i < keys.length; i++) {
+      map.put(keys[i], values[i]);
+    }
+
+    return map;
+  }
+
+  /**
+   * Returns a hash code for the given key.
+   *
+   * @see KTypeVTypeOpenHashMap#hashKey
+   */
+  /*! #if ($templateonly) !*/
+  @Override
+  public
+  /*! #else protected #end !*/
+  int hashKey(KType key) {
+    assert !Intrinsics.<KType> isEmpty(key); // Handled as a special case (empty slot marker).
+    return BitMixer.mix(key, this.keyMixer);
+  }
+
+  /**
+   * Validate load factor range and return it. Override and suppress if you need
+   * insane load factors.
+   */
+  protected double verifyLoadFactor(double loadFactor) {
+    checkLoadFactor(loadFactor, MIN_LOAD_FACTOR, MAX_LOAD_FACTOR);
+    return loadFactor;
+  }
+
+  /**
+   * Log2 of the maximum number of slots in a single off-heap buffer page.
+   * Override to tune the page size (at most 27).
+   */
+  protected int pageShift() {
+    return OffHeapBuffers.DEFAULT_PAGE_SHIFT;
+  }
+
+  /**
+   * Returns the slot of a non-empty key or, if the key is not present, a negative
+   * value encoding the (empty) slot at which the key should be inserted.
+   */
+  private long slotOf(KType key) {
+    assert !Intrinsics.<KType> isEmpty(key);
+
+    final KTypeOffHeapArray<KType> keys = this.keys;
+    final long mask = this.mask;
+    // The mask is at most 32 bits wide so sign extension of the hash does not matter.
+    long slot = hashKey(key) & mask;
+
+    KType existing;
+    while (!Intrinsics.<KType> isEmpty(existing = keys.get(slot))) {
+      if (Intrinsics.<KType> equals(this, key, existing)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    return ~slot;
+  }
+
+  /**
+   * Inserts a new, non-empty key at an empty <code>slot</code>, expanding the
+   * buffers if needed.
+   */
+  private void insertAt(long slot, KType key, VType value) {
+    assert Intrinsics.<KType> isEmpty(keys.get(slot));
+
+    if (assigned == resizeAt) {
+      allocateThenInsertThenRehash(slot, key, value);
+    } else {
+      keys.set(slot, key);
+      values.set(slot, value);
+    }
+
+    assigned++;
+  }
+
+  /**
+   * Rehash from old buffers to new buffers.
+   */
+  protected void rehash(KTypeOffHeapArray<KType> fromKeys, KTypeOffHeapArray<VType> fromValues) {
+    assert fromKeys.length() == fromValues.length() &&
+           HashContainers.checkPowerOfTwo(fromKeys.length());
+
+    // Rehash all stored key/value pairs into the new buffers.
+    final KTypeOffHeapArray<KType> keys = this.keys;
+    final KTypeOffHeapArray<VType> values = this.values;
+    final long mask = this.mask;
+    KType existing;
+
+    for (long from = fromKeys.length(); --from >= 0;) {
+      if (!Intrinsics.<KType> isEmpty(existing = fromKeys.get(from))) {
+        long slot = hashKey(existing) & mask;
+        while (!Intrinsics.<KType> isEmpty(keys.get(slot))) {
+          slot = (slot + 1) & mask;
+        }
+        keys.set(slot, existing);
+        values.set(slot, fromValues.get(from));
+      }
+    }
+  }
+
+  /**
+   * Allocate new internal buffers. This method attempts to allocate
+   * and assign internal buffers atomically (either allocations succeed or not).
+   */
+  protected void allocateBuffers(long arraySize) {
+    assert Long.bitCount(arraySize) == 1;
+
+    // Compute new hash mixer candidate before expanding.
+    final int newKeyMixer = this.orderMixer.newKeyMixer((int) Math.min(arraySize, MAX_HASH_ARRAY_LENGTH));
+
+    // Ensure no change is done if we hit an OOM.
+    KTypeOffHeapArray<KType> prevKeys = this.keys;
+    KTypeOffHeapArray<VType> prevValues = this.values;
+    try {
+      final int pageShift = pageShift();
+      this.keys = new KTypeOffHeapArray<KType>(arraySize, pageShift);
+      this.values = new KTypeOffHeapArray<VType>(arraySize, pageShift);
+    } catch (OutOfMemoryError e) {
+      this.keys = prevKeys;
+      this.values = prevValues;
+      throw new BufferAllocationException(
+          "Not enough direct memory to allocate buffers for rehashing: %,d -> %,d",
+          e,
+          this.mask + 1,
+          arraySize);
+    }
+
+    this.resizeAt = offHeapExpandAtCount(arraySize, loadFactor);
+    this.keyMixer = newKeyMixer;
+    this.mask = arraySize - 1;
+  }
+
+  /**
+   * This method is invoked when there is a new key/ value pair to be inserted into
+   * the buffers but there is not enough empty slots to do so.
+   *
+   * New buffers are allocated. If this succeeds, we know we can proceed
+   * with rehashing so we assign the pending element to the previous buffer
+   * (possibly violating the invariant of having at least one empty slot)
+   * and rehash all keys, substituting new buffers at the end.
+   */
+  protected void allocateThenInsertThenRehash(long slot, KType pendingKey, VType pendingValue) {
+    assert assigned == resizeAt
+           && Intrinsics.<KType> isEmpty(keys.get(slot))
+           && !Intrinsics.<KType> isEmpty(pendingKey);
+
+    // Try to allocate new buffers first. If we OOM, we leave in a consistent state.
+    final KTypeOffHeapArray<KType> prevKeys = this.keys;
+    final KTypeOffHeapArray<VType> prevValues = this.values;
+    allocateBuffers(nextOffHeapBufferSize(mask + 1, size(), loadFactor));
+    assert this.keys.length() > prevKeys.length();
+
+    // We have succeeded at allocating new data so insert the pending key/value at
+    // the free slot in the old buffers before rehashing.
+    prevKeys.set(slot, pendingKey);
+    prevValues.set(slot, pendingValue);
+
+    // Rehash old keys, including the pending key.
+    rehash(prevKeys, prevValues);
+  }
+
+  /**
+   * Shift all the slot-conflicting keys and values allocated to
+   * (and including) <code>slot</code>.
+   */
+  protected void shiftConflictingKeys(long gapSlot) {
+    final KTypeOffHeapArray<KType> keys = this.keys;
+    final KTypeOffHeapArray<VType> values = this.values;
+    final long mask = this.mask;
+
+    // Perform shifts of conflicting keys to fill in the gap.
+    long distance = 0;
+    while (true) {
+      final long slot = (gapSlot + (++distance)) & mask;
+      final KType existing = keys.get(slot);
+      if (Intrinsics.<KType> isEmpty(existing)) {
+        break;
+      }
+
+      final long idealSlot = hashKey(existing);
+      final long shift = (slot - idealSlot) & mask;
+      if (shift >= distance) {
+        // Entry at this position was originally at or before the gap slot.
+        // Move the conflict-shifted entry to the gap's position and repeat the procedure
+        // for any entries to the right of the current position, treating it
+        // as the new gap.
+        keys.set(gapSlot, existing);
+        values.set(gapSlot, values.get(slot));
+        gapSlot = slot;
+        distance = 0;
+      }
+    }
+
+    // Mark the last found gap slot without a conflict as empty.
+    keys.set(gapSlot, Intrinsics.<KType> empty());
+    values.set(gapSlot, Intrinsics.<VType> empty());
+    assigned--;
+  }
+
+  /*! #if ($TemplateOptions.KTypeGeneric) !*/
+  /*! #if ($templateonly) !*/
+  @Override
+  public
+  /*! #else protected #end !*/ boolean equals(Object v1, Object v2) {
+    return (v1 == v2) || (v1 != null && v1.equals(v2));
+  }
+  /*! #end !*/
+}
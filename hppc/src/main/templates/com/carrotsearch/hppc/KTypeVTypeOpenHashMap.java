@@ -1,8 +1,11 @@
 package com.carrotsearch.hppc;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import com.carrotsearch.hppc.cursors.*;
+import com.carrotsearch.hppc.functions.*;
 import com.carrotsearch.hppc.predicates.*;
 import com.carrotsearch.hppc.procedures.*;
 
@@ -23,7 +26,10 @@ public class KTypeVTypeOpenHashMap<KType, VType>
              Cloneable
 {
   /** 
-   * The array holding keys.
+   * The array holding keys. While an incremental rehash is pending, some keys
+   * are still in {@link #rehashKeys}.
+   * 
+   * @see #setIncrementalRehash(int)
    */
   public /*! #if ($TemplateOptions.KTypeGeneric) !*/ 
          Object [] 
@@ -31,7 +37,8 @@ public class KTypeVTypeOpenHashMap<KType, VType>
          keys;
 
   /**
-   * The array holding values. 
+   * The array holding values. While an incremental rehash is pending, the values
+   * of keys still in {@link #rehashKeys} are in {@link #rehashValues}.
    */
   public /*! #if ($TemplateOptions.VTypeGeneric) !*/ 
          Object [] 
@@ -83,6 +90,80 @@ public class KTypeVTypeOpenHashMap<KType, VType>
    */
   protected HashOrderMixingStrategy orderMixer;
 
+  /**
+   * The number of times {@link #keys} has been rehashed into a larger buffer.
+   * 
+   * @see #stats()
+   */
+  protected int rehashCount;
+
+  /**
+   * Total time spent rehashing {@link #keys}, in nanoseconds (excluding
+   * slot migration steps of incremental rehashes).
+   * 
+   * @see #stats()
+   */
+  protected long rehashNanos;
+
+  /**
+   * The maximum number of slots migrated from {@link #rehashKeys} by each
+   * modifying operation, or zero if buffers are rehashed at once.
+   * 
+   * @see #setIncrementalRehash(int)
+   */
+  protected int rehashStep;
+
+  /**
+   * The previous keys buffer during an incremental rehash, <code>null</code>
+   * otherwise. Keys are migrated one cluster at a time (whole clusters are
+   * cleared), so the remaining keys still form a valid hash table.
+   */
+  protected /*! #if ($TemplateOptions.KTypeGeneric) !*/ 
+            Object [] 
+            /*! #else KType [] #end !*/ 
+            rehashKeys;
+
+  /**
+   * The previous values buffer during an incremental rehash.
+   */
+  protected /*! #if ($TemplateOptions.VTypeGeneric) !*/ 
+            Object [] 
+            /*! #else VType [] #end !*/ 
+            rehashValues;
+
+  /**
+   * Mask for slot scans in {@link #rehashKeys}.
+   */
+  protected int rehashMask;
+
+  /**
+   * The next slot of {@link #rehashKeys} to migrate.
+   */
+  protected int rehashSlot;
+
+  /**
+   * The number of slots of {@link #rehashKeys} left to migrate.
+   */
+  protected int rehashRemaining;
+
+  /**
+   * The number of slots migrated by each operation during the current
+   * incremental rehash (at least {@link #rehashStep}).
+   */
+  protected int rehashBudget;
+
+  /**
+   * The pool rehashing large buffers in parallel, or <code>null</code>.
+   * 
+   * @see #setParallelRehash(ForkJoinPool)
+   */
+  protected ForkJoinPool rehashPool;
+
+  /**
+   * The minimum number of slots of a buffer rehashed in parallel.
+   */
+  protected int parallelRehashMinSlots = PARALLEL_REHASH_MIN_SLOTS;
+
   /**
    * New instance with sane defaults.
    */
@@ -138,6 +219,10 @@ public class KTypeVTypeOpenHashMap<KType, VType>
   public VType put(KType key, VType value) {
     assert assigned < mask + 1;
 
+    if (rehashKeys != null) {
+      continueRehash(key);
+    }
+
     final int mask = this.mask;
     if (Intrinsics.<KType> isEmpty(key)) {
       hasEmptyKey = true;
@@ -207,17 +292,41 @@ public class KTypeVTypeOpenHashMap<KType, VType>
    * was placed in the map.
    */
   public boolean putIfAbsent(KType key, VType value) {
-    if (!containsKey(key)) {
-      put(key, value);
+    int keyIndex = indexOf(key);
+    if (!indexExists(keyIndex)) {
+      indexInsert(keyIndex, key, value);
       return true;
     } else {
       return false;
     }
   }
 
+  /**
+   * Returns the value associated with <code>key</code> or, if the key does not
+   * exist, computes a new value using <code>function</code>, puts it in the map
+   * and returns it. The key's slot is located only once (the function is not
+   * invoked for existing keys).
+   *
+   * <p>The function must not modify this map.</p>
+   *
+   * @param key The key of the value to look up.
+   * @param function The function computing a value for an absent <code>key</code>.
+   * @return Returns the current value associated with <code>key</code> (after changes).
+   */
+  public VType computeIfAbsent(KType key, KTypeVTypeFunction<? super KType, ? extends VType> function) {
+    int keyIndex = indexOf(key);
+    if (indexExists(keyIndex)) {
+      return Intrinsics.<VType> cast(values[keyIndex]);
+    } else {
+      VType value = function.apply(key);
+      indexInsert(keyIndex, key, value);
+      return value;
+    }
+  }
+
   /*! #if ($TemplateOptions.VTypePrimitive) !*/
   /**
-   * If <code>key</code> exists, <code>putValue</code> is inserted into the map,
+   * If <code>key</code> does not exist, <code>putValue</code> is inserted into the map,
    * otherwise any existing value is incremented by <code>additionValue</code>.
    * 
    * @param key The key of the value to adjust.
@@ -229,12 +338,13 @@ public class KTypeVTypeOpenHashMap<KType, VType>
   public VType putOrAdd(KType key, VType putValue, VType incrementValue) {
     assert assigned < mask + 1;
 
-    if (containsKey(key)) {
-      putValue = get(key);
-      putValue = (VType) (Intrinsics.<VType> add(putValue, incrementValue));
+    int keyIndex = indexOf(key);
+    if (indexExists(keyIndex)) {
+      putValue = (VType) (Intrinsics.<VType> add(Intrinsics.<VType> cast(values[keyIndex]), incrementValue));
+      values[keyIndex] = putValue;
+    } else {
+      indexInsert(keyIndex, key, putValue);
     }
-
-    put(key, putValue);
     return putValue;
   }
   /*! #end !*/
@@ -260,6 +370,10 @@ public class KTypeVTypeOpenHashMap<KType, VType>
    */
   @Override
   public VType remove(KType key) {
+    if (rehashKeys != null) {
+      continueRehash(key);
+    }
+
     final int mask = this.mask;
     if (Intrinsics.<KType> isEmpty(key)) {
       hasEmptyKey = false;
@@ -289,6 +403,8 @@ public class KTypeVTypeOpenHashMap<KType, VType>
    */
   @Override
   public int removeAll(KTypeContainer<? super KType> container) {
+    finishRehash();
+
     final int before = size();
 
     if (hasEmptyKey) {
@@ -321,6 +437,8 @@ public class KTypeVTypeOpenHashMap<KType, VType>
    */
   @Override
   public int removeAll(KTypeVTypePredicate<? super KType, ? super VType> predicate) {
+    finishRehash();
+
     final int before = size();
 
     final int mask = this.mask;
@@ -353,6 +471,8 @@ public class KTypeVTypeOpenHashMap<KType, VType>
    */
   @Override
   public int removeAll(KTypePredicate<? super KType> predicate) {
+    finishRehash();
+
     final int before = size();
 
     if (hasEmptyKey) {
@@ -385,6 +505,13 @@ public class KTypeVTypeOpenHashMap<KType, VType>
     if (Intrinsics.<KType> isEmpty(key)) {
       return hasEmptyKey ? Intrinsics.<VType> cast(values[mask + 1]) : Intrinsics.<VType> empty();
     } else {
+      if (rehashKeys != null) {
+        final int rehashed = rehashIndexOf(key);
+        if (rehashed >= 0) {
+          return Intrinsics.<VType> cast(rehashValues[rehashed]);
+        }
+      }
+
       final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
       final int mask = this.mask;
       int slot = hashKey(key) & mask;
@@ -409,6 +536,13 @@ public class KTypeVTypeOpenHashMap<KType, VType>
     if (Intrinsics.<KType> isEmpty(key)) {
       return hasEmptyKey ? Intrinsics.<VType> cast(values[mask + 1]) : defaultValue;
     } else {
+      if (rehashKeys != null) {
+        final int rehashed = rehashIndexOf(key);
+        if (rehashed >= 0) {
+          return Intrinsics.<VType> cast(rehashValues[rehashed]);
+        }
+      }
+
       final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
       final int mask = this.mask;
       int slot = hashKey(key) & mask;
@@ -433,6 +567,10 @@ public class KTypeVTypeOpenHashMap<KType, VType>
     if (Intrinsics.<KType> isEmpty(key)) {
       return hasEmptyKey;
     } else {
+      if (rehashKeys != null && rehashIndexOf(key) >= 0) {
+        return true;
+      }
+
       final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
       final int mask = this.mask;
       int slot = hashKey(key) & mask;
@@ -449,11 +587,155 @@ public class KTypeVTypeOpenHashMap<KType, VType>
     }
   }
 
+  /**
+   * Looks up a batch of keys and stores their values in <code>out</code>
+   * (at the same index), or <code>missingValue</code> for keys not in the map.
+   * Equivalent to calling {@link #getOrDefault} for each key, but the batch is
+   * hashed up front and the first probed slots of all keys are read in one pass,
+   * so that the (independent) cache misses of large maps overlap rather than
+   * being paid one key at a time.
+   *
+   * @return Returns the number of keys found in the map.
+   */
+  public int getAll(KType[] keys, VType[] out, VType missingValue) {
+    if (out.length < keys.length) {
+      throw new IllegalArgumentException("Output array too small: "
+          + out.length + ", keys: " + keys.length);
+    }
+
+    final VType[] values = Intrinsics.<VType[]> cast(this.values);
+    final int[] slots = new int [Math.min(keys.length, BATCH_LOOKUP_BLOCK)];
+    final KType[] firsts = Intrinsics.<KType> newArray(slots.length);
+    int found = 0;
+    for (int from = 0; from < keys.length; from += slots.length) {
+      final int to = Math.min(keys.length, from + slots.length);
+      lookupAll(keys, from, to, slots, firsts);
+      for (int i = from; i < to; i++) {
+        final int slot = slots[i - from];
+        if (slot >= 0) {
+          out[i] = values[slot];
+          found++;
+        } else if (slot != -1) {
+          out[i] = Intrinsics.<VType> cast(rehashValues[-2 - slot]);
+          found++;
+        } else {
+          out[i] = missingValue;
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Checks a batch of keys and stores the result of {@link #containsKey} for
+   * each key in <code>out</code> (at the same index).
+   *
+   * @see #getAll
+   * @return Returns the number of keys found in the map.
+   */
+  public int containsAll(KType[] keys, boolean[] out) {
+    if (out.length < keys.length) {
+      throw new IllegalArgumentException("Output array too small: "
+          + out.length + ", keys: " + keys.length);
+    }
+
+    final int[] slots = new int [Math.min(keys.length, BATCH_LOOKUP_BLOCK)];
+    final KType[] firsts = Intrinsics.<KType> newArray(slots.length);
+    int found = 0;
+    for (int from = 0; from < keys.length; from += slots.length) {
+      final int to = Math.min(keys.length, from + slots.length);
+      lookupAll(keys, from, to, slots, firsts);
+      for (int i = from; i < to; i++) {
+        if (out[i] = slots[i - from] != -1) {
+          found++;
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Checks a batch of keys and sets (or clears) the bit of each key's index in
+   * <code>out</code> depending on whether the key is in the map.
+   *
+   * @see #containsKey
+   * @return Returns the number of keys found in the map.
+   */
+  public int containsAll(KType[] keys, BitSet out) {
+    final int[] slots = new int [Math.min(keys.length, BATCH_LOOKUP_BLOCK)];
+    final KType[] firsts = Intrinsics.<KType> newArray(slots.length);
+    int found = 0;
+    for (int from = 0; from < keys.length; from += slots.length) {
+      final int to = Math.min(keys.length, from + slots.length);
+      lookupAll(keys, from, to, slots, firsts);
+      for (int i = from; i < to; i++) {
+        if (slots[i - from] != -1) {
+          out.set(i);
+          found++;
+        } else {
+          out.clear(i);
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Stores the slots of <code>keys[from..to)</code> in <code>slots</code> (from
+   * index zero), <code>-2 - slot</code> for keys still at <code>slot</code> of
+   * {@link #rehashKeys} or <code>-1</code> for keys not in the map.
+   * <code>firsts</code> is scratch space for the first probed keys.
+   */
+  private void lookupAll(KType[] batch, int from, int to, int[] slots, KType[] firsts) {
+    final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+    final int mask = this.mask;
+
+    // Hash all keys first.
+    for (int i = from; i < to; i++) {
+      final KType key = batch[i];
+      slots[i - from] = Intrinsics.<KType> isEmpty(key) ? 0 : hashKey(key) & mask;
+    }
+
+    // Read the first probed slot of every key; these loads do not depend on each other.
+    for (int i = 0, max = to - from; i < max; i++) {
+      firsts[i] = keys[slots[i]];
+    }
+
+    // Resolve hits, misses and collisions.
+    for (int i = from; i < to; i++) {
+      final KType key = batch[i];
+      if (Intrinsics.<KType> isEmpty(key)) {
+        slots[i - from] = hasEmptyKey ? mask + 1 : -1;
+        continue;
+      }
+
+      int slot = slots[i - from];
+      KType existing = firsts[i - from];
+      while (true) {
+        if (Intrinsics.<KType> isEmpty(existing)) {
+          // Look in the previous buffers (-2 - -1 is -1 if the key is not there either).
+          slot = rehashKeys != null ? -2 - rehashIndexOf(key) : -1;
+          break;
+        }
+        if (Intrinsics.<KType> equals(this, key, existing)) {
+          break;
+        }
+        slot = (slot + 1) & mask;
+        existing = keys[slot];
+      }
+      slots[i - from] = slot;
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   public int indexOf(KType key) {
+    if (rehashKeys != null) {
+      continueRehash(key);
+    }
+
     final int mask = this.mask;
     if (Intrinsics.<KType> isEmpty(key)) {
       return hasEmptyKey ? mask + 1 : ~(mask + 1);
@@ -544,6 +826,8 @@ public class KTypeVTypeOpenHashMap<KType, VType>
   public void clear() {
     assigned = 0;
     hasEmptyKey = false;
+    rehashKeys = null;
+    rehashValues = null;
 
     Arrays.fill(keys, Intrinsics.<KType> empty());
 
@@ -559,6 +843,8 @@ public class KTypeVTypeOpenHashMap<KType, VType>
   public void release() {
     assigned = 0;
     hasEmptyKey = false;
+    rehashKeys = null;
+    rehashValues = null;
 
     keys = null;
     values = null;
@@ -637,24 +923,120 @@ public class KTypeVTypeOpenHashMap<KType, VType>
   @Override
   public void ensureCapacity(int expectedElements) {
     if (expectedElements > resizeAt || keys == null) {
+      finishRehash();
       final KType[] prevKeys = Intrinsics.<KType[]> cast(this.keys);
       final VType[] prevValues = Intrinsics.<VType[]> cast(this.values);
+      final int prevKeyMixer = this.keyMixer;
       allocateBuffers(minBufferSize(expectedElements, loadFactor));
       if (prevKeys != null && !isEmpty()) {
-        rehash(prevKeys, prevValues);
+        final long start = System.nanoTime();
+        rehash(prevKeys, prevValues, prevKeyMixer);
+        rehashed(start);
       }
     }
   }
 
+  /**
+   * Returns statistics of this container's buffer: probe lengths of stored
+   * keys, sizes of slot clusters and the rehashing cost so far. This requires
+   * a full scan of the buffer (and completes a pending incremental rehash
+   * first); use for diagnostics only.
+   */
+  public HashContainerStats stats() {
+    finishRehash();
+
+    final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+    final int mask = this.mask;
+    final HashContainerStats.Collector collector = new HashContainerStats.Collector(mask + 1);
+
+    // Start right after an empty slot (there is always one) so that no
+    // cluster wraps around the end of the buffer.
+    int start = 0;
+    while (!Intrinsics.<KType> isEmpty(keys[start])) {
+      start++;
+    }
+
+    KType existing;
+    for (int i = 1; i <= mask + 1; i++) {
+      final int slot = (start + i) & mask;
+      if (Intrinsics.<KType> isEmpty(existing = keys[slot])) {
+        collector.empty();
+      } else {
+        collector.occupied((slot - hashKey(existing)) & mask);
+      }
+    }
+    return collector.build(rehashCount, rehashNanos);
+  }
+
+  /**
+   * Enables (or disables) incremental rehashing. When the buffers are full,
+   * new (larger) buffers are allocated but keys are not moved at once: the
+   * previous buffers are kept and each subsequent modifying operation
+   * ({@link #put}, {@link #remove}, {@link #indexOf} and methods using them)
+   * migrates at least <code>slotsPerOperation</code> slots, so that no single
+   * operation pays for rehashing the entire map. Lookups, iterators and other
+   * read-only operations consult both buffers in the meantime (cursors of keys
+   * still in the previous buffers have an index of <code>-1</code>). Bulk
+   * removals, {@link #ensureCapacity}, {@link #stats()} and snapshots complete
+   * a pending rehash first (see {@link #finishRehash()}).
+   * 
+   * @param slotsPerOperation The minimum number of slots migrated per operation
+   * or zero to rehash at once (the default). The number is raised if needed,
+   * so that the migration completes before the new buffers fill up.
+   */
+  public void setIncrementalRehash(int slotsPerOperation) {
+    if (slotsPerOperation < 0) {
+      throw new IllegalArgumentException("Slots per operation must be >= 0: " + slotsPerOperation);
+    }
+    if (slotsPerOperation == 0) {
+      finishRehash();
+    }
+    this.rehashStep = slotsPerOperation;
+  }
+
+  /**
+   * Migrates all keys remaining in the previous buffers of a pending
+   * incremental rehash (if any).
+   * 
+   * @see #setIncrementalRehash(int)
+   */
+  public void finishRehash() {
+    if (rehashKeys != null) {
+      migrateSlots(rehashRemaining);
+    }
+  }
+
+  /**
+   * Enables (or disables) parallel rehashing of large buffers. The previous
+   * buffers are split into chunks at empty slots (so that no cluster of keys spans
+   * two chunks) and the chunks are rehashed by tasks of the given pool. The key
+   * mixer of this map is kept when its buffers are rehashed in parallel: a key's
+   * slot in the new buffers is then its previous slot plus a multiple of the
+   * previous buffers' size, so chunks fill disjoint slots.
+   * 
+   * @param pool The pool to rehash buffers of at least {@value HashContainers#PARALLEL_REHASH_MIN_SLOTS}
+   * slots in, or <code>null</code> to rehash sequentially (the default).
+   */
+  public void setParallelRehash(ForkJoinPool pool) {
+    this.rehashPool = pool;
+  }
+
   /**
    * An iterator implementation for {@link #iterator}.
    */
   private final class EntryIterator extends AbstractIterator<KTypeVTypeCursor<KType, VType>> {
     private final KTypeVTypeCursor<KType, VType> cursor;
-    private final int max = mask + 1;
+    private final KType[] keys = Intrinsics.<KType[]> cast(KTypeVTypeOpenHashMap.this.keys);
+    private final VType[] values = Intrinsics.<VType[]> cast(KTypeVTypeOpenHashMap.this.values);
+    private final KType[] fromKeys = Intrinsics.<KType[]> cast(rehashKeys);
+    private final VType[] fromValues = Intrinsics.<VType[]> cast(rehashValues);
+    private final int split;
+    private final int max;
     private int slot = -1;
 
     public EntryIterator() {
+      split = mask + 1;
+      max = allSlots();
       cursor = new KTypeVTypeCursor<KType, VType>();
     }
 
@@ -662,20 +1044,28 @@ public class KTypeVTypeOpenHashMap<KType, VType>
     protected KTypeVTypeCursor<KType, VType> fetch() {
       if (slot < max) {
         KType existing;
-        for (slot++; slot < max; slot++) {
-          if (!Intrinsics.<KType> isEmpty(existing = Intrinsics.<KType> cast(keys[slot]))) {
+        for (slot++; slot < split; slot++) {
+          if (!Intrinsics.<KType> isEmpty(existing = keys[slot])) {
             cursor.index = slot;
             cursor.key = existing;
-            cursor.value = Intrinsics.<VType> cast(values[slot]);
+            cursor.value = values[slot];
+            return cursor;
+          }
+        }
+        for (; slot < max; slot++) {
+          if (!Intrinsics.<KType> isEmpty(existing = fromKeys[slot - split])) {
+            cursor.index = -1;
+            cursor.key = existing;
+            cursor.value = fromValues[slot - split];
             return cursor;
           }
         }
       }
 
       if (slot == max && hasEmptyKey) {
-        cursor.index = slot;
+        cursor.index = split;
         cursor.key = Intrinsics.<KType> empty();
-        cursor.value = Intrinsics.<VType> cast(values[max]);
+        cursor.value = values[split];
         slot++;
         return cursor;
       }
@@ -710,6 +1100,16 @@ public class KTypeVTypeOpenHashMap<KType, VType>
       }
     }
 
+    if (rehashKeys != null) {
+      final KType[] fromKeys = Intrinsics.<KType[]> cast(this.rehashKeys);
+      final VType[] fromValues = Intrinsics.<VType[]> cast(this.rehashValues);
+      for (int slot = 0, max = this.rehashMask; slot <= max; slot++) {
+        if (!Intrinsics.<KType> isEmpty(fromKeys[slot])) {
+          procedure.apply(fromKeys[slot], fromValues[slot]);
+        }
+      }
+    }
+
     return procedure;
   }
 
@@ -730,7 +1130,19 @@ public class KTypeVTypeOpenHashMap<KType, VType>
     for (int slot = 0, max = this.mask; slot <= max; slot++) {
       if (!Intrinsics.<KType> isEmpty(keys[slot])) {
         if (!predicate.apply(keys[slot], values[slot])) {
-          break;
+          return predicate;
+        }
+      }
+    }
+
+    if (rehashKeys != null) {
+      final KType[] fromKeys = Intrinsics.<KType[]> cast(this.rehashKeys);
+      final VType[] fromValues = Intrinsics.<VType[]> cast(this.rehashValues);
+      for (int slot = 0, max = this.rehashMask; slot <= max; slot++) {
+        if (!Intrinsics.<KType> isEmpty(fromKeys[slot])) {
+          if (!predicate.apply(fromKeys[slot], fromValues[slot])) {
+            break;
+          }
         }
       }
     }
@@ -738,6 +1150,217 @@ public class KTypeVTypeOpenHashMap<KType, VType>
     return predicate;
   }
 
+  /**
+   * Applies <code>procedure</code> to all keys and values of this map in parallel:
+   * chunks of slots are processed by tasks of <code>pool</code>. The procedure
+   * must be thread-safe and must not modify this map. There is no guarantee
+   * on the order of invocations.
+   */
+  public <T extends KTypeVTypeProcedure<? super KType, ? super VType>> T parallelForEach(ForkJoinPool pool, T procedure) {
+    if (hasEmptyKey) {
+      procedure.apply(Intrinsics.<KType> empty(), Intrinsics.<VType> cast(values[mask + 1]));
+    }
+
+    final int slots = allSlots();
+    final int chunks = parallelChunks(pool, slots);
+    final List<ForEachChunk> tasks = new ArrayList<ForEachChunk>(chunks);
+    for (int i = 0; i < chunks; i++) {
+      tasks.add(new ForEachChunk(procedure,
+          (int) ((long) slots * i / chunks), (int) ((long) slots * (i + 1) / chunks)));
+    }
+    invokeAll(pool, tasks);
+    return procedure;
+  }
+
+  /**
+   * Reduces all keys and values of this map in parallel: chunks of slots are
+   * processed by tasks of <code>pool</code>, each applying a separate accumulator
+   * created by <code>reducer</code>. Accumulators are then merged (in slot order)
+   * on the calling thread.
+   * 
+   * @return Returns the merged accumulator.
+   */
+  public <T extends KTypeVTypeProcedure<? super KType, ? super VType>> T parallelReduce(ForkJoinPool pool, Reducer<T> reducer) {
+    final int slots = allSlots();
+    final int chunks = parallelChunks(pool, slots);
+    final List<T> accumulators = new ArrayList<T>(chunks);
+    final List<ForEachChunk> tasks = new ArrayList<ForEachChunk>(chunks);
+    for (int i = 0; i < chunks; i++) {
+      final T accumulator = reducer.newAccumulator();
+      accumulators.add(accumulator);
+      tasks.add(new ForEachChunk(accumulator,
+          (int) ((long) slots * i / chunks), (int) ((long) slots * (i + 1) / chunks)));
+    }
+
+    if (hasEmptyKey) {
+      accumulators.get(0).apply(Intrinsics.<KType> empty(), Intrinsics.<VType> cast(values[mask + 1]));
+    }
+
+    invokeAll(pool, tasks);
+
+    T result = accumulators.get(0);
+    for (int i = 1; i < chunks; i++) {
+      result = reducer.merge(result, accumulators.get(i));
+    }
+    return result;
+  }
+
+  /**
+   * Removes all keys and values matching <code>predicate</code> in parallel. The slots are
+   * split into chunks at empty slots (so that no cluster of keys spans two chunks)
+   * and each chunk is processed by a task of <code>pool</code> in two phases: matching
+   * keys are removed first, then the remaining keys of each cluster are moved
+   * (in order) to the first free slot from their ideal slot, restoring the
+   * invariants of linear probing. The predicate must be thread-safe and must
+   * not modify this map.
+   * 
+   * @return Returns the number of removed keys.
+   */
+  public int parallelRemoveAll(ForkJoinPool pool, KTypeVTypePredicate<? super KType, ? super VType> predicate) {
+    finishRehash();
+
+    final int before = size();
+
+    if (hasEmptyKey) {
+      if (predicate.apply(Intrinsics.<KType> empty(), Intrinsics.<VType> cast(values[mask + 1]))) {
+        hasEmptyKey = false;
+        values[mask + 1] = Intrinsics.<VType> empty();
+      }
+    }
+
+    final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+    final int mask = this.mask;
+    int start = 0;
+    while (!Intrinsics.<KType> isEmpty(keys[start])) {
+      start++;
+    }
+    start = (start + 1) & mask;
+
+    final int[] ends = clusterAlignedChunks(keys, start, parallelChunks(pool, mask + 1));
+    final List<RemoveAllChunk> tasks = new ArrayList<RemoveAllChunk>(ends.length);
+    for (int i = 0, from = 0; i < ends.length; from = ends[i++]) {
+      tasks.add(new RemoveAllChunk(predicate, (start + from) & mask, ends[i] - from));
+    }
+
+    try {
+      invokeAll(pool, tasks);
+    } finally {
+      // Chunks are consistent even if the predicate throws an exception.
+      for (RemoveAllChunk task : tasks) {
+        assigned -= task.removed;
+      }
+    }
+
+    return before - size();
+  }
+
+  /**
+   * Returns the number of slots visited by iterators, spliterators and parallel
+   * operations: the slots of the current buffers followed by those of the previous
+   * buffers of a pending incremental rehash.
+   */
+  private int allSlots() {
+    return mask + 1 + (rehashKeys != null ? rehashMask + 1 : 0);
+  }
+
+  /**
+   * Applies a procedure to a range of slots in {@link #parallelForEach} and
+   * {@link #parallelReduce}.
+   * 
+   * @see #allSlots()
+   */
+  private final class ForEachChunk extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    final KTypeVTypeProcedure<? super KType, ? super VType> procedure;
+    private final int from;
+    private final int to;
+
+    ForEachChunk(KTypeVTypeProcedure<? super KType, ? super VType> procedure, int from, int to) {
+      this.procedure = procedure;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      final KType[] keys = Intrinsics.<KType[]> cast(KTypeVTypeOpenHashMap.this.keys);
+      final VType[] values = Intrinsics.<VType[]> cast(KTypeVTypeOpenHashMap.this.values);
+      final int split = mask + 1;
+      for (int slot = from, max = Math.min(to, split); slot < max; slot++) {
+        final KType existing = keys[slot];
+        if (!Intrinsics.<KType> isEmpty(existing)) {
+          procedure.apply(existing, values[slot]);
+        }
+      }
+
+      final KType[] fromKeys = Intrinsics.<KType[]> cast(rehashKeys);
+      final VType[] fromValues = Intrinsics.<VType[]> cast(rehashValues);
+      for (int slot = Math.max(from, split); slot < to; slot++) {
+        final KType existing = fromKeys[slot - split];
+        if (!Intrinsics.<KType> isEmpty(existing)) {
+          procedure.apply(existing, fromValues[slot - split]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes matching keys from a (cluster-aligned) range of slots in
+   * {@link #parallelRemoveAll}.
+   */
+  private final class RemoveAllChunk extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final KTypeVTypePredicate<? super KType, ? super VType> predicate;
+    private final int start;
+    private final int length;
+    int removed;
+
+    RemoveAllChunk(KTypeVTypePredicate<? super KType, ? super VType> predicate, int start, int length) {
+      this.predicate = predicate;
+      this.start = start;
+      this.length = length;
+    }
+
+    @Override
+    protected void compute() {
+      final KType[] keys = Intrinsics.<KType[]> cast(KTypeVTypeOpenHashMap.this.keys);
+      final VType[] values = Intrinsics.<VType[]> cast(KTypeVTypeOpenHashMap.this.values);
+      final int mask = KTypeVTypeOpenHashMap.this.mask;
+      try {
+        for (int i = 0; i < length; i++) {
+          final int slot = (start + i) & mask;
+          final KType existing = keys[slot];
+          if (!Intrinsics.<KType> isEmpty(existing) && predicate.apply(existing, values[slot])) {
+            keys[slot] = Intrinsics.<KType> empty();
+            values[slot] = Intrinsics.<VType> empty();
+            removed++;
+          }
+        }
+      } finally {
+        if (removed > 0) {
+          for (int i = 0; i < length; i++) {
+            final int slot = (start + i) & mask;
+            final KType existing = keys[slot];
+            if (!Intrinsics.<KType> isEmpty(existing)) {
+              int target = hashKey(existing) & mask;
+              while (target != slot && !Intrinsics.<KType> isEmpty(keys[target])) {
+                target = (target + 1) & mask;
+              }
+              if (target != slot) {
+                keys[target] = existing;
+                values[target] = values[slot];
+                keys[slot] = Intrinsics.<KType> empty();
+                values[slot] = Intrinsics.<VType> empty();
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
   /**
    * Returns a specialized view of the keys of this associated container. The
    * view additionally implements {@link ObjectLookupContainer}.
@@ -789,7 +1412,17 @@ public class KTypeVTypeOpenHashMap<KType, VType>
 
     @Override
     public Iterator<KTypeCursor<KType>> iterator() {
-      return new KeysIterator();
+      return owner.keysIterator();
+    }
+
+    /**
+     * Returns a spliterator over the keys of this map. The spliterator splits
+     * into halves of the slot range, so only the unsplit spliterator's size is
+     * exact (split sizes are estimated as halves).
+     */
+    public KTypeSpliterator<KType> elementSpliterator() {
+      return new KeysSpliterator(0, allSlots(), hasEmptyKey, size(),
+          KTypeSpliterator.DISTINCT | KTypeSpliterator.SIZED);
     }
 
     @Override
@@ -824,15 +1457,28 @@ public class KTypeVTypeOpenHashMap<KType, VType>
     }
   };
 
+  /**
+   * Returns an iterator over the keys (for {@link #keys()}), in the same order
+   * as {@link #iterator()}.
+   */
+  protected Iterator<KTypeCursor<KType>> keysIterator() {
+    return new KeysIterator();
+  }
+
   /**
    * An iterator over the set of assigned keys.
    */
   private final class KeysIterator extends AbstractIterator<KTypeCursor<KType>> {
     private final KTypeCursor<KType> cursor;
-    private final int max = mask + 1;
+    private final KType[] keys = Intrinsics.<KType[]> cast(KTypeVTypeOpenHashMap.this.keys);
+    private final KType[] fromKeys = Intrinsics.<KType[]> cast(rehashKeys);
+    private final int split;
+    private final int max;
     private int slot = -1;
 
     public KeysIterator() {
+      split = mask + 1;
+      max = allSlots();
       cursor = new KTypeCursor<KType>();
     }
 
@@ -840,17 +1486,24 @@ public class KTypeVTypeOpenHashMap<KType, VType>
     protected KTypeCursor<KType> fetch() {
       if (slot < max) {
         KType existing;
-        for (slot++; slot < max; slot++) {
-          if (!Intrinsics.<KType> isEmpty(existing = Intrinsics.<KType> cast(keys[slot]))) {
+        for (slot++; slot < split; slot++) {
+          if (!Intrinsics.<KType> isEmpty(existing = keys[slot])) {
             cursor.index = slot;
             cursor.value = existing;
             return cursor;
           }
         }
+        for (; slot < max; slot++) {
+          if (!Intrinsics.<KType> isEmpty(existing = fromKeys[slot - split])) {
+            cursor.index = -1;
+            cursor.value = existing;
+            return cursor;
+          }
+        }
       }
 
       if (slot == max && hasEmptyKey) {
-        cursor.index = slot;
+        cursor.index = split;
         cursor.value = Intrinsics.<KType> empty();
         slot++;
         return cursor;
@@ -860,18 +1513,108 @@ public class KTypeVTypeOpenHashMap<KType, VType>
     }
   }
 
+  /**
+   * A spliterator over a range of slots of assigned keys.
+   * 
+   * @see #allSlots()
+   */
+  private final class KeysSpliterator implements KTypeSpliterator<KType> {
+    private final KType[] keys = Intrinsics.<KType[]> cast(KTypeVTypeOpenHashMap.this.keys);
+    private final KType[] fromKeys = Intrinsics.<KType[]> cast(rehashKeys);
+    private final int split = mask + 1;
+    private int slot;
+    private final int max;
+    private boolean emptyKey;
+    private long estimate;
+    private int characteristics;
+
+    KeysSpliterator(int slot, int max, boolean emptyKey, long estimate, int characteristics) {
+      this.slot = slot;
+      this.max = max;
+      this.emptyKey = emptyKey;
+      this.estimate = estimate;
+      this.characteristics = characteristics;
+    }
+
+    @Override
+    public boolean tryAdvance(KTypeProcedure<? super KType> procedure) {
+      while (slot < max) {
+        final int slot = this.slot++;
+        final KType existing = slot < split ? keys[slot] : fromKeys[slot - split];
+        if (!Intrinsics.<KType> isEmpty(existing)) {
+          procedure.apply(existing);
+          return true;
+        }
+      }
+
+      if (emptyKey) {
+        emptyKey = false;
+        procedure.apply(Intrinsics.<KType> empty());
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public void forEachRemaining(KTypeProcedure<? super KType> procedure) {
+      final KType[] keys = this.keys;
+      for (int slot = this.slot, max = Math.min(this.max, split); slot < max; slot++) {
+        if (!Intrinsics.<KType> isEmpty(keys[slot])) {
+          procedure.apply(keys[slot]);
+        }
+      }
+      final KType[] fromKeys = this.fromKeys;
+      for (int slot = Math.max(this.slot, split), max = this.max; slot < max; slot++) {
+        if (!Intrinsics.<KType> isEmpty(fromKeys[slot - split])) {
+          procedure.apply(fromKeys[slot - split]);
+        }
+      }
+      slot = max;
+
+      if (emptyKey) {
+        emptyKey = false;
+        procedure.apply(Intrinsics.<KType> empty());
+      }
+    }
+
+    @Override
+    public KTypeSpliterator<KType> trySplit() {
+      final int mid = (slot + max) >>> 1;
+      if (mid == slot) {
+        return null;
+      }
+
+      // The empty key (if any) stays with the suffix.
+      estimate >>>= 1;
+      characteristics &= ~(KTypeSpliterator.SIZED | KTypeSpliterator.SUBSIZED);
+      final KTypeSpliterator<KType> prefix = new KeysSpliterator(slot, mid, false, estimate, characteristics);
+      slot = mid;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+      return characteristics;
+    }
+  }
+
   /**
    * @return Returns a container with all values stored in this map.
    */
   @Override
-  public KTypeCollection<VType> values() {
+  public ValuesContainer values() {
     return new ValuesContainer();
   }
 
   /**
    * A view over the set of values of this map.
    */
-  private final class ValuesContainer extends AbstractKTypeCollection<VType> {
+  public final class ValuesContainer extends AbstractKTypeCollection<VType> {
     private final KTypeVTypeOpenHashMap<KType, VType> owner = KTypeVTypeOpenHashMap.this;
 
     @Override
@@ -914,7 +1657,16 @@ public class KTypeVTypeOpenHashMap<KType, VType>
 
     @Override
     public Iterator<KTypeCursor<VType>> iterator() {
-      return new ValuesIterator();
+      return owner.valuesIterator();
+    }
+
+    /**
+     * Returns a spliterator over the values of this map. The spliterator splits
+     * into halves of the slot range, so only the unsplit spliterator's size is
+     * exact (split sizes are estimated as halves).
+     */
+    public KTypeSpliterator<VType> elementSpliterator() {
+      return new ValuesSpliterator(0, allSlots(), hasEmptyKey, size(), KTypeSpliterator.SIZED);
     }
 
     @Override
@@ -948,33 +1700,55 @@ public class KTypeVTypeOpenHashMap<KType, VType>
     }
   }
   
+  /**
+   * Returns an iterator over the values (for {@link #values()}), in the same order
+   * as {@link #iterator()}.
+   */
+  protected Iterator<KTypeCursor<VType>> valuesIterator() {
+    return new ValuesIterator();
+  }
+
   /**
    * An iterator over the set of assigned values.
    */
   private final class ValuesIterator extends AbstractIterator<KTypeCursor<VType>> {
     private final KTypeCursor<VType> cursor;
-    private final int max = mask + 1;
+    private final KType[] keys = Intrinsics.<KType[]> cast(KTypeVTypeOpenHashMap.this.keys);
+    private final VType[] values = Intrinsics.<VType[]> cast(KTypeVTypeOpenHashMap.this.values);
+    private final KType[] fromKeys = Intrinsics.<KType[]> cast(rehashKeys);
+    private final VType[] fromValues = Intrinsics.<VType[]> cast(rehashValues);
+    private final int split;
+    private final int max;
     private int slot = -1;
 
     public ValuesIterator() {
+      split = mask + 1;
+      max = allSlots();
       cursor = new KTypeCursor<VType>();
     }
 
     @Override
     protected KTypeCursor<VType> fetch() {
       if (slot < max) {
-        for (slot++; slot < max; slot++) {
-          if (!Intrinsics.<KType> isEmpty(Intrinsics.<KType> cast(keys[slot]))) {
+        for (slot++; slot < split; slot++) {
+          if (!Intrinsics.<KType> isEmpty(keys[slot])) {
             cursor.index = slot;
-            cursor.value = Intrinsics.<VType> cast(values[slot]);
+            cursor.value = values[slot];
+            return cursor;
+          }
+        }
+        for (; slot < max; slot++) {
+          if (!Intrinsics.<KType> isEmpty(fromKeys[slot - split])) {
+            cursor.index = -1;
+            cursor.value = fromValues[slot - split];
             return cursor;
           }
         }
       }
 
       if (slot == max && hasEmptyKey) {
-        cursor.index = slot;
-        cursor.value = Intrinsics.<VType> cast(values[max]);
+        cursor.index = split;
+        cursor.value = values[split];
         slot++;
         return cursor;
       }
@@ -983,6 +1757,102 @@ public class KTypeVTypeOpenHashMap<KType, VType>
     }
   }
 
+  /**
+   * A spliterator over a range of slots of assigned values.
+   * 
+   * @see #allSlots()
+   */
+  private final class ValuesSpliterator implements KTypeSpliterator<VType> {
+    private final KType[] keys = Intrinsics.<KType[]> cast(KTypeVTypeOpenHashMap.this.keys);
+    private final VType[] values = Intrinsics.<VType[]> cast(KTypeVTypeOpenHashMap.this.values);
+    private final KType[] fromKeys = Intrinsics.<KType[]> cast(rehashKeys);
+    private final VType[] fromValues = Intrinsics.<VType[]> cast(rehashValues);
+    private final int split = mask + 1;
+    private int slot;
+    private final int max;
+    private boolean emptyKey;
+    private long estimate;
+    private int characteristics;
+
+    ValuesSpliterator(int slot, int max, boolean emptyKey, long estimate, int characteristics) {
+      this.slot = slot;
+      this.max = max;
+      this.emptyKey = emptyKey;
+      this.estimate = estimate;
+      this.characteristics = characteristics;
+    }
+
+    @Override
+    public boolean tryAdvance(KTypeProcedure<? super VType> procedure) {
+      while (slot < max) {
+        final int slot = this.slot++;
+        if (slot < split) {
+          if (!Intrinsics.<KType> isEmpty(keys[slot])) {
+            procedure.apply(values[slot]);
+            return true;
+          }
+        } else if (!Intrinsics.<KType> isEmpty(fromKeys[slot - split])) {
+          procedure.apply(fromValues[slot - split]);
+          return true;
+        }
+      }
+
+      if (emptyKey) {
+        emptyKey = false;
+        procedure.apply(values[split]);
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public void forEachRemaining(KTypeProcedure<? super VType> procedure) {
+      final KType[] keys = this.keys;
+      for (int slot = this.slot, max = Math.min(this.max, split); slot < max; slot++) {
+        if (!Intrinsics.<KType> isEmpty(keys[slot])) {
+          procedure.apply(values[slot]);
+        }
+      }
+      final KType[] fromKeys = this.fromKeys;
+      for (int slot = Math.max(this.slot, split), max = this.max; slot < max; slot++) {
+        if (!Intrinsics.<KType> isEmpty(fromKeys[slot - split])) {
+          procedure.apply(fromValues[slot - split]);
+        }
+      }
+      slot = max;
+
+      if (emptyKey) {
+        emptyKey = false;
+        procedure.apply(values[split]);
+      }
+    }
+
+    @Override
+    public KTypeSpliterator<VType> trySplit() {
+      final int mid = (slot + max) >>> 1;
+      if (mid == slot) {
+        return null;
+      }
+
+      // The empty key (if any) stays with the suffix.
+      estimate >>>= 1;
+      characteristics &= ~(KTypeSpliterator.SIZED | KTypeSpliterator.SUBSIZED);
+      final KTypeSpliterator<VType> prefix = new ValuesSpliterator(slot, mid, false, estimate, characteristics);
+      slot = mid;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+      return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+      return characteristics;
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -993,6 +1863,10 @@ public class KTypeVTypeOpenHashMap<KType, VType>
       KTypeVTypeOpenHashMap<KType, VType> cloned = (KTypeVTypeOpenHashMap<KType, VType>) super.clone();
       cloned.keys = keys.clone();
       cloned.values = values.clone();
+      if (rehashKeys != null) {
+        cloned.rehashKeys = rehashKeys.clone();
+        cloned.rehashValues = rehashValues.clone();
+      }
       cloned.hasEmptyKey = cloned.hasEmptyKey;
       cloned.orderMixer = orderMixer.clone();
       return cloned;
@@ -1097,6 +1971,137 @@ public class KTypeVTypeOpenHashMap<KType, VType>
     }
   }
 
+  /**
+   * Rehashes from the previous buffers (hashed with <code>fromKeyMixer</code>) to
+   * the current buffers, in parallel if enabled and the previous buffers are large
+   * enough.
+   */
+  private void rehash(KType[] fromKeys, VType[] fromValues, int fromKeyMixer) {
+    if (rehashPool != null && fromKeys.length - 1 >= parallelRehashMinSlots) {
+      final int fromMask = fromKeys.length - 2;
+      int emptySlot = 0;
+      while (emptySlot <= fromMask && !Intrinsics.<KType> isEmpty(fromKeys[emptySlot])) {
+        emptySlot++;
+      }
+
+      // Keep the key mixer either way so that it does not depend on the buffer's
+      // fill. A full buffer (with the pending key) has no chunk boundaries.
+      this.keyMixer = fromKeyMixer;
+      if (emptySlot <= fromMask) {
+        parallelRehash(fromKeys, fromValues, (emptySlot + 1) & fromMask);
+        return;
+      }
+    }
+    rehash(fromKeys, fromValues);
+  }
+
+  /**
+   * Splits the previous buffers into chunks ending at empty slots, starting at
+   * <code>start</code> (the slot following an empty one), and rehashes the chunks in
+   * {@link #rehashPool}. A chunk only fills slots of the current buffers whose index
+   * modulo the previous buffers' size falls into the chunk; keys that would probe past
+   * these slots are inserted after all chunks are done.
+   */
+  private void parallelRehash(KType[] fromKeys, VType[] fromValues, int start) {
+    final int fromMask = fromKeys.length - 2;
+
+    keys[keys.length - 1] = fromKeys[fromKeys.length - 1];
+    values[values.length - 1] = fromValues[fromValues.length - 1];
+
+    final int[] ends = clusterAlignedChunks(fromKeys, start, parallelChunks(rehashPool, fromMask + 1));
+    final List<RehashChunk> tasks = new ArrayList<RehashChunk>(ends.length);
+    for (int i = 0, from = 0; i < ends.length; from = ends[i++]) {
+      tasks.add(new RehashChunk(fromKeys, fromValues, (start + from) & fromMask, ends[i] - from));
+    }
+
+    invokeAll(rehashPool, tasks);
+
+    final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+    final VType[] values = Intrinsics.<VType[]> cast(this.values);
+    final int mask = this.mask;
+    for (RehashChunk task : tasks) {
+      final IntArrayList deferred = task.deferred;
+      for (int i = 0; i < deferred.size(); i++) {
+        final int from = deferred.get(i);
+        int slot = hashKey(fromKeys[from]) & mask;
+        while (!Intrinsics.<KType> isEmpty(keys[slot])) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = fromKeys[from];
+        values[slot] = fromValues[from];
+      }
+    }
+  }
+
+  /**
+   * Splits the slots of <code>keys</code>, starting at <code>start</code> (the slot
+   * following an empty one), into at most <code>chunks</code> ranges that end at
+   * empty slots, so that no cluster of keys spans two ranges.
+   * 
+   * @return Returns the end offsets of consecutive ranges, relative to <code>start</code>.
+   */
+  private int[] clusterAlignedChunks(KType[] keys, int start, int chunks) {
+    final int mask = keys.length - 2;
+    final int slots = mask + 1;
+    final IntArrayList ends = new IntArrayList(chunks);
+    for (int i = 1, end = 0; i <= chunks && end < slots; i++) {
+      end = Math.max(end + 1, (int) ((long) slots * i / chunks));
+      // Move the end to the next empty slot (the last slot of all ranges is empty).
+      while (end < slots && !Intrinsics.<KType> isEmpty(keys[(start + end - 1) & mask])) {
+        end++;
+      }
+      ends.add(end);
+    }
+    return ends.toArray();
+  }
+
+  /**
+   * Rehashes a chunk of the previous buffers in {@link #parallelRehash}.
+   */
+  private final class RehashChunk extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final KType[] fromKeys;
+    private final VType[] fromValues;
+    private final int start;
+    private final int length;
+    final IntArrayList deferred = new IntArrayList(0);
+
+    RehashChunk(KType[] fromKeys, VType[] fromValues, int start, int length) {
+      this.fromKeys = fromKeys;
+      this.fromValues = fromValues;
+      this.start = start;
+      this.length = length;
+    }
+
+    @Override
+    protected void compute() {
+      final KType[] keys = Intrinsics.<KType[]> cast(KTypeVTypeOpenHashMap.this.keys);
+      final VType[] values = Intrinsics.<VType[]> cast(KTypeVTypeOpenHashMap.this.values);
+      final int mask = KTypeVTypeOpenHashMap.this.mask;
+      final int fromMask = fromKeys.length - 2;
+      for (int i = 0; i < length; i++) {
+        final int from = (start + i) & fromMask;
+        final KType existing = fromKeys[from];
+        if (!Intrinsics.<KType> isEmpty(existing)) {
+          int slot = hashKey(existing) & mask;
+          while (true) {
+            if (((slot - start) & fromMask) >= length) {
+              deferred.add(from);
+              break;
+            }
+            if (Intrinsics.<KType> isEmpty(keys[slot])) {
+              keys[slot] = existing;
+              values[slot] = fromValues[from];
+              break;
+            }
+            slot = (slot + 1) & mask;
+          }
+        }
+      }
+    }
+  }
+
   /**
    * Allocate new internal buffers. This method attempts to allocate
    * and assign internal buffers atomically (either allocations succeed or not).
@@ -1143,9 +2148,24 @@ public class KTypeVTypeOpenHashMap<KType, VType>
            && Intrinsics.<KType> isEmpty(Intrinsics.<KType> cast(keys[slot]))
            && !Intrinsics.<KType> isEmpty(pendingKey);
 
+    if (rehashKeys != null) {
+      // The buffers filled up before a pending incremental rehash completed.
+      finishRehash();
+      slot = hashKey(pendingKey) & mask;
+      while (!Intrinsics.<KType> isEmpty(Intrinsics.<KType> cast(keys[slot]))) {
+        slot = (slot + 1) & mask;
+      }
+    }
+
+    if (rehashStep > 0) {
+      startRehash(slot, pendingKey, pendingValue);
+      return;
+    }
+
     // Try to allocate new buffers first. If we OOM, we leave in a consistent state.
     final KType[] prevKeys = Intrinsics.<KType[]> cast(this.keys);
     final VType[] prevValues = Intrinsics.<VType[]> cast(this.values);
+    final int prevKeyMixer = this.keyMixer;
     allocateBuffers(nextBufferSize(mask + 1, size(), loadFactor));
     assert this.keys.length > prevKeys.length;
 
@@ -1155,7 +2175,142 @@ public class KTypeVTypeOpenHashMap<KType, VType>
     prevValues[slot] = pendingValue;
 
     // Rehash old keys, including the pending key.
-    rehash(prevKeys, prevValues);
+    final long start = System.nanoTime();
+    rehash(prevKeys, prevValues, prevKeyMixer);
+    rehashed(start);
+  }
+
+  /**
+   * Updates rehashing statistics after a rehash started at
+   * <code>startNanos</code> (as returned by {@link System#nanoTime()}).
+   */
+  protected void rehashed(long startNanos) {
+    rehashCount++;
+    rehashNanos += System.nanoTime() - startNanos;
+  }
+
+  /**
+   * Allocates new buffers and starts an incremental rehash from the current
+   * buffers (which are not modified, except for migrated keys being cleared).
+   * The pending key/ value pair is inserted into the new buffers.
+   * 
+   * @param slot An empty slot in the current buffers. Migration starts right
+   * after it, so that no cluster wraps around the starting point.
+   */
+  protected void startRehash(int slot, KType pendingKey, VType pendingValue) {
+    final long start = System.nanoTime();
+    final KType[] prevKeys = Intrinsics.<KType[]> cast(this.keys);
+    final VType[] prevValues = Intrinsics.<VType[]> cast(this.values);
+    final int prevMask = this.mask;
+    final int prevKeyMixer = this.keyMixer;
+    allocateBuffers(nextBufferSize(mask + 1, size(), loadFactor));
+
+    // Keys of both buffers must hash identically.
+    this.keyMixer = prevKeyMixer;
+
+    final int mask = this.mask;
+    values[mask + 1] = prevValues[prevMask + 1];
+    final int newSlot = hashKey(pendingKey) & mask;
+    keys[newSlot] = pendingKey;
+    values[newSlot] = pendingValue;
+
+    this.rehashKeys = prevKeys;
+    this.rehashValues = prevValues;
+    this.rehashMask = prevMask;
+    this.rehashSlot = (slot + 1) & prevMask;
+    this.rehashRemaining = prevMask + 1;
+    final int room = Math.max(1, resizeAt - assigned - 1);
+    this.rehashBudget = Math.max(rehashStep, (rehashRemaining + room - 1) / room);
+    rehashed(start);
+  }
+
+  /**
+   * Migrates a step of a pending incremental rehash and, if <code>key</code> is
+   * still in the previous buffers, its entire cluster (so that it can be
+   * looked up and modified in the current buffers only).
+   */
+  protected void continueRehash(KType key) {
+    migrateSlots(rehashBudget);
+    if (rehashKeys != null && !Intrinsics.<KType> isEmpty(key)) {
+      final int slot = rehashIndexOf(key);
+      if (slot >= 0) {
+        final KType[] fromKeys = Intrinsics.<KType[]> cast(this.rehashKeys);
+        final int fromMask = this.rehashMask;
+        int from = slot;
+        while (!Intrinsics.<KType> isEmpty(fromKeys[(from - 1) & fromMask])) {
+          from = (from - 1) & fromMask;
+        }
+        for (; !Intrinsics.<KType> isEmpty(fromKeys[from]); from = (from + 1) & fromMask) {
+          migrateSlot(from);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the slot of <code>key</code> in {@link #rehashKeys}, or
+   * <code>-1</code> if it is not there.
+   */
+  protected int rehashIndexOf(KType key) {
+    final KType[] fromKeys = Intrinsics.<KType[]> cast(this.rehashKeys);
+    final int fromMask = this.rehashMask;
+    int slot = hashKey(key) & fromMask;
+
+    KType existing;
+    while (!Intrinsics.<KType> isEmpty(existing = fromKeys[slot])) {
+      if (Intrinsics.<KType> equals(this, key, existing)) {
+        return slot;
+      }
+      slot = (slot + 1) & fromMask;
+    }
+    return -1;
+  }
+
+  /**
+   * Migrates at least <code>count</code> slots of {@link #rehashKeys}, then up
+   * to the end of the current cluster.
+   */
+  private void migrateSlots(int count) {
+    final KType[] fromKeys = Intrinsics.<KType[]> cast(this.rehashKeys);
+    final int fromMask = this.rehashMask;
+    int slot = this.rehashSlot;
+    int remaining = this.rehashRemaining;
+    while (remaining > 0 && (count-- > 0 || !Intrinsics.<KType> isEmpty(fromKeys[slot]))) {
+      if (!Intrinsics.<KType> isEmpty(fromKeys[slot])) {
+        migrateSlot(slot);
+      }
+      slot = (slot + 1) & fromMask;
+      remaining--;
+    }
+
+    if (remaining == 0) {
+      this.rehashKeys = null;
+      this.rehashValues = null;
+    } else {
+      this.rehashSlot = slot;
+      this.rehashRemaining = remaining;
+    }
+  }
+
+  /**
+   * Moves the key/ value pair at <code>fromSlot</code> of the previous buffers
+   * to the current buffers.
+   */
+  private void migrateSlot(int fromSlot) {
+    final KType[] keys = Intrinsics.<KType[]> cast(this.keys);
+    final KType[] fromKeys = Intrinsics.<KType[]> cast(this.rehashKeys);
+    final VType[] fromValues = Intrinsics.<VType[]> cast(this.rehashValues);
+    final int mask = this.mask;
+
+    final KType existing = fromKeys[fromSlot];
+    int slot = hashKey(existing) & mask;
+    while (!Intrinsics.<KType> isEmpty(keys[slot])) {
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = existing;
+    values[slot] = fromValues[fromSlot];
+    fromKeys[fromSlot] = Intrinsics.<KType> empty();
+    fromValues[fromSlot] = Intrinsics.<VType> empty();
   }
   
   /**
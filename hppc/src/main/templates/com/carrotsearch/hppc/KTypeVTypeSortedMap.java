@@ -0,0 +1,978 @@
+package com.carrotsearch.hppc;
+
+import java.util.*;
+
+import com.carrotsearch.hppc.cursors.*;
+import com.carrotsearch.hppc.predicates.*;
+import com.carrotsearch.hppc.procedures.*;
+
+/**
+ * A map of <code>KType</code> to <code>VType</code> sorted by keys, in the
+ * natural order of keys or the order of a {@link KTypeComparator}.
+ *
+ * <p>The map is a B+-tree: entries are kept in sorted leaves of at most 128
+ * keys and values (parallel primitive arrays), under internal nodes of at most
+ * 128 children. A lookup is one binary search over a contiguous array per
+ * level; an insertion or removal moves the entries of one or two leaves and,
+ * when leaves split or merge, the children of one or two nodes per level.
+ * Iteration (in key order) is sequential over leaf arrays.</p>
+ *
+ * <p>Besides the {@link KTypeVTypeMap} API, the map supports ordered navigation
+ * ({@link #floorKey}, {@link #ceilingKey}, {@link #lowerKey}, {@link #higherKey}
+ * and their index variants), range traversal ({@link #subMap}) and bulk loading
+ * of sorted input ({@link #bulkLoad}, {@link #fromSorted}).</p>
+ *
+ * <p>Indexes (see {@link #indexOf}) encode a leaf and a position in the leaf;
+ * they are not ordered like keys. The index of an entry following another can
+ * be obtained with {@link #nextIndex(int)}. Indexes are invalidated by
+ * insertions and removals.</p>
+ */
+/*! #if ($TemplateOptions.anyGeneric) @SuppressWarnings("unchecked") #end !*/
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeSortedMap<KType, VType>
+  implements KTypeVTypeMap<KType, VType>,
+             Cloneable
+{
+  /**
+   * The entries, in a tree whose leaves have values.
+   */
+  KTypeSortedTree<KType> tree;
+
+  /**
+   * New instance in the natural order of keys.
+   */
+  public KTypeVTypeSortedMap() {
+    this((KTypeComparator<? super KType>) null);
+  }
+
+  /**
+   * New instance in the order of keys defined by <code>comparator</code> (or
+   * their natural order, if <code>null</code>).
+   */
+  public KTypeVTypeSortedMap(KTypeComparator<? super KType> comparator) {
+    this(comparator, KTypeSortedTree.MAX_LEAF_SIZE, KTypeSortedTree.MAX_NODE_SIZE);
+  }
+
+  /**
+   * New instance with the given maximum leaf and node sizes of the tree.
+   */
+  KTypeVTypeSortedMap(KTypeComparator<? super KType> comparator, int maxLeafSize, int maxNodeSize) {
+    this.tree = new ValuesTree<KType, VType>(comparator, maxLeafSize, maxNodeSize);
+  }
+
+  /**
+   * Create a map from all key-value pairs of another container.
+   */
+  public KTypeVTypeSortedMap(KTypeVTypeAssociativeContainer<? extends KType, ? extends VType> container) {
+    this();
+    putAll(container);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType put(KType key, VType value) {
+    final int index = indexOf(key);
+    if (index >= 0) {
+      return indexReplace(index, value);
+    } else {
+      indexInsert(index, key, value);
+      return Intrinsics.<VType> empty();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int putAll(KTypeVTypeAssociativeContainer<? extends KType, ? extends VType> container) {
+    final int count = size();
+    for (KTypeVTypeCursor<? extends KType, ? extends VType> c : container) {
+      put(c.key, c.value);
+    }
+    return size() - count;
+  }
+
+  /**
+   * Puts all key/value pairs from a given iterable into this map.
+   */
+  @Override
+  public int putAll(Iterable<? extends KTypeVTypeCursor<? extends KType, ? extends VType>> iterable){
+    final int count = size();
+    for (KTypeVTypeCursor<? extends KType, ? extends VType> c : iterable) {
+      put(c.key, c.value);
+    }
+    return size() - count;
+  }
+
+  /*! #if ($TemplateOptions.VTypePrimitive) !*/
+  /**
+   * If <code>key</code> exists, <code>putValue</code> is inserted into the map,
+   * otherwise any existing value is incremented by <code>additionValue</code>.
+   *
+   * @param key The key of the value to adjust.
+   * @param putValue The value to put if <code>key</code> does not exist.
+   * @param incrementValue The value to add to the existing value if <code>key</code> exists.
+   * @return Returns the current value associated with <code>key</code> (after changes).
+   */
+  @Override
+  public VType putOrAdd(KType key, VType putValue, VType incrementValue) {
+    final int index = indexOf(key);
+    if (index >= 0) {
+      putValue = (VType) (Intrinsics.<VType> add(indexGet(index), incrementValue));
+      indexReplace(index, putValue);
+    } else {
+      indexInsert(index, key, putValue);
+    }
+    return putValue;
+  }
+  /*! #end !*/
+
+  /*! #if ($TemplateOptions.VTypePrimitive) !*/
+  /**
+   * Adds <code>incrementValue</code> to any existing value for the given <code>key</code>
+   * or inserts <code>incrementValue</code> if <code>key</code> did not previously exist.
+   *
+   * @param key The key of the value to adjust.
+   * @param incrementValue The value to put or add to the existing value if <code>key</code> exists.
+   * @return Returns the current value associated with <code>key</code> (after changes).
+   */
+  @Override
+  public VType addTo(KType key, VType incrementValue) {
+    return putOrAdd(key, incrementValue, incrementValue);
+  }
+  /*! #end !*/
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType remove(KType key) {
+    final int index = indexOf(key);
+    if (index >= 0) {
+      return indexRemove(index);
+    } else {
+      return Intrinsics.<VType> empty();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int removeAll(final KTypeContainer<? super KType> other) {
+    return removeAll(new KTypeVTypePredicate<KType, VType>() {
+      @Override
+      public boolean apply(KType key, VType value) {
+        return other.contains(key);
+      }
+    });
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int removeAll(final KTypePredicate<? super KType> predicate) {
+    return removeAll(new KTypeVTypePredicate<KType, VType>() {
+      @Override
+      public boolean apply(KType key, VType value) {
+        return predicate.apply(key);
+      }
+    });
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int removeAll(KTypeVTypePredicate<? super KType, ? super VType> predicate) {
+    final KTypeSortedTree<KType> tree = this.tree;
+    final int before = tree.size;
+    try {
+      for (int leaf = tree.firstLeaf; leaf >= 0; leaf = tree.nextLeaves[leaf]) {
+        final KType[] keys = Intrinsics.<KType[]> cast(tree.leafKeys[leaf]);
+        final VType[] values = (VType[]) tree.leafValues[leaf];
+        final int leafSize = tree.leafSizes[leaf];
+        int to = 0;
+        int from = 0;
+        try {
+          for (; from < leafSize; from++) {
+            if (predicate.apply(keys[from], values[from])) {
+              continue;
+            }
+            if (to != from) {
+              keys[to] = keys[from];
+              values[to] = values[from];
+            }
+            to++;
+          }
+        } finally {
+          // Keep the leaf in a consistent state, even if the predicate throws an exception.
+          for (; from < leafSize; from++, to++) {
+            keys[to] = keys[from];
+            values[to] = values[from];
+          }
+          clearRange(keys, values, to, leafSize);
+          tree.leafSizes[leaf] = to;
+          tree.size -= leafSize - to;
+        }
+      }
+    } finally {
+      tree.compact();
+    }
+    return before - tree.size;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType get(KType key) {
+    return getOrDefault(key, Intrinsics.<VType> empty());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType getOrDefault(KType key, VType defaultValue) {
+    final int index = indexOf(key);
+    return index >= 0 ? indexGet(index) : defaultValue;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean containsKey(KType key) {
+    return indexOf(key) >= 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>For a missing key, the (negative) index encodes its insertion point.</p>
+   */
+  @Override
+  public int indexOf(KType key) {
+    return tree.indexOf(key);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean indexExists(int index) {
+    assert index < 0 || tree.checkIndex(index);
+
+    return index >= 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType indexGet(int index) {
+    assert tree.checkIndex(index) : "The index must point at an existing key.";
+
+    return values(index)[index & KTypeSortedTree.LEAF_MASK];
+  }
+
+  /**
+   * @param index The index of an existing key.
+   * @return Returns the key at the given index.
+   */
+  public KType indexKey(int index) {
+    return tree.key(index);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public VType indexReplace(int index, VType newValue) {
+    assert tree.checkIndex(index) : "The index must point at an existing key.";
+
+    final VType[] values = values(index);
+    final int position = index & KTypeSortedTree.LEAF_MASK;
+    final VType previousValue = values[position];
+    values[position] = newValue;
+    return previousValue;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void indexInsert(int index, KType key, VType value) {
+    index = tree.insert(index, key);
+    values(index)[index & KTypeSortedTree.LEAF_MASK] = value;
+  }
+
+  /**
+   * Removes the entry at the given index.
+   *
+   * @param index The index of an existing key.
+   * @return Returns the value of the removed entry.
+   */
+  public VType indexRemove(int index) {
+    final VType previousValue = indexGet(index);
+    tree.remove(index);
+    return previousValue;
+  }
+
+  /**
+   * @return Returns the index of the smallest key or <code>-1</code> if the map is
+   * empty.
+   */
+  public int firstIndex() {
+    return tree.firstIndex();
+  }
+
+  /**
+   * @return Returns the index of the largest key or <code>-1</code> if the map is
+   * empty.
+   */
+  public int lastIndex() {
+    return tree.lastIndex();
+  }
+
+  /**
+   * @param index The index of an existing key.
+   * @return Returns the index of the following key or <code>-1</code> if
+   * <code>index</code> is the last one.
+   */
+  public int nextIndex(int index) {
+    return tree.nextIndex(index);
+  }
+
+  /**
+   * @param index The index of an existing key.
+   * @return Returns the index of the preceding key or <code>-1</code> if
+   * <code>index</code> is the first one.
+   */
+  public int previousIndex(int index) {
+    return tree.previousIndex(index);
+  }
+
+  /**
+   * @return Returns the index of the greatest key less than or equal to
+   * <code>key</code> or <code>-1</code> if there is no such key.
+   */
+  public int floorIndex(KType key) {
+    return tree.floorIndex(key);
+  }
+
+  /**
+   * @return Returns the index of the least key greater than or equal to
+   * <code>key</code> or <code>-1</code> if there is no such key.
+   */
+  public int ceilingIndex(KType key) {
+    return tree.ceilingIndex(key);
+  }
+
+  /**
+   * @return Returns the index of the greatest key strictly less than
+   * <code>key</code> or <code>-1</code> if there is no such key.
+   */
+  public int lowerIndex(KType key) {
+    return tree.lowerIndex(key);
+  }
+
+  /**
+   * @return Returns the index of the least key strictly greater than
+   * <code>key</code> or <code>-1</code> if there is no such key.
+   */
+  public int higherIndex(KType key) {
+    return tree.higherIndex(key);
+  }
+
+  /**
+   * @return Returns the smallest key. The map must not be empty.
+   */
+  public KType firstKey() {
+    assert !isEmpty() : "The map is empty.";
+    return indexKey(firstIndex());
+  }
+
+  /**
+   * @return Returns the largest key. The map must not be empty.
+   */
+  public KType lastKey() {
+    assert !isEmpty() : "The map is empty.";
+    return indexKey(lastIndex());
+  }
+
+  /**
+   * @return Returns the greatest key less than or equal to <code>key</code> or
+   *         the default value for the key type if there is no such key (use
+   *         {@link #floorIndex} to tell these apart).
+   */
+  public KType floorKey(KType key) {
+    return keyOrEmpty(floorIndex(key));
+  }
+
+  /**
+   * @return Returns the least key greater than or equal to <code>key</code> or
+   *         the default value for the key type if there is no such key (use
+   *         {@link #ceilingIndex} to tell these apart).
+   */
+  public KType ceilingKey(KType key) {
+    return keyOrEmpty(ceilingIndex(key));
+  }
+
+  /**
+   * @return Returns the greatest key strictly less than <code>key</code> or the
+   *         default value for the key type if there is no such key (use
+   *         {@link #lowerIndex} to tell these apart).
+   */
+  public KType lowerKey(KType key) {
+    return keyOrEmpty(lowerIndex(key));
+  }
+
+  /**
+   * @return Returns the least key strictly greater than <code>key</code> or the
+   *         default value for the key type if there is no such key (use
+   *         {@link #higherIndex} to tell these apart).
+   */
+  public KType higherKey(KType key) {
+    return keyOrEmpty(higherIndex(key));
+  }
+
+  private KType keyOrEmpty(int index) {
+    return index >= 0 ? indexKey(index) : Intrinsics.<KType> empty();
+  }
+
+  /**
+   * Returns a view of the entries with keys in the range from
+   * <code>fromKey</code>, inclusive, to <code>toKey</code>, exclusive, in key
+   * order. The view's iterators locate the range when created.
+   */
+  public Iterable<KTypeVTypeCursor<KType, VType>> subMap(KType fromKey, KType toKey) {
+    return new SubMap(fromKey, toKey);
+  }
+
+  /**
+   * A view of a range of entries.
+   */
+  private final class SubMap implements Iterable<KTypeVTypeCursor<KType, VType>> {
+    private final KType fromKey;
+    private final KType toKey;
+
+    public SubMap(KType fromKey, KType toKey) {
+      this.fromKey = fromKey;
+      this.toKey = toKey;
+    }
+
+    @Override
+    public Iterator<KTypeVTypeCursor<KType, VType>> iterator() {
+      return new EntryIterator(ceilingIndex(fromKey), toKey, true);
+    }
+  }
+
+  /**
+   * Applies <code>procedure</code> to entries with keys in the range from
+   * <code>fromKey</code>, inclusive, to <code>toKey</code>, exclusive, in key
+   * order.
+   */
+  public <T extends KTypeVTypeProcedure<? super KType, ? super VType>> T forEach(T procedure, KType fromKey, KType toKey) {
+    for (int index = ceilingIndex(fromKey); index >= 0; index = nextIndex(index)) {
+      final KType key = indexKey(index);
+      if (tree.compare(key, toKey) >= 0) {
+        break;
+      }
+      procedure.apply(key, indexGet(index));
+    }
+    return procedure;
+  }
+
+  /**
+   * Replaces the contents of this map with key-value pairs from two
+   * index-aligned array ranges, in O(n). Keys must be strictly increasing in
+   * this map's order.
+   *
+   * @throws IllegalArgumentException If keys are not strictly increasing.
+   */
+  public void bulkLoad(KType[] keys, VType[] values, int start, int length) {
+    assert start + length <= values.length;
+
+    tree.bulkLoad(keys, values, start, length);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void clear() {
+    tree.clear();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void release() {
+    tree.release();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int size() {
+    return tree.size;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    int h = 0;
+    for (KTypeVTypeCursor<KType, VType> c : this) {
+      h += BitMixer.mix0(c.key) +
+           BitMixer.mix0(c.value);
+    }
+    return h;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object obj) {
+    return obj != null &&
+           getClass() == obj.getClass() &&
+           equalElements(getClass().cast(obj));
+  }
+
+  /**
+   * Return true if both maps have equal key-value pairs, in the same order.
+   */
+  protected boolean equalElements(KTypeVTypeSortedMap<?, ?> other) {
+    if (other.size() != size()) {
+      return false;
+    }
+
+    final Iterator<? extends KTypeVTypeCursor<?, ?>> i = other.iterator();
+    for (KTypeVTypeCursor<KType, VType> c : this) {
+      final KTypeVTypeCursor<?, ?> o = i.next();
+      if (!Intrinsics.<KType> equals(c.key, o.key) ||
+          !Intrinsics.<VType> equals(c.value, o.value)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * An iterator over entries in key order, from an index up to (excluding) a key.
+   */
+  private final class EntryIterator extends AbstractIterator<KTypeVTypeCursor<KType, VType>> {
+    private final KTypeVTypeCursor<KType, VType> cursor = new KTypeVTypeCursor<KType, VType>();
+    private final KType toKey;
+    private final boolean bounded;
+    private int next;
+
+    public EntryIterator(int start, KType toKey, boolean bounded) {
+      this.next = start;
+      this.toKey = toKey;
+      this.bounded = bounded;
+    }
+
+    @Override
+    protected KTypeVTypeCursor<KType, VType> fetch() {
+      if (next < 0) {
+        return done();
+      }
+
+      final KType key = indexKey(next);
+      if (bounded && tree.compare(key, toKey) >= 0) {
+        next = -1;
+        return done();
+      }
+
+      cursor.index = next;
+      cursor.key = key;
+      cursor.value = indexGet(next);
+      next = nextIndex(next);
+      return cursor;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Entries are returned in key order.</p>
+   */
+  @Override
+  public Iterator<KTypeVTypeCursor<KType, VType>> iterator() {
+    return new EntryIterator(firstIndex(), Intrinsics.<KType> empty(), false);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public <T extends KTypeVTypeProcedure<? super KType, ? super VType>> T forEach(T procedure) {
+    final KTypeSortedTree<KType> tree = this.tree;
+    for (int leaf = tree.firstLeaf; leaf >= 0; leaf = tree.nextLeaves[leaf]) {
+      final KType[] keys = Intrinsics.<KType[]> cast(tree.leafKeys[leaf]);
+      final VType[] values = (VType[]) tree.leafValues[leaf];
+      for (int i = 0, max = tree.leafSizes[leaf]; i < max; i++) {
+        procedure.apply(keys[i], values[i]);
+      }
+    }
+    return procedure;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public <T extends KTypeVTypePredicate<? super KType, ? super VType>> T forEach(T predicate) {
+    final KTypeSortedTree<KType> tree = this.tree;
+    for (int leaf = tree.firstLeaf; leaf >= 0; leaf = tree.nextLeaves[leaf]) {
+      final KType[] keys = Intrinsics.<KType[]> cast(tree.leafKeys[leaf]);
+      final VType[] values = (VType[]) tree.leafValues[leaf];
+      for (int i = 0, max = tree.leafSizes[leaf]; i < max; i++) {
+        if (!predicate.apply(keys[i], values[i])) {
+          return predicate;
+        }
+      }
+    }
+    return predicate;
+  }
+
+  /**
+   * Returns a specialized view of the keys of this map, in key order. The view
+   * additionally implements {@link ObjectLookupContainer}.
+   */
+  @Override
+  public KeysContainer keys() {
+    return new KeysContainer();
+  }
+
+  /**
+   * A view of the keys inside this map.
+   */
+  public final class KeysContainer extends AbstractKTypeCollection<KType>
+                                   implements KTypeLookupContainer<KType> {
+    private final KTypeVTypeSortedMap<KType, VType> owner = KTypeVTypeSortedMap.this;
+
+    @Override
+    public boolean contains(KType e) {
+      return owner.containsKey(e);
+    }
+
+    @Override
+    public <T extends KTypeProcedure<? super KType>> T forEach(final T procedure) {
+      owner.forEach(new KTypeVTypeProcedure<KType, VType>() {
+        @Override
+        public void apply(KType key, VType value) {
+          procedure.apply(key);
+        }
+      });
+
+      return procedure;
+    }
+
+    @Override
+    public <T extends KTypePredicate<? super KType>> T forEach(final T predicate) {
+      owner.forEach(new KTypeVTypePredicate<KType, VType>() {
+        @Override
+        public boolean apply(KType key, VType value) {
+          return predicate.apply(key);
+        }
+      });
+
+      return predicate;
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return owner.isEmpty();
+    }
+
+    @Override
+    public Iterator<KTypeCursor<KType>> iterator() {
+      return new KeysIterator();
+    }
+
+    @Override
+    public int size() {
+      return owner.size();
+    }
+
+    @Override
+    public void clear() {
+      owner.clear();
+    }
+
+    @Override
+    public void release() {
+      owner.release();
+    }
+
+    @Override
+    public int removeAll(KTypePredicate<? super KType> predicate) {
+      return owner.removeAll(predicate);
+    }
+
+    @Override
+    public int removeAll(final KType e) {
+      final int index = owner.indexOf(e);
+      if (index >= 0) {
+        owner.indexRemove(index);
+        return 1;
+      } else {
+        return 0;
+      }
+    }
+  };
+
+  /**
+   * An iterator over the keys, in key order.
+   */
+  private final class KeysIterator extends AbstractIterator<KTypeCursor<KType>> {
+    private final KTypeCursor<KType> cursor = new KTypeCursor<KType>();
+    private int next = firstIndex();
+
+    @Override
+    protected KTypeCursor<KType> fetch() {
+      if (next < 0) {
+        return done();
+      }
+
+      cursor.index = next;
+      cursor.value = indexKey(next);
+      next = nextIndex(next);
+      return cursor;
+    }
+  }
+
+  /**
+   * @return Returns a container with all values stored in this map, in key order.
+   */
+  @Override
+  public KTypeContainer<VType> values() {
+    return new ValuesContainer();
+  }
+
+  /**
+   * A view over the set of values of this map.
+   */
+  private final class ValuesContainer extends AbstractKTypeCollection<VType> {
+    private final KTypeVTypeSortedMap<KType, VType> owner = KTypeVTypeSortedMap.this;
+
+    @Override
+    public int size() {
+      return owner.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return owner.isEmpty();
+    }
+
+    @Override
+    public boolean contains(VType value) {
+      for (KTypeVTypeCursor<KType, VType> c : owner) {
+        if (Intrinsics.<VType> equals(value, c.value)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public <T extends KTypeProcedure<? super VType>> T forEach(final T procedure) {
+      owner.forEach(new KTypeVTypeProcedure<KType, VType>() {
+        @Override
+        public void apply(KType key, VType value) {
+          procedure.apply(value);
+        }
+      });
+      return procedure;
+    }
+
+    @Override
+    public <T extends KTypePredicate<? super VType>> T forEach(final T predicate) {
+      owner.forEach(new KTypeVTypePredicate<KType, VType>() {
+        @Override
+        public boolean apply(KType key, VType value) {
+          return predicate.apply(value);
+        }
+      });
+      return predicate;
+    }
+
+    @Override
+    public Iterator<KTypeCursor<VType>> iterator() {
+      return new ValuesIterator();
+    }
+
+    @Override
+    public int removeAll(final VType e) {
+      return owner.removeAll(new KTypeVTypePredicate<KType, VType>() {
+        @Override
+        public boolean apply(KType key, VType value) {
+          return Intrinsics.<VType> equals(e, value);
+        }
+      });
+    }
+
+    @Override
+    public int removeAll(final KTypePredicate<? super VType> predicate) {
+      return owner.removeAll(new KTypeVTypePredicate<KType, VType>() {
+        @Override
+        public boolean apply(KType key, VType value) {
+          return predicate.apply(value);
+        }
+      });
+    }
+
+    @Override
+    public void clear() {
+      owner.clear();
+    }
+
+    @Override
+    public void release() {
+      owner.release();
+    }
+  }
+
+  /**
+   * An iterator over the values, in key order.
+   */
+  private final class ValuesIterator extends AbstractIterator<KTypeCursor<VType>> {
+    private final KTypeCursor<VType> cursor = new KTypeCursor<VType>();
+    private int next = firstIndex();
+
+    @Override
+    protected KTypeCursor<VType> fetch() {
+      if (next < 0) {
+        return done();
+      }
+
+      cursor.index = next;
+      cursor.value = indexGet(next);
+      next = nextIndex(next);
+      return cursor;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public KTypeVTypeSortedMap<KType, VType> clone() {
+    try {
+      /* #if ($templateOnly) */ @SuppressWarnings("unchecked") /* #end */
+      KTypeVTypeSortedMap<KType, VType> cloned = (KTypeVTypeSortedMap<KType, VType>) super.clone();
+      cloned.tree = tree.clone();
+      return cloned;
+    } catch (CloneNotSupportedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Convert the contents of this map to a human-friendly string.
+   */
+  @Override
+  public String toString() {
+    final StringBuilder buffer = new StringBuilder();
+    buffer.append("[");
+
+    boolean first = true;
+    for (KTypeVTypeCursor<KType, VType> cursor : this) {
+      if (!first) {
+        buffer.append(", ");
+      }
+      buffer.append(cursor.key);
+      buffer.append("=>");
+      buffer.append(cursor.value);
+      first = false;
+    }
+    buffer.append("]");
+    return buffer.toString();
+  }
+
+  /**
+   * Creates a map from two index-aligned arrays of key-value pairs.
+   */
+  public static <KType, VType> KTypeVTypeSortedMap<KType, VType> from(KType[] keys, VType[] values) {
+    if (keys.length != values.length) {
+      throw new IllegalArgumentException("Arrays of keys and values must have an identical length.");
+    }
+
+    KTypeVTypeSortedMap<KType, VType> map = new KTypeVTypeSortedMap<>();
+    for (int i = 0; i < keys.length; i++) {
+      map.put(keys[i], values[i]);
+    }
+
+    return map;
+  }
+
+  /**
+   * Creates a map from two index-aligned arrays of key-value pairs, with keys
+   * strictly increasing in their natural order, in O(n).
+   *
+   * @see #bulkLoad
+   */
+  public static <KType, VType> KTypeVTypeSortedMap<KType, VType> fromSorted(KType[] keys, VType[] values) {
+    if (keys.length != values.length) {
+      throw new IllegalArgumentException("Arrays of keys and values must have an identical length.");
+    }
+
+    KTypeVTypeSortedMap<KType, VType> map = new KTypeVTypeSortedMap<>();
+    map.bulkLoad(keys, values, 0, keys.length);
+    return map;
+  }
+
+  /**
+   * @return Returns the leaf array of values holding the value at an index.
+   */
+  private VType[] values(int index) {
+    return (VType[]) tree.leafValues[index >>> KTypeSortedTree.LEAF_SHIFT];
+  }
+
+  /**
+   * Resets a range of a leaf's keys and values to empty values.
+   */
+  private static /* #if ($TemplateOptions.anyGeneric) */ <KType, VType> /* #end */
+    void clearRange(KType[] keys, VType[] values, int from, int to) {
+    /* #if ($TemplateOptions.KTypeGeneric) */
+    Arrays.fill(keys, from, to, null);
+    /* #end */
+    /* #if ($TemplateOptions.VTypeGeneric) */
+    Arrays.fill(values, from, to, null);
+    /* #end */
+  }
+
+  /**
+   * A tree with a leaf array of values for each leaf array of keys.
+   */
+  private static final class ValuesTree<KType, VType> extends KTypeSortedTree<KType> {
+    ValuesTree(KTypeComparator<? super KType> comparator, int maxLeafSize, int maxNodeSize) {
+      super(comparator, maxLeafSize, maxNodeSize);
+    }
+
+    @Override
+    protected Object newValues(int length) {
+      return Intrinsics.<VType> newArray(length);
+    }
+  }
+}
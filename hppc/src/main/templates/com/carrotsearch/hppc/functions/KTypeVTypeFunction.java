@@ -0,0 +1,10 @@
+package com.carrotsearch.hppc.functions;
+
+/**
+ * A function computing a <code>VType</code> value for a <code>KType</code> key.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public interface KTypeVTypeFunction<KType, VType>
+{
+    public VType apply(KType key);
+}
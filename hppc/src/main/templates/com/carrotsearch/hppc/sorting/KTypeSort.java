@@ -0,0 +1,561 @@
+package com.carrotsearch.hppc.sorting;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.carrotsearch.hppc.KTypeComparator;
+
+/**
+ * In-place sorting of <code>KType</code> arrays (or their ranges), in the
+ * natural order of elements or the order of a {@link KTypeComparator}, with no
+ * boxing and no temporary arrays.
+ * <p>
+ * Sorting uses dual-pivot quicksort with insertion sort for short ranges; if
+ * recursion gets too deep (on adversarial input) the remaining range is heap
+ * sorted, so sorting is O(n log(n)) in the worst case. Sorting is not stable.
+ * {@link #parallelSort} sorts partitions of large ranges in fork-join tasks.
+ * </p>
+#if ($TemplateOptions.KType.Type == "int" || $TemplateOptions.KType.Type == "long" || $TemplateOptions.KType.Type == "float" || $TemplateOptions.KType.Type == "double")
+ * <p>
+ * {@link #radixSort} sorts in the natural order in O(n), at the price of a
+ * buffer as large as the sorted range.
+ * </p>
+#end
+#if ($TemplateOptions.KType.Type == "float" || $TemplateOptions.KType.Type == "double")
+ * <p>
+ * The natural order is that of {@link ${TemplateOptions.KType.BoxedType}#compare}:
+ * <code>-0.0</code> is before <code>0.0</code> and <code>NaN</code>s are last.
+ * </p>
+#end
+ */
+/*! #if ($TemplateOptions.KTypeGeneric) @SuppressWarnings("unchecked") #end !*/
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public final class KTypeSort
+{
+    /**
+     * Ranges shorter than this are insertion sorted.
+     */
+    static final int INSERTION_SORT_THRESHOLD = 32;
+
+    /**
+     * Ranges shorter than this are sorted sequentially in {@link #parallelSort}.
+     */
+    static final int PARALLEL_SORT_THRESHOLD = 1 << 13;
+
+    /*! #if ($TemplateOptions.KType.Type == "int" || $TemplateOptions.KType.Type == "long" || $TemplateOptions.KType.Type == "float" || $TemplateOptions.KType.Type == "double") !*/
+    /**
+     * Ranges shorter than this are sorted with quicksort in {@link #radixSort}.
+     */
+    static final int RADIX_SORT_THRESHOLD = 256;
+    /*! #end !*/
+
+    /**
+     * No instantiation.
+     */
+    private KTypeSort()
+    {
+        // No instantiation.
+    }
+
+    /**
+     * Sorts an array in the natural order of elements.
+     */
+    public static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ void sort(KType [] a)
+    {
+        sort(a, 0, a.length, null);
+    }
+
+    /**
+     * Sorts elements from <code>fromIndex</code>, inclusive, to
+     * <code>toIndex</code>, exclusive, in their natural order.
+     */
+    public static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ void sort(KType [] a, int fromIndex, int toIndex)
+    {
+        sort(a, fromIndex, toIndex, null);
+    }
+
+    /**
+     * Sorts elements from <code>fromIndex</code>, inclusive, to
+     * <code>toIndex</code>, exclusive, in the order of <code>comparator</code>
+     * (or their natural order, if <code>null</code>).
+     */
+    public static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ void sort(KType [] a, int fromIndex, int toIndex,
+        KTypeComparator<? super KType> comparator)
+    {
+        checkRange(a.length, fromIndex, toIndex);
+        quickSort(a, fromIndex, toIndex - 1, maxDepth(toIndex - fromIndex), comparator);
+    }
+
+    /**
+     * Sorts elements from <code>fromIndex</code>, inclusive, to
+     * <code>toIndex</code>, exclusive, in their natural order, using tasks of
+     * <code>pool</code>.
+     */
+    public static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ void parallelSort(ForkJoinPool pool, KType [] a,
+        int fromIndex, int toIndex)
+    {
+        parallelSort(pool, a, fromIndex, toIndex, null);
+    }
+
+    /**
+     * Sorts elements from <code>fromIndex</code>, inclusive, to
+     * <code>toIndex</code>, exclusive, in the order of <code>comparator</code>
+     * (or their natural order, if <code>null</code>), using tasks of
+     * <code>pool</code>. The comparator must be thread-safe.
+     * <p>
+     * Each quicksort partition step forks tasks for the resulting partitions
+     * until they are shorter than {@link #PARALLEL_SORT_THRESHOLD}. No memory is
+     * allocated besides the tasks.
+     * </p>
+     */
+    public static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ void parallelSort(ForkJoinPool pool, KType [] a,
+        int fromIndex, int toIndex, KTypeComparator<? super KType> comparator)
+    {
+        checkRange(a.length, fromIndex, toIndex);
+        pool.invoke(new SortTask<KType>(a, fromIndex, toIndex - 1, maxDepth(toIndex - fromIndex), comparator));
+    }
+
+    /**
+     * Sorts a range of an array in {@link #parallelSort}.
+     */
+    final static class SortTask<KType> extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final KType [] a;
+        private final int left;
+        private final int right;
+        private final int depth;
+        private final KTypeComparator<? super KType> comparator;
+
+        SortTask(KType [] a, int left, int right, int depth, KTypeComparator<? super KType> comparator)
+        {
+            this.a = a;
+            this.left = left;
+            this.right = right;
+            this.depth = depth;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (right - left < PARALLEL_SORT_THRESHOLD || depth == 0)
+            {
+                quickSort(a, left, right, depth, comparator);
+                return;
+            }
+
+            final long pivots = partition(a, left, right, comparator);
+            final int less = (int) (pivots >>> 32);
+            final int great = (int) pivots;
+            if (lessThan(a[less - 1], a[great + 1], comparator))
+            {
+                invokeAll(
+                    new SortTask<KType>(a, left, less - 2, depth - 1, comparator),
+                    new SortTask<KType>(a, less, great, depth - 1, comparator),
+                    new SortTask<KType>(a, great + 2, right, depth - 1, comparator));
+            }
+            else
+            {
+                // Pivots are equal and so is everything between them.
+                invokeAll(
+                    new SortTask<KType>(a, left, less - 2, depth - 1, comparator),
+                    new SortTask<KType>(a, great + 2, right, depth - 1, comparator));
+            }
+        }
+    }
+
+    /*! #if ($TemplateOptions.KType.Type == "int" || $TemplateOptions.KType.Type == "long" || $TemplateOptions.KType.Type == "float" || $TemplateOptions.KType.Type == "double") !*/
+    /**
+     * Sorts an array in the natural order of elements with radix sort.
+     *
+     * @see #radixSort(KType[], int, int, KType[], int[])
+     */
+    public static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ void radixSort(KType [] a)
+    {
+        radixSort(a, 0, a.length);
+    }
+
+    /**
+     * Sorts elements from <code>fromIndex</code>, inclusive, to
+     * <code>toIndex</code>, exclusive, in their natural order with radix sort.
+     *
+     * @see #radixSort(KType[], int, int, KType[], int[])
+     */
+    public static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ void radixSort(KType [] a, int fromIndex, int toIndex)
+    {
+        checkRange(a.length, fromIndex, toIndex);
+        final int length = toIndex - fromIndex;
+        /*! #if ($TemplateOptions.KTypePrimitive)
+        radixSort(a, fromIndex, toIndex, length < RADIX_SORT_THRESHOLD ? a : new KType [length]);
+        #else !*/
+        radixSort(a, fromIndex, toIndex, length < RADIX_SORT_THRESHOLD ? a : Arrays.copyOf(a, length));
+        /*! #end !*/
+    }
+
+    /**
+     * Sorts elements from <code>fromIndex</code>, inclusive, to
+     * <code>toIndex</code>, exclusive, in their natural order with radix sort,
+     * allocating only a table of {@link #RADIX_SORT_COUNTS} digit counts.
+     *
+     * @see #radixSort(KType[], int, int, KType[], int[])
+     */
+    public static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ void radixSort(KType [] a, int fromIndex, int toIndex, KType [] buffer)
+    {
+        radixSort(a, fromIndex, toIndex, buffer, new int [RADIX_SORT_COUNTS]);
+    }
+
+    /**
+     * Sorts elements from <code>fromIndex</code>, inclusive, to
+     * <code>toIndex</code>, exclusive, in their natural order with a least
+     * significant digit radix sort of 8-bit digits, in O(n). Digits that are
+     * equal in all elements are skipped. The sort is stable and allocates nothing.
+     * <p>
+     * Ranges shorter than {@link #RADIX_SORT_THRESHOLD} are sorted with
+     * {@link #sort(KType[], int, int)} instead.
+     * </p>
+     *
+     * @param buffer A scratch buffer of at least <code>toIndex - fromIndex</code>
+     * elements; its contents on return are undefined.
+     * @param counts A scratch table of at least {@link #RADIX_SORT_COUNTS} digit
+     * counts; its contents on return are undefined. Passing the same buffer and
+     * table to consecutive sorts reuses them.
+     */
+    public static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ void radixSort(KType [] a, int fromIndex, int toIndex, KType [] buffer, int [] counts)
+    {
+        checkRange(a.length, fromIndex, toIndex);
+        final int length = toIndex - fromIndex;
+        if (length < RADIX_SORT_THRESHOLD)
+        {
+            sort(a, fromIndex, toIndex, null);
+            return;
+        }
+        if (buffer.length < length)
+        {
+            throw new IllegalArgumentException("Buffer too small: " + buffer.length + " < " + length);
+        }
+        if (counts.length < RADIX_SORT_COUNTS)
+        {
+            throw new IllegalArgumentException("Counts too small: " + counts.length + " < " + RADIX_SORT_COUNTS);
+        }
+
+        final int digits = DIGITS;
+        Arrays.fill(counts, 0, digits << 8, 0);
+        for (int i = fromIndex; i < toIndex; i++)
+        {
+            final long bits = sortableBits(a[i]);
+            for (int d = 0; d < digits; d++)
+            {
+                counts[(d << 8) | (int) ((bits >>> (d << 3)) & 0xff)]++;
+            }
+        }
+
+        KType [] src = a;
+        int srcOffset = fromIndex;
+        KType [] dst = buffer;
+        int dstOffset = 0;
+        final long first = sortableBits(a[fromIndex]);
+        for (int d = 0; d < digits; d++)
+        {
+            final int shift = d << 3;
+            final int base = d << 8;
+            if (counts[base | (int) ((first >>> shift) & 0xff)] == length)
+            {
+                // All elements have the same digit.
+                continue;
+            }
+
+            for (int i = base, sum = 0; i < base + 256; i++)
+            {
+                final int count = counts[i];
+                counts[i] = sum;
+                sum += count;
+            }
+
+            for (int i = srcOffset, max = srcOffset + length; i < max; i++)
+            {
+                final KType v = src[i];
+                dst[dstOffset + counts[base | (int) ((sortableBits(v) >>> shift) & 0xff)]++] = v;
+            }
+
+            final KType [] t = src;
+            src = dst;
+            dst = t;
+            final int o = srcOffset;
+            srcOffset = dstOffset;
+            dstOffset = o;
+        }
+
+        if (src != a)
+        {
+            System.arraycopy(src, srcOffset, a, fromIndex, length);
+        }
+    }
+
+    /**
+     * The number of 8-bit digits of a <code>KType</code>.
+     */
+    /*! #if ($TemplateOptions.KType.Type == "int" || $TemplateOptions.KType.Type == "float") !*/
+    private static final int DIGITS = 4;
+    /*! #else
+    private static final int DIGITS = 8;
+    #end !*/
+
+    /**
+     * The number of digit counts {@link #radixSort(KType[], int, int, KType[], int[])}
+     * needs: 256 for each 8-bit digit.
+     */
+    public static final int RADIX_SORT_COUNTS = DIGITS << 8;
+
+    /**
+     * @return Returns the bits of <code>v</code> as an unsigned number with the
+     * same order as <code>v</code>.
+     */
+    private static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ long sortableBits(KType v)
+    {
+        /*! #if ($TemplateOptions.KType.Type == "int")
+        return (v ^ Integer.MIN_VALUE) & 0xffffffffL;
+        #elseif ($TemplateOptions.KType.Type == "long")
+        return v ^ Long.MIN_VALUE;
+        #elseif ($TemplateOptions.KType.Type == "float")
+        final int bits = Float.floatToIntBits(v);
+        return (bits ^ ((bits >> 31) | Integer.MIN_VALUE)) & 0xffffffffL;
+        #elseif ($TemplateOptions.KType.Type == "double")
+        final long bits = Double.doubleToLongBits(v);
+        return bits ^ ((bits >> 63) | Long.MIN_VALUE);
+        #else !*/
+        return ((Number) v).longValue() ^ Long.MIN_VALUE;
+        /*! #end !*/
+    }
+    /*! #end !*/
+
+    /**
+     * Dual-pivot quicksort of the range from <code>left</code> to
+     * <code>right</code>, inclusive.
+     *
+     * @param depth The number of partition steps left before falling back to heap
+     * sort.
+     */
+    private static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ void quickSort(KType [] a, int left, int right, int depth,
+        KTypeComparator<? super KType> comparator)
+    {
+        while (right - left >= INSERTION_SORT_THRESHOLD)
+        {
+            if (depth-- == 0)
+            {
+                heapSort(a, left, right, comparator);
+                return;
+            }
+
+            final long pivots = partition(a, left, right, comparator);
+            final int less = (int) (pivots >>> 32);
+            final int great = (int) pivots;
+            quickSort(a, left, less - 2, depth, comparator);
+            quickSort(a, great + 2, right, depth, comparator);
+            if (!lessThan(a[less - 1], a[great + 1], comparator))
+            {
+                // Pivots are equal and so is everything between them.
+                return;
+            }
+            left = less;
+            right = great;
+        }
+
+        insertionSort(a, left, right, comparator);
+    }
+
+    /**
+     * Partitions the range from <code>left</code> to <code>right</code>,
+     * inclusive (of at least {@link #INSERTION_SORT_THRESHOLD} elements), around
+     * two pivots: elements less than the first pivot, the first pivot, elements
+     * between pivots, the second pivot and elements greater than the second
+     * pivot.
+     *
+     * @return Returns the bounds of elements between pivots, inclusive, as
+     * <code>(less &lt;&lt; 32) | great</code>.
+     */
+    private static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ long partition(KType [] a, int left, int right,
+        KTypeComparator<? super KType> comparator)
+    {
+        // Pivots are the second and fourth of five sorted, evenly spaced elements.
+        final int seventh = ((right - left + 1) >> 3) + ((right - left + 1) >> 6) + 1;
+        final int e3 = (left + right) >>> 1;
+        final int e2 = e3 - seventh;
+        final int e1 = e2 - seventh;
+        final int e4 = e3 + seventh;
+        final int e5 = e4 + seventh;
+        sortPair(a, e1, e2, comparator);
+        sortPair(a, e4, e5, comparator);
+        sortPair(a, e1, e3, comparator);
+        sortPair(a, e2, e3, comparator);
+        sortPair(a, e1, e4, comparator);
+        sortPair(a, e3, e4, comparator);
+        sortPair(a, e2, e5, comparator);
+        sortPair(a, e2, e3, comparator);
+        sortPair(a, e4, e5, comparator);
+
+        final KType pivot1 = a[e2];
+        final KType pivot2 = a[e4];
+        a[e2] = a[left];
+        a[e4] = a[right];
+
+        int less = left + 1;
+        int great = right - 1;
+        for (int k = less; k <= great; k++)
+        {
+            final KType ak = a[k];
+            if (lessThan(ak, pivot1, comparator))
+            {
+                a[k] = a[less];
+                a[less++] = ak;
+            }
+            else if (lessThan(pivot2, ak, comparator))
+            {
+                while (k < great && lessThan(pivot2, a[great], comparator))
+                {
+                    great--;
+                }
+                a[k] = a[great];
+                a[great--] = ak;
+
+                final KType moved = a[k];
+                if (lessThan(moved, pivot1, comparator))
+                {
+                    a[k] = a[less];
+                    a[less++] = moved;
+                }
+            }
+        }
+
+        a[left] = a[less - 1];
+        a[less - 1] = pivot1;
+        a[right] = a[great + 1];
+        a[great + 1] = pivot2;
+        return ((long) less << 32) | (great & 0xffffffffL);
+    }
+
+    /**
+     * Swaps elements at <code>i</code> and <code>j</code> if they are out of order.
+     */
+    private static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ void sortPair(KType [] a, int i, int j,
+        KTypeComparator<? super KType> comparator)
+    {
+        final KType ai = a[i];
+        final KType aj = a[j];
+        if (lessThan(aj, ai, comparator))
+        {
+            a[i] = aj;
+            a[j] = ai;
+        }
+    }
+
+    /**
+     * Insertion sort of the range from <code>left</code> to <code>right</code>,
+     * inclusive.
+     */
+    private static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ void insertionSort(KType [] a, int left, int right,
+        KTypeComparator<? super KType> comparator)
+    {
+        for (int i = left + 1; i <= right; i++)
+        {
+            final KType v = a[i];
+            int j = i;
+            while (j > left && lessThan(v, a[j - 1], comparator))
+            {
+                a[j] = a[j - 1];
+                j--;
+            }
+            a[j] = v;
+        }
+    }
+
+    /**
+     * Heap sort of the range from <code>left</code> to <code>right</code>,
+     * inclusive.
+     */
+    private static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ void heapSort(KType [] a, int left, int right,
+        KTypeComparator<? super KType> comparator)
+    {
+        final int length = right - left + 1;
+        for (int i = (length >>> 1) - 1; i >= 0; i--)
+        {
+            siftDown(a, left, i, length, comparator);
+        }
+        for (int end = length - 1; end > 0; end--)
+        {
+            final KType t = a[left];
+            a[left] = a[left + end];
+            a[left + end] = t;
+            siftDown(a, left, 0, end, comparator);
+        }
+    }
+
+    /**
+     * Moves the element at <code>i</code> down a max-heap of <code>length</code>
+     * elements starting at <code>offset</code>.
+     */
+    private static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ void siftDown(KType [] a, int offset, int i, int length,
+        KTypeComparator<? super KType> comparator)
+    {
+        final KType v = a[offset + i];
+        final int half = length >>> 1;
+        while (i < half)
+        {
+            int child = 2 * i + 1;
+            if (child + 1 < length && lessThan(a[offset + child], a[offset + child + 1], comparator))
+            {
+                child++;
+            }
+            final KType c = a[offset + child];
+            if (!lessThan(v, c, comparator))
+            {
+                break;
+            }
+            a[offset + i] = c;
+            i = child;
+        }
+        a[offset + i] = v;
+    }
+
+    /**
+     * @return Returns <code>true</code> if <code>a</code> is before <code>b</code>
+     * in the order of <code>comparator</code> or, if <code>null</code>, the natural
+     * order.
+     */
+    private static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */ boolean lessThan(KType a, KType b,
+        KTypeComparator<? super KType> comparator)
+    {
+        if (comparator != null)
+        {
+            return comparator.compare(a, b) < 0;
+        }
+
+        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+        return ((Comparable<? super KType>) a).compareTo(b) < 0;
+        /*! #elseif ($TemplateOptions.KType.Type == "float" || $TemplateOptions.KType.Type == "double")
+        return ${TemplateOptions.KType.BoxedType}.compare(a, b) < 0;
+        #else
+        return a < b;
+        #end !*/
+    }
+
+    /**
+     * @return Returns the number of partition steps before quicksort of
+     * <code>length</code> elements falls back to heap sort.
+     */
+    private static int maxDepth(int length)
+    {
+        return 2 * (32 - Integer.numberOfLeadingZeros(Math.max(1, length)));
+    }
+
+    private static void checkRange(int length, int fromIndex, int toIndex)
+    {
+        if (fromIndex < 0 || toIndex > length || fromIndex > toIndex)
+        {
+            throw new IllegalArgumentException("Invalid range [" + fromIndex + ", " + toIndex
+                + ") for an array of length " + length + ".");
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.carrotsearch.hppc;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.carrotsearch.randomizedtesting.RandomizedTest;
+
+/**
+ * Single-threaded {@link AtomicBitSet} updates and counts against {@link BitSet}, and
+ * racing {@link AtomicBitSet#getAndSet} calls on shared words, each bit of which exactly
+ * one thread must see clear.
+ */
+public class AtomicBitSetTest extends RandomizedTest
+{
+    private static void assertSameBits(BitSet expected, final AtomicBitSet actual)
+    {
+        TestUtils.assertSameBits(expected, new TestUtils.Bits()
+        {
+            public long cardinality()
+            {
+                return actual.cardinality();
+            }
+
+            public boolean get(long index)
+            {
+                return actual.get(index);
+            }
+
+            public long nextSetBit(long index)
+            {
+                return actual.nextSetBit(index);
+            }
+        });
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        assertEquals(expected, actual.toBitSet());
+
+        final BitSetIterator i = actual.iterator();
+        for (long bit = expected.nextSetBit(0L); bit >= 0; bit = expected.nextSetBit(bit + 1))
+        {
+            assertEquals(bit, i.nextSetBit());
+        }
+        assertEquals(BitSetIterator.NO_MORE, i.nextSetBit());
+    }
+
+    /* */
+    @Test
+    public void testAgainstBitSet()
+    {
+        for (int round = 0; round < 50; round++)
+        {
+            final int numBits = randomIntBetween(1, 10000);
+            final BitSet expected = new BitSet(numBits);
+            final AtomicBitSet actual = new AtomicBitSet(numBits);
+            assertTrue(actual.capacity() >= numBits);
+
+            for (int i = randomIntBetween(0, 1000); i > 0; i--)
+            {
+                final int index = randomIntBetween(0, numBits - 1);
+                switch (randomIntBetween(0, 3))
+                {
+                    case 0:
+                        assertEquals(expected.getAndSet(index), actual.getAndSet(index));
+                        break;
+                    case 1:
+                        assertEquals(expected.get(index), actual.getAndClear(index));
+                        expected.clear(index);
+                        break;
+                    case 2:
+                        assertEquals(expected.flipAndGet(index), actual.flipAndGet(index));
+                        break;
+                    default:
+                        expected.set(index);
+                        actual.set(index);
+                        break;
+                }
+            }
+            assertSameBits(expected, actual);
+            assertEquals(expected.toString(), actual.toString());
+        }
+    }
+
+    /* */
+    @Test
+    public void testCounts()
+    {
+        for (int round = 0; round < 50; round++)
+        {
+            final BitSet a = new BitSet();
+            final BitSet b = new BitSet();
+            final AtomicBitSet aa = new AtomicBitSet(randomIntBetween(1, 5000));
+            final AtomicBitSet ab = new AtomicBitSet(randomIntBetween(1, 5000));
+            for (int i = randomIntBetween(0, 1000); i > 0; i--)
+            {
+                final int index = randomIntBetween(0, (int) aa.capacity() - 1);
+                a.set(index);
+                aa.set(index);
+            }
+            for (int i = randomIntBetween(0, 1000); i > 0; i--)
+            {
+                final int index = randomIntBetween(0, (int) ab.capacity() - 1);
+                b.set(index);
+                ab.set(index);
+            }
+
+            assertEquals(BitSet.intersectionCount(a, b), AtomicBitSet.intersectionCount(aa, ab));
+            assertEquals(BitSet.unionCount(a, b), AtomicBitSet.unionCount(aa, ab));
+            assertEquals(BitSet.andNotCount(a, b), AtomicBitSet.andNotCount(aa, ab));
+            assertEquals(BitSet.xorCount(a, b), AtomicBitSet.xorCount(aa, ab));
+        }
+    }
+
+    /**
+     * Threads setting overlapping bits: exactly one of them sees each bit clear.
+     */
+    @Test
+    public void testConcurrentGetAndSet() throws InterruptedException
+    {
+        final int numBits = randomIntBetween(1000, 100000);
+        final AtomicBitSet set = new AtomicBitSet(numBits);
+        final AtomicLong firstSets = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        final Thread [] threads = new Thread [randomIntBetween(2, 8)];
+        for (int t = 0; t < threads.length; t++)
+        {
+            final int offset = t;
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        throw new RuntimeException(e);
+                    }
+
+                    long count = 0;
+                    for (int i = 0; i < numBits; i++)
+                    {
+                        // Threads visit bits in different orders, contending on words.
+                        final int index = (i * (offset + 1)) % numBits;
+                        if ((index & 1) == 0 && !set.getAndSet(index))
+                        {
+                            count++;
+                        }
+                        if ((index & 3) == 3)
+                        {
+                            set.flip(index);
+                        }
+                    }
+                    firstSets.addAndGet(count);
+                }
+            };
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread t : threads)
+        {
+            t.join();
+        }
+
+        // Sets are idempotent and flips commute, so a sequential replay has the same bits.
+        final BitSet expected = new BitSet(numBits);
+        for (int t = 0; t < threads.length; t++)
+        {
+            for (int i = 0; i < numBits; i++)
+            {
+                final int index = (i * (t + 1)) % numBits;
+                if ((index & 1) == 0)
+                {
+                    expected.set(index);
+                }
+                if ((index & 3) == 3)
+                {
+                    expected.flip(index);
+                }
+            }
+        }
+
+        assertEquals(expected.cardinality(), set.cardinality());
+        assertEquals(expected, set.toBitSet());
+        long evens = 0;
+        for (long bit = expected.nextSetBit(0L); bit >= 0; bit = expected.nextSetBit(bit + 1))
+        {
+            if ((bit & 1) == 0) evens++;
+        }
+        assertEquals(evens, firstSets.get());
+    }
+}
@@ -82,6 +82,51 @@ public class BitSetTest extends RandomizedTest
         assertEquals(bs1.hashCode(), bs2.hashCode());
     }
 
+    /**
+     * Multi-way operations against pairwise ones.
+     */
+    @Test
+    public void testMultiWay()
+    {
+        for (int round = 0; round < 100; round++)
+        {
+            final BitSet [] sets = new BitSet [randomIntBetween(1, 20)];
+            for (int i = 0; i < sets.length; i++)
+            {
+                sets[i] = new BitSet();
+                final int bitSpace = randomIntBetween(1, 100000);
+                final int bits = randomBoolean() ? bitSpace / 100 : bitSpace * 4;
+                for (int bit = 0; bit < bits; bit++)
+                {
+                    sets[i].set(randomInt(bitSpace - 1));
+                }
+            }
+
+            final BitSet intersection = (BitSet) sets[0].clone();
+            final BitSet union = (BitSet) sets[0].clone();
+            for (int i = 1; i < sets.length; i++)
+            {
+                intersection.intersect(sets[i]);
+                union.union(sets[i]);
+            }
+
+            assertEquals(intersection, BitSet.intersectAll(sets));
+            assertEquals(union, BitSet.unionAll(sets));
+            assertEquals(intersection.cardinality(), BitSet.intersectionCount(sets));
+            assertEquals(union.cardinality(), BitSet.unionCount(sets));
+        }
+
+        assertEquals(new BitSet(), BitSet.unionAll());
+        assertEquals(0, BitSet.unionCount());
+    }
+
+    /** */
+    @Test(expected = IllegalArgumentException.class)
+    public void testIntersectNoSets()
+    {
+        BitSet.intersectAll();
+    }
+
     /**
      * Assert that the two bitsets are identical. 
      */
@@ -0,0 +1,314 @@
+package com.carrotsearch.hppc;
+
+import org.junit.Test;
+
+import com.carrotsearch.hppc.procedures.IntProcedure;
+import com.carrotsearch.randomizedtesting.RandomizedTest;
+
+/**
+ * Set algebra of {@link CompressedBitSet} between every mix of array, bitmap and run
+ * containers, checked against {@link BitSet} along with the container each chunk ends
+ * up in.
+ */
+public class CompressedBitSetTest extends RandomizedTest
+{
+    /**
+     * A random compressed set and the same bits in a {@link BitSet}.
+     */
+    private static class Pair
+    {
+        final CompressedBitSet compressed = new CompressedBitSet();
+        final BitSet bitset = new BitSet();
+
+        void set(int index)
+        {
+            compressed.set(index);
+            bitset.set(index);
+        }
+    }
+
+    /**
+     * Fills a few chunks with sparse, dense, run or threshold-sized contents.
+     */
+    private Pair randomPair()
+    {
+        final Pair pair = new Pair();
+        final int chunks = randomIntBetween(0, 4);
+        for (int c = 0; c < chunks; c++)
+        {
+            final int high = randomIntBetween(0, 6) << 16;
+            switch (randomIntBetween(0, 3))
+            {
+                case 0:
+                    for (int i = randomIntBetween(1, 100); i > 0; i--)
+                        pair.set(high | randomIntBetween(0, 0xffff));
+                    break;
+                case 1:
+                    for (int i = 0; i < 0x10000; i++)
+                        if (randomBoolean()) pair.set(high | i);
+                    break;
+                case 2:
+                    for (int r = randomIntBetween(1, 10); r > 0; r--)
+                    {
+                        final int from = randomIntBetween(0, 0xffff);
+                        final int to = Math.min(0xffff, from + randomIntBetween(0, 10000));
+                        for (int i = from; i <= to; i++)
+                            pair.set(high | i);
+                    }
+                    break;
+                default:
+                    final int count = CompressedBitSet.ARRAY_MAX_SIZE + randomIntBetween(-2, 2);
+                    for (int i = 0; i < count; i++)
+                        pair.set(high | (i * 3));
+                    break;
+            }
+        }
+
+        if (randomBoolean())
+        {
+            pair.compressed.runOptimize();
+        }
+        assertSameBits(pair.bitset, pair.compressed);
+        return pair;
+    }
+
+    private static void assertSameBits(final BitSet expected, final CompressedBitSet actual)
+    {
+        TestUtils.assertSameBits(expected, new TestUtils.Bits()
+        {
+            public long cardinality()
+            {
+                return actual.cardinality();
+            }
+
+            public boolean get(long index)
+            {
+                return actual.get((int) index);
+            }
+
+            public long nextSetBit(long index)
+            {
+                return index > Integer.MAX_VALUE ? -1 : actual.nextSetBit((int) index);
+            }
+        });
+        assertEquals(expected.cardinality() == 0, actual.isEmpty());
+        assertEquals(expected, actual.toBitSet());
+        assertEquals(actual, CompressedBitSet.from(expected));
+        assertEquals(actual.hashCode(), CompressedBitSet.from(expected).hashCode());
+
+        for (int i = 0; i < 100; i++)
+        {
+            final int index = randomIntBetween(0, 7 << 16);
+            assertEquals(expected.get(index), actual.get(index));
+            assertEquals(expected.nextSetBit(index), actual.nextSetBit(index));
+        }
+
+        for (int i = 0; i < actual.size; i++)
+        {
+            assertTrue(actual.containers[i].cardinality() > 0);
+            assertTrue(i == 0 || actual.keys[i - 1] < actual.keys[i]);
+            if (actual.containers[i] instanceof CompressedBitSet.ArrayContainer)
+                assertTrue(actual.containers[i].cardinality() <= CompressedBitSet.ARRAY_MAX_SIZE);
+            if (actual.containers[i] instanceof CompressedBitSet.BitmapContainer)
+                assertTrue(actual.containers[i].cardinality() > CompressedBitSet.ARRAY_MAX_SIZE);
+        }
+    }
+
+    /* */
+    @Test
+    public void testSetAlgebra()
+    {
+        for (int round = 0; round < 100; round++)
+        {
+            final Pair a = randomPair();
+            final Pair b = randomPair();
+
+            assertEquals(BitSet.intersectionCount(a.bitset, b.bitset),
+                CompressedBitSet.intersectionCount(a.compressed, b.compressed));
+            assertEquals(BitSet.unionCount(a.bitset, b.bitset),
+                CompressedBitSet.unionCount(a.compressed, b.compressed));
+            assertEquals(BitSet.andNotCount(a.bitset, b.bitset),
+                CompressedBitSet.andNotCount(a.compressed, b.compressed));
+            assertEquals(BitSet.xorCount(a.bitset, b.bitset),
+                CompressedBitSet.xorCount(a.compressed, b.compressed));
+            assertEquals(a.bitset.intersects(b.bitset), a.compressed.intersects(b.compressed));
+
+            final BitSet expected = (BitSet) a.bitset.clone();
+            final CompressedBitSet actual = a.compressed.clone();
+            switch (round % 4)
+            {
+                case 0:
+                    expected.intersect(b.bitset);
+                    actual.intersect(b.compressed);
+                    break;
+                case 1:
+                    expected.union(b.bitset);
+                    actual.union(b.compressed);
+                    break;
+                case 2:
+                    expected.remove(b.bitset);
+                    actual.remove(b.compressed);
+                    break;
+                default:
+                    expected.xor(b.bitset);
+                    actual.xor(b.compressed);
+                    break;
+            }
+            assertSameBits(expected, actual);
+
+            // Operands are not modified.
+            assertSameBits(a.bitset, a.compressed);
+            assertSameBits(b.bitset, b.compressed);
+        }
+    }
+
+    /* */
+    @Test
+    public void testSetAndClear()
+    {
+        final Pair pair = randomPair();
+        for (int i = 0; i < 20000; i++)
+        {
+            final int index = randomIntBetween(0, 3 << 16);
+            if (randomBoolean())
+            {
+                pair.set(index);
+            }
+            else
+            {
+                pair.compressed.clear(index);
+                pair.bitset.clear(index);
+            }
+        }
+        assertSameBits(pair.bitset, pair.compressed);
+
+        pair.compressed.clear();
+        assertTrue(pair.compressed.isEmpty());
+        assertEquals(-1, pair.compressed.nextSetBit(0));
+    }
+
+    /**
+     * A few bits near 2<sup>31</sup> take a single small array container.
+     */
+    @Test
+    public void testSparseHighBits()
+    {
+        final CompressedBitSet set = new CompressedBitSet();
+        set.set(Integer.MAX_VALUE);
+        set.set(Integer.MAX_VALUE - 10);
+        set.set(5);
+
+        assertEquals(2, set.size);
+        assertTrue(set.containers[1] instanceof CompressedBitSet.ArrayContainer);
+        assertEquals(Integer.MAX_VALUE - 10, set.nextSetBit(6));
+        assertEquals(Integer.MAX_VALUE, set.nextSetBit(Integer.MAX_VALUE - 9));
+        assertEquals("{5, 2147483637, 2147483647}", set.toString());
+
+        final IntArrayList bits = set.forEach(new IntProcedure()
+        {
+            final IntArrayList bits = new IntArrayList();
+
+            public void apply(int value)
+            {
+                bits.add(value);
+            }
+        }).bits;
+        assertEquals(IntArrayList.from(5, Integer.MAX_VALUE - 10, Integer.MAX_VALUE), bits);
+    }
+
+    /**
+     * Long ranges are stored as runs.
+     */
+    @Test
+    public void testRuns()
+    {
+        final BitSet bitset = new BitSet();
+        bitset.set(10, 3 << 16);
+        final CompressedBitSet set = CompressedBitSet.from(bitset);
+        for (int i = 0; i < set.size; i++)
+        {
+            assertTrue(set.containers[i] instanceof CompressedBitSet.RunContainer);
+        }
+        assertEquals(bitset, set.toBitSet());
+
+        // Mutation expands the chunk.
+        set.clear(100);
+        bitset.clear(100);
+        assertFalse(set.containers[0] instanceof CompressedBitSet.RunContainer);
+        assertSameBits(bitset, set);
+        assertTrue(set.runOptimize());
+        assertSameBits(bitset, set);
+    }
+
+    /**
+     * Operations between runs (and arrays) are computed on runs and keep run
+     * containers where these are smaller.
+     */
+    @Test
+    public void testRunAlgebra()
+    {
+        final BitSet x = new BitSet();
+        x.set(0, 1000);
+        x.set(5000, 20000);
+        x.set(1 << 16, 3 << 16);
+        final BitSet y = new BitSet();
+        y.set(500, 6000);
+        y.set(30000, 40000);
+        y.set(2 << 16, (2 << 16) + 100);
+
+        for (int op = 0; op < 4; op++)
+        {
+            final BitSet expected = (BitSet) x.clone();
+            final CompressedBitSet actual = CompressedBitSet.from(x);
+            final CompressedBitSet other = CompressedBitSet.from(y);
+            assertEquals(BitSet.intersectionCount(x, y), CompressedBitSet.intersectionCount(actual, other));
+            switch (op)
+            {
+                case 0:
+                    expected.intersect(y);
+                    actual.intersect(other);
+                    break;
+                case 1:
+                    expected.union(y);
+                    actual.union(other);
+                    break;
+                case 2:
+                    expected.remove(y);
+                    actual.remove(other);
+                    break;
+                default:
+                    expected.xor(y);
+                    actual.xor(other);
+                    break;
+            }
+            assertSameBits(expected, actual);
+            for (int i = 0; i < actual.size; i++)
+            {
+                assertTrue(actual.containers[i] instanceof CompressedBitSet.RunContainer);
+            }
+        }
+
+        // Runs against a few array values stay runs, probed or merged run by run.
+        final CompressedBitSet runs = CompressedBitSet.from(x);
+        final CompressedBitSet array = new CompressedBitSet();
+        array.set(999);
+        array.set(1000);
+        array.set(4999);
+        assertEquals(1, CompressedBitSet.intersectionCount(runs, array));
+        assertTrue(runs.intersects(array));
+        runs.union(array);
+        x.set(999, 1001);
+        x.set(4999);
+        assertSameBits(x, runs);
+        assertTrue(runs.containers[0] instanceof CompressedBitSet.RunContainer);
+    }
+
+    /* */
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromBitSetOutOfRange()
+    {
+        final BitSet bitset = new BitSet();
+        bitset.set(1L << 31);
+        CompressedBitSet.from(bitset);
+    }
+}
@@ -0,0 +1,264 @@
+package com.carrotsearch.hppc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Test;
+
+import com.carrotsearch.randomizedtesting.RandomizedTest;
+
+/**
+ * Random updates and set algebra of {@link LongBitSet} on pages of a few words, so
+ * that bits span many buffers, and its file format: creating, writing, reopening and
+ * rejecting truncated files.
+ */
+public class LongBitSetTest extends RandomizedTest
+{
+    /**
+     * Applies random updates to both sets.
+     */
+    private void randomUpdates(BitSet expected, LongBitSet actual, long numBits)
+    {
+        for (int i = randomIntBetween(0, 1000); i > 0; i--)
+        {
+            final long index = randomIntBetween(0, (int) numBits - 1);
+            switch (randomIntBetween(0, 5))
+            {
+                case 0:
+                    assertEquals(expected.getAndSet(index), actual.getAndSet(index));
+                    break;
+                case 1:
+                    expected.clear(index);
+                    actual.clear(index);
+                    break;
+                case 2:
+                    expected.flip(index);
+                    actual.flip(index);
+                    break;
+                case 3:
+                    final long end = Math.min(numBits, index + randomIntBetween(0, 200));
+                    if (randomBoolean())
+                    {
+                        expected.set(index, end);
+                        actual.set(index, end);
+                    }
+                    else
+                    {
+                        expected.clear(index, end);
+                        actual.clear(index, end);
+                    }
+                    break;
+                default:
+                    expected.set(index);
+                    actual.set(index);
+                    break;
+            }
+        }
+    }
+
+    private static void assertSameBits(BitSet expected, final LongBitSet actual)
+    {
+        TestUtils.assertSameBits(expected, new TestUtils.Bits()
+        {
+            public long cardinality()
+            {
+                return actual.cardinality();
+            }
+
+            public boolean get(long index)
+            {
+                return actual.get(index);
+            }
+
+            public long nextSetBit(long index)
+            {
+                return actual.nextSetBit(index);
+            }
+        });
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        assertEquals(expected.hashCode(), actual.hashCode());
+    }
+
+    /* */
+    @Test
+    public void testAgainstBitSet()
+    {
+        for (int round = 0; round < 50; round++)
+        {
+            final long numBits = randomIntBetween(1, 100000);
+            final BitSet expected = new BitSet(numBits);
+            final LongBitSet actual = new LongBitSet(numBits, randomIntBetween(0, 4));
+            randomUpdates(expected, actual, numBits);
+            assertSameBits(expected, actual);
+            assertEquals(numBits, actual.capacity());
+
+            actual.clear();
+            assertTrue(actual.isEmpty());
+        }
+    }
+
+    /* */
+    @Test
+    public void testSetAlgebra()
+    {
+        for (int round = 0; round < 50; round++)
+        {
+            final long numBits = randomIntBetween(1, 10000);
+            final BitSet a = new BitSet(numBits);
+            final LongBitSet la = new LongBitSet(numBits, randomIntBetween(0, 4));
+            randomUpdates(a, la, numBits);
+
+            final long otherBits = randomIntBetween(1, (int) numBits);
+            final BitSet b = new BitSet(otherBits);
+            final LongBitSet lb = new LongBitSet(otherBits);
+            randomUpdates(b, lb, otherBits);
+
+            assertEquals(BitSet.intersectionCount(a, b), LongBitSet.intersectionCount(la, lb));
+            assertEquals(BitSet.unionCount(a, b), LongBitSet.unionCount(la, lb));
+            assertEquals(BitSet.andNotCount(a, b), LongBitSet.andNotCount(la, lb));
+            assertEquals(BitSet.xorCount(a, b), LongBitSet.xorCount(la, lb));
+            assertEquals(a.intersects(b), la.intersects(lb));
+            assertEquals(a.equals(b), la.equals(lb));
+
+            switch (round % 4)
+            {
+                case 0:
+                    a.intersect(b);
+                    la.intersect(lb);
+                    break;
+                case 1:
+                    a.union(b);
+                    la.union(lb);
+                    break;
+                case 2:
+                    a.remove(b);
+                    la.remove(lb);
+                    break;
+                default:
+                    a.xor(b);
+                    la.xor(lb);
+                    break;
+            }
+            assertSameBits(a, la);
+        }
+    }
+
+    /* */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnionBeyondCapacity()
+    {
+        final LongBitSet larger = new LongBitSet(1000);
+        larger.set(999);
+        new LongBitSet(100).union(larger);
+    }
+
+    /**
+     * More bits than a {@link BitSet} can hold, in a sparse file of two mapped pages.
+     */
+    @Test
+    public void testCreateAndOpen() throws IOException
+    {
+        final long numBits = (1L << 33) + 64;
+        final long [] indices = {0, 12345, (1L << 33) - 1, 1L << 33, numBits - 1};
+
+        final File file = newTempFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            final LongBitSet set = LongBitSet.create(channel, numBits);
+            for (long index : indices)
+            {
+                set.set(index);
+            }
+            set.force();
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            final LongBitSet set = LongBitSet.open(channel, MapMode.READ_ONLY);
+            assertEquals(numBits, set.capacity());
+            for (long index : indices)
+            {
+                assertTrue(set.get(index));
+            }
+            assertFalse(set.get(1));
+            assertEquals(numBits - 1, set.nextSetBit((1L << 33) + 1));
+
+            try
+            {
+                set.set(1);
+                fail();
+            }
+            catch (ReadOnlyBufferException e)
+            {
+                // Expected.
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            LongBitSet.open(channel, MapMode.READ_WRITE).clear(12345);
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            final LongBitSet set = LongBitSet.open(channel, MapMode.READ_ONLY);
+            assertFalse(set.get(12345));
+            assertTrue(set.get(1L << 33));
+        }
+    }
+
+    /* */
+    @Test
+    public void testWriteAndOpen() throws IOException
+    {
+        final long numBits = randomIntBetween(0, 100000);
+        final BitSet expected = new BitSet(Math.max(1, numBits));
+        final LongBitSet set = new LongBitSet(numBits, randomIntBetween(0, 10));
+        if (numBits > 0)
+        {
+            randomUpdates(expected, set, numBits);
+        }
+
+        final File file = newTempFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE))
+        {
+            set.write(channel);
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            final LongBitSet opened = LongBitSet.open(channel, MapMode.READ_ONLY);
+            assertEquals(numBits, opened.capacity());
+            assertEquals(set, opened);
+            assertSameBits(expected, opened);
+        }
+    }
+
+    /* */
+    @Test
+    public void testTruncatedFile() throws IOException
+    {
+        final File file = newTempFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE))
+        {
+            new LongBitSet(1000).write(channel);
+            channel.truncate(LongBitSet.HEADER_LENGTH + 8);
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            LongBitSet.open(channel, MapMode.READ_ONLY);
+            fail();
+        }
+        catch (IOException e)
+        {
+            // Expected.
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.carrotsearch.hppc;
+
+import org.junit.Test;
+
+import com.carrotsearch.randomizedtesting.RandomizedTest;
+
+/**
+ * Checks {@link RankSelectBitSet#rank} and {@link RankSelectBitSet#select} at every
+ * index against a scan of a {@link BitSet}, for random and clustered bits.
+ */
+public class RankSelectBitSetTest extends RandomizedTest
+{
+    private static void assertSameBits(BitSet expected, final RankSelectBitSet actual)
+    {
+        // The next set bit is the select of the rank of an index.
+        TestUtils.assertSameBits(expected, new TestUtils.Bits()
+        {
+            public long cardinality()
+            {
+                return actual.cardinality();
+            }
+
+            public boolean get(long index)
+            {
+                return actual.get(index);
+            }
+
+            public long nextSetBit(long index)
+            {
+                return actual.select(actual.rank(index));
+            }
+        });
+        assertEquals(expected, actual.toBitSet());
+
+        long rank = 0;
+        for (long index = 0; index < actual.capacity(); index++)
+        {
+            assertEquals(rank, actual.rank(index));
+            assertEquals(expected.get(index), actual.get(index));
+            if (expected.get(index))
+            {
+                assertEquals(index, actual.select(rank));
+                rank++;
+            }
+        }
+        assertEquals(rank, actual.rank(actual.capacity()));
+        assertEquals(rank, actual.rank(actual.capacity() + randomIntBetween(0, 1000)));
+        assertEquals(-1, actual.select(rank));
+        assertEquals(-1, actual.select(-1));
+    }
+
+    /* */
+    @Test
+    public void testAgainstBitSet()
+    {
+        for (int round = 0; round < 50; round++)
+        {
+            final int numBits = randomIntBetween(0, 100000);
+            final BitSet expected = new BitSet(numBits);
+            final int density = randomIntBetween(0, 100);
+            for (int i = 0; i < numBits; i++)
+            {
+                if (randomIntBetween(0, 99) < density)
+                {
+                    expected.set(i);
+                }
+            }
+            assertSameBits(expected, new RankSelectBitSet(expected));
+        }
+    }
+
+    /**
+     * Dense runs separated by long gaps, so that select samples and superblocks are
+     * far apart.
+     */
+    @Test
+    public void testClustered()
+    {
+        final BitSet expected = new BitSet();
+        long index = 0;
+        for (int run = randomIntBetween(1, 20); run > 0; run--)
+        {
+            index += randomIntBetween(0, 200000);
+            final long end = index + randomIntBetween(1, 3 * RankSelectBitSet.SELECT_SAMPLE);
+            expected.set(index, end);
+            index = end;
+        }
+        assertSameBits(expected, new RankSelectBitSet(expected));
+    }
+
+    /* */
+    @Test
+    public void testImmutable()
+    {
+        final BitSet bitset = new BitSet();
+        bitset.set(10);
+        final RankSelectBitSet rs = new RankSelectBitSet(bitset);
+        bitset.set(5);
+        bitset.clear(10);
+        assertEquals(1, rs.cardinality());
+        assertEquals(10, rs.select(0));
+        assertEquals(0, rs.rank(10));
+        assertEquals(1, rs.rank(11));
+    }
+}
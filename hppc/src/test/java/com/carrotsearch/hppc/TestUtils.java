@@ -395,6 +395,41 @@ public abstract class TestUtils
         return result;
     }
 
+    /**
+     * Read access to the bits of a bit set implementation, for
+     * {@link #assertSameBits(BitSet, Bits)}.
+     */
+    public interface Bits
+    {
+        long cardinality();
+
+        boolean get(long index);
+
+        /**
+         * @return Returns the first set bit at or after <code>index</code>, or -1.
+         */
+        long nextSetBit(long index);
+    }
+
+    /**
+     * Asserts that <code>actual</code> has the cardinality of <code>expected</code>
+     * and that {@link Bits#nextSetBit(long)} visits the same set bits in order.
+     */
+    public static void assertSameBits(BitSet expected, Bits actual)
+    {
+        assertEquals(expected.cardinality(), actual.cardinality());
+
+        long bit = actual.nextSetBit(0);
+        for (long expectedBit = expected.nextSetBit(0L); expectedBit >= 0;
+             expectedBit = expected.nextSetBit(expectedBit + 1))
+        {
+            assertEquals(expectedBit, bit);
+            assertTrue(actual.get(bit));
+            bit = actual.nextSetBit(bit + 1);
+        }
+        assertEquals(-1, bit);
+    }
+
     /** Override for generated templates. */
     public static void assertEquals2(double a, double b)
     {
@@ -2,6 +2,8 @@ package com.carrotsearch.hppc.sorting;
 
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.*;
 
@@ -48,7 +50,7 @@ public class IndirectSortTest
 
     enum Algorithm
     {
-        MERGESORT
+        MERGESORT, RADIXSORT, QUICKSORT
     }
 
     /**
@@ -60,6 +62,24 @@ public class IndirectSortTest
         sortCertification(Algorithm.MERGESORT);
     }
 
+    /**
+     * Test "certification" program as in Bentley and McIlroy's paper.
+     */
+    @Test
+    public void testSortCertificationRadixSort()
+    {
+        sortCertification(Algorithm.RADIXSORT);
+    }
+
+    /**
+     * Test "certification" program as in Bentley and McIlroy's paper.
+     */
+    @Test
+    public void testSortCertificationQuickSort()
+    {
+        sortCertification(Algorithm.QUICKSORT);
+    }
+
     /**
      * Run a "sort certification" test.
      */
@@ -175,6 +195,12 @@ public class IndirectSortTest
             case MERGESORT:
                 order = IndirectSort.mergesort(0, x.length, c);
                 break;
+            case RADIXSORT:
+                order = IndirectSort.radixsort(x, 0, x.length);
+                break;
+            case QUICKSORT:
+                order = IndirectSort.quicksort(x, 0, x.length);
+                break;
             default:
                 Assert.fail();
                 throw new RuntimeException();
@@ -341,6 +367,194 @@ public class IndirectSortTest
         }
     }
     
+    /**
+     * Top-k orders are a prefix of the full (stable) order.
+     */
+    @Test
+    public void testTopK()
+    {
+        final Random rnd = new XorShiftRandom(0x55667788);
+        for (int round = 0; round < 200; round++)
+        {
+            final int [] input = generateRandom(round < 150 ? 1000 : 100000,
+                1 + rnd.nextInt(round % 2 == 0 ? 10 : 100000), rnd);
+            final IndirectComparator comparator = new IndirectComparator.AscendingIntComparator(input);
+
+            final int start = rnd.nextInt(input.length - 1);
+            final int length = rnd.nextInt(input.length - start);
+            final int k = rnd.nextInt(round % 10 == 0 ? length + 10 : Math.min(length + 1, 150));
+
+            final int [] expected = IndirectSort.mergesort(start, length, comparator);
+            final int [] order = IndirectSort.topK(start, length, k, comparator);
+            assertArrayEquals(Arrays.copyOf(expected, Math.min(k, length)), order);
+        }
+    }
+
+    /**
+     * Top-k of large uniform input.
+     */
+    @Test
+    public void testTopKEqual()
+    {
+        final int [] order = IndirectSort.topK(0, DATA_LENGTH, 100, new IndirectComparator()
+        {
+            public int compare(int indexA, int indexB)
+            {
+                return 0;
+            }
+        });
+        assertEquals(100, order.length);
+        for (int i = 0; i < order.length; i++)
+        {
+            assertEquals(i, order[i]);
+        }
+        assertEquals(0, IndirectSort.topK(0, DATA_LENGTH, 0, new OrderedInputComparator()).length);
+
+        final int [] reversed = IndirectSort.topK(0, DATA_LENGTH, 100, new ReverseOrderedInputComparator());
+        for (int i = 0; i < reversed.length; i++)
+        {
+            assertEquals(DATA_LENGTH - 1 - i, reversed[i]);
+        }
+    }
+
+    /* */
+    @Test(expected = IllegalArgumentException.class)
+    public void testTopKNegative()
+    {
+        IndirectSort.topK(0, 10, -1, new OrderedInputComparator());
+    }
+
+    /**
+     * Parallel merge sort returns the same (stable) order as merge sort.
+     */
+    @Test
+    public void testParallelMergeSort() throws InterruptedException
+    {
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {
+            final Random rnd = new XorShiftRandom(0x99aabbcc);
+            for (int round = 0; round < 10; round++)
+            {
+                final int [] input = generateRandom(round < 5 ? 1000 : DATA_LENGTH,
+                    1 + rnd.nextInt(round % 2 == 0 ? 10 : 100000), rnd);
+                final IndirectComparator comparator = new IndirectComparator.AscendingIntComparator(input);
+
+                final int start = rnd.nextInt(input.length - 1);
+                final int length = (input.length - start);
+                assertArrayEquals(
+                    IndirectSort.mergesort(start, length, comparator),
+                    IndirectSort.parallelMergesort(pool, start, length, comparator));
+            }
+
+            assertEquals(0, IndirectSort.parallelMergesort(pool, 0, 0, new OrderedInputComparator()).length);
+            final int [] order = IndirectSort.parallelMergesort(pool, 0, DATA_LENGTH, new ReverseOrderedInputComparator());
+            assertOrder(order, DATA_LENGTH, new ReverseOrderedInputComparator());
+        }
+        finally
+        {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Radix sort orders elements with equal keys by their index.
+     */
+    @Test
+    public void testRadixSortIsStable()
+    {
+        final Random rnd = new XorShiftRandom(0xdeadbeef);
+        final int [] data = new int [10000];
+        for (int i = 0; i < data.length; i++)
+            data[i] = rnd.nextInt(0x100) - 0x80;
+
+        final int [] order = IndirectSort.radixsort(data, 0, data.length);
+        for (int i = 1; i < order.length; i++)
+        {
+            assertTrue(data[order[i - 1]] <= data[order[i]]);
+            if (data[order[i - 1]] == data[order[i]])
+            {
+                assertTrue(order[i - 1] < order[i]);
+            }
+        }
+    }
+
+    /**
+     * Primitive key variants produce orders consistent with the comparators in
+     * {@link IndirectComparator}, for a random subrange.
+     */
+    @Test
+    public void testPrimitiveKeys()
+    {
+        final Random rnd = new XorShiftRandom(0x11223344);
+        for (int round = 0; round < 100; round++)
+        {
+            final int size = 2 + rnd.nextInt(round < 90 ? 100 : 100000);
+            final int start = rnd.nextInt(size - 1);
+            final int length = rnd.nextInt(size - start);
+
+            final long [] longs = new long [size];
+            final float [] floats = new float [size];
+            final double [] doubles = new double [size];
+            for (int i = 0; i < size; i++)
+            {
+                longs[i] = (rnd.nextBoolean() ? rnd.nextLong() : rnd.nextInt(10) - 5);
+                doubles[i] = (rnd.nextBoolean() ? rnd.nextGaussian() : rnd.nextInt(3) - 1.0);
+                floats[i] = (float) doubles[i];
+            }
+            doubles[rnd.nextInt(size)] = Double.NaN;
+            doubles[rnd.nextInt(size)] = -0d;
+            floats[rnd.nextInt(size)] = Float.NEGATIVE_INFINITY;
+            floats[rnd.nextInt(size)] = -0f;
+
+            assertOrder(longs, start, length, IndirectSort.radixsort(longs, start, length));
+            assertOrder(longs, start, length, IndirectSort.quicksort(longs, start, length));
+            assertOrder(floats, start, length, IndirectSort.radixsort(floats, start, length));
+            assertOrder(floats, start, length, IndirectSort.quicksort(floats, start, length));
+            assertOrder(doubles, start, length, IndirectSort.radixsort(doubles, start, length));
+            assertOrder(doubles, start, length, IndirectSort.quicksort(doubles, start, length));
+        }
+    }
+
+    private static void assertIsPermutation(int [] order, int start, int length)
+    {
+        assertEquals(length, order.length);
+        final int [] sorted = copy(order);
+        Arrays.sort(sorted);
+        for (int i = 0; i < length; i++)
+        {
+            assertEquals(start + i, sorted[i]);
+        }
+    }
+
+    private static void assertOrder(long [] keys, int start, int length, int [] order)
+    {
+        assertIsPermutation(order, start, length);
+        for (int i = 1; i < length; i++)
+        {
+            assertTrue(keys[order[i - 1]] <= keys[order[i]]);
+        }
+    }
+
+    private static void assertOrder(float [] keys, int start, int length, int [] order)
+    {
+        assertIsPermutation(order, start, length);
+        for (int i = 1; i < length; i++)
+        {
+            assertTrue(Float.compare(keys[order[i - 1]], keys[order[i]]) <= 0);
+        }
+    }
+
+    private static void assertOrder(double [] keys, int start, int length, int [] order)
+    {
+        assertIsPermutation(order, start, length);
+        for (int i = 1; i < length; i++)
+        {
+            assertTrue(Double.compare(keys[order[i - 1]], keys[order[i]]) <= 0);
+        }
+    }
+
     /*
      * 
      */
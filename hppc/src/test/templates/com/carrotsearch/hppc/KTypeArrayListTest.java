@@ -4,12 +4,16 @@ import static com.carrotsearch.hppc.TestUtils.*;
 
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import org.assertj.core.api.Assertions;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.carrotsearch.randomizedtesting.annotations.ThreadLeakLingering;
+
 import com.carrotsearch.hppc.cursors.KTypeCursor;
 import com.carrotsearch.hppc.mutables.IntHolder;
 import com.carrotsearch.hppc.predicates.KTypePredicate;
@@ -218,6 +222,45 @@ public class KTypeArrayListTest<KType> extends AbstractKTypeTest<KType>
         assertListEquals(list.toArray(), 1, 1);
     }
 
+    /* */
+    @Test
+    public void testSpliterator()
+    {
+        for (int i = randomIntBetween(0, 1000); i > 0; i--)
+        {
+            list.add(cast(randomIntBetween(0, 2000)));
+        }
+
+        final KTypeSpliterator<KType> spliterator = list.elementSpliterator();
+        assertEquals(list.size(), spliterator.estimateSize());
+        assertEquals(KTypeSpliterator.ORDERED | KTypeSpliterator.SIZED | KTypeSpliterator.SUBSIZED,
+            spliterator.characteristics());
+
+        final KTypeArrayList<KType> visited = new KTypeArrayList<>();
+        final KTypeProcedure<KType> collector = new KTypeProcedure<KType>()
+        {
+            public void apply(KType value)
+            {
+                visited.add(value);
+            }
+        };
+
+        final KTypeSpliterator<KType> prefix = spliterator.trySplit();
+        if (prefix == null)
+        {
+            assertTrue(list.size() < 2);
+        }
+        else
+        {
+            assertEquals(list.size(), prefix.estimateSize() + spliterator.estimateSize());
+            assertTrue(prefix.tryAdvance(collector));
+            prefix.forEachRemaining(collector);
+        }
+        spliterator.forEachRemaining(collector);
+        assertEquals(0, spliterator.estimateSize());
+        assertEquals(list, visited);
+    }
+
     /* */
     @Test
     public void testRemoveAllWithPredicate()
@@ -235,6 +278,102 @@ public class KTypeArrayListTest<KType> extends AbstractKTypeTest<KType>
         assertListEquals(list.toArray(), 0, 4);
     }
 
+    /* */
+    @Test
+    @ThreadLeakLingering(linger = 1000)
+    public void testParallelBulkOperations() throws InterruptedException
+    {
+        final ForkJoinPool pool = new ForkJoinPool(randomIntBetween(1, 4));
+        try
+        {
+            final int size = randomIntBetween(0, 5000);
+            final KTypeOpenHashSet<KType> toRemove = new KTypeOpenHashSet<>();
+            for (int i = 0; i < size; i++)
+            {
+                KType key = cast(randomIntBetween(0, size * 2));
+                list.add(key);
+                if (randomIntBetween(0, 2) == 0)
+                {
+                    toRemove.add(key);
+                }
+            }
+
+            class Collector implements KTypeProcedure<KType>
+            {
+                final KTypeArrayList<KType> values = new KTypeArrayList<>();
+
+                public void apply(KType value)
+                {
+                    synchronized (this)
+                    {
+                        values.add(value);
+                    }
+                }
+            }
+
+            final KTypeArrayList<KType> visited = list.parallelForEach(pool, new Collector()).values;
+            assertEquals(list.size(), visited.size());
+            for (KTypeCursor<KType> c : visited)
+            {
+                assertTrue(list.contains(c.value));
+            }
+
+            final KTypeArrayList<KType> reduced = list.parallelReduce(pool, new Reducer<Collector>()
+            {
+                public Collector newAccumulator()
+                {
+                    return new Collector();
+                }
+
+                public Collector merge(Collector left, Collector right)
+                {
+                    left.values.addAll(right.values);
+                    return left;
+                }
+            }).values;
+            assertEquals(list, reduced);
+
+            final KTypePredicate<KType> predicate = new KTypePredicate<KType>()
+            {
+                public boolean apply(KType value)
+                {
+                    return toRemove.contains(value);
+                }
+            };
+            final KTypeArrayList<KType> reference = list.clone();
+            assertEquals(reference.removeAll(predicate), list.parallelRemoveAll(pool, predicate));
+            assertEquals(reference, list);
+        }
+        finally
+        {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    /* */
+    @Test
+    public void testSort()
+    {
+        list.add(newArray(k3, k1, k4, k1, k2));
+        list.sort();
+        assertListEquals(list.toArray(), 1, 1, 2, 3, 4);
+
+        // Reversed order, by position in a reference list.
+        final KTypeArrayList<KType> order = KTypeArrayList.from(k4, k3, k2, k1);
+        list.sort(new KTypeComparator<KType>()
+        {
+            public int compare(KType a, KType b)
+            {
+                return order.indexOf(a) - order.indexOf(b);
+            }
+        });
+        assertListEquals(list.toArray(), 4, 3, 2, 1, 1);
+
+        list.sortRange(1, 4, null);
+        assertListEquals(list.toArray(), 4, 1, 2, 3, 1);
+    }
+
     /* */
     @Test
     public void testRetainAllWithPredicate()
@@ -0,0 +1,131 @@
+package com.carrotsearch.hppc;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.*;
+
+import com.carrotsearch.hppc.procedures.*;
+
+/*! #if ($TemplateOptions.KTypeGeneric) $TemplateOptions.setIgnored(true) #end !*/
+/**
+ * Tests for {@link KTypeConcurrentHashSet}.
+ */
+/* ! ${TemplateOptions.generatedAnnotation} ! */
+public class KTypeConcurrentHashSetTest<KType> extends AbstractKTypeTest<KType>
+{
+    /* */
+    @Test
+    public void testAgainstReferenceSet()
+    {
+        final KTypeOpenHashSet<KType> reference = new KTypeOpenHashSet<>();
+        final KTypeConcurrentHashSet<KType> set = new KTypeConcurrentHashSet<>(randomIntBetween(0, 10));
+
+        for (int round = randomIntBetween(0, 1000); round > 0; round--)
+        {
+            KType key = cast(randomIntBetween(-100, 100));
+            if (Intrinsics.<KType> isEmpty(key))
+            {
+                // See testEmptyKey.
+                continue;
+            }
+
+            assertEquals(reference.contains(key), set.contains(key));
+            assertEquals(reference.add(key), set.add(key));
+            assertEquals(reference.size(), set.size());
+        }
+
+        assertEquals(reference.isEmpty(), set.isEmpty());
+        assertEquals(reference, set.toSet());
+
+        final KTypeOpenHashSet<KType> visited = new KTypeOpenHashSet<>();
+        set.forEach(new KTypeProcedure<KType>()
+        {
+            @Override
+            public void apply(KType key)
+            {
+                assertTrue(visited.add(key));
+            }
+        });
+        assertEquals(reference, visited);
+    }
+
+    /* */
+    @Test
+    public void testEmptyKey()
+    {
+        final KTypeConcurrentHashSet<KType> set = new KTypeConcurrentHashSet<>();
+        assertFalse(set.contains(keyE));
+        assertTrue(set.add(keyE));
+        assertFalse(set.add(keyE));
+        assertTrue(set.contains(keyE));
+        assertEquals(1, set.size());
+    }
+
+    /* */
+    @Test
+    public void testAddAll()
+    {
+        final KTypeConcurrentHashSet<KType> set = new KTypeConcurrentHashSet<>();
+        assertEquals(3, set.addAll(key1, key2, key3, key1));
+        assertEquals(1, set.addAll(KTypeArrayList.from(key2, key4)));
+        assertEquals(4, set.size());
+    }
+
+    /* */
+    @Test
+    public void testConcurrentAdd() throws Exception
+    {
+        final int threads = randomIntBetween(2, 4);
+        // Stay within the range of distinct byte keys.
+        final int keys = randomIntBetween(1, 255);
+        final KTypeConcurrentHashSet<KType> set = new KTypeConcurrentHashSet<>(0, randomFrom(new Double [] {0.5, 0.75, 0.99}));
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger added = new AtomicInteger();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final Thread [] workers = new Thread [threads];
+        for (int t = 0; t < threads; t++)
+        {
+            workers[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for (int i = 0; i < keys; i++)
+                        {
+                            if (set.add(cast(i)))
+                            {
+                                added.incrementAndGet();
+                            }
+                            assertTrue(set.contains(cast(i)));
+                        }
+                    }
+                    catch (Throwable e)
+                    {
+                        error.set(e);
+                    }
+                }
+            };
+            workers[t].start();
+        }
+
+        start.countDown();
+        for (Thread worker : workers)
+        {
+            worker.join();
+        }
+
+        assertNull(error.get());
+        assertEquals(keys, added.get());
+        assertEquals(keys, set.size());
+        for (int i = 0; i < keys; i++)
+        {
+            assertTrue(set.contains(cast(i)));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.carrotsearch.hppc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.*;
+
+import com.carrotsearch.hppc.cursors.*;
+
+/*! #if ($TemplateOptions.KTypeGeneric) $TemplateOptions.setIgnored(true) #end !*/
+/**
+ * Tests for {@link KTypeHashSetSnapshot}.
+ */
+/* ! ${TemplateOptions.generatedAnnotation} ! */
+public class KTypeHashSetSnapshotTest<KType> extends AbstractKTypeTest<KType>
+{
+    /* */
+    @Test
+    public void testWriteAndOpen() throws IOException
+    {
+        final KTypeOpenHashSet<KType> set = new KTypeOpenHashSet<>();
+        for (int i = randomIntBetween(0, 100); i > 0; i--)
+        {
+            set.add(cast(randomIntBetween(0, 100)));
+        }
+        if (randomBoolean())
+        {
+            set.add(keyE);
+        }
+
+        final File file = newTempFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE))
+        {
+            KTypeHashSetSnapshot.write(set, channel);
+        }
+
+        final KTypeHashSetSnapshot<KType> snapshot;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            snapshot = KTypeHashSetSnapshot.open(channel);
+        }
+
+        assertEquals(set.size(), snapshot.size());
+        for (int i = 0; i <= 101; i++)
+        {
+            assertEquals(set.contains(cast(i)), snapshot.contains(cast(i)));
+        }
+
+        int count = 0;
+        for (KTypeCursor<KType> c : snapshot)
+        {
+            assertTrue(set.contains(c.value));
+            count++;
+        }
+        assertEquals(set.size(), count);
+        assertEquals(set, snapshot.toSet());
+    }
+
+    /* */
+    @Test
+    public void testInvalidMagic() throws IOException
+    {
+        final File file = newTempFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE))
+        {
+            channel.write(java.nio.ByteBuffer.allocate(128));
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            KTypeHashSetSnapshot<KType> snapshot = KTypeHashSetSnapshot.open(channel);
+            fail("Unexpectedly opened: " + snapshot.size());
+        }
+        catch (IOException e)
+        {
+            // Expected.
+        }
+    }
+}
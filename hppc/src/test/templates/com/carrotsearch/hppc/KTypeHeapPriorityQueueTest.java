@@ -0,0 +1,254 @@
+package com.carrotsearch.hppc;
+
+import static com.carrotsearch.hppc.TestUtils.*;
+
+import org.junit.*;
+
+import com.carrotsearch.hppc.cursors.KTypeCursor;
+import com.carrotsearch.hppc.predicates.KTypePredicate;
+
+/**
+ * Tests for {@link KTypeHeapPriorityQueue}.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeHeapPriorityQueueTest<KType> extends AbstractKTypeTest<KType>
+{
+    /**
+     * Elements are <code>cast(0..MAX_VALUE)</code>, which preserves their order for
+     * all types.
+     */
+    private static final int MAX_VALUE = 100;
+
+    /**
+     * Per-test fresh initialized instance.
+     */
+    public KTypeHeapPriorityQueue<KType> heap = new KTypeHeapPriorityQueue<>();
+
+    @After
+    public void checkHeapProperty()
+    {
+        if (heap != null)
+        {
+            for (int i = 1; i < heap.elementsCount; i++)
+            {
+                final int c = compareNatural(
+                    Intrinsics.<KType> cast(heap.buffer[(i - 1) >>> 1]),
+                    Intrinsics.<KType> cast(heap.buffer[i]));
+                assertTrue(heap.maxHeap ? c >= 0 : c <= 0);
+            }
+            for (int i = heap.elementsCount; i < heap.buffer.length; i++)
+            {
+                assertEquals2(Intrinsics.<KType> empty(), heap.buffer[i]);
+            }
+        }
+    }
+
+    private int compareNatural(KType a, KType b)
+    {
+        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+        @SuppressWarnings("unchecked")
+        final Comparable<Object> c = (Comparable<Object>) a;
+        return c.compareTo(b);
+        /*! #elseif ($TemplateOptions.KType.Type == "int")
+        return Integer.compare(a, b);
+        #elseif ($TemplateOptions.KType.Type == "char")
+        return Character.compare(a, b);
+        #else
+        return ${TemplateOptions.KType.BoxedType}.compare(a, b);
+        #end !*/
+    }
+
+    /**
+     * Adds random elements to {@link #heap}.
+     *
+     * @return Returns the number of occurrences of each added value.
+     */
+    private int [] addRandom(int count)
+    {
+        final int [] counts = new int [MAX_VALUE + 1];
+        for (int i = 0; i < count; i++)
+        {
+            final int v = randomIntBetween(0, MAX_VALUE);
+            counts[v]++;
+            heap.add(cast(v));
+        }
+        return counts;
+    }
+
+    private void assertPopsAscending(int [] counts)
+    {
+        for (int v = 0; v <= MAX_VALUE; v++)
+        {
+            for (int i = 0; i < counts[v]; i++)
+            {
+                assertEquals2(cast(v), heap.pop());
+            }
+        }
+        assertEquals(0, heap.size());
+    }
+
+    /* */
+    @Test
+    public void testAddAndPop()
+    {
+        heap.add(key3);
+        heap.add(key1);
+        heap.add(key2);
+        assertEquals2(key1, heap.top());
+        assertEquals2(key1, heap.pop());
+        assertEquals2(key2, heap.pop());
+        assertEquals2(key3, heap.pop());
+        assertTrue(heap.isEmpty());
+    }
+
+    /* */
+    @Test
+    public void testRandomAscending()
+    {
+        assertPopsAscending(addRandom(randomIntBetween(0, 1000)));
+    }
+
+    /* */
+    @Test
+    public void testMaxHeap()
+    {
+        heap = new KTypeHeapPriorityQueue<>(0, true, null);
+        final int [] counts = addRandom(randomIntBetween(0, 1000));
+        for (int v = MAX_VALUE; v >= 0; v--)
+        {
+            for (int i = 0; i < counts[v]; i++)
+            {
+                assertEquals2(cast(v), heap.pop());
+            }
+        }
+    }
+
+    /* */
+    @Test
+    public void testComparator()
+    {
+        // Reversed natural order.
+        heap = new KTypeHeapPriorityQueue<>(0, false, new KTypeComparator<KType>()
+        {
+            public int compare(KType a, KType b)
+            {
+                return compareNatural(b, a);
+            }
+        });
+        heap.add(key1);
+        heap.add(key3);
+        heap.add(key2);
+        assertEquals2(key3, heap.pop());
+        assertEquals2(key2, heap.pop());
+        assertEquals2(key1, heap.pop());
+    }
+
+    /* */
+    @Test
+    public void testHeapify()
+    {
+        final int [] counts = new int [MAX_VALUE + 1];
+        final KType [] elements = Intrinsics.<KType> newArray(randomIntBetween(0, 1000) + 2);
+        for (int i = 1; i < elements.length - 1; i++)
+        {
+            final int v = randomIntBetween(0, MAX_VALUE);
+            counts[v]++;
+            elements[i] = cast(v);
+        }
+
+        heap.add(key1);
+        heap.heapify(elements, 1, elements.length - 2);
+        assertEquals(elements.length - 2, heap.size());
+        assertPopsAscending(counts);
+
+        heap = KTypeHeapPriorityQueue.from(key2, key3, key1);
+        assertEquals2(key1, heap.top());
+    }
+
+    /* */
+    @Test
+    public void testReplaceTopKeepsLargest()
+    {
+        final int k = randomIntBetween(1, 20);
+        final int [] counts = new int [MAX_VALUE + 1];
+        for (int i = randomIntBetween(0, 1000); i > 0; i--)
+        {
+            final int v = randomIntBetween(0, MAX_VALUE);
+            counts[v]++;
+            final KType e = cast(v);
+            if (heap.size() < k)
+            {
+                heap.add(e);
+            }
+            else if (compareNatural(e, heap.top()) > 0)
+            {
+                heap.replaceTop(e);
+            }
+        }
+
+        // Expected: the k largest values, ascending.
+        final KTypeArrayList<KType> expected = new KTypeArrayList<>();
+        for (int v = MAX_VALUE; v >= 0 && expected.size() < k; v--)
+        {
+            for (int i = 0; i < counts[v] && expected.size() < k; i++)
+            {
+                expected.insert(0, cast(v));
+            }
+        }
+        for (int i = 0; i < expected.size(); i++)
+        {
+            assertEquals2(expected.get(i), heap.pop());
+        }
+        assertTrue(heap.isEmpty());
+    }
+
+    /* */
+    @Test
+    public void testRemoveAll()
+    {
+        final int [] counts = addRandom(randomIntBetween(0, 1000));
+
+        assertEquals(counts[7], heap.removeAll(cast(7)));
+        counts[7] = 0;
+        assertFalse(heap.contains(cast(7)));
+
+        final int removed = heap.removeAll(new KTypePredicate<KType>()
+        {
+            public boolean apply(KType v)
+            {
+                return compareNatural(v, cast(MAX_VALUE / 2)) > 0;
+            }
+        });
+        int expectedRemoved = 0;
+        for (int v = MAX_VALUE / 2 + 1; v <= MAX_VALUE; v++)
+        {
+            expectedRemoved += counts[v];
+            counts[v] = 0;
+        }
+        assertEquals(expectedRemoved, removed);
+        checkHeapProperty();
+        assertPopsAscending(counts);
+    }
+
+    /* */
+    @Test
+    public void testIterationAndClone()
+    {
+        final int [] counts = addRandom(randomIntBetween(0, 100));
+        int size = 0;
+        for (KTypeCursor<KType> c : heap)
+        {
+            assertEquals2(heap.buffer[c.index], c.value);
+            size++;
+        }
+        assertEquals(heap.size(), size);
+        assertEquals(heap.size(), heap.toArray().length);
+
+        final KTypeHeapPriorityQueue<KType> cloned = heap.clone();
+        heap.clear();
+        assertTrue(heap.isEmpty());
+
+        heap = cloned;
+        assertPopsAscending(counts);
+    }
+}
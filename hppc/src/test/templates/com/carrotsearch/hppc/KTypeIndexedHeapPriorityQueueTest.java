@@ -0,0 +1,161 @@
+package com.carrotsearch.hppc;
+
+import static com.carrotsearch.hppc.TestUtils.*;
+
+import java.util.Arrays;
+
+import org.junit.*;
+
+/**
+ * Tests for {@link KTypeIndexedHeapPriorityQueue}.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeIndexedHeapPriorityQueueTest<KType> extends AbstractKTypeTest<KType>
+{
+    /**
+     * Priorities are <code>cast(0..MAX_VALUE)</code>, which preserves their order
+     * for all types.
+     */
+    private static final int MAX_VALUE = 100;
+
+    /**
+     * Per-test fresh initialized instance.
+     */
+    public KTypeIndexedHeapPriorityQueue<KType> queue = new KTypeIndexedHeapPriorityQueue<>();
+
+    @After
+    public void checkConsistency()
+    {
+        if (queue != null)
+        {
+            int contained = 0;
+            for (int index = 0; index < queue.positions.length; index++)
+            {
+                final int position = queue.positions[index];
+                if (position >= 0)
+                {
+                    contained++;
+                    assertEquals(index, queue.heap[position]);
+                }
+            }
+            assertEquals(queue.size(), contained);
+        }
+    }
+
+    /* */
+    @Test
+    public void testDecreaseKey()
+    {
+        assertTrue(queue.put(1, key5));
+        assertTrue(queue.put(2, key3));
+        assertTrue(queue.put(3, key4));
+        assertEquals(2, queue.top());
+
+        assertFalse(queue.put(1, key1));
+        assertEquals(1, queue.top());
+        assertEquals2(key1, queue.topPriority());
+
+        // Increase-key works as well.
+        assertFalse(queue.put(1, key9));
+        assertEquals(2, queue.pop());
+        assertEquals(3, queue.pop());
+        assertEquals(1, queue.pop());
+        assertTrue(queue.isEmpty());
+    }
+
+    /* */
+    @Test
+    public void testRemoveAndContains()
+    {
+        queue.put(10, key2);
+        queue.put(1000, key1);
+        queue.put(0, key3);
+        assertTrue(queue.contains(1000));
+        assertFalse(queue.contains(999));
+        assertFalse(queue.contains(-1));
+
+        assertTrue(queue.remove(1000));
+        assertFalse(queue.remove(1000));
+        assertEquals(10, queue.top());
+        assertEquals2(key3, queue.priority(0));
+
+        queue.clear();
+        assertEquals(0, queue.size());
+        assertFalse(queue.contains(10));
+    }
+
+    /* */
+    @Test
+    public void testMaxHeap()
+    {
+        queue = new KTypeIndexedHeapPriorityQueue<>(10, true, null);
+        queue.put(1, key1);
+        queue.put(2, key3);
+        queue.put(3, key2);
+        assertEquals(2, queue.pop());
+        assertEquals(3, queue.pop());
+        assertEquals(1, queue.pop());
+    }
+
+    /* */
+    @Test
+    public void testAgainstReference()
+    {
+        final int maxIndex = randomIntBetween(1, 200);
+        final int [] reference = new int [maxIndex];
+        Arrays.fill(reference, -1);
+
+        for (int round = 0; round < 10000; round++)
+        {
+            final int index = randomIntBetween(0, maxIndex - 1);
+            switch (randomIntBetween(0, 3))
+            {
+                case 0:
+                case 1:
+                    final int priority = randomIntBetween(0, MAX_VALUE);
+                    assertEquals(reference[index] < 0, queue.put(index, cast(priority)));
+                    reference[index] = priority;
+                    break;
+                case 2:
+                    assertEquals(reference[index] >= 0, queue.remove(index));
+                    reference[index] = -1;
+                    break;
+                case 3:
+                    if (!queue.isEmpty())
+                    {
+                        int min = Integer.MAX_VALUE;
+                        for (int p : reference)
+                        {
+                            if (p >= 0)
+                            {
+                                min = Math.min(min, p);
+                            }
+                        }
+                        final int top = queue.pop();
+                        assertEquals(min, reference[top]);
+                        reference[top] = -1;
+                    }
+                    break;
+            }
+
+            for (int i = 0; i < maxIndex; i++)
+            {
+                assertEquals(reference[i] >= 0, queue.contains(i));
+            }
+        }
+    }
+
+    /* */
+    @Test
+    public void testClone()
+    {
+        queue.put(1, key2);
+        queue.put(2, key1);
+        final KTypeIndexedHeapPriorityQueue<KType> cloned = queue.clone();
+        queue.pop();
+
+        assertEquals(2, cloned.size());
+        assertEquals(2, cloned.pop());
+        assertEquals(1, cloned.pop());
+    }
+}
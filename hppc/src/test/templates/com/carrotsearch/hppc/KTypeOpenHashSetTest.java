@@ -2,13 +2,21 @@ package com.carrotsearch.hppc;
 
 import static com.carrotsearch.hppc.TestUtils.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
 import org.assertj.core.api.Assertions;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.carrotsearch.randomizedtesting.annotations.ThreadLeakLingering;
+
 import com.carrotsearch.hppc.cursors.KTypeCursor;
 import com.carrotsearch.hppc.mutables.IntHolder;
 import com.carrotsearch.hppc.predicates.KTypePredicate;
+import com.carrotsearch.hppc.procedures.KTypeProcedure;
 
 /**
  * Unit tests for {@link KTypeOpenHashSet}.
@@ -66,7 +74,8 @@ public class KTypeOpenHashSetTest<KType> extends AbstractKTypeTest<KType>
     public void testEmptyKey()
     {
         KTypeOpenHashSet<KType> set = new KTypeOpenHashSet<KType>();
-        set.add(EMPTY_KEY);
+        Assertions.assertThat(set.add(EMPTY_KEY)).isTrue();
+        Assertions.assertThat(set.add(EMPTY_KEY)).isFalse();
 
         Assertions.assertThat(set.size()).isEqualTo(1);
         Assertions.assertThat(set.isEmpty()).isFalse();
@@ -159,6 +168,418 @@ public class KTypeOpenHashSetTest<KType> extends AbstractKTypeTest<KType>
         assertSortedListEquals(set.toArray(), 0, 1, 2);
     }
 
+    /* */
+    @Test
+    public void testContainsAllBatch()
+    {
+        for (int i = randomIntBetween(0, 200); i > 0; i--)
+        {
+            set.add(cast(randomIntBetween(0, 200)));
+        }
+        if (randomBoolean())
+        {
+            set.add(keyE);
+        }
+
+        final int [] ints = new int [randomIntBetween(0, 300)];
+        for (int i = 0; i < ints.length; i++)
+        {
+            ints[i] = randomIntBetween(0, 300);
+        }
+        final KType [] keys = asArray(ints);
+
+        final boolean [] out = new boolean [keys.length];
+        final BitSet bits = new BitSet();
+        bits.set(keys.length + 1);
+        int expected = 0;
+        for (KType key : keys)
+        {
+            if (set.contains(key))
+            {
+                expected++;
+            }
+        }
+
+        assertEquals(expected, set.containsAll(keys, out));
+        assertEquals(expected, set.containsAll(keys, bits));
+        for (int i = 0; i < keys.length; i++)
+        {
+            assertEquals(set.contains(keys[i]), out[i]);
+            assertEquals(set.contains(keys[i]), bits.get(i));
+        }
+    }
+
+    /* */
+    @Test
+    public void testStats()
+    {
+        int rehashes = 0;
+        for (int i = randomIntBetween(0, 2000); i > 0; i--)
+        {
+            final int slots = set.keys.length;
+            set.add(cast(randomIntBetween(0, 5000)));
+            if (set.keys.length != slots)
+            {
+                rehashes++;
+            }
+        }
+
+        final int mask = set.mask;
+        long probeLengthSum = 0;
+        int maxProbeLength = 0;
+        int clusters = 0;
+        for (int slot = 0; slot <= mask; slot++)
+        {
+            KType existing = Intrinsics.<KType> cast(set.keys[slot]);
+            if (!Intrinsics.<KType> isEmpty(existing))
+            {
+                final int probeLength = ((slot - set.hashKey(existing)) & mask) + 1;
+                probeLengthSum += probeLength;
+                maxProbeLength = Math.max(maxProbeLength, probeLength);
+                if (Intrinsics.<KType> isEmpty(Intrinsics.<KType> cast(set.keys[(slot - 1) & mask])))
+                {
+                    clusters++;
+                }
+            }
+        }
+
+        final HashContainerStats stats = set.stats();
+        assertEquals(mask + 1, stats.slots());
+        assertEquals(set.assigned, stats.assigned());
+        assertEquals((mask + 1 - set.assigned) / (double) (mask + 1), stats.emptySlotRatio(), 0);
+        assertEquals(set.assigned == 0 ? 0 : probeLengthSum / (double) set.assigned, stats.averageProbeLength(), 1e-9);
+        assertEquals(maxProbeLength, stats.maxProbeLength());
+        int histogramClusters = 0;
+        for (int count : stats.clusterSizeHistogram())
+        {
+            histogramClusters += count;
+        }
+        assertEquals(clusters, histogramClusters);
+        assertEquals(rehashes, stats.rehashCount());
+        assertTrue(stats.rehashNanos() >= 0);
+    }
+
+    /* */
+    @Test
+    public void testIncrementalRehash()
+    {
+        final int size = randomIntBetween(100, 5000);
+        final KTypeOpenHashSet<KType> reference = new KTypeOpenHashSet<>();
+        final KTypeOpenHashSet<KType> incremental = new KTypeOpenHashSet<>();
+        incremental.setIncrementalRehash(randomIntBetween(1, 8));
+
+        boolean pending = false;
+        for (int round = 0; round < size * 5; round++)
+        {
+            KType key = cast(randomIntBetween(0, size));
+            if (randomIntBetween(0, 3) > 0)
+            {
+                assertEquals(reference.add(key), incremental.add(key));
+            }
+            else
+            {
+                assertEquals(reference.contains(key), incremental.contains(key));
+                assertEquals(reference.remove(key), incremental.remove(key));
+            }
+            assertEquals(reference.size(), incremental.size());
+            pending |= incremental.rehashKeys != null;
+        }
+        assertTrue(pending);
+
+        for (int i = 0; i <= size; i++)
+        {
+            assertEquals(reference.contains(cast(i)), incremental.contains(cast(i)));
+        }
+        assertEquals(reference, incremental);
+        assertEquals(reference.hashCode(), incremental.hashCode());
+        incremental.finishRehash();
+        assertNull(incremental.rehashKeys);
+        assertEquals(reference, incremental);
+    }
+
+    /**
+     * Read-only operations see the keys in both buffers of a pending incremental
+     * rehash and do not migrate them.
+     */
+    @Test
+    @ThreadLeakLingering(linger = 1000)
+    public void testReadOnlyDuringIncrementalRehash() throws InterruptedException
+    {
+        final KTypeOpenHashSet<KType> reference = new KTypeOpenHashSet<>();
+        final KTypeOpenHashSet<KType> incremental = new KTypeOpenHashSet<>();
+        incremental.setIncrementalRehash(1);
+        for (int i = 0; incremental.rehashKeys == null; i++)
+        {
+            reference.add(cast(i));
+            incremental.add(cast(i));
+        }
+        final int remaining = incremental.rehashRemaining;
+
+        assertEquals(reference, incremental);
+        assertEquals(incremental, reference);
+        assertEquals(reference.hashCode(), incremental.hashCode());
+        Assertions.assertThat(incremental.toArray()).containsOnly(reference.toArray()).hasSize(reference.size());
+
+        int count = 0;
+        for (KTypeCursor<KType> c : incremental)
+        {
+            assertTrue(reference.contains(c.value));
+            count++;
+        }
+        assertEquals(reference.size(), count);
+
+        final KTypeOpenHashSet<KType> visited = new KTypeOpenHashSet<>();
+        incremental.forEach(new KTypePredicate<KType>()
+        {
+            public boolean apply(KType key)
+            {
+                assertTrue(visited.add(key));
+                return true;
+            }
+        });
+        assertEquals(reference, visited);
+
+        final KTypeSpliterator<KType> keys = incremental.elementSpliterator();
+        final KTypeSpliterator<KType> prefix = keys.trySplit();
+        visited.clear();
+        final KTypeProcedure<KType> collector = new KTypeProcedure<KType>()
+        {
+            public void apply(KType key)
+            {
+                assertTrue(visited.add(key));
+            }
+        };
+        keys.forEachRemaining(collector);
+        while (prefix != null && prefix.tryAdvance(collector)) {}
+        assertEquals(reference, visited);
+
+        final int [] ints = new int [reference.size() * 2];
+        for (int i = 0; i < ints.length; i++)
+        {
+            ints[i] = i;
+        }
+        final KType [] lookups = asArray(ints);
+        final boolean [] contained = new boolean [lookups.length];
+        final BitSet bits = new BitSet();
+        assertEquals(reference.size(), incremental.containsAll(lookups, contained));
+        assertEquals(reference.size(), incremental.containsAll(lookups, bits));
+        for (int i = 0; i < lookups.length; i++)
+        {
+            assertEquals(reference.contains(lookups[i]), contained[i]);
+            assertEquals(reference.contains(lookups[i]), bits.get(i));
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(randomIntBetween(1, 4));
+        try
+        {
+            visited.clear();
+            incremental.parallelForEach(pool, new KTypeProcedure<KType>()
+            {
+                public void apply(KType key)
+                {
+                    synchronized (visited)
+                    {
+                        assertTrue(visited.add(key));
+                    }
+                }
+            });
+            assertEquals(reference, visited);
+        }
+        finally
+        {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        assertNotNull(incremental.rehashKeys);
+        assertEquals(remaining, incremental.rehashRemaining);
+    }
+
+    /* */
+    @Test
+    @ThreadLeakLingering(linger = 1000)
+    public void testParallelRehash() throws InterruptedException
+    {
+        final ForkJoinPool pool = new ForkJoinPool(randomIntBetween(1, 4));
+        try
+        {
+            final int size = randomIntBetween(100, 5000);
+            final KTypeOpenHashSet<KType> reference = new KTypeOpenHashSet<>();
+            final KTypeOpenHashSet<KType> parallel = new KTypeOpenHashSet<>(0, randomFrom(new Double [] {0.5, 0.75, 0.99}));
+            parallel.setParallelRehash(pool);
+            parallel.parallelRehashMinSlots = 0;
+            final int keyMixer = parallel.keyMixer;
+
+            for (int round = 0; round < size * 2; round++)
+            {
+                KType key = cast(randomIntBetween(0, size));
+                if (randomIntBetween(0, 3) > 0)
+                {
+                    assertEquals(reference.add(key), parallel.add(key));
+                }
+                else
+                {
+                    assertEquals(reference.remove(key), parallel.remove(key));
+                }
+            }
+            parallel.ensureCapacity(parallel.size() * 4);
+
+            assertTrue(parallel.stats().rehashCount() > 0);
+            assertEquals(keyMixer, parallel.keyMixer);
+            for (int i = 0; i <= size; i++)
+            {
+                assertEquals(reference.contains(cast(i)), parallel.contains(cast(i)));
+            }
+            assertEquals(reference, parallel);
+        }
+        finally
+        {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    /* */
+    @Test
+    @ThreadLeakLingering(linger = 1000)
+    public void testParallelBulkOperations() throws InterruptedException
+    {
+        final ForkJoinPool pool = new ForkJoinPool(randomIntBetween(1, 4));
+        try
+        {
+            final int size = randomIntBetween(0, 5000);
+            final KTypeOpenHashSet<KType> toRemove = new KTypeOpenHashSet<>();
+            for (int i = 0; i < size; i++)
+            {
+                KType key = cast(randomIntBetween(0, size * 2));
+                set.add(key);
+                if (randomIntBetween(0, 2) == 0)
+                {
+                    toRemove.add(key);
+                }
+            }
+            if (randomIntBetween(0, 1) == 0)
+            {
+                set.add(keyE);
+            }
+
+            class Collector implements KTypeProcedure<KType>
+            {
+                final KTypeArrayList<KType> keys = new KTypeArrayList<>();
+
+                public void apply(KType key)
+                {
+                    synchronized (this)
+                    {
+                        keys.add(key);
+                    }
+                }
+            }
+
+            final KTypeArrayList<KType> visited = set.parallelForEach(pool, new Collector()).keys;
+            assertEquals(set.size(), visited.size());
+            for (KTypeCursor<KType> c : visited)
+            {
+                assertTrue(set.contains(c.value));
+            }
+
+            final KTypeArrayList<KType> reduced = set.parallelReduce(pool, new Reducer<Collector>()
+            {
+                public Collector newAccumulator()
+                {
+                    return new Collector();
+                }
+
+                public Collector merge(Collector left, Collector right)
+                {
+                    left.keys.addAll(right.keys);
+                    return left;
+                }
+            }).keys;
+            assertEquals(set.size(), reduced.size());
+            for (KTypeCursor<KType> c : reduced)
+            {
+                assertTrue(set.contains(c.value));
+            }
+
+            final KTypePredicate<KType> predicate = new KTypePredicate<KType>()
+            {
+                public boolean apply(KType key)
+                {
+                    return toRemove.contains(key);
+                }
+            };
+            final KTypeOpenHashSet<KType> reference = set.clone();
+            assertEquals(reference.removeAll(predicate), set.parallelRemoveAll(pool, predicate));
+            assertEquals(reference, set);
+            for (KTypeCursor<KType> c : reference)
+            {
+                assertTrue(set.contains(c.value));
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    /* */
+    @Test
+    public void testSpliterator()
+    {
+        for (int i = randomIntBetween(0, 1000); i > 0; i--)
+        {
+            set.add(cast(randomIntBetween(0, 2000)));
+        }
+        if (randomIntBetween(0, 1) == 0)
+        {
+            set.add(keyE);
+        }
+
+        final KTypeSpliterator<KType> spliterator = set.elementSpliterator();
+        assertEquals(set.size(), spliterator.estimateSize());
+        assertTrue((spliterator.characteristics() & KTypeSpliterator.SIZED) != 0);
+
+        final List<KTypeSpliterator<KType>> parts = new ArrayList<>();
+        parts.add(spliterator);
+        for (int i = randomIntBetween(0, 10); i > 0; i--)
+        {
+            final KTypeSpliterator<KType> prefix = parts.get(randomIntBetween(0, parts.size() - 1)).trySplit();
+            if (prefix != null)
+            {
+                parts.add(prefix);
+            }
+        }
+
+        final KTypeArrayList<KType> visited = new KTypeArrayList<>();
+        final KTypeProcedure<KType> collector = new KTypeProcedure<KType>()
+        {
+            public void apply(KType value)
+            {
+                visited.add(value);
+            }
+        };
+        for (KTypeSpliterator<KType> part : parts)
+        {
+            if (randomIntBetween(0, 1) == 0)
+            {
+                part.forEachRemaining(collector);
+            }
+            else
+            {
+                while (part.tryAdvance(collector)) {}
+            }
+            assertFalse(part.tryAdvance(collector));
+        }
+
+        assertEquals(set.size(), visited.size());
+        for (KTypeCursor<KType> c : visited)
+        {
+            assertTrue(set.contains(c.value));
+        }
+    }
+
     /* */
     @Test
     public void testRemove()
@@ -437,6 +858,37 @@ public class KTypeOpenHashSetTest<KType> extends AbstractKTypeTest<KType>
         assertSortedListEquals(cloned.toArray(), key2, key3);
     }
     
+    /* */
+    @Test
+    public void testForEachProcedureAndPredicate()
+    {
+        set.addAll(keyE, key1, key2, key3);
+
+        final KTypeOpenHashSet<KType> visited = new KTypeOpenHashSet<KType>();
+        set.forEach(new KTypeProcedure<KType>()
+        {
+            public void apply(KType value)
+            {
+                visited.add(value);
+            }
+        });
+        assertEquals(set.size(), visited.size());
+        for (KTypeCursor<KType> c : set)
+        {
+            assertTrue(visited.contains(c.value));
+        }
+
+        final IntHolder calls = new IntHolder();
+        set.forEach(new KTypePredicate<KType>()
+        {
+            public boolean apply(KType value)
+            {
+                return ++calls.value < 2;
+            }
+        });
+        assertEquals(2, calls.value);
+    }
+
     /* */
     @Test
     public void testEqualsSameClass()
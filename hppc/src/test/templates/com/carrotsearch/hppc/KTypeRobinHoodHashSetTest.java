@@ -0,0 +1,165 @@
+package com.carrotsearch.hppc;
+
+import static com.carrotsearch.hppc.TestUtils.*;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.*;
+
+import com.carrotsearch.hppc.cursors.KTypeCursor;
+
+/**
+ * Tests for {@link KTypeRobinHoodHashSet}. Runs all tests of
+ * {@link KTypeOpenHashSetTest} against the Robin Hood variant.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeRobinHoodHashSetTest<KType> extends KTypeOpenHashSetTest<KType>
+{
+    /* */
+    @Before
+    @Override
+    public void initialize()
+    {
+        set = new KTypeRobinHoodHashSet<>();
+    }
+
+    /**
+     * No key may be further away from its ideal slot than its predecessor
+     * in the same cluster, plus one. Stored probe distances must match the
+     * keys' slots.
+     */
+    @After
+    public void checkProbeDistancesOrdered()
+    {
+        if (set != null && set instanceof KTypeRobinHoodHashSet)
+        {
+            final int mask = set.mask;
+            for (int slot = 0; slot <= mask; slot++)
+            {
+                final int next = (slot + 1) & mask;
+                KType existing = Intrinsics.<KType> cast(set.keys[slot]);
+                KType following = Intrinsics.<KType> cast(set.keys[next]);
+                if (!Intrinsics.<KType> isEmpty(existing))
+                {
+                    int distance = (slot - set.hashKey(existing)) & mask;
+                    assertEquals(Math.min(distance, 0xff), ((KTypeRobinHoodHashSet<KType>) set).distances[slot] & 0xff);
+                }
+                if (!Intrinsics.<KType> isEmpty(following))
+                {
+                    int followingDistance = (next - set.hashKey(following)) & mask;
+                    if (Intrinsics.<KType> isEmpty(existing))
+                    {
+                        assertEquals(0, followingDistance);
+                    }
+                    else
+                    {
+                        int distance = (slot - set.hashKey(existing)) & mask;
+                        assertTrue(followingDistance <= distance + 1);
+                    }
+                }
+            }
+        }
+    }
+
+    /* */
+    @Test
+    public void testAgainstReferenceSetAtHighLoadFactor()
+    {
+        final int size = randomIntBetween(100, 2000);
+        final KTypeOpenHashSet<KType> reference = new KTypeOpenHashSet<>();
+        set = new KTypeRobinHoodHashSet<>(0, 0.95d);
+
+        for (int round = 0; round < size * 10; round++)
+        {
+            KType key = cast(randomIntBetween(0, size));
+            if (Intrinsics.<KType> isEmpty(key))
+            {
+                // The empty key never enters the buffers.
+                continue;
+            }
+
+            if (randomBoolean())
+            {
+                assertEquals(reference.add(key), set.add(key));
+            }
+            else
+            {
+                assertEquals(reference.contains(key), set.contains(key));
+                assertEquals(reference.remove(key), set.remove(key));
+            }
+            assertEquals(reference.size(), set.size());
+        }
+
+        for (int i = 0; i <= size; i++)
+        {
+            assertEquals(reference.contains(cast(i)), set.contains(cast(i)));
+        }
+    }
+
+    /**
+     * A cluster longer than the largest stored probe distance.
+     */
+    @Test
+    public void testLongCluster()
+    {
+        set = new KTypeRobinHoodHashSet<>(1000);
+        final KTypeArrayList<KType> colliding = new KTypeArrayList<>();
+        for (int i = 1; i < (1 << 22) && colliding.size() < 300; i++)
+        {
+            final KType key = cast(i);
+            if (!Intrinsics.<KType> isEmpty(key) &&
+                (set.hashKey(key) & set.mask) == 0 && !colliding.contains(key))
+            {
+                colliding.add(key);
+            }
+        }
+
+        for (KTypeCursor<KType> c : colliding)
+        {
+            final KType key = c.value;
+            assertTrue(set.add(key));
+        }
+        for (int i = 0; i < colliding.size(); i += 2)
+        {
+            assertTrue(set.remove(colliding.get(i)));
+        }
+        for (int i = 0; i < colliding.size(); i++)
+        {
+            assertEquals(i % 2 == 1, set.contains(colliding.get(i)));
+        }
+    }
+
+    /**
+     * Incremental and parallel rehashing are ignored: buffers are rehashed at
+     * once and keys stay ordered by their probe distance.
+     */
+    @Test
+    public void testIncrementalAndParallelRehashIgnored()
+    {
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try
+        {
+            final KTypeOpenHashSet<KType> reference = new KTypeOpenHashSet<>();
+            set = new KTypeRobinHoodHashSet<>();
+            set.setIncrementalRehash(1);
+            set.setParallelRehash(pool);
+            set.parallelRehashMinSlots = 0;
+
+            final int size = randomIntBetween(100, 5000);
+            for (int i = 0; i < size; i++)
+            {
+                assertEquals(reference.add(cast(i)), set.add(cast(i)));
+                assertNull(set.rehashKeys);
+            }
+            assertEquals(reference.size(), set.size());
+            for (int i = 0; i < size; i++)
+            {
+                assertTrue(set.contains(cast(i)));
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.carrotsearch.hppc;
+
+import static com.carrotsearch.hppc.TestUtils.*;
+
+import java.util.Arrays;
+
+import org.junit.*;
+
+import com.carrotsearch.hppc.cursors.*;
+import com.carrotsearch.hppc.predicates.*;
+import com.carrotsearch.hppc.procedures.*;
+
+/**
+ * Tests for {@link KTypeSortedSet}.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeSortedSetTest<KType> extends AbstractKTypeTest<KType>
+{
+    /**
+     * Keys are <code>cast(0..KEYS - 1)</code>; these are distinct for all types,
+     * but not in the same order, so expected orders are computed with
+     * {@link #compareNatural}. There are more keys than fit in a leaf.
+     */
+    private static final int KEYS = 256;
+
+    /**
+     * Per-test fresh initialized instance.
+     */
+    public KTypeSortedSet<KType> set = new KTypeSortedSet<>();
+
+    @After
+    public void checkConsistency()
+    {
+        if (set != null)
+        {
+            KTypeSortedTreeTest.assertConsistent(set.tree);
+        }
+    }
+
+    private int compareNatural(KType a, KType b)
+    {
+        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+        @SuppressWarnings("unchecked")
+        final Comparable<Object> c = (Comparable<Object>) a;
+        return c.compareTo(b);
+        /*! #elseif ($TemplateOptions.KType.Type == "int")
+        return Integer.compare(a, b);
+        #elseif ($TemplateOptions.KType.Type == "char")
+        return Character.compare(a, b);
+        #else
+        return ${TemplateOptions.KType.BoxedType}.compare(a, b);
+        #end !*/
+    }
+
+    /* */
+    @Test
+    public void testAddRemoveContains()
+    {
+        assertTrue(set.add(key3));
+        assertTrue(set.add(key1));
+        assertFalse(set.add(key3));
+        assertEquals(2, set.addAll(key2, key1, key4));
+        assertEquals(4, set.size());
+        assertTrue(set.contains(key2));
+        assertFalse(set.contains(key5));
+
+        assertTrue(set.remove(key2));
+        assertFalse(set.remove(key2));
+        assertEquals(1, set.removeAll(key4));
+        assertEquals2(key1, set.first());
+        assertEquals2(key3, set.last());
+    }
+
+    /* */
+    @Test
+    public void testNavigation()
+    {
+        set.addAll(key2, key4, key6);
+
+        assertEquals2(key4, set.floor(key5));
+        assertEquals2(key4, set.ceiling(key4));
+        assertEquals2(key6, set.ceiling(key5));
+        assertEquals2(key2, set.lower(key4));
+        assertEquals2(key6, set.higher(key4));
+        assertEquals(-1, set.lowerIndex(key2));
+        assertEquals(-1, set.ceilingIndex(key7));
+        assertEquals2(Intrinsics.<KType> empty(), set.floor(key1));
+    }
+
+    /* */
+    @Test
+    public void testAgainstReference()
+    {
+        checkAgainstReference();
+    }
+
+    /**
+     * Small leaves and nodes, so that the tree has several levels.
+     */
+    @Test
+    public void testAgainstReferenceWithSmallNodes()
+    {
+        set = new KTypeSortedSet<>(null, 4, 4);
+        checkAgainstReference();
+        assertTrue(set.tree.height > 1);
+    }
+
+    private void checkAgainstReference()
+    {
+        final boolean [] reference = new boolean [KEYS];
+        for (int round = 0; round < 20000; round++)
+        {
+            final int k = randomIntBetween(0, KEYS - 1);
+            final KType key = cast(k);
+            if (randomIntBetween(0, 2) > 0)
+            {
+                assertEquals(!reference[k], set.add(key));
+                reference[k] = true;
+            }
+            else
+            {
+                assertEquals(reference[k], set.remove(key));
+                reference[k] = false;
+            }
+
+            // The ceiling of a key is the least present key not less than it.
+            int expected = -1;
+            for (int j = 0; j < KEYS; j++)
+            {
+                if (reference[j] && compareNatural(cast(j), key) >= 0 &&
+                    (expected < 0 || compareNatural(cast(j), cast(expected)) < 0))
+                {
+                    expected = j;
+                }
+            }
+            final int index = set.ceilingIndex(key);
+            if (expected < 0)
+            {
+                assertEquals(-1, index);
+            }
+            else
+            {
+                assertEquals2(cast(expected), set.indexGet(index));
+            }
+
+            if (round % 1000 == 0)
+            {
+                checkConsistency();
+            }
+        }
+    }
+
+    /* */
+    @Test
+    public void testSubSet()
+    {
+        for (int k = 0; k < KEYS; k++)
+        {
+            if (randomIntBetween(0, 2) > 0)
+            {
+                set.add(cast(k));
+            }
+        }
+        assertTrue(set.tree.leafCount > 1);
+
+        for (int round = 0; round < 100; round++)
+        {
+            final KType from = cast(randomIntBetween(0, KEYS - 1));
+            final KType to = cast(randomIntBetween(0, KEYS - 1));
+
+            final KTypeArrayList<KType> expected = new KTypeArrayList<>();
+            for (KTypeCursor<KType> c : set)
+            {
+                if (compareNatural(c.value, from) >= 0 && compareNatural(c.value, to) < 0)
+                {
+                    expected.add(c.value);
+                }
+            }
+
+            final KTypeArrayList<KType> actual = new KTypeArrayList<>();
+            for (KTypeCursor<KType> c : set.subSet(from, to))
+            {
+                actual.add(c.value);
+            }
+            assertEquals(expected, actual);
+
+            actual.clear();
+            set.forEach(new KTypeProcedure<KType>()
+            {
+                public void apply(KType key)
+                {
+                    actual.add(key);
+                }
+            }, from, to);
+            assertEquals(expected, actual);
+        }
+    }
+
+    /* */
+    @Test
+    public void testBulkLoad()
+    {
+        final KTypeSortedSet<KType> expected = new KTypeSortedSet<>();
+        for (int k = 0; k < KEYS; k++)
+        {
+            if (randomIntBetween(0, 3) > 0)
+            {
+                expected.add(cast(k));
+            }
+        }
+
+        final KType [] keys = Intrinsics.<KType[]> cast(expected.toArray());
+        set.add(key1);
+        set.bulkLoad(keys, 0, keys.length);
+        assertEquals(expected, set);
+        assertEquals(expected.hashCode(), set.hashCode());
+        assertEquals(expected, KTypeSortedSet.fromSorted(keys));
+
+        final KType [] unsorted = Arrays.copyOf(keys, keys.length);
+        if (unsorted.length > 1)
+        {
+            final KType tmp = unsorted[0];
+            unsorted[0] = unsorted[1];
+            unsorted[1] = tmp;
+            try
+            {
+                set.bulkLoad(unsorted, 0, unsorted.length);
+                fail();
+            }
+            catch (IllegalArgumentException e)
+            {
+                // Expected.
+            }
+        }
+    }
+
+    /* */
+    @Test
+    public void testRemoveAllAndClone()
+    {
+        for (int k = 0; k < KEYS; k++)
+        {
+            set.add(cast(k));
+        }
+        final KTypeSortedSet<KType> cloned = set.clone();
+
+        final int removed = set.removeAll(new KTypePredicate<KType>()
+        {
+            public boolean apply(KType key)
+            {
+                return compareNatural(key, key5) != 0;
+            }
+        });
+        assertEquals(KEYS - 1, removed);
+        assertEquals(1, set.tree.leafCount);
+        assertEquals2(key5, set.first());
+
+        assertEquals(KEYS, cloned.size());
+        assertTrue(cloned.contains(key7));
+    }
+
+    /* */
+    @Test
+    public void testRemoveAllMergesSparseLeaves()
+    {
+        for (int k = 0; k < KEYS; k++)
+        {
+            set.add(cast(k));
+        }
+        assertTrue(set.tree.leafCount > 2);
+
+        // Keep every fourth key; the remaining keys fit in a single leaf.
+        final int [] visited = new int [1];
+        assertEquals(KEYS - KEYS / 4, set.removeAll(new KTypePredicate<KType>()
+        {
+            public boolean apply(KType key)
+            {
+                return visited[0]++ % 4 != 0;
+            }
+        }));
+        assertEquals(1, set.tree.leafCount);
+    }
+}
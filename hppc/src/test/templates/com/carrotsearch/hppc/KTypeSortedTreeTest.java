@@ -0,0 +1,272 @@
+package com.carrotsearch.hppc;
+
+import static com.carrotsearch.hppc.TestUtils.*;
+
+import org.junit.*;
+
+/**
+ * Tests for {@link KTypeSortedTree}, with small leaves and nodes so that the
+ * tree has several levels.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeSortedTreeTest<KType> extends AbstractKTypeTest<KType>
+{
+    /**
+     * Keys are <code>cast(0..KEYS - 1)</code>; these are distinct for all types.
+     */
+    private static final int KEYS = 256;
+
+    /**
+     * Per-test fresh initialized instance.
+     */
+    public KTypeSortedTree<KType> tree = new KTypeSortedTree<KType>(null, 4, 4);
+
+    @After
+    public void checkConsistency()
+    {
+        assertConsistent(tree);
+    }
+
+    /**
+     * Checks the structure of a tree: leaf and node sizes, the order of keys,
+     * separators, the depth of leaves and the links between leaves.
+     */
+    public static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */
+        void assertConsistent(KTypeSortedTree<KType> tree)
+    {
+        final IntArrayList leaves = new IntArrayList();
+        if (tree.root >= 0)
+        {
+            assertTrue(tree.height == 0 || tree.nodeSizes[tree.root] > 1);
+            collectLeaves(tree, tree.root, tree.height, leaves);
+        }
+        assertEquals(leaves.size(), tree.leafCount);
+
+        int size = 0;
+        int previous = -1;
+        KType previousKey = Intrinsics.<KType> empty();
+        for (int i = 0; i < leaves.size(); i++)
+        {
+            final int leaf = leaves.get(i);
+            assertEquals(previous, tree.previousLeaves[leaf]);
+            assertEquals(leaf, previous >= 0 ? tree.nextLeaves[previous] : tree.firstLeaf);
+
+            final int leafSize = tree.leafSizes[leaf];
+            assertTrue(leafSize > 0 && leafSize <= tree.maxLeafSize);
+            for (int j = 0; j < leafSize; j++)
+            {
+                final KType key = Intrinsics.<KType> cast(tree.leafKeys[leaf][j]);
+                if (size > 0)
+                {
+                    assertTrue(tree.compare(previousKey, key) < 0);
+                }
+                previousKey = key;
+                size++;
+            }
+            previous = leaf;
+        }
+        assertEquals(previous, tree.lastLeaf);
+        if (previous < 0)
+        {
+            assertEquals(-1, tree.firstLeaf);
+        }
+        else
+        {
+            assertEquals(-1, tree.nextLeaves[previous]);
+        }
+        assertEquals(tree.size, size);
+    }
+
+    /**
+     * Appends the leaves of a subtree, in order, checking node sizes and that
+     * separators lie between the keys of adjacent children.
+     */
+    private static /* #if ($TemplateOptions.KTypeGeneric) */ <KType> /* #end */
+        void collectLeaves(KTypeSortedTree<KType> tree, int child, int level, IntArrayList leaves)
+    {
+        if (level == 0)
+        {
+            leaves.add(child);
+            return;
+        }
+
+        final int nodeSize = tree.nodeSizes[child];
+        assertTrue(nodeSize > 0 && nodeSize <= tree.maxNodeSize);
+        for (int i = 0; i < nodeSize; i++)
+        {
+            final int before = leaves.size();
+            collectLeaves(tree, tree.nodeChildren[child][i], level - 1, leaves);
+            if (i > 0)
+            {
+                final KType separator = Intrinsics.<KType> cast(tree.nodeKeys[child][i]);
+                final int last = leaves.get(before - 1);
+                final int first = leaves.get(before);
+                assertTrue(tree.compare(Intrinsics.<KType> cast(tree.leafKeys[last][tree.leafSizes[last] - 1]), separator) < 0);
+                assertTrue(tree.compare(separator, Intrinsics.<KType> cast(tree.leafKeys[first][0])) <= 0);
+            }
+        }
+    }
+
+    private void insert(KType key)
+    {
+        final int index = tree.indexOf(key);
+        if (index < 0)
+        {
+            assertEquals2(key, tree.key(tree.insert(index, key)));
+        }
+    }
+
+    private void remove(KType key)
+    {
+        final int index = tree.indexOf(key);
+        if (index >= 0)
+        {
+            tree.remove(index);
+        }
+    }
+
+    /* */
+    @Test
+    public void testLevelsGrowAndShrink()
+    {
+        final int [] keys = new int [KEYS];
+        for (int k = 0; k < KEYS; k++)
+        {
+            keys[k] = k;
+        }
+
+        shuffle(keys);
+        for (int k : keys)
+        {
+            insert(cast(k));
+        }
+        assertEquals(KEYS, tree.size);
+        assertTrue(tree.height > 2);
+        assertConsistent(tree);
+
+        shuffle(keys);
+        for (int k : keys)
+        {
+            assertTrue(tree.indexOf(cast(k)) >= 0);
+            remove(cast(k));
+            assertTrue(tree.indexOf(cast(k)) < 0);
+            assertConsistent(tree);
+        }
+        assertEquals(0, tree.size);
+        assertEquals(0, tree.height);
+        assertEquals(-1, tree.root);
+        assertEquals(-1, tree.firstIndex());
+        assertEquals(-1, tree.floorIndex(key1));
+    }
+
+    /* */
+    @Test
+    public void testAgainstReference()
+    {
+        final boolean [] reference = new boolean [KEYS];
+        for (int round = 0; round < 20000; round++)
+        {
+            final int k = randomIntBetween(0, KEYS - 1);
+            if (randomIntBetween(0, 2) > 0)
+            {
+                insert(cast(k));
+                reference[k] = true;
+            }
+            else
+            {
+                remove(cast(k));
+                reference[k] = false;
+            }
+
+            if (round % 100 == 0)
+            {
+                assertConsistent(tree);
+            }
+        }
+
+        int size = 0;
+        for (int k = 0; k < KEYS; k++)
+        {
+            assertEquals(reference[k], tree.indexOf(cast(k)) >= 0);
+            size += reference[k] ? 1 : 0;
+        }
+        assertEquals(size, tree.size);
+
+        int count = 0;
+        for (int index = tree.firstIndex(); index >= 0; index = tree.nextIndex(index))
+        {
+            count++;
+        }
+        assertEquals(size, count);
+    }
+
+    /* */
+    @Test
+    public void testBulkLoadAndCompact()
+    {
+        final KTypeSortedSet<KType> sorted = new KTypeSortedSet<KType>();
+        for (int k = 0; k < KEYS; k++)
+        {
+            sorted.add(cast(k));
+        }
+        final KType [] keys = Intrinsics.<KType[]> cast(sorted.toArray());
+
+        tree.bulkLoad(keys, null, 0, keys.length);
+        assertConsistent(tree);
+        assertTrue(tree.height > 2);
+        for (KType key : keys)
+        {
+            assertEquals2(key, tree.key(tree.indexOf(key)));
+        }
+
+        // Leave a single key in each leaf; compaction merges neighbours.
+        for (int leaf = tree.firstLeaf; leaf >= 0; leaf = tree.nextLeaves[leaf])
+        {
+            tree.size -= tree.leafSizes[leaf] - 1;
+            tree.leafSizes[leaf] = 1;
+        }
+        final int leaves = tree.leafCount;
+        tree.compact();
+        assertEquals(leaves / 3 + (leaves % 3 == 0 ? 0 : 1), tree.leafCount);
+    }
+
+    /* */
+    @Test
+    public void testClone()
+    {
+        for (int k = 0; k < KEYS; k += 2)
+        {
+            insert(cast(k));
+        }
+
+        final KTypeSortedTree<KType> cloned = tree.clone();
+        for (int k = 0; k < KEYS; k++)
+        {
+            if (k % 2 == 0)
+            {
+                remove(cast(k));
+            }
+            else
+            {
+                insert(cast(k));
+            }
+        }
+        assertConsistent(cloned);
+        assertEquals(KEYS / 2, cloned.size);
+        for (int k = 0; k < KEYS; k++)
+        {
+            assertEquals(k % 2 == 0, cloned.indexOf(cast(k)) >= 0);
+        }
+    }
+
+    private void shuffle(int [] array)
+    {
+        for (int i = array.length - 1; i > 0; i--)
+        {
+            final int j = randomIntBetween(0, i);
+            final int tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.carrotsearch.hppc;
+
+import static com.carrotsearch.hppc.TestUtils.*;
+
+import org.junit.*;
+
+import com.carrotsearch.hppc.procedures.*;
+
+/**
+ * Tests for {@link KTypeVTypeClockCache}.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeClockCacheTest<KType, VType> extends AbstractKTypeTest<KType>
+{
+    protected VType value1 = vcast(1);
+    protected VType value2 = vcast(2);
+    protected VType value3 = vcast(3);
+    protected VType value4 = vcast(4);
+
+    /**
+     * Evicted keys, in eviction order.
+     */
+    protected final KTypeArrayList<KType> evictedKeys = new KTypeArrayList<>();
+
+    protected final KTypeVTypeProcedure<KType, VType> listener = new KTypeVTypeProcedure<KType, VType>()
+    {
+        public void apply(KType key, VType value)
+        {
+            evictedKeys.add(key);
+        }
+    };
+
+    /**
+     * Convert to target type from an integer used to test stuff.
+     */
+    protected VType vcast(int value)
+    {
+        /*! #if ($TemplateOptions.VTypePrimitive)
+            return (VType) value;
+            #else !*/
+            @SuppressWarnings("unchecked")
+            VType v = (VType)(Object) value;
+            return v;
+        /*! #end !*/
+    }
+
+    /* */
+    @Test
+    public void testSecondChance()
+    {
+        final KTypeVTypeClockCache<KType, VType> cache = new KTypeVTypeClockCache<>(3, 1, listener);
+        cache.put(key1, value1);
+        cache.put(key2, value2);
+        cache.put(key3, value3);
+        assertEquals2(value1, cache.get(key1));
+        assertEquals2(value1, cache.get(key1));
+        assertEquals(1, cache.frequency(key1));
+
+        // key1 gets a second chance, key2 is evicted.
+        cache.put(key4, value4);
+        assertEquals(KTypeArrayList.from(key2), evictedKeys);
+        assertEquals(0, cache.frequency(key1));
+        assertEquals(-1, cache.frequency(key2));
+
+        cache.put(key5, value1);
+        cache.put(key6, value1);
+        assertEquals(KTypeArrayList.from(key2, key3, key1), evictedKeys);
+
+        assertEquals(2, cache.hits());
+        assertEquals(0, cache.misses());
+        assertEquals(3, cache.evictions());
+    }
+
+    /* */
+    @Test
+    public void testFrequentKeysRetained()
+    {
+        final KTypeVTypeClockCache<KType, VType> cache = new KTypeVTypeClockCache<>(2, 3, listener);
+        cache.put(keyE, value1);
+        for (int i = 0; i < 5; i++)
+        {
+            assertEquals2(value1, cache.get(keyE));
+        }
+        assertEquals(3, cache.frequency(keyE));
+
+        // Each new key evicts the previous one, while keyE uses up its accesses.
+        for (int i = 1; i <= 4; i++)
+        {
+            cache.put(cast(i), value2);
+        }
+        assertTrue(cache.containsKey(keyE));
+        assertEquals(KTypeArrayList.from(key1, key2, key3), evictedKeys);
+
+        cache.put(key5, value3);
+        assertFalse(cache.containsKey(keyE));
+        assertEquals(2, cache.size());
+    }
+
+    /* */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxFrequency()
+    {
+        new KTypeVTypeClockCache<KType, VType>(10, 0, null);
+    }
+
+    /* */
+    @Test
+    public void testBoundedAgainstReference()
+    {
+        final int capacity = randomIntBetween(1, 50);
+        final KTypeVTypeClockCache<KType, VType> cache =
+            new KTypeVTypeClockCache<>(capacity, randomIntBetween(1, 5), listener);
+        final KTypeVTypeOpenHashMap<KType, VType> values = new KTypeVTypeOpenHashMap<>();
+
+        int gets = 0;
+        for (int round = 0; round < 10000; round++)
+        {
+            final KType key = cast(randomIntBetween(0, 100));
+            switch (randomIntBetween(0, 2))
+            {
+                case 0:
+                    gets++;
+                    assertEquals2(values.get(key), cache.get(key));
+                    break;
+                case 1:
+                    final VType value = vcast(round);
+                    final int evicted = evictedKeys.size();
+                    cache.put(key, value);
+                    values.put(key, value);
+                    if (evictedKeys.size() > evicted)
+                    {
+                        assertEquals(evicted + 1, evictedKeys.size());
+                        assertTrue(values.containsKey(evictedKeys.get(evicted)));
+                        values.remove(evictedKeys.get(evicted));
+                    }
+                    break;
+                case 2:
+                    assertEquals2(values.remove(key), cache.remove(key));
+                    break;
+            }
+
+            assertTrue(cache.size() <= capacity);
+            assertEquals(values.size(), cache.size());
+        }
+
+        assertEquals(gets, cache.hits() + cache.misses());
+        assertEquals(evictedKeys.size(), cache.evictions());
+    }
+}
@@ -0,0 +1,227 @@
+package com.carrotsearch.hppc;
+
+import static com.carrotsearch.hppc.TestUtils.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.*;
+
+import com.carrotsearch.hppc.functions.*;
+import com.carrotsearch.hppc.predicates.*;
+import com.carrotsearch.hppc.procedures.*;
+
+/**
+ * Tests for {@link KTypeVTypeConcurrentHashMap}.
+ */
+/* ! ${TemplateOptions.generatedAnnotation} ! */
+public class KTypeVTypeConcurrentHashMapTest<KType, VType> extends AbstractKTypeTest<KType>
+{
+    /**
+     * Convert to target type from an integer used to test stuff.
+     */
+    protected VType vcast(int value)
+    {
+        /*! #if ($TemplateOptions.VTypePrimitive)
+            return (VType) value;
+            #else !*/
+            @SuppressWarnings("unchecked")
+            VType v = (VType)(Object) value;
+            return v;
+        /*! #end !*/
+    }
+
+    /* */
+    @Test
+    public void testAgainstReferenceMap()
+    {
+        final int size = randomIntBetween(10, 100);
+        final KTypeVTypeOpenHashMap<KType, VType> reference = new KTypeVTypeOpenHashMap<>();
+        final KTypeVTypeConcurrentHashMap<KType, VType> map =
+            new KTypeVTypeConcurrentHashMap<>(randomIntBetween(0, 100), 0.75, randomIntBetween(1, 64));
+
+        for (int round = 0; round < size * 10; round++)
+        {
+            KType key = cast(randomIntBetween(0, size));
+            VType value = vcast(randomIntBetween(0, 100));
+            switch (randomIntBetween(0, 3))
+            {
+                case 0:
+                    assertEquals2(reference.put(key, value), map.put(key, value));
+                    break;
+                case 1:
+                    assertEquals(reference.putIfAbsent(key, value), map.putIfAbsent(key, value));
+                    break;
+                case 2:
+                    assertEquals2(reference.remove(key), map.remove(key));
+                    break;
+                default:
+                    assertEquals(reference.containsKey(key), map.containsKey(key));
+                    assertEquals2(reference.get(key), map.get(key));
+                    assertEquals2(reference.getOrDefault(key, value), map.getOrDefault(key, value));
+                    break;
+            }
+            assertEquals(reference.size(), map.size());
+            assertEquals(reference.isEmpty(), map.isEmpty());
+        }
+
+        assertEquals(reference, map.toMap());
+
+        final KTypeVTypeOpenHashMap<KType, VType> visited = new KTypeVTypeOpenHashMap<>();
+        map.forEach(new KTypeVTypeProcedure<KType, VType>()
+        {
+            @Override
+            public void apply(KType key, VType value)
+            {
+                assertTrue(visited.putIfAbsent(key, value));
+            }
+        });
+        assertEquals(reference, visited);
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(0, map.size());
+    }
+
+    /* */
+    @Test
+    public void testForEachPredicateStops()
+    {
+        final KTypeVTypeConcurrentHashMap<KType, VType> map = new KTypeVTypeConcurrentHashMap<>(10, 0.75, 4);
+        for (int i = 1; i <= 10; i++)
+        {
+            map.put(cast(i), vcast(i));
+        }
+
+        final int [] calls = new int [1];
+        map.forEach(new KTypeVTypePredicate<KType, VType>()
+        {
+            @Override
+            public boolean apply(KType key, VType value)
+            {
+                return ++calls[0] < 3;
+            }
+        });
+        assertEquals(3, calls[0]);
+    }
+
+    /* */
+    @Test
+    public void testRemoveAllWithPredicate()
+    {
+        final KTypeVTypeConcurrentHashMap<KType, VType> map = new KTypeVTypeConcurrentHashMap<>(10, 0.75, 4);
+        for (int i = 1; i <= 10; i++)
+        {
+            map.put(cast(i), vcast(i));
+        }
+
+        assertEquals(2, map.removeAll(new KTypeVTypePredicate<KType, VType>()
+        {
+            @Override
+            public boolean apply(KType key, VType value)
+            {
+                return Intrinsics.<KType> equals(key, key1) || Intrinsics.<KType> equals(key, key2);
+            }
+        }));
+        assertEquals(8, map.size());
+        assertFalse(map.containsKey(key1));
+        assertTrue(map.containsKey(key3));
+    }
+
+    /* */
+    @Test
+    public void testComputeIfAbsent()
+    {
+        final KTypeVTypeConcurrentHashMap<KType, VType> map = new KTypeVTypeConcurrentHashMap<>();
+        final KTypeVTypeFunction<KType, VType> function = new KTypeVTypeFunction<KType, VType>()
+        {
+            @Override
+            public VType apply(KType key)
+            {
+                return vcast(7);
+            }
+        };
+
+        assertEquals2(vcast(7), map.computeIfAbsent(key1, function));
+        map.put(key1, vcast(1));
+        assertEquals2(vcast(1), map.computeIfAbsent(key1, function));
+    }
+
+    /* */
+    @Test
+    public void testInvalidConcurrencyLevel()
+    {
+        try
+        {
+            new KTypeVTypeConcurrentHashMap<KType, VType>(10, 0.75, 0);
+            fail();
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Expected.
+        }
+    }
+
+    /*! #if ($TemplateOptions.VTypePrimitive) !*/
+    /* */
+    @Test
+    public void testConcurrentAddTo() throws Exception
+    {
+        final int threads = randomIntBetween(2, 4);
+        final int rounds = 25;
+        final int keys = randomIntBetween(1, 100);
+        final KTypeVTypeConcurrentHashMap<KType, VType> map =
+            new KTypeVTypeConcurrentHashMap<>(0, 0.75, randomIntBetween(1, 8));
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final Thread [] workers = new Thread [threads];
+        for (int t = 0; t < threads; t++)
+        {
+            workers[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for (int round = 0; round < rounds; round++)
+                        {
+                            for (int i = 0; i < keys; i++)
+                            {
+                                if ((i & 1) == 0)
+                                {
+                                    map.addTo(cast(i), vcast(1));
+                                }
+                                else
+                                {
+                                    map.putOrAdd(cast(i), vcast(1), vcast(1));
+                                }
+                            }
+                        }
+                    }
+                    catch (Throwable e)
+                    {
+                        error.set(e);
+                    }
+                }
+            };
+            workers[t].start();
+        }
+
+        start.countDown();
+        for (Thread worker : workers)
+        {
+            worker.join();
+        }
+
+        assertNull(error.get());
+        assertEquals(keys, map.size());
+        for (int i = 0; i < keys; i++)
+        {
+            assertEquals2(vcast(threads * rounds), map.get(cast(i)));
+        }
+    }
+    /*! #end !*/
+}
@@ -0,0 +1,137 @@
+package com.carrotsearch.hppc;
+
+import static com.carrotsearch.hppc.TestUtils.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.*;
+
+import com.carrotsearch.hppc.cursors.*;
+
+/*! #if ($TemplateOptions.anyGeneric) $TemplateOptions.setIgnored(true) #end !*/
+/**
+ * Tests for {@link KTypeVTypeHashMapSnapshot}.
+ */
+/* ! ${TemplateOptions.generatedAnnotation} ! */
+public class KTypeVTypeHashMapSnapshotTest<KType, VType> extends AbstractKTypeTest<KType>
+{
+    /**
+     * Convert to target type from an integer used to test stuff.
+     */
+    protected VType vcast(int value)
+    {
+        /*! #if ($TemplateOptions.VTypePrimitive)
+            return (VType) value;
+            #else !*/
+            @SuppressWarnings("unchecked")
+            VType v = (VType)(Object) value;
+            return v;
+        /*! #end !*/
+    }
+
+    private KTypeVTypeHashMapSnapshot<KType, VType> writeAndOpen(KTypeVTypeOpenHashMap<KType, VType> map, int prefix) throws IOException
+    {
+        File file = newTempFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE))
+        {
+            channel.write(ByteBuffer.allocate(prefix));
+            KTypeVTypeHashMapSnapshot.write(map, channel);
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            if (prefix == 0)
+            {
+                return KTypeVTypeHashMapSnapshot.open(channel);
+            }
+            return KTypeVTypeHashMapSnapshot.open(channel, prefix);
+        }
+    }
+
+    /* */
+    @Test
+    public void testWriteAndOpen() throws IOException
+    {
+        final int max = randomIntBetween(0, 100);
+        final KTypeVTypeOpenHashMap<KType, VType> map = new KTypeVTypeOpenHashMap<>();
+        for (int i = 0; i < max; i++)
+        {
+            map.put(cast(randomIntBetween(0, 100)), vcast(i));
+        }
+        if (randomBoolean())
+        {
+            map.put(keyE, vcast(7));
+        }
+
+        final KTypeVTypeHashMapSnapshot<KType, VType> snapshot = writeAndOpen(map, randomIntBetween(0, 10));
+        assertEquals(map.size(), snapshot.size());
+        assertEquals(map.isEmpty(), snapshot.isEmpty());
+        for (int i = 0; i <= 101; i++)
+        {
+            final KType key = cast(i);
+            assertEquals(map.containsKey(key), snapshot.containsKey(key));
+            assertEquals2(map.get(key), snapshot.get(key));
+            assertEquals2(map.getOrDefault(key, vcast(3)), snapshot.getOrDefault(key, vcast(3)));
+        }
+
+        int count = 0;
+        for (KTypeVTypeCursor<KType, VType> c : snapshot)
+        {
+            assertTrue(map.containsKey(c.key));
+            assertEquals2(map.get(c.key), c.value);
+            count++;
+        }
+        assertEquals(map.size(), count);
+        assertEquals(map, snapshot.toMap());
+    }
+
+    /* */
+    @Test
+    public void testTypeMismatch() throws IOException
+    {
+        final KTypeOpenHashSet<KType> set = KTypeOpenHashSet.from(key1, key2);
+        final File file = newTempFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE))
+        {
+            KTypeHashSetSnapshot.write(set, channel);
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            KTypeVTypeHashMapSnapshot<KType, VType> snapshot = KTypeVTypeHashMapSnapshot.open(channel);
+            fail("Unexpectedly opened: " + snapshot.size());
+        }
+        catch (IOException e)
+        {
+            // Expected.
+        }
+    }
+
+    /* */
+    @Test
+    public void testTruncated() throws IOException
+    {
+        final KTypeVTypeOpenHashMap<KType, VType> map = new KTypeVTypeOpenHashMap<>();
+        map.put(key1, vcast(1));
+        final File file = newTempFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE))
+        {
+            KTypeVTypeHashMapSnapshot.write(map, channel);
+            channel.truncate(channel.size() - 1);
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            KTypeVTypeHashMapSnapshot<KType, VType> snapshot = KTypeVTypeHashMapSnapshot.open(channel);
+            fail("Unexpectedly opened: " + snapshot.size());
+        }
+        catch (IOException e)
+        {
+            // Expected.
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.carrotsearch.hppc;
+
+import static com.carrotsearch.hppc.TestUtils.*;
+
+import org.junit.*;
+
+import com.carrotsearch.hppc.procedures.*;
+
+/**
+ * Tests for {@link KTypeVTypeLRUCache}.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeLRUCacheTest<KType, VType> extends AbstractKTypeTest<KType>
+{
+    protected VType value1 = vcast(1);
+    protected VType value2 = vcast(2);
+    protected VType value3 = vcast(3);
+    protected VType value4 = vcast(4);
+
+    /**
+     * Evicted keys, in eviction order.
+     */
+    protected final KTypeArrayList<KType> evictedKeys = new KTypeArrayList<>();
+
+    /**
+     * Evicted values, in eviction order.
+     */
+    protected final KTypeArrayList<VType> evictedValues = new KTypeArrayList<VType>();
+
+    protected final KTypeVTypeProcedure<KType, VType> listener = new KTypeVTypeProcedure<KType, VType>()
+    {
+        public void apply(KType key, VType value)
+        {
+            evictedKeys.add(key);
+            evictedValues.add(value);
+        }
+    };
+
+    /**
+     * Convert to target type from an integer used to test stuff.
+     */
+    protected VType vcast(int value)
+    {
+        /*! #if ($TemplateOptions.VTypePrimitive)
+            return (VType) value;
+            #else !*/
+            @SuppressWarnings("unchecked")
+            VType v = (VType)(Object) value;
+            return v;
+        /*! #end !*/
+    }
+
+    /* */
+    @Test
+    public void testEvictsLeastRecentlyUsed()
+    {
+        final KTypeVTypeLRUCache<KType, VType> cache = new KTypeVTypeLRUCache<>(3, listener);
+        cache.put(key1, value1);
+        cache.put(key2, value2);
+        cache.put(key3, value3);
+        assertEquals2(value1, cache.get(key1));
+
+        cache.put(key4, value4);
+        assertEquals(3, cache.size());
+        assertFalse(cache.containsKey(key2));
+        assertEquals(KTypeArrayList.from(key2), evictedKeys);
+        assertEquals2(value2, evictedValues.get(0));
+        assertEquals2(key3, cache.eldestKey());
+
+        // Replacing a value refreshes the key.
+        assertEquals2(value3, cache.put(key3, value4));
+        cache.put(key5, value1);
+        assertEquals(KTypeArrayList.from(key2, key1), evictedKeys);
+
+        assertEquals(1, cache.hits());
+        assertEquals(0, cache.misses());
+        assertEquals(2, cache.evictions());
+    }
+
+    /* */
+    @Test
+    public void testStatistics()
+    {
+        final KTypeVTypeLRUCache<KType, VType> cache = new KTypeVTypeLRUCache<>(1);
+        cache.put(keyE, value1);
+        assertEquals2(value1, cache.get(keyE));
+        assertEquals2(value2, cache.getOrDefault(key1, value2));
+        assertTrue(cache.containsKey(keyE));
+
+        cache.put(key1, value3);
+        assertFalse(cache.containsKey(keyE));
+        assertEquals2(value3, cache.remove(key1));
+        assertEquals(0, cache.size());
+
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.evictions());
+        assertEquals(1, cache.capacity());
+    }
+
+    /* */
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroCapacity()
+    {
+        new KTypeVTypeLRUCache<KType, VType>(0);
+    }
+
+    /* */
+    @Test
+    public void testAgainstReference()
+    {
+        final int capacity = randomIntBetween(1, 50);
+        final KTypeVTypeLRUCache<KType, VType> cache = new KTypeVTypeLRUCache<>(capacity, listener);
+        final KTypeVTypeOpenHashMap<KType, VType> values = new KTypeVTypeOpenHashMap<>();
+        final KTypeArrayList<KType> recency = new KTypeArrayList<>();
+
+        for (int round = 0; round < 10000; round++)
+        {
+            final KType key = cast(randomIntBetween(0, 100));
+            if (randomBoolean())
+            {
+                final boolean contained = values.containsKey(key);
+                assertEquals2(values.get(key), cache.get(key));
+                if (contained)
+                {
+                    recency.removeFirst(key);
+                    recency.add(key);
+                }
+            }
+            else
+            {
+                final VType value = vcast(round);
+                if (!values.containsKey(key) && values.size() == capacity)
+                {
+                    final KType eldest = recency.remove(0);
+                    values.remove(eldest);
+                    cache.put(key, value);
+                    assertEquals2(eldest, evictedKeys.get(evictedKeys.size() - 1));
+                }
+                else
+                {
+                    cache.put(key, value);
+                }
+                values.put(key, value);
+                recency.removeFirst(key);
+                recency.add(key);
+            }
+
+            assertEquals(values.size(), cache.size());
+        }
+
+        assertEquals(evictedKeys.size(), cache.evictions());
+        for (int i = 0; i < recency.size(); i++)
+        {
+            assertTrue(cache.containsKey(recency.get(i)));
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.carrotsearch.hppc;
+
+import static com.carrotsearch.hppc.TestUtils.*;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.*;
+
+import com.carrotsearch.hppc.cursors.*;
+import com.carrotsearch.hppc.predicates.*;
+import com.carrotsearch.hppc.procedures.*;
+
+/**
+ * Tests for {@link KTypeVTypeLinkedOpenHashMap}. Runs all tests of
+ * {@link KTypeVTypeOpenHashMapTest} against the linked variant.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeLinkedOpenHashMapTest<KType, VType> extends KTypeVTypeOpenHashMapTest<KType, VType>
+{
+    public KTypeVTypeLinkedOpenHashMapTest()
+    {
+        map = new KTypeVTypeLinkedOpenHashMap<>();
+    }
+
+    /**
+     * Every entry must be linked exactly once, with consistent links in both
+     * directions.
+     */
+    @After
+    public void checkLinks()
+    {
+        if (map != null && map instanceof KTypeVTypeLinkedOpenHashMap)
+        {
+            final KTypeVTypeLinkedOpenHashMap<KType, VType> linked = (KTypeVTypeLinkedOpenHashMap<KType, VType>) map;
+            final boolean [] seen = new boolean [linked.mask + 2];
+            int count = 0;
+            int previous = -1;
+            for (int slot = linked.firstIndex(); slot >= 0; slot = linked.next[slot])
+            {
+                assertFalse(seen[slot]);
+                seen[slot] = true;
+                assertEquals(previous, linked.prev[slot]);
+                previous = slot;
+                count++;
+            }
+            assertEquals(previous, linked.lastIndex());
+            assertEquals(linked.size(), count);
+
+            for (int slot = 0; slot <= linked.mask; slot++)
+            {
+                assertEquals(!Intrinsics.<KType> isEmpty(linked.keys[slot]), seen[slot]);
+            }
+            assertEquals(linked.hasEmptyKey, seen[linked.mask + 1]);
+        }
+    }
+
+    private KTypeVTypeLinkedOpenHashMap<KType, VType> linked()
+    {
+        return (KTypeVTypeLinkedOpenHashMap<KType, VType>) map;
+    }
+
+    private void assertOrder(KTypeArrayList<KType> expected)
+    {
+        assertEquals(expected.size(), map.size());
+
+        int i = 0;
+        for (KTypeVTypeCursor<KType, VType> c : map)
+        {
+            assertEquals2(expected.get(i++), c.key);
+        }
+
+        i = 0;
+        for (KTypeCursor<KType> c : map.keys())
+        {
+            assertEquals2(expected.get(i++), c.value);
+        }
+    }
+
+    /* */
+    @Test
+    public void testInsertionOrder()
+    {
+        map.put(key3, value1);
+        map.put(key1, value2);
+        map.put(keyE, value3);
+        map.put(key2, value4);
+
+        // Replacing a value does not move the key.
+        map.put(key3, value4);
+
+        assertOrder(KTypeArrayList.from(key3, key1, keyE, key2));
+        assertEquals2(key3, linked().firstKey());
+        assertEquals2(key2, linked().lastKey());
+
+        final KTypeArrayList<VType> values = new KTypeArrayList<VType>();
+        for (KTypeCursor<VType> c : map.values())
+        {
+            values.add(c.value);
+        }
+        final KTypeArrayList<VType> expected = new KTypeArrayList<VType>();
+        expected.add(value4, value2);
+        expected.add(value3, value4);
+        assertEquals(expected, values);
+    }
+
+    /* */
+    @Test
+    public void testForEachInInsertionOrder()
+    {
+        map.put(key2, value1);
+        map.put(keyE, value2);
+        map.put(key1, value3);
+
+        final KTypeArrayList<KType> keys = new KTypeArrayList<>();
+        map.forEach(new KTypeVTypeProcedure<KType, VType>()
+        {
+            public void apply(KType key, VType value)
+            {
+                keys.add(key);
+            }
+        });
+        assertEquals(KTypeArrayList.from(key2, keyE, key1), keys);
+
+        keys.clear();
+        map.forEach(new KTypeVTypePredicate<KType, VType>()
+        {
+            public boolean apply(KType key, VType value)
+            {
+                keys.add(key);
+                return keys.size() < 2;
+            }
+        });
+        assertEquals(KTypeArrayList.from(key2, keyE), keys);
+    }
+
+    /* */
+    @Test
+    public void testMoveToFirstAndLast()
+    {
+        map.put(key1, value1);
+        map.put(key2, value2);
+        map.put(key3, value3);
+        map.put(keyE, value4);
+
+        assertTrue(linked().moveToFirst(key3));
+        assertOrder(KTypeArrayList.from(key3, key1, key2, keyE));
+
+        assertTrue(linked().moveToLast(key1));
+        assertOrder(KTypeArrayList.from(key3, key2, keyE, key1));
+
+        assertTrue(linked().moveToFirst(keyE));
+        assertOrder(KTypeArrayList.from(keyE, key3, key2, key1));
+
+        assertTrue(linked().moveToLast(key1));
+        assertTrue(linked().moveToFirst(keyE));
+        assertOrder(KTypeArrayList.from(keyE, key3, key2, key1));
+
+        assertFalse(linked().moveToFirst(key4));
+        assertFalse(linked().moveToLast(key4));
+    }
+
+    /* */
+    @Test
+    public void testIndexRemove()
+    {
+        map.put(key1, value1);
+        map.put(keyE, value2);
+        map.put(key2, value3);
+
+        assertEquals2(value1, linked().indexRemove(linked().firstIndex()));
+        assertEquals2(value3, linked().indexRemove(linked().lastIndex()));
+        assertOrder(KTypeArrayList.from(keyE));
+
+        assertEquals2(value2, linked().indexRemove(linked().firstIndex()));
+        assertEquals(0, map.size());
+        assertTrue(linked().firstIndex() < 0);
+        assertTrue(linked().lastIndex() < 0);
+    }
+
+    /* */
+    @Test
+    public void testRemoveAllKeepsOrder()
+    {
+        final KTypeOpenHashSet<KType> toRemove = new KTypeOpenHashSet<>();
+        final KTypeArrayList<KType> expected = new KTypeArrayList<>();
+        for (int i = 100; i >= 0; i--)
+        {
+            map.put(cast(i), vcast(i));
+            if (i % 3 == 0)
+            {
+                toRemove.add(cast(i));
+            }
+            else
+            {
+                expected.add(cast(i));
+            }
+        }
+
+        map.removeAll(new KTypePredicate<KType>()
+        {
+            public boolean apply(KType key)
+            {
+                return toRemove.contains(key);
+            }
+        });
+        assertOrder(expected);
+    }
+
+    /* */
+    @Test
+    public void testOrderAgainstReference()
+    {
+        final KTypeArrayList<KType> reference = new KTypeArrayList<>();
+        final int size = randomIntBetween(100, 2000);
+        for (int round = 0; round < size * 10; round++)
+        {
+            final KType key = cast(randomIntBetween(0, size));
+            switch (randomIntBetween(0, 5))
+            {
+                case 0:
+                case 1:
+                    map.put(key, vcast(round));
+                    if (reference.indexOf(key) < 0)
+                    {
+                        reference.add(key);
+                    }
+                    break;
+                case 2:
+                    map.putIfAbsent(key, vcast(round));
+                    if (reference.indexOf(key) < 0)
+                    {
+                        reference.add(key);
+                    }
+                    break;
+                case 3:
+                    map.remove(key);
+                    reference.removeFirst(key);
+                    break;
+                case 4:
+                    if (linked().moveToFirst(key))
+                    {
+                        reference.removeFirst(key);
+                        reference.insert(0, key);
+                    }
+                    break;
+                case 5:
+                    if (linked().moveToLast(key))
+                    {
+                        reference.removeFirst(key);
+                        reference.add(key);
+                    }
+                    break;
+            }
+        }
+
+        assertOrder(reference);
+    }
+
+    /* */
+    @Test
+    public void testOrderPreservedAcrossRehashAndClone()
+    {
+        final KTypeArrayList<KType> expected = new KTypeArrayList<>();
+        map.put(keyE, value0);
+        expected.add(keyE);
+        for (int i = 100; i > 0; i--)
+        {
+            map.put(cast(i), vcast(i));
+            expected.add(cast(i));
+        }
+        map.ensureCapacity(1000);
+        assertOrder(expected);
+
+        final KTypeVTypeLinkedOpenHashMap<KType, VType> cloned = linked().clone();
+        map.clear();
+        assertEquals(0, map.size());
+
+        map = cloned;
+        assertOrder(expected);
+
+        map.release();
+        map.put(key1, value1);
+        assertOrder(KTypeArrayList.from(key1));
+    }
+
+    /**
+     * Incremental and parallel rehashing are ignored: buffers are rehashed at
+     * once and entries keep their insertion order.
+     */
+    @Test
+    public void testIncrementalAndParallelRehashIgnored()
+    {
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try
+        {
+            map.setIncrementalRehash(16);
+            map.setParallelRehash(pool);
+            map.parallelRehashMinSlots = 0;
+
+            final KTypeArrayList<KType> expected = new KTypeArrayList<>();
+            for (int i = 1; i < 100; i++)
+            {
+                map.put(cast(i), vcast(i));
+                expected.add(cast(i));
+                assertNull(map.rehashKeys);
+            }
+            assertOrder(expected);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.carrotsearch.hppc;
+
+import static com.carrotsearch.hppc.TestUtils.*;
+
+import org.assertj.core.api.Assertions;
+import org.junit.*;
+
+import com.carrotsearch.hppc.cursors.*;
+import com.carrotsearch.hppc.functions.*;
+import com.carrotsearch.hppc.mutables.IntHolder;
+
+/*! #if ($TemplateOptions.anyGeneric) $TemplateOptions.setIgnored(true) #end !*/
+/**
+ * Tests for {@link KTypeVTypeOffHeapHashMap}.
+ */
+/* ! ${TemplateOptions.generatedAnnotation} ! */
+public class KTypeVTypeOffHeapHashMapTest<KType, VType> extends AbstractKTypeTest<KType>
+{
+    protected VType value0 = vcast(0);
+    protected VType value1 = vcast(1);
+    protected VType value2 = vcast(2);
+    protected VType value3 = vcast(3);
+
+    /**
+     * Per-test fresh initialized instance.
+     */
+    public KTypeVTypeOffHeapHashMap<KType, VType> map = new KTypeVTypeOffHeapHashMap<>();
+
+    @After
+    public void checkAssignedSlots()
+    {
+        if (map != null)
+        {
+            int occupied = 0;
+            for (long i = 0; i <= map.mask; i++)
+            {
+                if (!Intrinsics.<KType> isEmpty(map.keys.get(i)))
+                {
+                    occupied++;
+                }
+            }
+            assertEquals(occupied, map.assigned);
+        }
+    }
+
+    /**
+     * Convert to target type from an integer used to test stuff.
+     */
+    protected VType vcast(int value)
+    {
+        /*! #if ($TemplateOptions.VTypePrimitive)
+            return (VType) value;
+            #else !*/
+            @SuppressWarnings("unchecked")
+            VType v = (VType)(Object) value;
+            return v;
+        /*! #end !*/
+    }
+
+    /**
+     * A map with tiny off-heap pages so that even small maps span many pages.
+     */
+    private static <KType, VType> KTypeVTypeOffHeapHashMap<KType, VType> newPagedMap()
+    {
+        return new KTypeVTypeOffHeapHashMap<KType, VType>() {
+            @Override
+            protected int pageShift() {
+                return 3;
+            }
+        };
+    }
+
+    /* */
+    @Test
+    public void testPutGetRemove()
+    {
+        assertEquals2(value0, map.put(key1, value1));
+        assertEquals2(value1, map.put(key1, value2));
+        assertEquals2(value0, map.put(key2, value1));
+
+        assertEquals(2, map.size());
+        assertTrue(map.containsKey(key1));
+        assertFalse(map.containsKey(key3));
+        assertEquals2(value2, map.get(key1));
+        assertEquals2(value3, map.getOrDefault(key3, value3));
+
+        assertEquals2(value2, map.remove(key1));
+        assertEquals2(value0, map.remove(key1));
+        assertEquals(1, map.size());
+    }
+
+    /* */
+    @Test
+    public void testEmptyKey()
+    {
+        assertFalse(map.containsKey(keyE));
+        assertEquals2(value0, map.put(keyE, value1));
+        assertTrue(map.containsKey(keyE));
+        assertEquals2(value1, map.get(keyE));
+        assertEquals(1, map.size());
+
+        IntHolder count = new IntHolder();
+        for (KTypeVTypeCursor<KType, VType> c : map)
+        {
+            assertEquals2(keyE, c.key);
+            assertEquals2(value1, c.value);
+            assertEquals(map.mask + 1, c.index);
+            count.value++;
+        }
+        assertEquals(1, count.value);
+
+        assertEquals2(value1, map.remove(keyE));
+        assertFalse(map.containsKey(keyE));
+        assertEquals(0, map.size());
+    }
+
+    /* */
+    @Test
+    public void testPutIfAbsentAndPutOrAdd()
+    {
+        assertTrue(map.putIfAbsent(key1, value1));
+        assertFalse(map.putIfAbsent(key1, value2));
+        assertTrue(map.putIfAbsent(keyE, value1));
+        assertFalse(map.putIfAbsent(keyE, value2));
+
+        assertEquals2(vcast(3), map.putOrAdd(key1, value0, value2));
+        assertEquals2(vcast(3), map.putOrAdd(keyE, value0, value2));
+        assertEquals2(value2, map.putOrAdd(key2, value2, value1));
+        assertEquals2(value3, map.addTo(key2, value1));
+        assertEquals(3, map.size());
+    }
+
+    /* */
+    @Test
+    public void testComputeIfAbsent()
+    {
+        final IntHolder calls = new IntHolder();
+        KTypeVTypeFunction<KType, VType> function = new KTypeVTypeFunction<KType, VType>() {
+            @Override
+            public VType apply(KType key) {
+                calls.value++;
+                return value2;
+            }
+        };
+
+        assertEquals2(value2, map.computeIfAbsent(key1, function));
+        assertEquals2(value2, map.computeIfAbsent(key1, function));
+        assertEquals2(value2, map.computeIfAbsent(keyE, function));
+        assertEquals2(value2, map.computeIfAbsent(keyE, function));
+        assertEquals(2, calls.value);
+    }
+
+    /* */
+    @Test
+    public void testIndexMethods()
+    {
+        map.put(keyE, value1);
+        map.put(key1, value2);
+
+        Assertions.assertThat(map.indexOf(keyE)).isNotNegative();
+        Assertions.assertThat(map.indexOf(key1)).isNotNegative();
+        Assertions.assertThat(map.indexOf(key2)).isNegative();
+
+        assertEquals2(value1, map.indexGet(map.indexOf(keyE)));
+        assertEquals2(value2, map.indexGet(map.indexOf(key1)));
+
+        assertEquals2(value1, map.indexReplace(map.indexOf(keyE), value3));
+        assertEquals2(value3, map.indexGet(map.indexOf(keyE)));
+
+        map.indexInsert(map.indexOf(key2), key2, value1);
+        assertEquals2(value1, map.indexGet(map.indexOf(key2)));
+        assertEquals(3, map.size());
+    }
+
+    /* */
+    @Test
+    public void testAgainstReferenceMap()
+    {
+        final int size = randomIntBetween(100, 2000);
+        final KTypeVTypeOpenHashMap<KType, VType> reference = new KTypeVTypeOpenHashMap<>();
+        map = newPagedMap();
+
+        for (int round = 0; round < size * 10; round++)
+        {
+            KType key = cast(randomIntBetween(0, size));
+            switch (randomIntBetween(0, 3))
+            {
+                case 0:
+                case 1:
+                    VType value = vcast(round);
+                    assertEquals2(reference.put(key, value), map.put(key, value));
+                    break;
+                case 2:
+                    assertEquals2(reference.addTo(key, value1), map.addTo(key, value1));
+                    break;
+                default:
+                    assertEquals(reference.containsKey(key), map.containsKey(key));
+                    assertEquals2(reference.remove(key), map.remove(key));
+                    break;
+            }
+            assertEquals(reference.size(), map.size());
+        }
+
+        for (KTypeVTypeCursor<KType, VType> c : map)
+        {
+            assertTrue(reference.containsKey(c.key));
+            assertEquals2(reference.get(c.key), c.value);
+        }
+
+        for (KTypeVTypeCursor<KType, VType> c : reference)
+        {
+            assertEquals2(c.value, map.get(c.key));
+        }
+    }
+
+    /* */
+    @Test
+    public void testEnsureCapacity()
+    {
+        final IntHolder expands = new IntHolder();
+        KTypeVTypeOffHeapHashMap<KType, VType> map = new KTypeVTypeOffHeapHashMap<KType, VType>(0) {
+          @Override
+          protected void allocateBuffers(long arraySize) {
+            super.allocateBuffers(arraySize);
+            expands.value++;
+          }
+        };
+
+        final int additions = randomIntBetween(1, 5000);
+        map.ensureCapacity(additions);
+        final int before = expands.value;
+        for (int i = 0; i < additions; i++) {
+          map.put(cast(i), value1);
+        }
+        assertEquals(before, expands.value);
+    }
+
+    /* */
+    @Test
+    public void testClearAndRelease()
+    {
+        map.put(keyE, value1);
+        map.put(key1, value1);
+        map.put(key2, value1);
+        map.clear();
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(keyE));
+        assertFalse(map.containsKey(key1));
+
+        for (int i = 0; i < 1000; i++) {
+          map.put(cast(i), value1);
+        }
+        final long bufferSize = map.bufferSize();
+        map.release();
+        assertEquals(0, map.size());
+        assertTrue(map.bufferSize() < bufferSize);
+
+        map.put(key1, value2);
+        assertEquals2(value2, map.get(key1));
+    }
+
+    /* */
+    @Test
+    public void testRemoveAllAndViews()
+    {
+        map = newPagedMap();
+        for (int i = 0; i < 100; i++) {
+          map.put(cast(i), vcast(i % 3));
+        }
+
+        assertTrue(map.keys().contains(key1));
+        assertTrue(map.values().contains(value2));
+
+        final int removed = map.values().removeAll(value2);
+        assertTrue(removed > 0);
+        assertFalse(map.values().contains(value2));
+        assertEquals(map.size(), map.keys().size());
+        assertEquals(map.size(), map.keys().toArray().length);
+    }
+
+    /* */
+    @Test
+    public void testHashCodeEquals()
+    {
+        KTypeVTypeOffHeapHashMap<KType, VType> l0 = new KTypeVTypeOffHeapHashMap<>();
+        assertEquals(0, l0.hashCode());
+        assertEquals(l0, new KTypeVTypeOffHeapHashMap<>());
+
+        KTypeVTypeOffHeapHashMap<KType, VType> l1 = KTypeVTypeOffHeapHashMap.from(
+            newArray(key1, key2, key3),
+            newvArray(value1, value2, value3));
+
+        KTypeVTypeOffHeapHashMap<KType, VType> l2 = KTypeVTypeOffHeapHashMap.from(
+            newArray(key2, key1, key3),
+            newvArray(value2, value1, value3));
+
+        assertEquals(l1.hashCode(), l2.hashCode());
+        assertEquals(l1, l2);
+        assertFalse(l1.equals(l0));
+    }
+
+    /* */
+    @Test
+    public void testOffHeapArrayAcrossPages()
+    {
+        final int length = randomIntBetween(1, 100);
+        final KTypeOffHeapArray<KType> array = new KTypeOffHeapArray<KType>(length, randomIntBetween(0, 4));
+        assertEquals(length, array.length());
+        for (int i = 0; i < length; i++) {
+          assertEquals2(keyE, array.get(i));
+          array.set(i, cast(i));
+        }
+        for (int i = 0; i < length; i++) {
+          assertEquals2(cast(i), array.get(i));
+        }
+        array.fill(key1);
+        for (int i = 0; i < length; i++) {
+          assertEquals2(key1, array.get(i));
+        }
+    }
+
+    /**
+     * Create a new array of a given type and copy the arguments to this array.
+     */
+    protected final VType [] newvArray(VType... elements)
+    {
+        return elements;
+    }
+}
@@ -2,13 +2,20 @@ package com.carrotsearch.hppc;
 
 import static com.carrotsearch.hppc.TestUtils.*;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import org.assertj.core.api.Assertions;
 import org.junit.*;
 
+import com.carrotsearch.randomizedtesting.annotations.ThreadLeakLingering;
+
 import com.carrotsearch.hppc.cursors.*;
+import com.carrotsearch.hppc.functions.*;
 import com.carrotsearch.hppc.mutables.IntHolder;
 import com.carrotsearch.hppc.predicates.*;
 import com.carrotsearch.hppc.procedures.*;
@@ -204,6 +211,301 @@ public class KTypeVTypeOpenHashMapTest<KType, VType> extends AbstractKTypeTest<K
         assertEquals2(value3, map.getOrDefault(key1, value3));
     }
 
+    /* */
+    @Test
+    public void testGetAllAndContainsAll()
+    {
+        for (int i = randomIntBetween(0, 200); i > 0; i--)
+        {
+            map.put(cast(randomIntBetween(0, 200)), vcast(i));
+        }
+        if (randomBoolean())
+        {
+            map.put(keyE, value1);
+        }
+
+        final int [] ints = new int [randomIntBetween(0, 300)];
+        for (int i = 0; i < ints.length; i++)
+        {
+            ints[i] = randomIntBetween(0, 300);
+        }
+        final KType [] keys = asArray(ints);
+
+        final VType [] values = Intrinsics.<VType> newArray(keys.length);
+        final boolean [] contained = new boolean [keys.length];
+        final BitSet bits = new BitSet();
+        bits.set(keys.length + 1);
+        int expected = 0;
+        for (KType key : keys)
+        {
+            if (map.containsKey(key))
+            {
+                expected++;
+            }
+        }
+
+        assertEquals(expected, map.getAll(keys, values, value4));
+        assertEquals(expected, map.containsAll(keys, contained));
+        assertEquals(expected, map.containsAll(keys, bits));
+        for (int i = 0; i < keys.length; i++)
+        {
+            assertEquals2(map.getOrDefault(keys[i], value4), values[i]);
+            assertEquals(map.containsKey(keys[i]), contained[i]);
+            assertEquals(map.containsKey(keys[i]), bits.get(i));
+        }
+    }
+
+    /* */
+    @Test
+    public void testStats()
+    {
+        int rehashes = 0;
+        for (int i = randomIntBetween(0, 2000); i > 0; i--)
+        {
+            final int slots = map.keys.length;
+            map.put(cast(randomIntBetween(0, 5000)), value1);
+            if (map.keys.length != slots)
+            {
+                rehashes++;
+            }
+        }
+
+        final int mask = map.mask;
+        long probeLengthSum = 0;
+        int maxProbeLength = 0;
+        int clusters = 0;
+        for (int slot = 0; slot <= mask; slot++)
+        {
+            KType existing = Intrinsics.<KType> cast(map.keys[slot]);
+            if (!Intrinsics.<KType> isEmpty(existing))
+            {
+                final int probeLength = ((slot - map.hashKey(existing)) & mask) + 1;
+                probeLengthSum += probeLength;
+                maxProbeLength = Math.max(maxProbeLength, probeLength);
+                if (Intrinsics.<KType> isEmpty(map.keys[(slot - 1) & mask]))
+                {
+                    clusters++;
+                }
+            }
+        }
+
+        final HashContainerStats stats = map.stats();
+        assertEquals(mask + 1, stats.slots());
+        assertEquals(map.assigned, stats.assigned());
+        assertEquals(map.assigned == 0 ? 0 : probeLengthSum / (double) map.assigned, stats.averageProbeLength(), 1e-9);
+        assertEquals(maxProbeLength, stats.maxProbeLength());
+        int histogramClusters = 0;
+        for (int count : stats.clusterSizeHistogram())
+        {
+            histogramClusters += count;
+        }
+        assertEquals(clusters, histogramClusters);
+        assertEquals(rehashes, stats.rehashCount());
+    }
+
+    /* */
+    @Test
+    public void testIncrementalRehash()
+    {
+        final int size = randomIntBetween(100, 5000);
+        final KTypeVTypeOpenHashMap<KType, VType> reference = new KTypeVTypeOpenHashMap<>();
+        final KTypeVTypeOpenHashMap<KType, VType> incremental = new KTypeVTypeOpenHashMap<>();
+        incremental.setIncrementalRehash(randomIntBetween(1, 8));
+
+        boolean pending = false;
+        for (int round = 0; round < size * 5; round++)
+        {
+            KType key = cast(randomIntBetween(0, size));
+            VType value = vcast(round);
+            switch (randomIntBetween(0, 3))
+            {
+                case 0:
+                    assertEquals2(reference.get(key), incremental.get(key));
+                    assertEquals2(reference.remove(key), incremental.remove(key));
+                    break;
+                case 1:
+                    assertEquals(reference.putIfAbsent(key, value), incremental.putIfAbsent(key, value));
+                    break;
+                default:
+                    assertEquals(reference.containsKey(key), incremental.containsKey(key));
+                    assertEquals2(reference.put(key, value), incremental.put(key, value));
+                    break;
+            }
+            assertEquals(reference.size(), incremental.size());
+            pending |= incremental.rehashKeys != null;
+        }
+        assertTrue(pending);
+
+        for (int i = 0; i <= size; i++)
+        {
+            assertEquals2(reference.getOrDefault(cast(i), value1), incremental.getOrDefault(cast(i), value1));
+        }
+        assertEquals(reference, incremental);
+        assertEquals(reference.hashCode(), incremental.hashCode());
+        incremental.finishRehash();
+        assertNull(incremental.rehashKeys);
+        assertEquals(reference, incremental);
+    }
+
+    /**
+     * Read-only operations see the keys in both buffers of a pending incremental
+     * rehash and do not migrate them.
+     */
+    @Test
+    @ThreadLeakLingering(linger = 1000)
+    public void testReadOnlyDuringIncrementalRehash() throws InterruptedException
+    {
+        final KTypeVTypeOpenHashMap<KType, VType> reference = new KTypeVTypeOpenHashMap<>();
+        final KTypeVTypeOpenHashMap<KType, VType> incremental = new KTypeVTypeOpenHashMap<>();
+        incremental.setIncrementalRehash(1);
+        for (int i = 0; incremental.rehashKeys == null; i++)
+        {
+            reference.put(cast(i), vcast(i));
+            incremental.put(cast(i), vcast(i));
+        }
+        final int remaining = incremental.rehashRemaining;
+
+        assertEquals(reference, incremental);
+        assertEquals(incremental, reference);
+        assertEquals(reference.hashCode(), incremental.hashCode());
+        assertSameMap(incremental, reference);
+
+        int count = 0;
+        for (KTypeVTypeCursor<KType, VType> c : incremental)
+        {
+            assertEquals2(reference.get(c.key), c.value);
+            count++;
+        }
+        assertEquals(reference.size(), count);
+
+        final IntHolder visited = new IntHolder();
+        incremental.forEach(new KTypeVTypePredicate<KType, VType>()
+        {
+            public boolean apply(KType key, VType value)
+            {
+                visited.value++;
+                return true;
+            }
+        });
+        assertEquals(reference.size(), visited.value);
+
+        final KTypeArrayList<KType> keys = new KTypeArrayList<>();
+        incremental.keys().elementSpliterator().forEachRemaining(new KTypeProcedure<KType>()
+        {
+            public void apply(KType value)
+            {
+                keys.add(value);
+            }
+        });
+        Assertions.assertThat(keys.toArray()).containsOnly(reference.keys().toArray());
+        Assertions.assertThat(incremental.keys().toArray()).containsOnly(reference.keys().toArray()).hasSize(reference.size());
+        Assertions.assertThat(incremental.values().toArray()).containsOnly(reference.values().toArray()).hasSize(reference.size());
+
+        final KTypeSpliterator<VType> values = incremental.values().elementSpliterator();
+        final KTypeSpliterator<VType> prefix = values.trySplit();
+        visited.value = 0;
+        final KTypeProcedure<VType> counter = new KTypeProcedure<VType>()
+        {
+            public void apply(VType value)
+            {
+                visited.value++;
+            }
+        };
+        while (values.tryAdvance(counter)) {}
+        while (prefix != null && prefix.tryAdvance(counter)) {}
+        assertEquals(reference.size(), visited.value);
+
+        final int [] ints = new int [reference.size() * 2];
+        for (int i = 0; i < ints.length; i++)
+        {
+            ints[i] = i;
+        }
+        final KType [] lookups = asArray(ints);
+        final VType [] found = Intrinsics.<VType> newArray(lookups.length);
+        final boolean [] contained = new boolean [lookups.length];
+        assertEquals(reference.size(), incremental.getAll(lookups, found, value4));
+        assertEquals(reference.size(), incremental.containsAll(lookups, contained));
+        final BitSet bits = new BitSet();
+        assertEquals(reference.size(), incremental.containsAll(lookups, bits));
+        for (int i = 0; i < lookups.length; i++)
+        {
+            assertEquals2(reference.getOrDefault(lookups[i], value4), found[i]);
+            assertEquals(reference.containsKey(lookups[i]), contained[i]);
+            assertEquals(reference.containsKey(lookups[i]), bits.get(i));
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(randomIntBetween(1, 4));
+        try
+        {
+            final KTypeVTypeOpenHashMap<KType, VType> entries = new KTypeVTypeOpenHashMap<>();
+            incremental.parallelForEach(pool, new KTypeVTypeProcedure<KType, VType>()
+            {
+                public void apply(KType key, VType value)
+                {
+                    synchronized (entries)
+                    {
+                        assertFalse(entries.containsKey(key));
+                        entries.put(key, value);
+                    }
+                }
+            });
+            assertEquals(reference, entries);
+        }
+        finally
+        {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        assertNotNull(incremental.rehashKeys);
+        assertEquals(remaining, incremental.rehashRemaining);
+    }
+
+    /* */
+    @Test
+    @ThreadLeakLingering(linger = 1000)
+    public void testParallelRehash() throws InterruptedException
+    {
+        final ForkJoinPool pool = new ForkJoinPool(randomIntBetween(1, 4));
+        try
+        {
+            final int size = randomIntBetween(100, 5000);
+            final KTypeVTypeOpenHashMap<KType, VType> reference = new KTypeVTypeOpenHashMap<>();
+            final KTypeVTypeOpenHashMap<KType, VType> parallel = new KTypeVTypeOpenHashMap<>(0, randomFrom(new Double [] {0.5, 0.75, 0.99}));
+            parallel.setParallelRehash(pool);
+            parallel.parallelRehashMinSlots = 0;
+            final int keyMixer = parallel.keyMixer;
+
+            for (int round = 0; round < size * 2; round++)
+            {
+                KType key = cast(randomIntBetween(0, size));
+                if (randomIntBetween(0, 3) > 0)
+                {
+                    VType value = vcast(round);
+                    assertEquals2(reference.put(key, value), parallel.put(key, value));
+                }
+                else
+                {
+                    assertEquals2(reference.remove(key), parallel.remove(key));
+                }
+            }
+            parallel.ensureCapacity(parallel.size() * 4);
+
+            assertTrue(parallel.stats().rehashCount() > 0);
+            assertEquals(keyMixer, parallel.keyMixer);
+            for (int i = 0; i <= size; i++)
+            {
+                assertEquals2(reference.getOrDefault(cast(i), value1), parallel.getOrDefault(cast(i), value1));
+            }
+            assertEquals(reference, parallel);
+        }
+        finally
+        {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
     /* */
     @Test
     public void testPut()
@@ -295,6 +597,50 @@ public class KTypeVTypeOpenHashMapTest<KType, VType> extends AbstractKTypeTest<K
     }
     /*! #end !*/
 
+    /*! #if ($TemplateOptions.VTypePrimitive) !*/
+    @Test
+    public void testAddToWithExpansionsAndEmptyKey()
+    {
+        // Stay within the domain of byte keys.
+        final int max = randomIntBetween(50, 120);
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < max; i++) {
+                map.addTo(cast(i), value1);
+            }
+        }
+
+        assertEquals(max, map.size());
+        for (int i = 0; i < max; i++) {
+            assertEquals2(value2, map.get(cast(i)));
+        }
+    }
+    /*! #end !*/
+
+    /* */
+    @Test
+    public void testComputeIfAbsent()
+    {
+        final IntHolder calls = new IntHolder();
+        final KTypeVTypeFunction<KType, VType> function = new KTypeVTypeFunction<KType, VType>() {
+          @Override
+          public VType apply(KType key) {
+            calls.value++;
+            return value1;
+          }
+        };
+
+        assertEquals2(value1, map.computeIfAbsent(key1, function));
+        assertEquals(1, calls.value);
+        map.put(key1, value2);
+        assertEquals2(value2, map.computeIfAbsent(key1, function));
+        assertEquals(1, calls.value);
+
+        assertEquals2(value1, map.computeIfAbsent(keyE, function));
+        assertEquals(2, calls.value);
+        assertTrue(map.containsKey(keyE));
+        assertEquals(2, map.size());
+    }
+
     /* */
     @Test
     public void testRemove()
@@ -372,6 +718,184 @@ public class KTypeVTypeOpenHashMapTest<KType, VType> extends AbstractKTypeTest<K
         assertTrue(map.containsKey(key1));
     }
 
+    /* */
+    @Test
+    @ThreadLeakLingering(linger = 1000)
+    public void testParallelBulkOperations() throws InterruptedException
+    {
+        final ForkJoinPool pool = new ForkJoinPool(randomIntBetween(1, 4));
+        try
+        {
+            final int size = randomIntBetween(0, 5000);
+            final KTypeOpenHashSet<KType> toRemove = new KTypeOpenHashSet<>();
+            for (int i = 0; i < size; i++)
+            {
+                KType key = cast(randomIntBetween(0, size * 2));
+                map.put(key, vcast(i));
+                if (randomIntBetween(0, 2) == 0)
+                {
+                    toRemove.add(key);
+                }
+            }
+            if (randomIntBetween(0, 1) == 0)
+            {
+                map.put(keyE, value1);
+            }
+
+            class Collector implements KTypeVTypeProcedure<KType, VType>
+            {
+                final KTypeVTypeOpenHashMap<KType, VType> entries = new KTypeVTypeOpenHashMap<>();
+
+                public void apply(KType key, VType value)
+                {
+                    synchronized (this)
+                    {
+                        assertFalse(entries.containsKey(key));
+                        entries.put(key, value);
+                    }
+                }
+            }
+
+            final KTypeVTypeOpenHashMap<KType, VType> visited = map.parallelForEach(pool, new Collector()).entries;
+            assertEquals(map.size(), visited.size());
+            for (KTypeVTypeCursor<KType, VType> c : visited)
+            {
+                assertEquals2(map.get(c.key), c.value);
+            }
+
+            final KTypeVTypeOpenHashMap<KType, VType> reduced = map.parallelReduce(pool, new Reducer<Collector>()
+            {
+                public Collector newAccumulator()
+                {
+                    return new Collector();
+                }
+
+                public Collector merge(Collector left, Collector right)
+                {
+                    left.entries.putAll(right.entries);
+                    return left;
+                }
+            }).entries;
+            assertEquals(map.size(), reduced.size());
+            for (KTypeVTypeCursor<KType, VType> c : reduced)
+            {
+                assertEquals2(map.get(c.key), c.value);
+            }
+
+            final KTypeVTypePredicate<KType, VType> predicate = new KTypeVTypePredicate<KType, VType>()
+            {
+                public boolean apply(KType key, VType value)
+                {
+                    return toRemove.contains(key);
+                }
+            };
+            final KTypeVTypeOpenHashMap<KType, VType> reference = map.clone();
+            assertEquals(reference.removeAll(predicate), map.parallelRemoveAll(pool, predicate));
+            assertEquals(reference, map);
+            for (KTypeVTypeCursor<KType, VType> c : reference)
+            {
+                assertTrue(map.containsKey(c.key));
+                assertEquals2(c.value, map.get(c.key));
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    /* */
+    @Test
+    public void testSpliterator()
+    {
+        for (int i = randomIntBetween(0, 1000); i > 0; i--)
+        {
+            map.put(cast(randomIntBetween(0, 2000)), vcast(i));
+        }
+        if (randomIntBetween(0, 1) == 0)
+        {
+            map.put(keyE, value1);
+        }
+
+        final KTypeSpliterator<KType> keySpliterator = map.keys().elementSpliterator();
+        assertEquals(map.size(), keySpliterator.estimateSize());
+        final List<KTypeSpliterator<KType>> keyParts = new ArrayList<>();
+        keyParts.add(keySpliterator);
+        for (int i = randomIntBetween(0, 10); i > 0; i--)
+        {
+            final KTypeSpliterator<KType> prefix = keyParts.get(randomIntBetween(0, keyParts.size() - 1)).trySplit();
+            if (prefix != null)
+            {
+                keyParts.add(prefix);
+            }
+        }
+
+        final KTypeArrayList<KType> keys = new KTypeArrayList<>();
+        final KTypeProcedure<KType> keyCollector = new KTypeProcedure<KType>()
+        {
+            public void apply(KType value)
+            {
+                keys.add(value);
+            }
+        };
+        for (KTypeSpliterator<KType> part : keyParts)
+        {
+            if (randomIntBetween(0, 1) == 0)
+            {
+                part.forEachRemaining(keyCollector);
+            }
+            else
+            {
+                while (part.tryAdvance(keyCollector)) {}
+            }
+            assertFalse(part.tryAdvance(keyCollector));
+        }
+
+        assertEquals(map.size(), keys.size());
+        for (KTypeCursor<KType> c : keys)
+        {
+            assertTrue(map.containsKey(c.value));
+        }
+
+        final KTypeSpliterator<VType> valueSpliterator = map.values().elementSpliterator();
+        assertEquals(map.size(), valueSpliterator.estimateSize());
+        final List<KTypeSpliterator<VType>> valueParts = new ArrayList<>();
+        valueParts.add(valueSpliterator);
+        for (int i = randomIntBetween(0, 10); i > 0; i--)
+        {
+            final KTypeSpliterator<VType> prefix = valueParts.get(randomIntBetween(0, valueParts.size() - 1)).trySplit();
+            if (prefix != null)
+            {
+                valueParts.add(prefix);
+            }
+        }
+
+        final KTypeArrayList<VType> values = new KTypeArrayList<VType>();
+        final KTypeProcedure<VType> valueCollector = new KTypeProcedure<VType>()
+        {
+            public void apply(VType value)
+            {
+                values.add(value);
+            }
+        };
+        for (KTypeSpliterator<VType> part : valueParts)
+        {
+            if (randomIntBetween(0, 1) == 0)
+            {
+                part.forEachRemaining(valueCollector);
+            }
+            else
+            {
+                while (part.tryAdvance(valueCollector)) {}
+            }
+            assertFalse(part.tryAdvance(valueCollector));
+        }
+
+        assertEquals(map.size(), values.size());
+        Assertions.assertThat(values.toArray()).containsOnly(map.values().toArray());
+    }
+
     /* */
     @Test
     public void testRemoveAllWithKeyPredicate()
@@ -0,0 +1,160 @@
+package com.carrotsearch.hppc;
+
+import static com.carrotsearch.hppc.TestUtils.*;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.*;
+
+import com.carrotsearch.hppc.cursors.KTypeCursor;
+
+/**
+ * Tests for {@link KTypeVTypeRobinHoodHashMap}. Runs all tests of
+ * {@link KTypeVTypeOpenHashMapTest} against the Robin Hood variant.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeRobinHoodHashMapTest<KType, VType> extends KTypeVTypeOpenHashMapTest<KType, VType>
+{
+    public KTypeVTypeRobinHoodHashMapTest()
+    {
+        map = new KTypeVTypeRobinHoodHashMap<>();
+    }
+
+    /**
+     * No key may be further away from its ideal slot than its predecessor
+     * in the same cluster, plus one. Stored probe distances must match the
+     * keys' slots.
+     */
+    @After
+    public void checkProbeDistancesOrdered()
+    {
+        if (map != null && map instanceof KTypeVTypeRobinHoodHashMap)
+        {
+            final int mask = map.mask;
+            for (int slot = 0; slot <= mask; slot++)
+            {
+                final int next = (slot + 1) & mask;
+                KType existing = Intrinsics.<KType> cast(map.keys[slot]);
+                KType following = Intrinsics.<KType> cast(map.keys[next]);
+                if (!Intrinsics.<KType> isEmpty(existing))
+                {
+                    int distance = (slot - map.hashKey(existing)) & mask;
+                    assertEquals(Math.min(distance, 0xff), ((KTypeVTypeRobinHoodHashMap<KType, VType>) map).distances[slot] & 0xff);
+                }
+                if (!Intrinsics.<KType> isEmpty(following))
+                {
+                    int followingDistance = (next - map.hashKey(following)) & mask;
+                    if (Intrinsics.<KType> isEmpty(existing))
+                    {
+                        assertEquals(0, followingDistance);
+                    }
+                    else
+                    {
+                        int distance = (slot - map.hashKey(existing)) & mask;
+                        assertTrue(followingDistance <= distance + 1);
+                    }
+                }
+            }
+        }
+    }
+
+    /* */
+    @Test
+    public void testAgainstReferenceMapAtHighLoadFactor()
+    {
+        final int size = randomIntBetween(100, 2000);
+        final KTypeVTypeOpenHashMap<KType, VType> reference = new KTypeVTypeOpenHashMap<>();
+        map = new KTypeVTypeRobinHoodHashMap<>(0, 0.95d);
+
+        for (int round = 0; round < size * 10; round++)
+        {
+            KType key = cast(randomIntBetween(0, size));
+            if (randomBoolean())
+            {
+                VType value = vcast(round);
+                assertEquals2(reference.put(key, value), map.put(key, value));
+            }
+            else
+            {
+                assertEquals(reference.containsKey(key), map.containsKey(key));
+                assertEquals2(reference.remove(key), map.remove(key));
+            }
+            assertEquals(reference.size(), map.size());
+        }
+
+        for (int i = 0; i <= size; i++)
+        {
+            KType key = cast(i);
+            assertEquals(reference.containsKey(key), map.containsKey(key));
+            assertEquals2(reference.get(key), map.get(key));
+        }
+    }
+
+    /**
+     * A cluster longer than the largest stored probe distance.
+     */
+    @Test
+    public void testLongCluster()
+    {
+        map = new KTypeVTypeRobinHoodHashMap<>(1000);
+        final KTypeArrayList<KType> colliding = new KTypeArrayList<>();
+        for (int i = 1; i < (1 << 22) && colliding.size() < 300; i++)
+        {
+            final KType key = cast(i);
+            if (!Intrinsics.<KType> isEmpty(key) &&
+                (map.hashKey(key) & map.mask) == 0 && !colliding.contains(key))
+            {
+                colliding.add(key);
+            }
+        }
+
+        for (KTypeCursor<KType> c : colliding)
+        {
+            final KType key = c.value;
+            map.put(key, vcast(1));
+        }
+        for (int i = 0; i < colliding.size(); i += 2)
+        {
+            map.remove(colliding.get(i));
+        }
+        assertEquals(colliding.size() / 2, map.size());
+        for (int i = 0; i < colliding.size(); i++)
+        {
+            assertEquals(i % 2 == 1, map.containsKey(colliding.get(i)));
+        }
+    }
+
+    /**
+     * Incremental and parallel rehashing are ignored: buffers are rehashed at
+     * once and keys stay ordered by their probe distance.
+     */
+    @Test
+    public void testIncrementalAndParallelRehashIgnored()
+    {
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try
+        {
+            final KTypeVTypeOpenHashMap<KType, VType> reference = new KTypeVTypeOpenHashMap<>();
+            map = new KTypeVTypeRobinHoodHashMap<>();
+            map.setIncrementalRehash(1);
+            map.setParallelRehash(pool);
+            map.parallelRehashMinSlots = 0;
+
+            final int size = randomIntBetween(100, 5000);
+            for (int i = 0; i < size; i++)
+            {
+                assertEquals2(reference.put(cast(i), vcast(i)), map.put(cast(i), vcast(i)));
+                assertNull(map.rehashKeys);
+            }
+            assertEquals(reference.size(), map.size());
+            for (int i = 0; i < size; i++)
+            {
+                assertEquals2(reference.get(cast(i)), map.get(cast(i)));
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package com.carrotsearch.hppc;
+
+import static com.carrotsearch.hppc.TestUtils.*;
+
+import java.util.Arrays;
+
+import org.junit.*;
+
+import com.carrotsearch.hppc.cursors.*;
+import com.carrotsearch.hppc.predicates.*;
+import com.carrotsearch.hppc.procedures.*;
+
+/**
+ * Tests for {@link KTypeVTypeSortedMap}.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeVTypeSortedMapTest<KType, VType> extends AbstractKTypeTest<KType>
+{
+    /**
+     * Keys are <code>cast(0..KEYS - 1)</code>; these are distinct for all types,
+     * but not in the same order, so expected orders are computed with
+     * {@link #compareNatural}. There are more keys than fit in a leaf.
+     */
+    private static final int KEYS = 256;
+
+    protected VType value0 = vcast(0);
+    protected VType value1 = vcast(1);
+    protected VType value2 = vcast(2);
+    protected VType value3 = vcast(3);
+
+    /**
+     * Per-test fresh initialized instance.
+     */
+    public KTypeVTypeSortedMap<KType, VType> map = new KTypeVTypeSortedMap<>();
+
+    @After
+    public void checkConsistency()
+    {
+        if (map != null)
+        {
+            KTypeSortedTreeTest.assertConsistent(map.tree);
+        }
+    }
+
+    /**
+     * Convert to target type from an integer used to test stuff.
+     */
+    protected VType vcast(int value)
+    {
+        /*! #if ($TemplateOptions.VTypePrimitive)
+            return (VType) value;
+            #else !*/
+            @SuppressWarnings("unchecked")
+            VType v = (VType)(Object) value;
+            return v;
+        /*! #end !*/
+    }
+
+    private int compareNatural(KType a, KType b)
+    {
+        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+        @SuppressWarnings("unchecked")
+        final Comparable<Object> c = (Comparable<Object>) a;
+        return c.compareTo(b);
+        /*! #elseif ($TemplateOptions.KType.Type == "int")
+        return Integer.compare(a, b);
+        #elseif ($TemplateOptions.KType.Type == "char")
+        return Character.compare(a, b);
+        #else
+        return ${TemplateOptions.KType.BoxedType}.compare(a, b);
+        #end !*/
+    }
+
+    /**
+     * @return Returns the key (of <code>cast(0..KEYS - 1)</code>) present in
+     * <code>reference</code> that is closest to <code>key</code> in the given
+     * direction, or <code>-1</code>.
+     */
+    private int expectedNeighbour(int [] reference, KType key, boolean below, boolean inclusive)
+    {
+        int best = -1;
+        for (int k = 0; k < KEYS; k++)
+        {
+            if (reference[k] < 0)
+            {
+                continue;
+            }
+            final int c = compareNatural(cast(k), key);
+            final boolean matches = (c == 0 ? inclusive : (below ? c < 0 : c > 0));
+            if (matches && (best < 0 || (below ? compareNatural(cast(k), cast(best)) > 0
+                                               : compareNatural(cast(k), cast(best)) < 0)))
+            {
+                best = k;
+            }
+        }
+        return best;
+    }
+
+    private void assertNeighbour(int expected, int index)
+    {
+        if (expected < 0)
+        {
+            assertEquals(-1, index);
+        }
+        else
+        {
+            assertEquals2(cast(expected), map.indexKey(index));
+        }
+    }
+
+    /* */
+    @Test
+    public void testPutGetRemove()
+    {
+        assertEquals2(Intrinsics.<VType> empty(), map.put(key2, value2));
+        map.put(key1, value1);
+        map.put(key3, value3);
+        assertEquals2(value2, map.put(key2, value0));
+        assertEquals(3, map.size());
+        assertEquals2(value0, map.get(key2));
+        assertEquals2(value3, map.getOrDefault(key4, value3));
+        assertTrue(map.containsKey(key1));
+        assertFalse(map.containsKey(key4));
+
+        assertEquals2(key1, map.firstKey());
+        assertEquals2(key3, map.lastKey());
+        assertEquals2(value0, map.remove(key2));
+        assertEquals2(Intrinsics.<VType> empty(), map.remove(key2));
+        assertEquals(2, map.size());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(-1, map.firstIndex());
+        assertEquals(-1, map.lastIndex());
+    }
+
+    /* */
+    @Test
+    public void testNavigation()
+    {
+        map.put(key2, value2);
+        map.put(key4, value1);
+        map.put(key6, value3);
+
+        assertEquals2(key4, map.floorKey(key5));
+        assertEquals2(key4, map.floorKey(key4));
+        assertEquals2(key6, map.ceilingKey(key5));
+        assertEquals2(key2, map.lowerKey(key4));
+        assertEquals2(key6, map.higherKey(key4));
+        assertEquals(-1, map.floorIndex(key1));
+        assertEquals(-1, map.higherIndex(key6));
+        assertEquals2(Intrinsics.<KType> empty(), map.ceilingKey(key7));
+
+        final int index = map.indexOf(key4);
+        assertEquals2(key2, map.indexKey(map.previousIndex(index)));
+        assertEquals2(key6, map.indexKey(map.nextIndex(index)));
+        assertEquals2(value1, map.indexGet(index));
+        assertEquals(-1, map.nextIndex(map.lastIndex()));
+    }
+
+    /* */
+    @Test
+    public void testAgainstReference()
+    {
+        checkAgainstReference();
+    }
+
+    /**
+     * Small leaves and nodes, so that values move with keys between leaves of
+     * a tree with several levels.
+     */
+    @Test
+    public void testAgainstReferenceWithSmallNodes()
+    {
+        map = new KTypeVTypeSortedMap<>(null, 4, 4);
+        checkAgainstReference();
+        assertTrue(map.tree.height > 1);
+    }
+
+    private void checkAgainstReference()
+    {
+        final int [] reference = new int [KEYS];
+        Arrays.fill(reference, -1);
+
+        for (int round = 0; round < 20000; round++)
+        {
+            final int k = randomIntBetween(0, KEYS - 1);
+            final KType key = cast(k);
+            switch (randomIntBetween(0, 4))
+            {
+                case 0:
+                case 1:
+                    // Skew towards insertions so that leaves fill and split.
+                    final int v = randomIntBetween(0, 100);
+                    map.put(key, vcast(v));
+                    reference[k] = v;
+                    break;
+                case 2:
+                    assertEquals(reference[k] >= 0, map.containsKey(key));
+                    if (map.containsKey(key))
+                    {
+                        assertEquals2(vcast(reference[k]), map.remove(key));
+                        reference[k] = -1;
+                    }
+                    break;
+                case 3:
+                    if (reference[k] >= 0)
+                    {
+                        assertEquals2(vcast(reference[k]), map.get(key));
+                    }
+                    else
+                    {
+                        assertTrue(map.indexOf(key) < 0);
+                    }
+                    break;
+                case 4:
+                    assertNeighbour(expectedNeighbour(reference, key, true, true), map.floorIndex(key));
+                    assertNeighbour(expectedNeighbour(reference, key, false, true), map.ceilingIndex(key));
+                    assertNeighbour(expectedNeighbour(reference, key, true, false), map.lowerIndex(key));
+                    assertNeighbour(expectedNeighbour(reference, key, false, false), map.higherIndex(key));
+                    break;
+            }
+
+            if (round % 1000 == 0)
+            {
+                checkConsistency();
+            }
+        }
+
+        int size = 0;
+        for (int r : reference)
+        {
+            size += (r >= 0 ? 1 : 0);
+        }
+        assertEquals(size, map.size());
+    }
+
+    /* */
+    @Test
+    public void testIterationOrder()
+    {
+        for (int k = 0; k < KEYS; k++)
+        {
+            map.put(cast(k), vcast(k % 100));
+        }
+        assertTrue(map.tree.leafCount > 1);
+
+        int count = 0;
+        KType previous = Intrinsics.<KType> empty();
+        for (KTypeVTypeCursor<KType, VType> c : map)
+        {
+            if (count > 0)
+            {
+                assertTrue(compareNatural(previous, c.key) < 0);
+            }
+            assertEquals2(map.indexKey(c.index), c.key);
+            assertEquals2(map.get(c.key), c.value);
+            previous = c.key;
+            count++;
+        }
+        assertEquals(KEYS, count);
+
+        // Keys and values views follow the same order.
+        int i = map.firstIndex();
+        for (KTypeCursor<KType> c : map.keys())
+        {
+            assertEquals2(map.indexKey(i), c.value);
+            i = map.nextIndex(i);
+        }
+        i = map.firstIndex();
+        for (KTypeCursor<VType> c : map.values())
+        {
+            assertEquals2(map.indexGet(i), c.value);
+            i = map.nextIndex(i);
+        }
+        assertEquals(-1, i);
+    }
+
+    /* */
+    @Test
+    public void testSubMap()
+    {
+        for (int k = 0; k < KEYS; k++)
+        {
+            if (randomIntBetween(0, 2) > 0)
+            {
+                map.put(cast(k), vcast(k % 100));
+            }
+        }
+
+        for (int round = 0; round < 100; round++)
+        {
+            final KType from = cast(randomIntBetween(0, KEYS - 1));
+            final KType to = cast(randomIntBetween(0, KEYS - 1));
+
+            int expected = 0;
+            for (KTypeVTypeCursor<KType, VType> c : map)
+            {
+                if (compareNatural(c.key, from) >= 0 && compareNatural(c.key, to) < 0)
+                {
+                    expected++;
+                }
+            }
+
+            int count = 0;
+            for (KTypeVTypeCursor<KType, VType> c : map.subMap(from, to))
+            {
+                assertTrue(compareNatural(c.key, from) >= 0 && compareNatural(c.key, to) < 0);
+                assertEquals2(map.get(c.key), c.value);
+                count++;
+            }
+            assertEquals(expected, count);
+
+            final int [] visited = new int [1];
+            map.forEach(new KTypeVTypeProcedure<KType, VType>()
+            {
+                public void apply(KType key, VType value)
+                {
+                    visited[0]++;
+                }
+            }, from, to);
+            assertEquals(expected, visited[0]);
+        }
+    }
+
+    /* */
+    @Test
+    public void testBulkLoad()
+    {
+        final KTypeVTypeSortedMap<KType, VType> expected = new KTypeVTypeSortedMap<>();
+        for (int k = 0; k < KEYS; k++)
+        {
+            if (randomIntBetween(0, 3) > 0)
+            {
+                expected.put(cast(k), vcast(k % 100));
+            }
+        }
+
+        final KType [] keys = Intrinsics.<KType> newArray(expected.size() + 2);
+        final VType [] values = Intrinsics.<VType> newArray(expected.size() + 2);
+        int i = 1;
+        for (KTypeVTypeCursor<KType, VType> c : expected)
+        {
+            keys[i] = c.key;
+            values[i] = c.value;
+            i++;
+        }
+
+        map.put(key1, value1);
+        map.bulkLoad(keys, values, 1, expected.size());
+        assertEquals(expected, map);
+        assertEquals(expected.hashCode(), map.hashCode());
+
+        // Modifications after a bulk load work as usual.
+        map.remove(keys[1]);
+        map.put(keys[1], value2);
+        assertEquals2(value2, map.get(keys[1]));
+
+        map = KTypeVTypeSortedMap.fromSorted(Arrays.copyOfRange(keys, 1, 1 + expected.size()),
+                                             Arrays.copyOfRange(values, 1, 1 + expected.size()));
+        assertEquals(expected, map);
+    }
+
+    /* */
+    @Test
+    public void testBulkLoadRejectsUnsortedKeys()
+    {
+        final KType [] keys = Intrinsics.<KType> newArray(2);
+        final VType [] values = Intrinsics.<VType> newArray(2);
+        keys[0] = key2;
+        keys[1] = key2;
+        try
+        {
+            map.bulkLoad(keys, values, 0, 2);
+            fail();
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Expected.
+        }
+    }
+
+    /* */
+    @Test
+    public void testRemoveAll()
+    {
+        for (int k = 0; k < KEYS; k++)
+        {
+            map.put(cast(k), vcast(k % 4));
+        }
+
+        assertEquals(KEYS / 4, map.removeAll(new KTypeVTypePredicate<KType, VType>()
+        {
+            public boolean apply(KType key, VType value)
+            {
+                return Intrinsics.<VType> equals(value, value0);
+            }
+        }));
+        assertEquals(KEYS - KEYS / 4, map.size());
+        checkConsistency();
+
+        final int removed = map.removeAll(new KTypePredicate<KType>()
+        {
+            public boolean apply(KType key)
+            {
+                return compareNatural(key, key5) < 0;
+            }
+        });
+        assertTrue(removed > 0);
+        assertEquals2(key5, map.firstKey());
+
+        map.removeAll(new KTypeVTypePredicate<KType, VType>()
+        {
+            public boolean apply(KType key, VType value)
+            {
+                return true;
+            }
+        });
+        assertTrue(map.isEmpty());
+        assertEquals(0, map.tree.leafCount);
+    }
+
+    /* */
+    @Test
+    public void testComparator()
+    {
+        map = new KTypeVTypeSortedMap<>(new KTypeComparator<KType>()
+        {
+            public int compare(KType a, KType b)
+            {
+                return compareNatural(b, a);
+            }
+        });
+        map.put(key1, value1);
+        map.put(key3, value3);
+        map.put(key2, value2);
+        assertEquals2(key3, map.firstKey());
+        assertEquals2(key1, map.lastKey());
+        assertEquals2(key2, map.higherKey(key3));
+    }
+
+    /* */
+    @Test
+    public void testEqualsHashCodeClone()
+    {
+        map.put(key1, value1);
+        map.put(key2, value2);
+
+        final KTypeVTypeSortedMap<KType, VType> other = new KTypeVTypeSortedMap<>();
+        other.put(key2, value2);
+        other.put(key1, value1);
+        assertEquals(map, other);
+        assertEquals(map.hashCode(), other.hashCode());
+
+        final KTypeVTypeSortedMap<KType, VType> cloned = map.clone();
+        map.put(key3, value3);
+        assertEquals(other, cloned);
+        assertFalse(map.equals(cloned));
+        assertEquals(2, cloned.size());
+    }
+}
@@ -0,0 +1,267 @@
+package com.carrotsearch.hppc.sorting;
+
+import static com.carrotsearch.hppc.TestUtils.*;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.carrotsearch.randomizedtesting.annotations.ThreadLeakLingering;
+
+import com.carrotsearch.hppc.AbstractKTypeTest;
+import com.carrotsearch.hppc.KTypeComparator;
+
+/**
+ * Tests for {@link KTypeSort}.
+ */
+/*! ${TemplateOptions.generatedAnnotation} !*/
+public class KTypeSortTest<KType> extends AbstractKTypeTest<KType>
+{
+    /**
+     * Reversed natural order.
+     */
+    private final KTypeComparator<KType> reversed = new KTypeComparator<KType>()
+    {
+        public int compare(KType a, KType b)
+        {
+            return compareNatural(b, a);
+        }
+    };
+
+    private int compareNatural(KType a, KType b)
+    {
+        /*! #if ($TemplateOptions.KTypeGeneric) !*/
+        @SuppressWarnings("unchecked")
+        final Comparable<Object> c = (Comparable<Object>) a;
+        return c.compareTo(b);
+        /*! #elseif ($TemplateOptions.KType.Type == "int")
+        return Integer.compare(a, b);
+        #elseif ($TemplateOptions.KType.Type == "char")
+        return Character.compare(a, b);
+        #else
+        return ${TemplateOptions.KType.BoxedType}.compare(a, b);
+        #end !*/
+    }
+
+    /**
+     * @return Returns an array of random elements, with random runs of sorted,
+     * reversed or repeated elements.
+     */
+    private KType [] randomArray(int length)
+    {
+        final KType [] a = asArray(new int [length]);
+        final int range = randomIntBetween(1, 1 << randomIntBetween(1, 30));
+        int i = 0;
+        while (i < length)
+        {
+            final int run = Math.min(length - i, randomIntBetween(1, 1000));
+            final int start = randomIntBetween(-range, range);
+            final int pattern = randomIntBetween(0, 3);
+            for (int j = 0; j < run; j++, i++)
+            {
+                switch (pattern)
+                {
+                    case 0:
+                        a[i] = cast(randomIntBetween(-range, range));
+                        break;
+                    case 1:
+                        a[i] = cast(start + j);
+                        break;
+                    case 2:
+                        a[i] = cast(start - j);
+                        break;
+                    default:
+                        a[i] = cast(start);
+                        break;
+                }
+            }
+        }
+        return a;
+    }
+
+    private void assertSorted(KType [] expected, KType [] actual)
+    {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++)
+        {
+            assertEquals2(expected[i], actual[i]);
+        }
+    }
+
+    /* */
+    @Test
+    public void testSortMatchesArraysSort()
+    {
+        for (int round = 0; round < 50; round++)
+        {
+            final KType [] a = randomArray(randomIntBetween(0, round < 40 ? 100 : 20000));
+            final int from = randomIntBetween(0, a.length);
+            final int to = randomIntBetween(from, a.length);
+
+            final KType [] expected = Arrays.copyOf(a, a.length);
+            Arrays.sort(expected, from, to);
+            KTypeSort.sort(a, from, to);
+            assertSorted(expected, a);
+        }
+    }
+
+    /* */
+    @Test
+    public void testComparator()
+    {
+        final KType [] a = randomArray(randomIntBetween(0, 10000));
+        KTypeSort.sort(a, 0, a.length, reversed);
+        for (int i = 1; i < a.length; i++)
+        {
+            assertTrue(compareNatural(a[i - 1], a[i]) >= 0);
+        }
+    }
+
+    /* */
+    @Test
+    public void testAllEqualComparator()
+    {
+        // A comparator that considers everything equal terminates quickly.
+        final KType [] a = randomArray(100000);
+        final KType [] expected = Arrays.copyOf(a, a.length);
+        KTypeSort.sort(a, 0, a.length, new KTypeComparator<KType>()
+        {
+            public int compare(KType x, KType y)
+            {
+                return 0;
+            }
+        });
+        Arrays.sort(a);
+        Arrays.sort(expected);
+        assertSorted(expected, a);
+    }
+
+    /* */
+    @Test
+    @ThreadLeakLingering(linger = 1000)
+    public void testParallelSort() throws InterruptedException
+    {
+        final ForkJoinPool pool = new ForkJoinPool(randomIntBetween(1, 4));
+        try
+        {
+            final KType [] a = randomArray(randomIntBetween(0, 100000));
+            final int from = randomIntBetween(0, a.length);
+            final int to = randomIntBetween(from, a.length);
+
+            final KType [] expected = Arrays.copyOf(a, a.length);
+            Arrays.sort(expected, from, to);
+            KTypeSort.parallelSort(pool, a, from, to);
+            assertSorted(expected, a);
+
+            KTypeSort.parallelSort(pool, a, 0, a.length, reversed);
+            for (int i = 1; i < a.length; i++)
+            {
+                assertTrue(compareNatural(a[i - 1], a[i]) >= 0);
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    /* */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRange()
+    {
+        KTypeSort.sort(asArray(new int [2]), 1, 3);
+    }
+
+    /*! #if ($TemplateOptions.KType.Type == "int" || $TemplateOptions.KType.Type == "long" || $TemplateOptions.KType.Type == "float" || $TemplateOptions.KType.Type == "double") !*/
+    /* */
+    @Test
+    public void testRadixSortMatchesArraysSort()
+    {
+        KType [] buffer = asArray(new int [0]);
+        for (int round = 0; round < 50; round++)
+        {
+            final KType [] a = randomArray(randomIntBetween(0, round < 40 ? 1000 : 20000));
+            final int from = randomIntBetween(0, a.length);
+            final int to = randomIntBetween(from, a.length);
+
+            final KType [] expected = Arrays.copyOf(a, a.length);
+            Arrays.sort(expected, from, to);
+            if (buffer.length < to - from)
+            {
+                buffer = asArray(new int [to - from]);
+            }
+            KTypeSort.radixSort(a, from, to, buffer);
+            assertSorted(expected, a);
+        }
+    }
+
+    /* */
+    @Test
+    public void testRadixSortReusesCounts()
+    {
+        final KType [] buffer = asArray(new int [20000]);
+        final int [] counts = new int [KTypeSort.RADIX_SORT_COUNTS];
+        for (int round = 0; round < 20; round++)
+        {
+            final KType [] a = randomArray(randomIntBetween(0, buffer.length));
+            final KType [] expected = Arrays.copyOf(a, a.length);
+            Arrays.sort(expected);
+            KTypeSort.radixSort(a, 0, a.length, buffer, counts);
+            assertSorted(expected, a);
+        }
+    }
+
+    /* */
+    @Test(expected = IllegalArgumentException.class)
+    public void testRadixSortCountsTooSmall()
+    {
+        final KType [] a = asArray(new int [KTypeSort.RADIX_SORT_THRESHOLD]);
+        KTypeSort.radixSort(a, 0, a.length, asArray(new int [a.length]), new int [KTypeSort.RADIX_SORT_COUNTS - 1]);
+    }
+
+    /* */
+    @Test
+    public void testRadixSortExtremeValues()
+    {
+        /*! #if ($TemplateOptions.KType.Type == "int")
+        final KType [] special = {Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE};
+        #elseif ($TemplateOptions.KType.Type == "long")
+        final KType [] special = {Long.MIN_VALUE, Integer.MIN_VALUE, -1, 0, 1, Long.MAX_VALUE};
+        #elseif ($TemplateOptions.KType.Type == "float")
+        final KType [] special = {Float.NEGATIVE_INFINITY, -Float.MAX_VALUE, -1, -Float.MIN_VALUE,
+                                  -0f, 0f, Float.MIN_VALUE, 1, Float.MAX_VALUE, Float.POSITIVE_INFINITY, Float.NaN};
+        #elseif ($TemplateOptions.KType.Type == "double")
+        final KType [] special = {Double.NEGATIVE_INFINITY, -Double.MAX_VALUE, -1, -Double.MIN_VALUE,
+                                  -0d, 0d, Double.MIN_VALUE, 1, Double.MAX_VALUE, Double.POSITIVE_INFINITY, Double.NaN};
+        #else !*/
+        final KType [] special = asArray(Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE);
+        /*! #end !*/
+
+        final KType [] a = asArray(new int [KTypeSort.RADIX_SORT_THRESHOLD * 4]);
+        for (int i = 0; i < a.length; i++)
+        {
+            a[i] = special[randomIntBetween(0, special.length - 1)];
+        }
+
+        final KType [] expected = Arrays.copyOf(a, a.length);
+        Arrays.sort(expected);
+        KTypeSort.radixSort(a);
+        assertSorted(expected, a);
+
+        // The natural order of the quicksort is the same.
+        final KType [] b = Arrays.copyOf(expected, expected.length);
+        for (int i = b.length - 1; i > 0; i--)
+        {
+            final int j = randomIntBetween(0, i);
+            final KType t = b[i];
+            b[i] = b[j];
+            b[j] = t;
+        }
+        KTypeSort.sort(b);
+        assertSorted(expected, b);
+    }
+    /*! #end !*/
+}